@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cold start cost of loading the signing key in a fresh JVM, which is what a short build pays on every
+ * {@code crx} execution. Each fork performs a single invocation so class loading and provider registration are
+ * included in the measurement. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec@run-benchmarks -Djmh.args=KeyPairLoadingBenchmark}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@State(Scope.Benchmark)
+public class KeyPairLoadingBenchmark {
+
+    /**
+     * The unencrypted PEM file: PKCS#1 ({@code crxtest.pem}) or PKCS#8 ({@code chrome.pem}).
+     */
+    @Param({"crxtest.pem", "chrome.pem"})
+    private String pemFile;
+
+    /**
+     * Load the key using the JDK fast path.
+     *
+     * @return The public/private key pair.
+     * @throws Exception If the key could not be loaded.
+     */
+    @Benchmark
+    public KeyPair jdk() throws Exception {
+        return KeyPairUtils.readKeyPair(new File("target/test-classes", pemFile), null);
+    }
+
+    /**
+     * Load the key using Bouncy Castle as every execution did before the JDK fast path was introduced.
+     *
+     * @return The public/private key pair.
+     * @throws Exception If the key could not be loaded.
+     */
+    @Benchmark
+    public KeyPair bouncyCastle() throws Exception {
+        return BouncyCastleKeyPairReader.readKeyPair(new File("target/test-classes", pemFile), null);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the signing and verification throughput of each security provider for RSA-2048, RSA-4096 and P-256 keys.
+ * The {@code NONEwithRSA} combinations sign a SHA-256 {@code DigestInfo} which is what the plug-in does when it
+ * signs a CRX3 archive. Each combination is checked against a different provider before it is measured so that a
+ * fast but incorrect provider is never reported. The results were used to choose
+ * {@link CRXSignatureHelper#DEFAULT_PROVIDERS}. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec@run-benchmarks -Djmh.args=SignatureProviderBenchmark}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class SignatureProviderBenchmark {
+
+    /**
+     * The combination being measured as {@code provider:algorithm:key} where key is {@code RSA-<bits>} or
+     * {@code P-256}.
+     */
+    @Param({
+            "SunJCE:NONEwithRSA:RSA-2048", "BC:NONEwithRSA:RSA-2048",
+            "SunJCE:NONEwithRSA:RSA-4096", "BC:NONEwithRSA:RSA-4096",
+            "SunRsaSign:SHA256withRSA:RSA-2048", "BC:SHA256withRSA:RSA-2048",
+            "SunRsaSign:SHA256withRSA:RSA-4096", "BC:SHA256withRSA:RSA-4096",
+            "SunEC:SHA256withECDSA:P-256", "BC:SHA256withECDSA:P-256"
+    })
+    private String combination;
+
+    /**
+     * The signature object used to sign the input.
+     */
+    private Signature signer;
+
+    /**
+     * The signature object used to verify the signature.
+     */
+    private Signature verifier;
+
+    /**
+     * The data that is signed.
+     */
+    private byte[] input;
+
+    /**
+     * A signature of the input used by the verification benchmark.
+     */
+    private byte[] signature;
+
+    /**
+     * Generate the key pair, initialise the signature objects and check that the provider produces signatures that
+     * a different provider accepts.
+     *
+     * @throws Exception If the combination is not supported or the provider produced an incorrect signature.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        final String[] parts = combination.split(":");
+        final String provider = parts[0];
+        final String algorithm = parts[1];
+        final KeyPairGenerator generator;
+        if (parts[2].startsWith("RSA-")) {
+            generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(Integer.parseInt(parts[2].substring(4)), new SecureRandom());
+        } else {
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom());
+        }
+        final KeyPair keyPair = generator.generateKeyPair();
+
+        final byte[] data = new byte[1024];
+        new SecureRandom().nextBytes(data);
+        if (algorithm.startsWith("NONE")) {
+            input = CRXSignatureHelper.getDigestInfo(3, MessageDigest.getInstance("SHA-256").digest(data));
+        } else {
+            input = data;
+        }
+
+        signer = Signature.getInstance(algorithm, provider);
+        signer.initSign(keyPair.getPrivate());
+        verifier = Signature.getInstance(algorithm, provider);
+        verifier.initVerify(keyPair.getPublic());
+        signature = sign();
+
+        final String referenceProvider;
+        if (BouncyCastleProvider.PROVIDER_NAME.equals(provider)) {
+            referenceProvider = algorithm.startsWith("NONE") ? "SunJCE" : algorithm.endsWith("ECDSA") ? "SunEC"
+                    : "SunRsaSign";
+        } else {
+            referenceProvider = BouncyCastleProvider.PROVIDER_NAME;
+        }
+        final Signature reference = Signature.getInstance(algorithm, referenceProvider);
+        reference.initVerify(keyPair.getPublic());
+        reference.update(input);
+        if (!reference.verify(signature) || !verify()) {
+            throw new IllegalStateException(provider + " produced an incorrect " + algorithm + " signature");
+        }
+    }
+
+    /**
+     * Sign the input.
+     *
+     * @return The signature.
+     * @throws Exception If the input could not be signed.
+     */
+    @Benchmark
+    public byte[] sign() throws Exception {
+        signer.update(input);
+        return signer.sign();
+    }
+
+    /**
+     * Verify the signature of the input.
+     *
+     * @return {@code true} if the signature was valid. Otherwise, {@code false}.
+     * @throws Exception If the signature could not be verified.
+     */
+    @Benchmark
+    public boolean verify() throws Exception {
+        verifier.update(input);
+        return verifier.verify(signature);
+    }
+}
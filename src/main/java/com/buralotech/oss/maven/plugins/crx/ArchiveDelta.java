@@ -0,0 +1,587 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * Produces and applies the deltas between two releases of a CRX archive. Two kinds of delta are supported:
+ * <ul>
+ * <li>An entry package is a ZIP file containing the entries that were added or modified together with an index of
+ * the entries that were added, modified or removed. Entries are compared using the CRC and size recorded in the
+ * central directories and are copied in their compressed form so no entry is inflated. The index also records the
+ * previous CRC and size of the entries that were modified or removed so the package is only applied to the release it
+ * was produced from.</li>
+ * <li>A patch is a byte level delta of the ZIP payload. It also carries the header of the new CRX archive so applying
+ * the patch to the previous CRX archive reproduces the new CRX archive exactly. Matching regions are found using a
+ * rolling hash of fixed size blocks of the previous payload.</li>
+ * </ul>
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class ArchiveDelta {
+
+    /**
+     * The name of the entry in an entry package that holds the index. Chrome reserves names that start with an
+     * underscore so it cannot clash with an entry of the extension.
+     */
+    public static final String INDEX_ENTRY = "_delta/index.properties";
+
+    /**
+     * The status of an entry that was added.
+     */
+    public static final String ADDED = "added";
+
+    /**
+     * The status of an entry that was modified.
+     */
+    public static final String MODIFIED = "modified";
+
+    /**
+     * The status of an entry that was removed.
+     */
+    public static final String REMOVED = "removed";
+
+    /**
+     * The prefix of the index properties that hold the status of an entry.
+     */
+    private static final String ENTRY_PREFIX = "entry.";
+
+    /**
+     * The prefix of the index properties that hold the previous CRC and size of an entry that was modified or removed.
+     */
+    private static final String PREVIOUS_PREFIX = "previous.";
+
+    /**
+     * The index property that holds the checksum of the previous CRX archive.
+     */
+    private static final String PREVIOUS_PROPERTY = "previous.sha256";
+
+    /**
+     * The index property that holds the checksum of the new CRX archive.
+     */
+    private static final String CURRENT_PROPERTY = "current.sha256";
+
+    /**
+     * The magic number at the start of a patch.
+     */
+    private static final byte[] PATCH_MAGIC = {0x43, 0x52, 0x58, 0x44};
+
+    /**
+     * The version of the patch format.
+     */
+    private static final int PATCH_VERSION = 1;
+
+    /**
+     * The size of the blocks of the previous payload that are indexed when searching for matching regions.
+     */
+    private static final int BLOCK_SIZE = 32;
+
+    /**
+     * The multiplier of the rolling hash.
+     */
+    private static final int HASH_BASE = 0x01000193;
+
+    /**
+     * The patch operation that ends the patch.
+     */
+    private static final int OP_END = 0;
+
+    /**
+     * The patch operation that copies a region of the previous payload.
+     */
+    private static final int OP_COPY = 1;
+
+    /**
+     * The patch operation that adds literal bytes.
+     */
+    private static final int OP_ADD = 2;
+
+    /**
+     * The archive helper is used to read the CRX archives.
+     */
+    private final ArchiveHelper archiveHelper;
+
+    /**
+     * Initialise the delta.
+     *
+     * @param helper The archive helper that is used to read the CRX archives.
+     */
+    public ArchiveDelta(final ArchiveHelper helper) {
+        archiveHelper = helper;
+    }
+
+    /**
+     * Compare the entries of two CRX archives using the CRC and size recorded in their central directories.
+     * Directory entries are ignored.
+     *
+     * @param previous The entries of the previous CRX archive.
+     * @param current  The entries of the new CRX archive.
+     * @return The status of each entry that was added, modified or removed ordered by name.
+     */
+    public static Map<String, String> diffEntries(final List<CRXEntry> previous, final List<CRXEntry> current) {
+        final Map<String, CRXEntry> previousEntries = new HashMap<>();
+        for (final CRXEntry entry : previous) {
+            if (!entry.isDirectory()) {
+                previousEntries.put(entry.getName(), entry);
+            }
+        }
+        final Map<String, String> changes = new TreeMap<>();
+        for (final CRXEntry entry : current) {
+            if (!entry.isDirectory()) {
+                final CRXEntry previousEntry = previousEntries.remove(entry.getName());
+                if (previousEntry == null) {
+                    changes.put(entry.getName(), ADDED);
+                } else if (previousEntry.getCrc() != entry.getCrc() || previousEntry.getSize() != entry.getSize()) {
+                    changes.put(entry.getName(), MODIFIED);
+                }
+            }
+        }
+        for (final String name : previousEntries.keySet()) {
+            changes.put(name, REMOVED);
+        }
+        return changes;
+    }
+
+    /**
+     * Write an entry package containing the entries of the new CRX archive that were added or modified since the
+     * previous CRX archive and an index of the changes.
+     *
+     * @param previousCrx The previous CRX archive.
+     * @param currentCrx  The new CRX archive.
+     * @param packageFile The entry package.
+     * @return The status of each entry that was added, modified or removed ordered by name.
+     * @throws IOException If a CRX archive could not be read or the entry package could not be written.
+     */
+    public Map<String, String> writeEntryPackage(final File previousCrx, final File currentCrx, final File packageFile)
+            throws IOException {
+        final List<CRXEntry> previousEntries = archiveHelper.listEntries(previousCrx);
+        final Map<String, String> changes = diffEntries(previousEntries, archiveHelper.listEntries(currentCrx));
+        final Properties index = new Properties();
+        for (final CRXEntry entry : previousEntries) {
+            final String status = changes.get(entry.getName());
+            if (MODIFIED.equals(status) || REMOVED.equals(status)) {
+                index.setProperty(PREVIOUS_PREFIX + entry.getName(), entry.getCrc() + ":" + entry.getSize());
+            }
+        }
+        index.setProperty(PREVIOUS_PROPERTY, ChecksumUtils.checksum(previousCrx, "SHA-256"));
+        index.setProperty(CURRENT_PROPERTY, ChecksumUtils.checksum(currentCrx, "SHA-256"));
+        Files.createDirectories(packageFile.getAbsoluteFile().getParentFile().toPath());
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(archiveHelper.readPayload(currentCrx));
+             ZipArchiveOutputStream out = new ZipArchiveOutputStream(packageFile)) {
+            for (final Map.Entry<String, String> change : changes.entrySet()) {
+                index.setProperty(ENTRY_PREFIX + change.getKey(), change.getValue());
+                if (!REMOVED.equals(change.getValue())) {
+                    final ZipArchiveEntry entry = zipFile.getEntry(change.getKey());
+                    try (InputStream in = zipFile.getRawInputStream(entry)) {
+                        out.addRawArchiveEntry(new ZipArchiveEntry(entry), in);
+                    }
+                }
+            }
+            out.putArchiveEntry(new ZipArchiveEntry(INDEX_ENTRY));
+            index.store(out, null);
+            out.closeArchiveEntry();
+        }
+        return changes;
+    }
+
+    /**
+     * Apply an entry package to a directory into which the previous CRX archive was unpacked. The CRC and size of the
+     * files that will be modified or removed are checked against the previous release before the directory is
+     * changed. Entries that were removed are then deleted and entries that were added or modified are extracted.
+     *
+     * @param packageFile The entry package.
+     * @param directory   The directory into which the previous CRX archive was unpacked.
+     * @throws IOException If the entry package could not be read, the directory does not hold the previous release or
+     *                     the directory could not be updated.
+     */
+    public static void applyEntryPackage(final File packageFile, final File directory) throws IOException {
+        final Path root = directory.toPath().toAbsolutePath().normalize();
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(CRXPayload.ofFileRegion(packageFile.toPath(), 0,
+                packageFile.length()))) {
+            final ZipArchiveEntry indexEntry = zipFile.getEntry(INDEX_ENTRY);
+            if (indexEntry == null) {
+                throw new IOException("Not a CRX entry package: " + packageFile.getAbsolutePath());
+            }
+            final Properties index = new Properties();
+            try (InputStream in = zipFile.getInputStream(indexEntry)) {
+                index.load(in);
+            }
+            final Map<String, String> changes = new TreeMap<>();
+            for (final String key : index.stringPropertyNames()) {
+                if (key.startsWith(ENTRY_PREFIX)) {
+                    changes.put(key.substring(ENTRY_PREFIX.length()), index.getProperty(key));
+                }
+            }
+            for (final Map.Entry<String, String> change : changes.entrySet()) {
+                if (!ADDED.equals(change.getValue())) {
+                    checkPrevious(ArchiveUnpacker.resolve(root, change.getKey()), change.getKey(),
+                            index.getProperty(PREVIOUS_PREFIX + change.getKey()));
+                }
+            }
+            for (final Map.Entry<String, String> change : changes.entrySet()) {
+                final String name = change.getKey();
+                final Path target = ArchiveUnpacker.resolve(root, name);
+                if (REMOVED.equals(change.getValue())) {
+                    Files.deleteIfExists(target);
+                } else {
+                    final ZipArchiveEntry entry = zipFile.getEntry(name);
+                    if (entry == null) {
+                        throw new IOException("Could not find " + name + " in entry package");
+                    }
+                    Files.createDirectories(target.getParent());
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check that a file that will be modified or removed by an entry package has the CRC and size that the entry had
+     * in the previous release.
+     *
+     * @param file     The file in the directory into which the previous release was unpacked.
+     * @param name     The name of the entry.
+     * @param previous The previous CRC and size recorded in the index as {@code crc:size}.
+     * @throws IOException If the file could not be read or does not match the previous release.
+     */
+    private static void checkPrevious(final Path file, final String name, final String previous) throws IOException {
+        if (previous == null) {
+            throw new IOException("The entry package does not record the previous state of " + name);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("The entry package does not apply because " + name + " is missing");
+        }
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[CRXPayload.BUFFER_SIZE];
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+                crc.update(buffer, 0, count);
+                size += count;
+            }
+        }
+        if (!previous.equals(crc.getValue() + ":" + size)) {
+            throw new IOException("The entry package does not apply because " + name
+                    + " does not match the previous release");
+        }
+    }
+
+    /**
+     * Write a patch that transforms the previous CRX archive into the new CRX archive. The patch holds the header of
+     * the new CRX archive and a byte level delta of the ZIP payload.
+     *
+     * @param previousCrx The previous CRX archive.
+     * @param currentCrx  The new CRX archive.
+     * @param patchFile   The patch.
+     * @throws IOException If a CRX archive could not be read or the patch could not be written.
+     */
+    public void writePatch(final File previousCrx, final File currentCrx, final File patchFile) throws IOException {
+        final byte[] source = archiveHelper.readPayload(previousCrx).toByteArray();
+        final byte[] target = archiveHelper.readPayload(currentCrx).toByteArray();
+        final byte[] header = readHeader(currentCrx, currentCrx.length() - target.length);
+        Files.createDirectories(patchFile.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(patchFile.toPath()))) {
+            file.write(PATCH_MAGIC);
+            file.write(PATCH_VERSION);
+            final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(file));
+            writeLength(out, header.length);
+            out.write(header);
+            writeLength(out, source.length);
+            out.write(sha256(source));
+            writeLength(out, target.length);
+            out.write(sha256(target));
+            diff(source, target, out);
+            out.write(OP_END);
+            out.close();
+        }
+    }
+
+    /**
+     * Apply a patch to the previous CRX archive to reproduce the new CRX archive. The checksums recorded in the patch
+     * are used to make sure that the patch is applied to the right CRX archive and that the result is correct.
+     *
+     * @param previousCrx The previous CRX archive.
+     * @param patchFile   The patch.
+     * @param outputCrx   The new CRX archive.
+     * @throws IOException If the previous CRX archive or the patch could not be read, the patch does not apply to
+     *                     the previous CRX archive or the new CRX archive could not be written.
+     */
+    public void applyPatch(final File previousCrx, final File patchFile, final File outputCrx) throws IOException {
+        final byte[] source = archiveHelper.readPayload(previousCrx).toByteArray();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(patchFile.toPath()))) {
+            final byte[] magic = new byte[PATCH_MAGIC.length + 1];
+            new DataInputStream(file).readFully(magic);
+            if (!Arrays.equals(Arrays.copyOf(magic, PATCH_MAGIC.length), PATCH_MAGIC)
+                    || magic[PATCH_MAGIC.length] != PATCH_VERSION) {
+                throw new IOException("Not a CRX patch: " + patchFile.getAbsolutePath());
+            }
+            final DataInputStream in = new DataInputStream(new InflaterInputStream(file));
+            final byte[] header = new byte[readLength(in)];
+            in.readFully(header);
+            final int sourceLength = readLength(in);
+            final byte[] sourceHash = new byte[32];
+            in.readFully(sourceHash);
+            if (sourceLength != source.length || !Arrays.equals(sourceHash, sha256(source))) {
+                throw new IOException("The patch does not apply to " + previousCrx.getAbsolutePath());
+            }
+            final byte[] target = new byte[readLength(in)];
+            final byte[] targetHash = new byte[32];
+            in.readFully(targetHash);
+            int position = 0;
+            for (int op = in.read(); op != OP_END; op = in.read()) {
+                if (op == OP_COPY) {
+                    final int offset = readLength(in);
+                    final int length = readLength(in);
+                    if (offset > source.length - length || length > target.length - position) {
+                        throw new IOException("Corrupt CRX patch: copy is out of range");
+                    }
+                    System.arraycopy(source, offset, target, position, length);
+                    position += length;
+                } else if (op == OP_ADD) {
+                    final int length = readLength(in);
+                    if (length > target.length - position) {
+                        throw new IOException("Corrupt CRX patch: add is out of range");
+                    }
+                    in.readFully(target, position, length);
+                    position += length;
+                } else if (op < 0) {
+                    throw new EOFException("Unexpected end of CRX patch");
+                } else {
+                    throw new IOException("Corrupt CRX patch: unknown operation " + op);
+                }
+            }
+            if (position != target.length || !Arrays.equals(targetHash, sha256(target))) {
+                throw new IOException("The patched payload does not match the new CRX archive");
+            }
+            Files.createDirectories(outputCrx.getAbsoluteFile().getParentFile().toPath());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputCrx.toPath()))) {
+                out.write(header);
+                out.write(target);
+            }
+        }
+    }
+
+    /**
+     * Compute the delta between two payloads. The blocks of the source are indexed by their rolling hash and the
+     * target is scanned one byte at a time looking for a block with the same hash. Each match is extended in both
+     * directions and output as a copy while the bytes in between are output as literals.
+     *
+     * @param source The previous payload.
+     * @param target The new payload.
+     * @param out    The output to which the operations are written.
+     * @throws IOException If the operations could not be written.
+     */
+    static void diff(final byte[] source, final byte[] target, final DataOutputStream out) throws IOException {
+        final Map<Integer, Integer> blocks = new HashMap<>();
+        for (int offset = 0; offset + BLOCK_SIZE <= source.length; offset += BLOCK_SIZE) {
+            blocks.putIfAbsent(hash(source, offset), offset);
+        }
+        int power = 1;
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            power *= HASH_BASE;
+        }
+        int literalStart = 0;
+        int position = 0;
+        int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+        while (position + BLOCK_SIZE <= target.length) {
+            final Integer candidate = blocks.get(hash);
+            if (candidate != null && matches(source, candidate, target, position)) {
+                int sourceStart = candidate;
+                int targetStart = position;
+                while (targetStart > literalStart && sourceStart > 0
+                        && source[sourceStart - 1] == target[targetStart - 1]) {
+                    sourceStart--;
+                    targetStart--;
+                }
+                int sourceEnd = candidate + BLOCK_SIZE;
+                int targetEnd = position + BLOCK_SIZE;
+                while (targetEnd < target.length && sourceEnd < source.length
+                        && source[sourceEnd] == target[targetEnd]) {
+                    sourceEnd++;
+                    targetEnd++;
+                }
+                writeAdd(out, target, literalStart, targetStart - literalStart);
+                out.write(OP_COPY);
+                writeLength(out, sourceStart);
+                writeLength(out, targetEnd - targetStart);
+                position = targetEnd;
+                literalStart = targetEnd;
+                if (position + BLOCK_SIZE <= target.length) {
+                    hash = hash(target, position);
+                }
+            } else {
+                if (position + BLOCK_SIZE < target.length) {
+                    hash = (hash - (target[position] & 0xFF) * power) * HASH_BASE
+                            + (target[position + BLOCK_SIZE] & 0xFF);
+                }
+                position++;
+            }
+        }
+        writeAdd(out, target, literalStart, target.length - literalStart);
+    }
+
+    /**
+     * Compute the rolling hash of a block.
+     *
+     * @param data   The data.
+     * @param offset The offset of the block.
+     * @return The hash.
+     */
+    private static int hash(final byte[] data, final int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+            hash = hash * HASH_BASE + (data[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    /**
+     * Determine whether a block of the source matches a block of the target.
+     *
+     * @param source       The previous payload.
+     * @param sourceOffset The offset of the block in the previous payload.
+     * @param target       The new payload.
+     * @param targetOffset The offset of the block in the new payload.
+     * @return {@code true} if the blocks match. Otherwise, {@code false}.
+     */
+    private static boolean matches(final byte[] source, final int sourceOffset, final byte[] target,
+                                   final int targetOffset) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (source[sourceOffset + i] != target[targetOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write an operation that adds literal bytes unless there are no bytes to add.
+     *
+     * @param out    The output to which the operation is written.
+     * @param data   The data containing the literal bytes.
+     * @param offset The offset of the literal bytes.
+     * @param length The number of literal bytes.
+     * @throws IOException If the operation could not be written.
+     */
+    private static void writeAdd(final DataOutputStream out, final byte[] data, final int offset, final int length)
+            throws IOException {
+        if (length > 0) {
+            out.write(OP_ADD);
+            writeLength(out, length);
+            out.write(data, offset, length);
+        }
+    }
+
+    /**
+     * Write a non-negative integer using seven bits per byte with the high bit set on all but the last byte.
+     *
+     * @param out   The output.
+     * @param value The integer.
+     * @throws IOException If the integer could not be written.
+     */
+    private static void writeLength(final DataOutputStream out, final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Read a non-negative integer written by {@link #writeLength(DataOutputStream, int)}.
+     *
+     * @param in The input.
+     * @return The integer.
+     * @throws IOException If the integer could not be read or is out of range.
+     */
+    private static int readLength(final DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Corrupt CRX patch: length is out of range");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Corrupt CRX patch: length is out of range");
+    }
+
+    /**
+     * Read the header that precedes the ZIP payload of a CRX archive.
+     *
+     * @param crxFile The CRX archive.
+     * @param length  The length of the header.
+     * @return The header.
+     * @throws IOException If the header could not be read.
+     */
+    private static byte[] readHeader(final File crxFile, final long length) throws IOException {
+        final byte[] header = new byte[(int) length];
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(crxFile.toPath()))) {
+            in.readFully(header);
+        }
+        return header;
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a byte array.
+     *
+     * @param data The byte array.
+     * @return The hash.
+     * @throws IOException If SHA-256 is not supported.
+     */
+    private static byte[] sha256(final byte[] data) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event that is emitted for each entry of the ZIP payload of a CRX archive once the payload has
+ * been written.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.ArchiveEntry")
+@Label("Archive Entry")
+@Category({"Maven", "CRX"})
+@Description("An entry written to the ZIP payload of a CRX archive")
+final class ArchiveEntryEvent extends Event {
+
+    /**
+     * The name of the entry.
+     */
+    @Label("Name")
+    String name;
+
+    /**
+     * The uncompressed size of the entry.
+     */
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /**
+     * The compressed size of the entry.
+     */
+    @Label("Compressed Size")
+    @DataAmount
+    long compressedSize;
+
+    /**
+     * The compression method of the entry (e.g. {@code DEFLATED} or {@code STORED}).
+     */
+    @Label("Method")
+    String method;
+
+    /**
+     * The time spent reading and compressing the entry or zero if the entry was copied without being compressed.
+     */
+    @Label("Deflate Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long deflateTime;
+}
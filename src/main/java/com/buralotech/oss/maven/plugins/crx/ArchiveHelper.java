@@ -18,6 +18,8 @@ package com.buralotech.oss.maven.plugins.crx;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 /**
  * Implementations read and write CRX archives.
@@ -28,21 +30,61 @@ import java.io.IOException;
 public interface ArchiveHelper {
 
     /**
-     * Generate the CRX file writing the header, public key, signature and data.
+     * Generate the CRX file writing the header, public key, signature and data. If any checksum algorithms are
+     * specified then the digests of the CRX file are computed as it is written and output to checksum sidecar files
+     * located by {@link ChecksumUtils#getSidecarFile(File, String)}.
      *
-     * @param crxFile    The target CRX file.
-     * @param version    The version.
-     * @param crxArchive The CRX archive.
-     * @throws IOException If there was an error writing the CRX file.
+     * @param crxFile            The target CRX file.
+     * @param version            The version.
+     * @param crxArchive         The CRX archive.
+     * @param checksumAlgorithms The digest algorithms for the checksum sidecar files (e.g. {@code SHA-256}).
+     * @throws IOException If there was an error writing the CRX file or checksum sidecar files.
      */
-    void writeArchive(File crxFile, int version, CRXArchive crxArchive) throws IOException;
+    void writeArchive(File crxFile, int version, CRXArchive crxArchive, String... checksumAlgorithms)
+            throws IOException;
 
     /**
-     * Read the CRX archive from a file loading the header, public key, signature and data.
+     * Read the CRX archive from a file loading the header, public key and signature. The data is not loaded but is
+     * resolved lazily from a region of the file when it is accessed.
      *
      * @param crxFile The source CRX file.
      * @return The CRX archive.
      * @throws IOException If there was an error reading the CRX file.
      */
     CRXArchive readArchive(File crxFile) throws IOException;
+
+    /**
+     * Get the ZIP payload of a file that is either a CRX archive or a plain ZIP file. The payload is resolved lazily
+     * from a region of the file when it is accessed.
+     *
+     * @param file The source CRX or ZIP file.
+     * @return The ZIP payload.
+     * @throws IOException If there was an error reading the file.
+     * @since 2.0.0
+     */
+    CRXPayload readPayload(File file) throws IOException;
+
+    /**
+     * List the entries in the ZIP payload of a CRX archive. Only the CRX header and the ZIP central directory are
+     * read. The entries are not inflated.
+     *
+     * @param crxFile The source CRX file.
+     * @return The entries in the order they appear in the central directory.
+     * @throws IOException If there was an error reading the CRX file or its central directory.
+     * @since 2.0.0
+     */
+    List<CRXEntry> listEntries(File crxFile) throws IOException;
+
+    /**
+     * Open a single entry in the ZIP payload of a CRX archive. Only the CRX header, the ZIP central directory and the
+     * bytes of the entry itself are read. The caller is responsible for closing the stream.
+     *
+     * @param crxFile   The source CRX file.
+     * @param entryName The name of the entry (e.g. {@code manifest.json}).
+     * @return A stream of the uncompressed entry contents.
+     * @throws java.io.FileNotFoundException If the entry does not exist.
+     * @throws IOException                   If there was an error reading the CRX file or the entry.
+     * @since 2.0.0
+     */
+    InputStream openEntry(File crxFile, String entryName) throws IOException;
 }
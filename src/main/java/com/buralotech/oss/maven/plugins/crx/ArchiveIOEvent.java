@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event that is emitted when a CRX archive is read or written.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.ArchiveIO")
+@Label("Archive I/O")
+@Category({"Maven", "CRX"})
+@Description("A CRX archive read or written")
+final class ArchiveIOEvent extends Event {
+
+    /**
+     * The operation which is either {@code read} or {@code write}.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The path of the CRX archive.
+     */
+    @Label("Path")
+    String path;
+
+    /**
+     * The version of the CRX archive format or zero if it could not be determined.
+     */
+    @Label("Version")
+    int version;
+
+    /**
+     * The size of the CRX archive.
+     */
+    @Label("Size")
+    @DataAmount
+    long size;
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * Extracts the ZIP payload of a CRX archive (or a plain ZIP file) into a directory. The entries are inflated in
+ * parallel with each worker reading the payload through its own channel. A marker file can be used to record the
+ * checksum of the archive that was unpacked so that unpacking the same archive again can be skipped.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class ArchiveUnpacker {
+
+    /**
+     * The marker property that holds the checksum of the unpacked archive.
+     */
+    private static final String CHECKSUM_PROPERTY = "sha256";
+
+    /**
+     * The marker property that records whether the signature of the unpacked archive was verified.
+     */
+    private static final String VERIFIED_PROPERTY = "verified";
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * Initialise the unpacker.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     */
+    public ArchiveUnpacker(final int threadCount) {
+        threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Extract every entry of a ZIP payload into a directory.
+     *
+     * @param payload   The ZIP payload.
+     * @param directory The target directory.
+     * @throws IOException If the payload could not be read or the entries could not be written.
+     */
+    public void unpack(final CRXPayload payload, final File directory) throws IOException {
+        final Path root = directory.toPath().toAbsolutePath().normalize();
+        final List<ZipArchiveEntry> entries;
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(payload)) {
+            entries = Collections.list(zipFile.getEntries());
+        }
+        Files.createDirectories(root);
+
+        final List<List<String>> batches = new ArrayList<>();
+        for (final List<ZipArchiveEntry> batch : balance(entries, threads)) {
+            final List<String> names = new ArrayList<>();
+            for (final ZipArchiveEntry entry : batch) {
+                final Path target = resolve(root, entry.getName());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    names.add(entry.getName());
+                }
+            }
+            batches.add(names);
+        }
+
+        if (batches.size() == 1) {
+            extract(payload, root, batches.get(0));
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (final List<String> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    extract(payload, root, batch);
+                    return null;
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while unpacking archive", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error unpacking archive", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Determine whether a marker file records that an archive with the given checksum was unpacked.
+     *
+     * @param markerFile The marker file.
+     * @param checksum   The checksum of the archive.
+     * @param verified   {@code true} if the marker must also record that the signature was verified.
+     * @return {@code true} if the archive was already unpacked. Otherwise, {@code false}.
+     * @throws IOException If the marker file could not be read.
+     */
+    public static boolean isUnpacked(final File markerFile, final String checksum, final boolean verified)
+            throws IOException {
+        if (!markerFile.isFile()) {
+            return false;
+        }
+        final Properties marker = new Properties();
+        try (InputStream in = Files.newInputStream(markerFile.toPath())) {
+            marker.load(in);
+        }
+        return checksum.equals(marker.getProperty(CHECKSUM_PROPERTY))
+                && (!verified || Boolean.parseBoolean(marker.getProperty(VERIFIED_PROPERTY)));
+    }
+
+    /**
+     * Write a marker file recording that an archive with the given checksum was unpacked.
+     *
+     * @param markerFile The marker file.
+     * @param checksum   The checksum of the archive.
+     * @param verified   {@code true} if the signature of the archive was verified.
+     * @throws IOException If the marker file could not be written.
+     */
+    public static void markUnpacked(final File markerFile, final String checksum, final boolean verified)
+            throws IOException {
+        final Properties marker = new Properties();
+        marker.setProperty(CHECKSUM_PROPERTY, checksum);
+        marker.setProperty(VERIFIED_PROPERTY, Boolean.toString(verified));
+        Files.createDirectories(markerFile.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(markerFile.toPath())) {
+            marker.store(out, null);
+        }
+    }
+
+    /**
+     * Divide the entries of a ZIP payload into batches of roughly equal compressed size by handing out the largest
+     * entries first. Each batch is intended to be processed by its own worker thread.
+     *
+     * @param entries The entries.
+     * @param threads The maximum number of batches.
+     * @return The batches which are never empty unless there are no entries.
+     */
+    static List<List<ZipArchiveEntry>> balance(final List<ZipArchiveEntry> entries, final int threads) {
+        final List<List<ZipArchiveEntry>> batches = new ArrayList<>();
+        final long[] batchSizes = new long[Math.max(1, Math.min(threads, entries.size()))];
+        for (int i = 0; i < batchSizes.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+        final List<ZipArchiveEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(ZipArchiveEntry::getCompressedSize).reversed());
+        for (final ZipArchiveEntry entry : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < batchSizes.length; i++) {
+                if (batchSizes[i] < batchSizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            batches.get(smallest).add(entry);
+            batchSizes[smallest] += Math.max(entry.getCompressedSize(), 1);
+        }
+        return batches;
+    }
+
+    /**
+     * Extract a batch of entries using a dedicated view of the payload.
+     *
+     * @param payload The ZIP payload.
+     * @param root    The target directory.
+     * @param names   The names of the entries to extract.
+     * @throws IOException If the payload could not be read or the entries could not be written.
+     */
+    private static void extract(final CRXPayload payload, final Path root, final List<String> names)
+            throws IOException {
+        if (names.isEmpty()) {
+            return;
+        }
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(payload)) {
+            for (final String name : names) {
+                final ZipArchiveEntry entry = zipFile.getEntry(name);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    Files.copy(in, resolve(root, name), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve the location of an entry making sure it does not escape the target directory.
+     *
+     * @param root The target directory.
+     * @param name The name of the entry.
+     * @return The location of the entry.
+     * @throws IOException If the entry would be written outside of the target directory.
+     */
+    static Path resolve(final Path root, final String name) throws IOException {
+        final Path target = root.resolve(name).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new IOException("Archive entry is outside of the target directory: " + name);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.spec.InvalidKeySpecException;
+
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMDecryptorProvider;
+import org.bouncycastle.openssl.PEMEncryptedKeyPair;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.bc.BcPEMDecryptorProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+/**
+ * Reads the public/private key pair from PEM files that the JDK cannot parse by itself (e.g. encrypted legacy PEM
+ * files). This is the only class that refers to Bouncy Castle so the Bouncy Castle classes are not loaded unless a
+ * PEM file needs them.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+final class BouncyCastleKeyPairReader {
+
+    /**
+     * The name of the Bouncy Castle provider. It is a copy of the constant so that referring to it does not load the
+     * Bouncy Castle classes.
+     */
+    static final String PROVIDER_NAME = "BC";
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private BouncyCastleKeyPairReader() {
+    }
+
+    /**
+     * Register the Bouncy Castle provider if it has not already been registered.
+     */
+    static synchronized void registerProvider() {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    /**
+     * Read the public/private key pair from a PEM file using Bouncy Castle.
+     *
+     * @param pemFile     The location of the .pem file.
+     * @param pemPassword The password used to secure the .pem file or {@code null} if it is not secured.
+     * @return The public/private key pair.
+     * @throws IOException              If the PEM file could not be read or does not contain an RSA private key.
+     * @throws InvalidKeySpecException  If the RSA public key could not be generated.
+     * @throws NoSuchAlgorithmException If the RSA algorithm is not supported.
+     */
+    static KeyPair readKeyPair(final File pemFile, final String pemPassword)
+            throws IOException, InvalidKeySpecException, NoSuchAlgorithmException {
+        registerProvider();
+        try (Reader pemFileReader = new FileReader(pemFile)) {
+            try (PEMParser pemParser = new PEMParser(pemFileReader)) {
+                final Object pemObject = pemParser.readObject();
+                if (pemObject instanceof KeyPair) {
+                    return (KeyPair) pemObject;
+                } else if (pemObject instanceof PEMKeyPair) {
+                    final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider(PROVIDER_NAME);
+                    return converter.getKeyPair((PEMKeyPair) pemObject);
+                } else if (pemObject instanceof PEMEncryptedKeyPair) {
+                    if (pemPassword == null) {
+                        throw new IOException("A password is required to read the PEM file");
+                    }
+                    final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider(PROVIDER_NAME);
+                    final PEMEncryptedKeyPair encryptedKeyPair = (PEMEncryptedKeyPair) pemObject;
+                    final PEMDecryptorProvider decryptorProvider = new BcPEMDecryptorProvider(pemPassword.toCharArray());
+                    final PEMKeyPair pemKeyPair = encryptedKeyPair.decryptKeyPair(decryptorProvider);
+                    return converter.getKeyPair(pemKeyPair);
+                } else if (pemObject instanceof PrivateKeyInfo) {
+                    final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider(PROVIDER_NAME);
+                    final PrivateKey privateKey = converter.getPrivateKey((PrivateKeyInfo) pemObject);
+                    return KeyPairUtils.toKeyPair(privateKey);
+                } else {
+                    return KeyPairUtils.toKeyPair(pemObject);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event that is emitted when a CRX file is looked up in or stored in the remote build cache.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.BuildCache")
+@Label("Build Cache")
+@Category({"Maven", "CRX"})
+@Description("A CRX file looked up in or stored in the remote build cache")
+final class BuildCacheEvent extends Event {
+
+    /**
+     * The operation which is either {@code get} or {@code put}.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The input key of the CRX file.
+     */
+    @Label("Key")
+    String key;
+
+    /**
+     * {@code true} if the operation succeeded which for a lookup means that the cache held the CRX file.
+     */
+    @Label("Hit")
+    boolean hit;
+
+    /**
+     * The size of the CRX file that was transferred.
+     */
+    @Label("Size")
+    @DataAmount
+    long size;
+}
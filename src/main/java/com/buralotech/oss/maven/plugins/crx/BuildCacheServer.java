@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A minimal implementation of the remote build cache protocol that stores CRX files in a local directory. It uses the
+ * HTTP server that is built into the JDK so the protocol can be exercised offline by tests and by developers.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class BuildCacheServer implements Closeable {
+
+    /**
+     * The names of the files that can be stored which prevents requests from escaping the directory.
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("[0-9a-f]{64}\\.crx");
+
+    /**
+     * The directory in which the CRX files are stored.
+     */
+    private final File directory;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Start a server.
+     *
+     * @param storageDirectory The directory in which the CRX files are stored.
+     * @param address          The address to listen on. Port zero selects any free port.
+     * @throws IOException If the server could not be started.
+     */
+    public BuildCacheServer(final File storageDirectory, final InetSocketAddress address) throws IOException {
+        directory = storageDirectory;
+        Files.createDirectories(directory.toPath());
+        server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Get the base URL of the cache.
+     *
+     * @return The base URL.
+     */
+    public String getUrl() {
+        final InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ':' + address.getPort() + '/';
+    }
+
+    /**
+     * Stop the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Handle a request.
+     *
+     * @param exchange The request and response.
+     * @throws IOException If the request could not be read or the response could not be written.
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String name = exchange.getRequestURI().getPath().substring(1);
+            if (!NAME_PATTERN.matcher(name).matches()) {
+                sendError(exchange, 400);
+                return;
+            }
+            final File file = new File(directory, name);
+            if ("GET".equals(exchange.getRequestMethod())) {
+                if (!file.isFile()) {
+                    sendError(exchange, 404);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/x-chrome-extension");
+                exchange.sendResponseHeaders(200, file.length());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    Files.copy(file.toPath(), out);
+                }
+            } else if ("PUT".equals(exchange.getRequestMethod())) {
+                final File tempFile = File.createTempFile(name, ".tmp", directory);
+                try {
+                    try (InputStream in = exchange.getRequestBody()) {
+                        Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    try {
+                        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } catch (final AtomicMoveNotSupportedException e) {
+                        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+                exchange.sendResponseHeaders(201, -1);
+            } else {
+                sendError(exchange, 405);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send an error status without a body. The JDK server closes the connection after an error status so the client
+     * is told not to reuse it for a following request.
+     *
+     * @param exchange The request and response.
+     * @param status   The error status.
+     * @throws IOException If the response could not be written.
+     */
+    private static void sendError(final HttpExchange exchange, final int status) throws IOException {
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * A {@link CRXPayload} backed by a byte array or {@link ByteBuffer}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class ByteBufferPayload extends CRXPayload {
+
+    /**
+     * The buffer containing the payload between position zero and its limit.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Initialise the payload.
+     *
+     * @param buf The buffer containing the payload between position zero and its limit.
+     */
+    ByteBufferPayload(final ByteBuffer buf) {
+        buffer = buf;
+    }
+
+    @Override
+    public long size() {
+        return buffer.limit();
+    }
+
+    @Override
+    public SeekableByteChannel openChannel() {
+        return new ByteBufferChannel(buffer.duplicate());
+    }
+
+    /**
+     * Get the payload as a byte array. The backing array is returned without copying if the buffer wraps an entire
+     * array.
+     *
+     * @return The byte array.
+     * @throws IOException If the payload could not be copied.
+     */
+    @Override
+    public byte[] toByteArray() throws IOException {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+        return super.toByteArray();
+    }
+
+    @Override
+    public void update(final MessageDigest digest) {
+        digest.update(buffer.duplicate());
+    }
+
+    @Override
+    public void transferTo(final WritableByteChannel target) throws IOException {
+        final ByteBuffer source = buffer.duplicate();
+        while (source.hasRemaining()) {
+            target.write(source);
+        }
+    }
+
+    /**
+     * A read-only channel over a buffer.
+     */
+    private static final class ByteBufferChannel implements SeekableByteChannel {
+
+        /**
+         * The buffer whose position is the position of the channel.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Set when the channel is closed.
+         */
+        private boolean closed;
+
+        /**
+         * Initialise the channel.
+         *
+         * @param buf The buffer whose position is the position of the channel.
+         */
+        ByteBufferChannel(final ByteBuffer buf) {
+            buffer = buf;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(dst.remaining(), buffer.remaining());
+            final ByteBuffer src = buffer.duplicate();
+            ((Buffer) src).limit(src.position() + count);
+            dst.put(src);
+            ((Buffer) buffer).position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return buffer.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition) throws IOException {
+            ensureOpen();
+            ((Buffer) buffer).position((int) Math.min(newPosition, buffer.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return buffer.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        /**
+         * Check that the channel has not been closed.
+         *
+         * @throws ClosedChannelException If the channel has been closed.
+         */
+        private void ensureOpen() throws ClosedChannelException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes and decodes the protocol buffer header of a CRX3 archive. Only the subset of the {@code CrxFileHeader},
+ * {@code AsymmetricKeyProof} and {@code SignedData} messages that is needed to package and verify extensions signed
+ * with an RSA key is supported.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class CRX3Header {
+
+    /**
+     * The fixed prefix that is fed to the signature before the signed header data and the ZIP archive.
+     */
+    private static final byte[] SIGNED_DATA_PREFIX = "CRX3 SignedData\0".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The number of bytes of the SHA-256 hash of the public key that make up the CRX identifier.
+     */
+    private static final int CRX_ID_LENGTH = 16;
+
+    /**
+     * The field number of {@code CrxFileHeader.sha256_with_rsa}.
+     */
+    private static final int SHA256_WITH_RSA_FIELD = 2;
+
+    /**
+     * The field number of {@code CrxFileHeader.signed_header_data}.
+     */
+    private static final int SIGNED_HEADER_DATA_FIELD = 10000;
+
+    /**
+     * The field number of {@code AsymmetricKeyProof.public_key} and {@code SignedData.crx_id}.
+     */
+    private static final int FIRST_FIELD = 1;
+
+    /**
+     * The field number of {@code AsymmetricKeyProof.signature}.
+     */
+    private static final int SECOND_FIELD = 2;
+
+    /**
+     * The protocol buffer wire type for variable length integers.
+     */
+    private static final int WIRE_TYPE_VARINT = 0;
+
+    /**
+     * The protocol buffer wire type for 64-bit values.
+     */
+    private static final int WIRE_TYPE_FIXED64 = 1;
+
+    /**
+     * The protocol buffer wire type for length delimited values.
+     */
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+
+    /**
+     * The protocol buffer wire type for 32-bit values.
+     */
+    private static final int WIRE_TYPE_FIXED32 = 5;
+
+    /**
+     * The DER encoded public key.
+     */
+    private final byte[] publicKey;
+
+    /**
+     * The signature.
+     */
+    private final byte[] signature;
+
+    /**
+     * The encoded {@code SignedData} message.
+     */
+    private final byte[] signedHeaderData;
+
+    /**
+     * Initialise the CRX3 header.
+     *
+     * @param key  The DER encoded public key.
+     * @param sig  The signature.
+     * @param data The encoded {@code SignedData} message.
+     */
+    public CRX3Header(final byte[] key, final byte[] sig, final byte[] data) {
+        publicKey = key;
+        signature = sig;
+        signedHeaderData = data;
+    }
+
+    /**
+     * Get the DER encoded public key.
+     *
+     * @return The public key.
+     */
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Get the signature.
+     *
+     * @return The signature.
+     */
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    /**
+     * Get the encoded {@code SignedData} message.
+     *
+     * @return The signed header data.
+     */
+    public byte[] getSignedHeaderData() {
+        return signedHeaderData;
+    }
+
+    /**
+     * Generate the encoded {@code SignedData} message which holds the CRX identifier derived from the public key.
+     *
+     * @param publicKey The DER encoded public key.
+     * @return The encoded {@code SignedData} message.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not supported.
+     */
+    public static byte[] createSignedHeaderData(final byte[] publicKey) throws NoSuchAlgorithmException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeField(out, FIRST_FIELD, getCrxId(publicKey));
+        return out.toByteArray();
+    }
+
+    /**
+     * Generate the bytes that precede the ZIP archive in the data covered by the signature.
+     *
+     * @param signedHeaderData The encoded {@code SignedData} message.
+     * @return The signed data prefix.
+     */
+    public static byte[] getSignedDataPrefix(final byte[] signedHeaderData) {
+        final int length = signedHeaderData.length;
+        final byte[] prefix = Arrays.copyOf(SIGNED_DATA_PREFIX, SIGNED_DATA_PREFIX.length + 4 + length);
+        prefix[SIGNED_DATA_PREFIX.length] = (byte) length;
+        prefix[SIGNED_DATA_PREFIX.length + 1] = (byte) (length >> 8);
+        prefix[SIGNED_DATA_PREFIX.length + 2] = (byte) (length >> 16);
+        prefix[SIGNED_DATA_PREFIX.length + 3] = (byte) (length >> 24);
+        System.arraycopy(signedHeaderData, 0, prefix, SIGNED_DATA_PREFIX.length + 4, length);
+        return prefix;
+    }
+
+    /**
+     * Encode the header as a {@code CrxFileHeader} message.
+     *
+     * @return The encoded header.
+     */
+    public byte[] encode() {
+        final ByteArrayOutputStream proof = new ByteArrayOutputStream();
+        writeField(proof, FIRST_FIELD, publicKey);
+        writeField(proof, SECOND_FIELD, signature);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeField(out, SHA256_WITH_RSA_FIELD, proof.toByteArray());
+        writeField(out, SIGNED_HEADER_DATA_FIELD, signedHeaderData);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a {@code CrxFileHeader} message. If the signed header data contains a CRX identifier then the RSA key proof
+     * for the key that hashes to that identifier is used, otherwise the first RSA key proof is used.
+     *
+     * @param buf The encoded header.
+     * @return The decoded header.
+     * @throws IOException If the header is malformed, does not contain an RSA key proof or none of the RSA key proofs
+     *                     matches the CRX identifier.
+     */
+    public static CRX3Header decode(final byte[] buf) throws IOException {
+        final List<byte[][]> proofs = new ArrayList<>();
+        byte[] signedHeaderData = null;
+        final int[] pos = {0};
+        while (pos[0] < buf.length) {
+            final long tag = readVarint(buf, pos);
+            final byte[] value = readValue(buf, pos, (int) (tag & 0x7));
+            if (tag >>> 3 == SHA256_WITH_RSA_FIELD && value != null) {
+                proofs.add(decodeProof(value));
+            } else if (tag >>> 3 == SIGNED_HEADER_DATA_FIELD && value != null) {
+                signedHeaderData = value;
+            }
+        }
+        if (proofs.isEmpty()) {
+            throw new IOException("CRX3 header does not contain an RSA key proof");
+        }
+        if (signedHeaderData == null) {
+            throw new IOException("CRX3 header does not contain signed header data");
+        }
+        final byte[] crxId = decodeCrxId(signedHeaderData);
+        if (crxId == null) {
+            final byte[][] proof = proofs.get(0);
+            return new CRX3Header(proof[0], proof[1], signedHeaderData);
+        }
+        for (final byte[][] proof : proofs) {
+            if (matches(proof[0], crxId)) {
+                return new CRX3Header(proof[0], proof[1], signedHeaderData);
+            }
+        }
+        throw new IOException("CRX3 header does not contain an RSA key proof that matches the CRX id");
+    }
+
+    /**
+     * Calculate the CRX identifier which is the first 16 bytes of the SHA-256 hash of the public key.
+     *
+     * @param publicKey The DER encoded public key.
+     * @return The CRX identifier.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not supported.
+     */
+    private static byte[] getCrxId(final byte[] publicKey) throws NoSuchAlgorithmException {
+        return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(publicKey), CRX_ID_LENGTH);
+    }
+
+    /**
+     * Check whether a public key matches the CRX identifier.
+     *
+     * @param publicKey The DER encoded public key.
+     * @param crxId     The CRX identifier.
+     * @return {@code true} if the public key hashes to the CRX identifier.
+     * @throws IOException If the SHA-256 algorithm is not supported.
+     */
+    private static boolean matches(final byte[] publicKey, final byte[] crxId) throws IOException {
+        try {
+            return publicKey != null && Arrays.equals(getCrxId(publicKey), crxId);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 algorithm is not supported", e);
+        }
+    }
+
+    /**
+     * Decode an {@code AsymmetricKeyProof} message.
+     *
+     * @param buf The encoded message.
+     * @return A two element array containing the public key and signature.
+     * @throws IOException If the message is malformed.
+     */
+    private static byte[][] decodeProof(final byte[] buf) throws IOException {
+        final byte[][] proof = new byte[2][];
+        final int[] pos = {0};
+        while (pos[0] < buf.length) {
+            final long tag = readVarint(buf, pos);
+            final byte[] value = readValue(buf, pos, (int) (tag & 0x7));
+            if (tag >>> 3 == FIRST_FIELD) {
+                proof[0] = value;
+            } else if (tag >>> 3 == SECOND_FIELD) {
+                proof[1] = value;
+            }
+        }
+        return proof;
+    }
+
+    /**
+     * Decode the CRX identifier from a {@code SignedData} message.
+     *
+     * @param buf The encoded message.
+     * @return The CRX identifier or {@code null} if it is not present.
+     * @throws IOException If the message is malformed.
+     */
+    private static byte[] decodeCrxId(final byte[] buf) throws IOException {
+        byte[] crxId = null;
+        final int[] pos = {0};
+        while (pos[0] < buf.length) {
+            final long tag = readVarint(buf, pos);
+            final byte[] value = readValue(buf, pos, (int) (tag & 0x7));
+            if (tag >>> 3 == FIRST_FIELD) {
+                crxId = value;
+            }
+        }
+        return crxId;
+    }
+
+    /**
+     * Write a length delimited field.
+     *
+     * @param out   The output buffer.
+     * @param field The field number.
+     * @param value The field value.
+     */
+    private static void writeField(final ByteArrayOutputStream out, final int field, final byte[] value) {
+        writeVarint(out, ((long) field << 3) | WIRE_TYPE_LENGTH_DELIMITED);
+        writeVarint(out, value.length);
+        out.write(value, 0, value.length);
+    }
+
+    /**
+     * Write a variable length integer.
+     *
+     * @param out   The output buffer.
+     * @param value The value.
+     */
+    private static void writeVarint(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Read a variable length integer.
+     *
+     * @param buf The input buffer.
+     * @param pos A single element array holding the current position which is advanced past the integer.
+     * @return The value.
+     * @throws IOException If the integer is truncated or too long.
+     */
+    private static long readVarint(final byte[] buf, final int[] pos) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= buf.length) {
+                throw new IOException("Truncated CRX3 header");
+            }
+            final int b = buf[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed CRX3 header");
+    }
+
+    /**
+     * Read a field value, skipping over values that are not length delimited.
+     *
+     * @param buf      The input buffer.
+     * @param pos      A single element array holding the current position which is advanced past the value.
+     * @param wireType The wire type.
+     * @return The value if it is length delimited. Otherwise, {@code null}.
+     * @throws IOException If the value is truncated or has an unsupported wire type.
+     */
+    private static byte[] readValue(final byte[] buf, final int[] pos, final int wireType) throws IOException {
+        final int length;
+        switch (wireType) {
+            case WIRE_TYPE_VARINT:
+                readVarint(buf, pos);
+                return null;
+            case WIRE_TYPE_FIXED64:
+                length = 8;
+                break;
+            case WIRE_TYPE_FIXED32:
+                length = 4;
+                break;
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                final long value = readVarint(buf, pos);
+                if (value < 0 || value > buf.length - pos[0]) {
+                    throw new IOException("Truncated CRX3 header");
+                }
+                length = (int) value;
+                break;
+            default:
+                throw new IOException("Malformed CRX3 header");
+        }
+        if (length > buf.length - pos[0]) {
+            throw new IOException("Truncated CRX3 header");
+        }
+        final int start = pos[0];
+        pos[0] += length;
+        return wireType == WIRE_TYPE_LENGTH_DELIMITED ? Arrays.copyOfRange(buf, start, start + length) : null;
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.buralotech.oss.maven.plugins.crx;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Encapsulates the public key, signature and contents for a CRX archive.
  *
@@ -24,6 +27,11 @@ package com.buralotech.oss.maven.plugins.crx;
  */
 public class CRXArchive {
 
+    /**
+     * The version of the CRX archive format.
+     */
+    private final int version;
+
     /**
      * The public key used to verify the signature of the CRX archive.
      */
@@ -37,19 +45,64 @@ public class CRXArchive {
     /**
      * The contents of the CRX archive.
      */
-    private final byte[] data;
+    private final CRXPayload payload;
 
     /**
-     * Initialise a CRX archive object.
+     * The signed header data for a CRX3 archive.
+     */
+    private final byte[] signedHeaderData;
+
+    /**
+     * Initialise a CRX2 archive object.
      *
      * @param key The public key used to verify the signature of the CRX archive.
      * @param sig The signature for the contents of the CRX archive.
      * @param buf The contents of the CRX archive.
      */
     public CRXArchive(final byte[] key, final byte[] sig, final byte[] buf) {
+        this(2, key, sig, null, buf);
+    }
+
+    /**
+     * Initialise a CRX archive object.
+     *
+     * @param ver The version of the CRX archive format.
+     * @param key The public key used to verify the signature of the CRX archive.
+     * @param sig The signature for the contents of the CRX archive.
+     * @param hdr The signed header data for a CRX3 archive or {@code null} for a CRX2 archive.
+     * @param buf The contents of the CRX archive.
+     * @since 2.0.0
+     */
+    public CRXArchive(final int ver, final byte[] key, final byte[] sig, final byte[] hdr, final byte[] buf) {
+        this(ver, key, sig, hdr, CRXPayload.ofBytes(buf));
+    }
+
+    /**
+     * Initialise a CRX archive object.
+     *
+     * @param ver The version of the CRX archive format.
+     * @param key The public key used to verify the signature of the CRX archive.
+     * @param sig The signature for the contents of the CRX archive.
+     * @param hdr The signed header data for a CRX3 archive or {@code null} for a CRX2 archive.
+     * @param pay The contents of the CRX archive.
+     * @since 2.0.0
+     */
+    public CRXArchive(final int ver, final byte[] key, final byte[] sig, final byte[] hdr, final CRXPayload pay) {
+        version = ver;
         publicKey = key;
         signature = sig;
-        data = buf;
+        signedHeaderData = hdr;
+        payload = pay;
+    }
+
+    /**
+     * Get the version of the CRX archive format.
+     *
+     * @return The version.
+     * @since 2.0.0
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -71,11 +124,36 @@ public class CRXArchive {
     }
 
     /**
-     * Get the contents of the CRX archive.
+     * Get the contents of the CRX archive as a byte array. The contents are loaded onto the heap if they are not
+     * already backed by a byte array so {@link #getPayload()} should be preferred for large archives.
      *
      * @return The contents.
      */
     public byte[] getData() {
-        return data;
+        try {
+            return payload.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the contents of the CRX archive.
+     *
+     * @return The contents.
+     * @since 2.0.0
+     */
+    public CRXPayload getPayload() {
+        return payload;
+    }
+
+    /**
+     * Get the signed header data for a CRX3 archive.
+     *
+     * @return The signed header data or {@code null} for a CRX2 archive.
+     * @since 2.0.0
+     */
+    public byte[] getSignedHeaderData() {
+        return signedHeaderData;
     }
 }
@@ -17,8 +17,23 @@
 package com.buralotech.oss.maven.plugins.crx;
 
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 /**
  * Implementation of {@link ArchiveHelper} that outputs the CRX archive.
@@ -63,70 +78,306 @@ public class CRXArchiveHelper implements ArchiveHelper {
     private static final byte[] CRX3_VERSION = {0x03, 0x00, 0x00, 0x00};
 
     /**
-     * Generate the CRX file writing the header, public key, signature and data.
+     * Generate the CRX file writing the header, public key, signature and data. If any checksum algorithms are
+     * specified then the digests of the CRX file are computed as it is written and output to checksum sidecar files
+     * in the format used by {@code sha256sum} and similar tools.
      *
-     * @param crxFile    The target CRX file.
-     * @param version    The version.
-     * @param crxArchive The CRX archive.
-     * @throws IOException If there was an error writing the CRX file.
+     * @param crxFile            The target CRX file.
+     * @param version            The version.
+     * @param crxArchive         The CRX archive.
+     * @param checksumAlgorithms The digest algorithms for the checksum sidecar files (e.g. {@code SHA-256}).
+     * @throws IOException If there was an error writing the CRX file or checksum sidecar files.
      */
     public void writeArchive(final File crxFile,
                              final int version,
-                             final CRXArchive crxArchive)
+                             final CRXArchive crxArchive,
+                             final String... checksumAlgorithms)
             throws IOException {
+        final Object event = FlightRecorderUtils.beginArchiveIO();
         if (crxFile.exists()) {
             crxFile.delete();
         } else {
             crxFile.getParentFile().mkdirs();
         }
-        try (FileOutputStream crx = new FileOutputStream(crxFile)) {
-            crx.write(CRX_MAGIC);
-            if (version == 2) {
-                crx.write(CRX2_VERSION);
-                writeLength(crx, crxArchive.getPublicKey().length);
-                writeLength(crx, crxArchive.getSignature().length);
-                crx.write(crxArchive.getPublicKey());
-                crx.write(crxArchive.getSignature());
-                crx.write(crxArchive.getData());
-            } else if (version == 3) {
-                crx.write(CRX3_VERSION);
-                // TODO
+        final ByteArrayOutputStream crx = new ByteArrayOutputStream();
+        crx.write(CRX_MAGIC);
+        if (version == 2) {
+            crx.write(CRX2_VERSION);
+            writeLength(crx, crxArchive.getPublicKey().length);
+            writeLength(crx, crxArchive.getSignature().length);
+            crx.write(crxArchive.getPublicKey());
+            crx.write(crxArchive.getSignature());
+        } else if (version == 3) {
+            crx.write(CRX3_VERSION);
+            final byte[] header = new CRX3Header(crxArchive.getPublicKey(), crxArchive.getSignature(),
+                    getSignedHeaderData(crxArchive)).encode();
+            writeLength(crx, header.length);
+            crx.write(header);
+        } else {
+            throw new IOException("Version not supported");
+        }
+        final MessageDigest[] digests = createDigests(checksumAlgorithms);
+        try (FileChannel channel = FileChannel.open(crxFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final WritableByteChannel target = digests.length == 0 ? channel : new DigestChannel(channel, digests);
+            final ByteBuffer header = ByteBuffer.wrap(crx.toByteArray());
+            while (header.hasRemaining()) {
+                target.write(header);
+            }
+            crxArchive.getPayload().transferTo(target);
+        }
+        for (int i = 0; i < digests.length; i++) {
+            final File sidecarFile = ChecksumUtils.getSidecarFile(crxFile, checksumAlgorithms[i]);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(sidecarFile), StandardCharsets.UTF_8)) {
+                writer.write(ChecksumUtils.toHex(digests[i].digest()));
+                writer.write("  ");
+                writer.write(crxFile.getName());
+                writer.write('\n');
             }
         }
+        FlightRecorderUtils.endArchiveIO(event, "write", crxFile, version);
     }
 
     /**
-     * Read the CRX archive from a file loading the header, public key, signature and data.
+     * Read the CRX archive from a file loading the header, public key and signature. The data is not loaded but is
+     * resolved lazily from a region of the file when it is accessed. The magic number and the header lengths are
+     * checked so a file that is not a CRX archive is rejected without reading it all.
      *
      * @param crxFile The source CRX file.
      * @return The CRX archive.
      * @throws IOException If there was an error reading the CRX file.
      */
     public CRXArchive readArchive(final File crxFile) throws IOException {
+        final Object event = FlightRecorderUtils.beginArchiveIO();
+        final CRXArchive archive = readHeader(crxFile);
+        FlightRecorderUtils.endArchiveIO(event, "read", crxFile, archive.getVersion());
+        return archive;
+    }
+
+    /**
+     * Read the header of a CRX archive checking the magic number and the header lengths and resolve the payload.
+     *
+     * @param crxFile The source CRX file.
+     * @return The CRX archive.
+     * @throws IOException If there was an error reading the CRX file.
+     */
+    private CRXArchive readHeader(final File crxFile) throws IOException {
         final byte[] buffer = new byte[4];
+        final long fileLength = crxFile.length();
         try (InputStream crxIn = Files.newInputStream(crxFile.toPath())) {
-            crxIn.read(buffer);
+            if (crxIn.read(buffer) != buffer.length || !Arrays.equals(buffer, CRX_MAGIC)) {
+                throw new IOException("Not a CRX archive");
+            }
             crxIn.read(buffer);
             if (Arrays.equals(buffer, CRX2_VERSION)) {
                 final int publicKeyLength = readLength(crxIn);
                 final int signatureLength = readLength(crxIn);
-                final byte[] publicKey = new byte[publicKeyLength];
-                crxIn.read(publicKey);
-                final byte[] signature = new byte[signatureLength];
-                crxIn.read(signature);
-                final int dataLength = (int) (crxFile.length() - 16 - publicKeyLength - signatureLength);
-                final byte[] data = new byte[dataLength];
-                crxIn.read(data);
-                return new CRXArchive(publicKey, signature, data);
+                checkHeaderLength(16L + publicKeyLength + signatureLength, fileLength);
+                final byte[] publicKey = readBytes(crxIn, publicKeyLength);
+                final byte[] signature = readBytes(crxIn, signatureLength);
+                final long dataOffset = 16L + publicKeyLength + signatureLength;
+                return new CRXArchive(2, publicKey, signature, null, getPayload(crxFile, dataOffset));
             } else if (Arrays.equals(buffer, CRX3_VERSION)) {
-                // TODO
-                throw new IOException("Version 3 fully not supported");
+                final int headerLength = readLength(crxIn);
+                checkHeaderLength(12L + headerLength, fileLength);
+                final CRX3Header header = CRX3Header.decode(readBytes(crxIn, headerLength));
+                final long dataOffset = 12L + headerLength;
+                return new CRXArchive(3, header.getPublicKey(), header.getSignature(),
+                        header.getSignedHeaderData(), getPayload(crxFile, dataOffset));
             } else {
                 throw new IOException("Version not supported");
             }
         }
     }
 
+    /**
+     * Get the ZIP payload of a file that is either a CRX archive or a plain ZIP file. The payload is resolved lazily
+     * from a region of the file when it is accessed.
+     *
+     * @param file The source CRX or ZIP file.
+     * @return The ZIP payload.
+     * @throws IOException If there was an error reading the file.
+     */
+    public CRXPayload readPayload(final File file) throws IOException {
+        final byte[] buffer = new byte[CRX_MAGIC.length];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            if (in.read(buffer) == buffer.length && Arrays.equals(buffer, CRX_MAGIC)) {
+                return readArchive(file).getPayload();
+            }
+        }
+        return getPayload(file, 0L);
+    }
+
+    /**
+     * List the entries in the ZIP payload of a CRX archive. Only the CRX header and the ZIP central directory are
+     * read. The entries are not inflated.
+     *
+     * @param crxFile The source CRX file.
+     * @return The entries in the order they appear in the central directory.
+     * @throws IOException If there was an error reading the CRX file or its central directory.
+     */
+    public List<CRXEntry> listEntries(final File crxFile) throws IOException {
+        try (ZipFile zipFile = openZipFile(readPayload(crxFile))) {
+            final List<CRXEntry> entries = new ArrayList<>();
+            final Enumeration<ZipArchiveEntry> zipEntries = zipFile.getEntries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipArchiveEntry zipEntry = zipEntries.nextElement();
+                entries.add(new CRXEntry(zipEntry.getName(), zipEntry.getSize(), zipEntry.getCompressedSize(),
+                        zipEntry.getCrc(), zipEntry.getMethod()));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Open a single entry in the ZIP payload of a CRX archive. Only the CRX header, the ZIP central directory and the
+     * bytes of the entry itself are read. The caller is responsible for closing the stream.
+     *
+     * @param crxFile   The source CRX file.
+     * @param entryName The name of the entry (e.g. {@code manifest.json}).
+     * @return A stream of the uncompressed entry contents.
+     * @throws FileNotFoundException If the entry does not exist.
+     * @throws IOException           If there was an error reading the CRX file or the entry.
+     */
+    public InputStream openEntry(final File crxFile, final String entryName) throws IOException {
+        final ZipFile zipFile = openZipFile(readArchive(crxFile).getPayload());
+        try {
+            final ZipArchiveEntry zipEntry = zipFile.getEntry(entryName);
+            if (zipEntry == null) {
+                throw new FileNotFoundException("Could not find " + entryName + " in " + crxFile.getName());
+            }
+            return new FilterInputStream(zipFile.getInputStream(zipEntry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        } catch (final IOException | RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the ZIP payload of a CRX archive for random access. The central directory is located by seeking to the
+     * end of the payload so only the central directory is read until an entry is opened.
+     *
+     * @param payload The ZIP payload.
+     * @return The ZIP file which must be closed by the caller.
+     * @throws IOException If the central directory could not be read.
+     */
+    static ZipFile openZipFile(final CRXPayload payload) throws IOException {
+        final SeekableByteChannel channel = payload.openChannel();
+        try {
+            return ZipFile.builder()
+                    .setSeekableByteChannel(channel)
+                    .setIgnoreLocalFileHeader(true)
+                    .get();
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the payload of a CRX file as a region of the file so that it is not loaded until it is needed.
+     *
+     * @param crxFile    The source CRX file.
+     * @param dataOffset The offset of the ZIP data.
+     * @return The payload.
+     * @throws IOException If the CRX file is shorter than its header.
+     */
+    private CRXPayload getPayload(final File crxFile, final long dataOffset) throws IOException {
+        final long dataLength = crxFile.length() - dataOffset;
+        if (dataLength < 0) {
+            throw new EOFException("Unexpected end of CRX file");
+        }
+        return CRXPayload.ofFileRegion(crxFile.toPath(), dataOffset, dataLength);
+    }
+
+    /**
+     * Create the message digests used to compute the checksums of the CRX file.
+     *
+     * @param checksumAlgorithms The digest algorithms or {@code null}.
+     * @return The message digests.
+     * @throws IOException If one of the digest algorithms is not supported.
+     */
+    private MessageDigest[] createDigests(final String[] checksumAlgorithms) throws IOException {
+        if (checksumAlgorithms == null) {
+            return new MessageDigest[0];
+        }
+        final MessageDigest[] digests = new MessageDigest[checksumAlgorithms.length];
+        for (int i = 0; i < checksumAlgorithms.length; i++) {
+            try {
+                digests[i] = MessageDigest.getInstance(checksumAlgorithms[i]);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IOException("Checksum algorithm not supported: " + checksumAlgorithms[i], e);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Get the signed header data for a CRX3 archive generating it from the public key if the archive does not
+     * already have it.
+     *
+     * @param crxArchive The CRX archive.
+     * @return The signed header data.
+     * @throws IOException If the signed header data could not be generated.
+     */
+    private byte[] getSignedHeaderData(final CRXArchive crxArchive) throws IOException {
+        if (crxArchive.getSignedHeaderData() != null) {
+            return crxArchive.getSignedHeaderData();
+        }
+        try {
+            return CRX3Header.createSignedHeaderData(crxArchive.getPublicKey());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("Could not generate the CRX3 signed header data", e);
+        }
+    }
+
+    /**
+     * Read a fixed number of bytes from the input stream.
+     *
+     * @param in     The input stream.
+     * @param length The number of bytes.
+     * @return The bytes.
+     * @throws IOException If there was a problem reading from the input stream or it ended prematurely.
+     */
+    private byte[] readBytes(final InputStream in, final int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid CRX header length");
+        }
+        final byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            final int count = in.read(buffer, offset, length - offset);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of CRX file");
+            }
+            offset += count;
+        }
+        return buffer;
+    }
+
+    /**
+     * Check that the header of a CRX file fits within the file so that a corrupt or hostile header length does not
+     * cause a large buffer to be allocated.
+     *
+     * @param headerLength The length of the header including the magic number and version.
+     * @param fileLength   The length of the CRX file.
+     * @throws EOFException If the header extends beyond the end of the file.
+     */
+    private void checkHeaderLength(final long headerLength, final long fileLength) throws EOFException {
+        if (headerLength > fileLength) {
+            throw new EOFException("Unexpected end of CRX file");
+        }
+    }
+
     /**
      * Write a 32-bit integer to the output stream in little endian format.
      *
@@ -154,4 +405,52 @@ public class CRXArchiveHelper implements ArchiveHelper {
         return (buffer[3] << SHIFT_24) | ((buffer[2] & BYTE_MASK) << SHIFT_16) | ((buffer[1] & BYTE_MASK) << SHIFT_8)
                 | (buffer[0] & BYTE_MASK);
     }
+
+    /**
+     * A channel that updates message digests with the bytes written to an underlying channel.
+     */
+    private static final class DigestChannel implements WritableByteChannel {
+
+        /**
+         * The underlying channel.
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * The message digests.
+         */
+        private final MessageDigest[] digests;
+
+        /**
+         * Initialise the channel.
+         *
+         * @param target  The underlying channel.
+         * @param updates The message digests.
+         */
+        DigestChannel(final WritableByteChannel target, final MessageDigest[] updates) {
+            channel = target;
+            digests = updates;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final ByteBuffer written = src.duplicate();
+            final int count = channel.write(src);
+            ((Buffer) written).limit(written.position() + count);
+            for (final MessageDigest digest : digests) {
+                digest.update(written.duplicate());
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 }
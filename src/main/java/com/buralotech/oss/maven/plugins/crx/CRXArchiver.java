@@ -17,6 +17,8 @@
 package com.buralotech.oss.maven.plugins.crx;
 
 import java.io.File;
+import java.security.KeyPair;
+import java.util.Collection;
 
 import org.codehaus.plexus.archiver.Archiver;
 
@@ -42,6 +44,52 @@ public interface CRXArchiver extends Archiver {
      */
     void setPemPassword(String password);
 
+    /**
+     * Used to inject the public/private key pair when it has already been loaded from the .pem file so that the .pem
+     * file is not decrypted again.
+     *
+     * @param keys The public/private key pair or {@code null} if it should be loaded from the .pem file.
+     * @since 2.0.0
+     */
+    void setKeyPair(KeyPair keys);
+
+    /**
+     * Used to inject the digest algorithms for the checksum sidecar files that are produced while the CRX file is
+     * written.
+     *
+     * @param algorithms The digest algorithms (e.g. {@code SHA-256}) or {@code null} if no checksums are required.
+     * @since 2.0.0
+     */
+    void setChecksumAlgorithms(String... algorithms);
+
+    /**
+     * Used to inject the location to which the signed ZIP payload is also output as a plain ZIP file (e.g. for
+     * uploading to the Chrome Web Store).
+     *
+     * @param file The location of the ZIP file or {@code null} if a ZIP file is not required.
+     * @since 2.0.0
+     */
+    void setZipFile(File file);
+
+    /**
+     * Add entries from another ZIP payload (e.g. an overlay) that are copied into the CRX file in their compressed
+     * form without being inflated and deflated again. Resources with the same names are not added from the file sets.
+     *
+     * @param payload    The ZIP payload containing the entries.
+     * @param entryNames The names of the entries to copy.
+     * @since 2.0.0
+     */
+    void addRawEntries(CRXPayload payload, Collection<String> entryNames);
+
+    /**
+     * Used to inject the names of the security providers that are preferred for signing the ZIP archive.
+     *
+     * @param providers The names of the preferred providers in order of preference or {@code null} to use the
+     *                  default preference of the signature helper.
+     * @since 2.0.0
+     */
+    void setCryptoProviders(String... providers);
+
     /**
      * Used to inject the signature helper that is used to to sign the ZIP archive.
      *
@@ -55,4 +103,48 @@ public interface CRXArchiver extends Archiver {
      * @param helper The helper.
      */
     void setArchiveHelper(ArchiveHelper helper);
+
+    /**
+     * Used to inject the shared store of deflated entry data. Files whose content is already in the store are copied
+     * into the ZIP file in their compressed form and the content of other files is added to the store.
+     *
+     * @param store The store or {@code null} if entries are deflated as they are added.
+     * @since 2.0.0
+     */
+    void setCompressedEntryStore(CompressedEntryStore store);
+
+    /**
+     * Used to inject the directory in which signing agents publish their agent files. The digest is signed by the
+     * {@link SigningAgent} for the PEM file if one is running. Otherwise, the key is loaded from the PEM file.
+     *
+     * @param directory The directory or {@code null} if the key is always loaded from the PEM file.
+     * @since 2.0.0
+     */
+    void setSigningAgentDirectory(File directory);
+
+    /**
+     * Used to specify that the CRX file should not be signed. The unsigned ZIP payload and a {@link PendingSignature}
+     * descriptor holding the digest of the signed data are output alongside the location of the CRX file instead so
+     * that the CRX file can be signed and assembled later by {@link PendingSigner}.
+     *
+     * @param deferred {@code true} if signing is deferred.
+     * @since 2.0.0
+     */
+    void setDeferredSigning(boolean deferred);
+
+    /**
+     * Get the version of the CRX archive format that is output.
+     *
+     * @return The version of the CRX archive format (2 or 3).
+     * @since 2.0.0
+     */
+    int getVersion();
+
+    /**
+     * Determine whether the entries of the ZIP payload are compressed.
+     *
+     * @return {@code true} if the entries are compressed.
+     * @since 2.0.0
+     */
+    boolean isCompress();
 }
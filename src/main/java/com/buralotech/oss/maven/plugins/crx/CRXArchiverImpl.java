@@ -16,35 +16,46 @@
 
 package com.buralotech.oss.maven.plugins.crx;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.Reader;
-import java.math.BigInteger;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
 import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
 import java.security.KeyPair;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.security.Security;
-import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.zip.Deflater;
 
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
-import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.openssl.PEMDecryptorProvider;
-import org.bouncycastle.openssl.PEMEncryptedKeyPair;
-import org.bouncycastle.openssl.PEMKeyPair;
-import org.bouncycastle.openssl.PEMParser;
-import org.bouncycastle.openssl.bc.BcPEMDecryptorProvider;
-import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.archiver.zip.AbstractZipArchiver;
@@ -53,13 +64,19 @@ import org.codehaus.plexus.archiver.zip.ConcurrentJarCreator;
 import javax.inject.Inject;
 
 /**
- * This archiver packages and signs a Google Chrome Extension.
+ * This archiver packages and signs a Google Chrome Extension. The archiver holds the state of a single packaging
+ * operation so it is not thread safe and a new instance must be obtained for each execution.
  *
  * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
  * @since 1.1.0
  */
 public class CRXArchiverImpl extends AbstractZipArchiver implements CRXArchiver {
 
+    /**
+     * The connect and read timeout in milliseconds for requests to the signing agent.
+     */
+    private static final int SIGNING_AGENT_TIMEOUT = 30000;
+
     private int version = 3;
 
     /**
@@ -72,6 +89,59 @@ public class CRXArchiverImpl extends AbstractZipArchiver implements CRXArchiver
      */
     private String pemPassword;
 
+    /**
+     * The public/private key pair that was already loaded from the .pem file or {@code null} if it has not been
+     * loaded.
+     */
+    private KeyPair loadedKeyPair;
+
+    /**
+     * The digest algorithms for the checksum sidecar files.
+     */
+    private String[] checksumAlgorithms = new String[0];
+
+    /**
+     * The location to which the signed ZIP payload is also output or {@code null} if it is not required.
+     */
+    private File zipFile;
+
+    /**
+     * The entries that are copied in their compressed form from other ZIP payloads keyed by payload.
+     */
+    private final Map<CRXPayload, List<String>> rawEntries = new LinkedHashMap<>();
+
+    /**
+     * The names of the preferred security providers or {@code null} to use the default preference.
+     */
+    private String[] cryptoProviders;
+
+    /**
+     * The shared store of deflated entry data or {@code null} if entries are deflated as they are added.
+     */
+    private CompressedEntryStore compressedEntryStore;
+
+    /**
+     * The directory in which signing agents publish their agent files or {@code null} if the key is always loaded
+     * from the PEM file.
+     */
+    private File signingAgentDirectory;
+
+    /**
+     * {@code true} if the unsigned ZIP payload and the digest are left to be signed later instead of the CRX file.
+     */
+    private boolean deferredSigning;
+
+    /**
+     * The time in nanoseconds spent reading and compressing each resource keyed by entry name. The times are only
+     * recorded while the archive entry events are being recorded by Java Flight Recorder.
+     */
+    private final ConcurrentMap<String, Long> deflateTimes = new ConcurrentHashMap<>();
+
+    /**
+     * {@code true} if the time spent reading and compressing each resource is being recorded.
+     */
+    private boolean recordDeflateTimes;
+
     /**
      * The helper that is used to sign the ZIP archive.
      */
@@ -88,6 +158,17 @@ public class CRXArchiverImpl extends AbstractZipArchiver implements CRXArchiver
         this.version = version;
     }
 
+    /**
+     * Get the version of the CRX archive format that is output.
+     *
+     * @return The version of the CRX archive format (2 or 3).
+     * @since 2.0.0
+     */
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * Used to inject the location of the .pem file containing the public/private key pair.
      *
@@ -106,6 +187,88 @@ public class CRXArchiverImpl extends AbstractZipArchiver implements CRXArchiver
         pemPassword = password;
     }
 
+    /**
+     * Used to inject the public/private key pair when it has already been loaded from the .pem file so that the .pem
+     * file is not decrypted again.
+     *
+     * @param keys The public/private key pair or {@code null} if it should be loaded from the .pem file.
+     */
+    public void setKeyPair(final KeyPair keys) {
+        loadedKeyPair = keys;
+    }
+
+    /**
+     * Used to inject the digest algorithms for the checksum sidecar files that are produced while the CRX file is
+     * written.
+     *
+     * @param algorithms The digest algorithms (e.g. {@code SHA-256}) or {@code null} if no checksums are required.
+     */
+    public void setChecksumAlgorithms(final String... algorithms) {
+        checksumAlgorithms = algorithms == null ? new String[0] : algorithms;
+    }
+
+    /**
+     * Used to inject the location to which the signed ZIP payload is also output as a plain ZIP file (e.g. for
+     * uploading to the Chrome Web Store).
+     *
+     * @param file The location of the ZIP file or {@code null} if a ZIP file is not required.
+     */
+    public void setZipFile(final File file) {
+        zipFile = file;
+    }
+
+    /**
+     * Add entries from another ZIP payload (e.g. an overlay) that are copied into the CRX file in their compressed
+     * form without being inflated and deflated again. Resources with the same names are not added from the file sets.
+     *
+     * @param payload    The ZIP payload containing the entries.
+     * @param entryNames The names of the entries to copy.
+     */
+    public void addRawEntries(final CRXPayload payload, final Collection<String> entryNames) {
+        rawEntries.computeIfAbsent(payload, key -> new ArrayList<>()).addAll(entryNames);
+    }
+
+    /**
+     * Used to inject the names of the security providers that are preferred for signing the ZIP archive.
+     *
+     * @param providers The names of the preferred providers in order of preference or {@code null} to use the
+     *                  default preference of the signature helper.
+     */
+    public void setCryptoProviders(final String... providers) {
+        cryptoProviders = providers;
+    }
+
+    /**
+     * Used to inject the shared store of deflated entry data. Files whose content is already in the store are copied
+     * into the ZIP file in their compressed form and the content of other files is added to the store.
+     *
+     * @param store The store or {@code null} if entries are deflated as they are added.
+     */
+    public void setCompressedEntryStore(final CompressedEntryStore store) {
+        compressedEntryStore = store;
+    }
+
+    /**
+     * Used to inject the directory in which signing agents publish their agent files. The digest is signed by the
+     * {@link SigningAgent} for the PEM file if one is running. Otherwise, the key is loaded from the PEM file.
+     *
+     * @param directory The directory or {@code null} if the key is always loaded from the PEM file.
+     */
+    public void setSigningAgentDirectory(final File directory) {
+        signingAgentDirectory = directory;
+    }
+
+    /**
+     * Used to specify that the CRX file should not be signed. The unsigned ZIP payload and a {@link PendingSignature}
+     * descriptor holding the digest of the signed data are output alongside the location of the CRX file instead so
+     * that the CRX file can be signed and assembled later by {@link PendingSigner}.
+     *
+     * @param deferred {@code true} if signing is deferred.
+     */
+    public void setDeferredSigning(final boolean deferred) {
+        deferredSigning = deferred;
+    }
+
     /**
      * Used to inject the signature helper that is used to sign the ZIP archive.
      *
@@ -136,122 +299,493 @@ public class CRXArchiverImpl extends AbstractZipArchiver implements CRXArchiver
     }
 
     /**
-     * Generate an in-memory ZIP file containing the resources for the Google Chrome Extension, then sign the ZIP
-     * and write out a CRX file containing the header, signature, public key and ZIP data.
+     * Generate a temporary ZIP file containing the resources for the Google Chrome Extension, then sign the ZIP
+     * and write out a CRX file containing the header, signature, public key and ZIP data. The digest that is signed
+     * is computed while the ZIP file is being written so signing does not need a second pass over the ZIP data. The
+     * digest is signed by the signing agent if one is running for the PEM file.
      */
     @Override
     protected void execute() {
 
+        SigningAgentClient agent = null;
         try {
-            Security.addProvider(new BouncyCastleProvider());
 
-            // ZIP the CRX source directory tree
+            // Get the public/private key and prime the digest with any data that precedes the ZIP
+
+            final SignatureHelper helper = cryptoProviders == null ? signatureHelper
+                    : signatureHelper.withProviders(cryptoProviders);
+            agent = connectSigningAgent();
+            final KeyPair keyPair = agent == null ? getKeyPair() : null;
+            final byte[] publicKey = keyPair == null ? agent.getPublicKey() : keyPair.getPublic().getEncoded();
+            final MessageDigest digest = helper.createDigest(version);
+            final byte[] signedHeaderData;
+            if (version == 3) {
+                signedHeaderData = CRX3Header.createSignedHeaderData(publicKey);
+                digest.update(CRX3Header.getSignedDataPrefix(signedHeaderData));
+            } else {
+                signedHeaderData = null;
+            }
 
-            final byte[] zipData = createZipFile();
+            // ZIP the CRX source directory tree feeding the digest as the ZIP is written
 
-            // Get the public/private key and sign the ZIP
+            final File tempZipFile = createTempZipFile();
+            try {
+                recordDeflateTimes = FlightRecorderUtils.isArchiveEntryEnabled();
+                deflateTimes.clear();
+                final CRXPayload payload = createZipFile(tempZipFile, digest);
+                if (recordDeflateTimes) {
+                    recordArchiveEntries(payload);
+                }
 
-            final KeyPair keyPair = getKeyPair();
-            byte[] publicKey = keyPair.getPublic().getEncoded();
-            byte[] signature = signatureHelper.sign(zipData, keyPair.getPrivate());
+                // Leave the payload and digest to be signed later if signing is deferred
 
-            // Write the CRX file
+                final File descriptorFile = PendingSignature.getDescriptorFile(getDestFile());
+                final File payloadFile = PendingSignature.getPayloadFile(getDestFile());
+                if (deferredSigning) {
+                    Files.deleteIfExists(getDestFile().toPath());
+                    if (zipFile != null) {
+                        moveZipFile(tempZipFile, zipFile, payload);
+                        Files.copy(zipFile.toPath(), payloadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } else {
+                        moveZipFile(tempZipFile, payloadFile, payload);
+                    }
+                    new PendingSignature(version, publicKey, signedHeaderData, digest.digest(), checksumAlgorithms)
+                            .store(descriptorFile);
+                    return;
+                }
+                Files.deleteIfExists(descriptorFile.toPath());
+                Files.deleteIfExists(payloadFile.toPath());
 
-            final CRXArchive archive = new CRXArchive(publicKey, signature, zipData);
-            archiveHelper.writeArchive(getDestFile(), version, archive);
+                // Sign the digest
+
+                final byte[] signature = sign(helper, agent, keyPair, publicKey, digest.digest());
+
+                // Write the CRX file
+
+                final CRXArchive archive = new CRXArchive(version, publicKey, signature, signedHeaderData, payload);
+                archiveHelper.writeArchive(getDestFile(), version, archive, checksumAlgorithms);
+
+                // Keep the signed ZIP file if it is required
+
+                if (zipFile != null) {
+                    moveZipFile(tempZipFile, zipFile, payload);
+                }
+            } finally {
+                Files.deleteIfExists(tempZipFile.toPath());
+            }
         } catch (final GeneralSecurityException e) {
             throw new ArchiverException("Could not generate the signature for the CRX file", e);
         } catch (final IOException e) {
             throw new ArchiverException("Could not read resources or output the CRX file", e);
+        } finally {
+            closeSigningAgent(agent);
         }
     }
 
     /**
-     * Read the public/private key pair from a PEM file.
+     * Connect to the signing agent for the PEM file.
+     *
+     * @return The connection or {@code null} if signing agents are not used or no agent is running for the PEM file.
+     */
+    private SigningAgentClient connectSigningAgent() {
+        if (signingAgentDirectory == null) {
+            return null;
+        }
+        try {
+            return SigningAgentClient.connect(signingAgentDirectory, pemFile, SIGNING_AGENT_TIMEOUT);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Disconnect from the signing agent.
+     *
+     * @param agent The connection or {@code null} if the signing agent was not used.
+     */
+    private static void closeSigningAgent(final SigningAgentClient agent) {
+        if (agent != null) {
+            try {
+                agent.close();
+            } catch (final IOException e) {
+                // The signature was already obtained
+            }
+        }
+    }
+
+    /**
+     * Sign the digest using the signing agent if it is connected. The key is loaded from the PEM file and the digest
+     * is signed in-process if the agent fails.
+     *
+     * @param helper    The signature helper.
+     * @param agent     The connection to the signing agent or {@code null} if it is not used.
+     * @param keyPair   The key pair loaded from the PEM file or {@code null} if it has not been loaded.
+     * @param publicKey The public key that is written to the CRX header.
+     * @param hash      The digest of the signed data.
+     * @return The signature.
+     * @throws GeneralSecurityException If the digest could not be signed.
+     */
+    private byte[] sign(final SignatureHelper helper, final SigningAgentClient agent, final KeyPair keyPair,
+                        final byte[] publicKey, final byte[] hash) throws GeneralSecurityException {
+        if (agent != null) {
+            try {
+                return agent.signDigest(version, hash);
+            } catch (final IOException e) {
+                // Fall back to signing in-process
+            }
+        }
+        final KeyPair localKeyPair = keyPair == null ? getKeyPair() : keyPair;
+        if (!Arrays.equals(publicKey, localKeyPair.getPublic().getEncoded())) {
+            throw new ArchiverException("The signing agent holds a different key than the PEM file");
+        }
+        return helper.signDigest(version, hash, localKeyPair.getPrivate());
+    }
+
+    /**
+     * Read the public/private key pair from a PEM file unless it has already been loaded.
      *
      * @return The public/private key pair.
      */
     private KeyPair getKeyPair() {
+        if (loadedKeyPair != null) {
+            return loadedKeyPair;
+        }
+        final Object event = FlightRecorderUtils.beginKeyPair();
+        boolean loaded = false;
         try {
-            try (Reader pemFileReader = new FileReader(pemFile)) {
-                try (PEMParser pemParser = new PEMParser(pemFileReader)) {
-                    final Object pemObject = pemParser.readObject();
-                    if (pemObject instanceof KeyPair) {
-                        return (KeyPair) pemObject;
-                    } else if (pemObject instanceof PEMKeyPair) {
-                        final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider("BC");
-                        return converter.getKeyPair((PEMKeyPair) pemObject);
-                    } else if (pemObject instanceof PEMEncryptedKeyPair) {
-                        final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider("BC");
-                        final PEMEncryptedKeyPair encryptedKeyPair = (PEMEncryptedKeyPair) pemObject;
-                        final PEMDecryptorProvider decryptorProvider = new BcPEMDecryptorProvider(pemPassword.toCharArray());
-                        final PEMKeyPair pemKeyPair = encryptedKeyPair.decryptKeyPair(decryptorProvider);
-                        return converter.getKeyPair(pemKeyPair);
-                    } else if (pemObject instanceof PrivateKeyInfo) {
-                        final JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider("BC");
-                        final PrivateKey privateKey = converter.getPrivateKey((PrivateKeyInfo) pemObject);
-                        return convertRSAPrivateCrtKey(privateKey);
-                    } else {
-                        return convertRSAPrivateCrtKey(pemObject);
-                    }
-                }
-            }
+            final KeyPair keyPair = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+            loaded = true;
+            return keyPair;
         } catch (final InvalidKeySpecException e) {
             throw new ArchiverException("Cannot generate RSA public key", e);
         } catch (final NoSuchAlgorithmException e) {
             throw new ArchiverException("RSA Private key algorithm is not supported", e);
-        } catch (final NoSuchProviderException e) {
-            throw new ArchiverException("Bouncy Castle not registered correctly", e);
         } catch (final IOException e) {
             throw new ArchiverException("Could not load the public/private key from the PEM file", e);
+        } finally {
+            FlightRecorderUtils.endKeyPair(event, pemFile, pemPassword != null, loaded);
         }
     }
 
     /**
-     * Attempt to convert a RSA private key to a public/private key pair.
+     * Create the temporary file that the ZIP file is written to before it is copied into the CRX file. The temporary
+     * file is created alongside the CRX file so that the copy can be performed by the file system.
      *
-     * @param pemObject Object loaded from PEM file.
-     * @return The public/private key pair.
-     * @throws NoSuchAlgorithmException If the RSA algorithm is not supported.
-     * @throws NoSuchProviderException  If the Bouncy Castle provider is not registered.
-     * @throws InvalidKeySpecException  If the key specification is not supported.
-     */
-    private KeyPair convertRSAPrivateCrtKey(final Object pemObject)
-            throws NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException {
-        if (pemObject instanceof RSAPrivateCrtKey) {
-            final RSAPrivateCrtKey privateCrtKey = (RSAPrivateCrtKey) pemObject;
-            final BigInteger exponent = privateCrtKey.getPublicExponent();
-            final BigInteger modulus = privateCrtKey.getModulus();
-            final RSAPublicKeySpec publicKeySpec = new RSAPublicKeySpec(modulus, exponent);
-            final KeyFactory keyFactory = KeyFactory.getInstance("RSA", "BC");
-            final PublicKey publicKey = keyFactory.generatePublic(publicKeySpec);
-            return new KeyPair(publicKey, privateCrtKey);
-        } else {
-            throw new ArchiverException("Could not load the public/private key from invalid PEM file");
+     * @return The temporary file.
+     * @throws IOException If the temporary file could not be created.
+     */
+    private File createTempZipFile() throws IOException {
+        final File destDirectory = getDestFile().getAbsoluteFile().getParentFile();
+        if (!destDirectory.exists() && !destDirectory.mkdirs()) {
+            throw new IOException("Could not create directory: " + destDirectory.getAbsolutePath());
+        }
+        return File.createTempFile(getDestFile().getName(), ".zip", destDirectory);
+    }
+
+    /**
+     * Move the temporary ZIP file to the location of the plain ZIP file or unsigned payload. The ZIP data is copied
+     * from the payload if the temporary file cannot be moved (e.g. because the location is on a different file
+     * system).
+     *
+     * @param tempZipFile The temporary ZIP file.
+     * @param target      The location of the plain ZIP file or unsigned payload.
+     * @param payload     The payload backed by the temporary ZIP file.
+     * @throws IOException If the ZIP file could not be output.
+     */
+    private static void moveZipFile(final File tempZipFile, final File target, final CRXPayload payload)
+            throws IOException {
+        final File zipDirectory = target.getAbsoluteFile().getParentFile();
+        if (!zipDirectory.exists() && !zipDirectory.mkdirs()) {
+            throw new IOException("Could not create directory: " + zipDirectory.getAbsolutePath());
+        }
+        try {
+            Files.move(tempZipFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                payload.transferTo(channel);
+            }
         }
     }
 
     /**
-     * Create a ZIP file in memory containing the directory tree leveraging the {@link
+     * Create a ZIP file containing the directory tree leveraging the {@link
      * org.codehaus.plexus.archiver.zip.AbstractZipArchiver#addResources(org.codehaus.plexus.archiver.ResourceIterator,
-     * org.codehaus.plexus.archiver.zip.ConcurrentJarCreator)} method to store resources in the ZIP file. The ZIP file is
-     * then converted to a byte array.
+     * org.codehaus.plexus.archiver.zip.ConcurrentJarCreator)} method to store resources in the ZIP file. Raw entries
+     * are copied first followed by the files whose deflated content comes from the shared store and resources with
+     * the same names are skipped.
      *
-     * @return A byte array containing the ZIP file.
+     * @param tempZipFile The file the ZIP file is written to.
+     * @param digest      The message digest that is updated with the ZIP data as it is written.
+     * @return The payload backed by the ZIP file.
      * @throws java.io.IOException If there was an error reading the contents of the source directory.
      */
-    private byte[] createZipFile() throws IOException {
-        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(buffer)) {
+    private CRXPayload createZipFile(final File tempZipFile, final MessageDigest digest) throws IOException {
+        final OutputStream buffer = new BufferedOutputStream(new FileOutputStream(tempZipFile),
+                CRXPayload.BUFFER_SIZE);
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(new DigestOutputStream(buffer, digest))) {
             final ConcurrentJarCreator creator = new ConcurrentJarCreator(1);
             out.setMethod(ZipArchiveOutputStream.DEFLATED);
             out.setLevel(Deflater.BEST_COMPRESSION);
+            final Set<String> rawEntryNames = writeRawEntries(out);
+            if (compressedEntryStore != null) {
+                writeStoredEntries(out, rawEntryNames);
+            }
             ResourceIterator resourceIterator = getResources();
+            if (!rawEntryNames.isEmpty()) {
+                resourceIterator = new SkippingResourceIterator(resourceIterator, rawEntryNames);
+            }
             addResources(resourceIterator, creator);
             creator.writeTo(out);
         } catch (final ExecutionException | InterruptedException e) {
             throw new IOException("Error generating archive");
         }
-        return buffer.toByteArray();
+        return CRXPayload.ofFileRegion(tempZipFile.toPath(), 0, tempZipFile.length());
+    }
+
+    /**
+     * Copy the raw entries from the other ZIP payloads without inflating and deflating them again.
+     *
+     * @param out The ZIP output stream.
+     * @return The names of the entries that were copied.
+     * @throws IOException If an entry could not be found or copied.
+     */
+    private Set<String> writeRawEntries(final ZipArchiveOutputStream out) throws IOException {
+        final Set<String> names = new HashSet<>();
+        for (final Map.Entry<CRXPayload, List<String>> source : rawEntries.entrySet()) {
+            try (ZipFile zipFile = CRXArchiveHelper.openZipFile(source.getKey())) {
+                for (final String name : source.getValue()) {
+                    final ZipArchiveEntry entry = zipFile.getEntry(name);
+                    if (entry == null) {
+                        throw new IOException("Could not find " + name + " in overlay");
+                    }
+                    if (names.add(name)) {
+                        try (InputStream in = zipFile.getRawInputStream(entry)) {
+                            out.addRawArchiveEntry(new ZipArchiveEntry(entry), in);
+                        }
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Copy the files into the ZIP file using deflated content from the shared store. Content that is not in the store
+     * yet is deflated and added to the store first. The store is trimmed to its size limit afterwards.
+     *
+     * @param out   The ZIP output stream.
+     * @param names The names of the entries that were already written which is updated with the names of the files
+     *              that were copied.
+     * @throws IOException If a file could not be read or the store could not be read or written.
+     */
+    private void writeStoredEntries(final ZipArchiveOutputStream out, final Set<String> names) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+        final byte[] buffer = new byte[CRXPayload.BUFFER_SIZE];
+        final ResourceIterator resources = getResources();
+        while (resources.hasNext()) {
+            final ArchiveEntry resource = resources.next();
+            final String name = resource.getName().replace('\\', '/');
+            if (resource.getType() != ArchiveEntry.FILE || names.contains(name)) {
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                int count;
+                while ((count = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, count);
+                }
+            }
+            final String sha256 = ChecksumUtils.toHex(digest.digest());
+            CompressedEntryStore.Blob blob = compressedEntryStore.get(sha256);
+            InputStream compressed = blob == null ? null : openCompressed(blob);
+            if (compressed == null) {
+                try (InputStream in = resource.getInputStream()) {
+                    blob = compressedEntryStore.put(sha256, in);
+                }
+                compressed = blob.openCompressed();
+            }
+            final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            setZipEntryTime(entry, resource.getResource().getLastModified());
+            entry.setMethod(ZipArchiveEntry.DEFLATED);
+            entry.setUnixMode(UnixStat.FILE_FLAG | resource.getMode());
+            entry.setCrc(blob.getCrc());
+            entry.setSize(blob.getSize());
+            entry.setCompressedSize(blob.getCompressedSize());
+            try (InputStream in = compressed) {
+                out.addRawArchiveEntry(entry, in);
+            }
+            names.add(name);
+        }
+        compressedEntryStore.evict();
+    }
+
+    /**
+     * Open the deflated content of a blob tolerating the blob having been evicted by another build since it was
+     * looked up.
+     *
+     * @param blob The blob.
+     * @return The deflated content or {@code null} if the blob was evicted.
+     * @throws IOException If the blob could not be read.
+     */
+    private static InputStream openCompressed(final CompressedEntryStore.Blob blob) throws IOException {
+        try {
+            return blob.openCompressed();
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add a resource to the ZIP file timing how long it takes to read and compress the resource if the archive entry
+     * events are being recorded.
+     *
+     * @param in                 Supplies the content of the resource.
+     * @param zOut               The creator that compresses the resources.
+     * @param vPath              The name of the entry.
+     * @param lastModified       The modification time of the resource.
+     * @param fromArchive        The archive that the resource was extracted from or {@code null}.
+     * @param mode               The file mode of the resource.
+     * @param symlinkDestination The destination of a symbolic link or {@code null}.
+     * @param addInParallel      {@code true} if the resource can be compressed in parallel.
+     * @throws IOException       If the resource could not be added.
+     * @throws ArchiverException If the resource could not be added.
+     */
+    @Override
+    protected void zipFile(final InputStreamSupplier in, final ConcurrentJarCreator zOut, final String vPath,
+                           final long lastModified, final File fromArchive, final int mode,
+                           final String symlinkDestination, final boolean addInParallel)
+            throws IOException, ArchiverException {
+        final InputStreamSupplier supplier = recordDeflateTimes
+                ? () -> new TimingInputStream(in.get(), vPath) : in;
+        super.zipFile(supplier, zOut, vPath, lastModified, fromArchive, mode, symlinkDestination, addInParallel);
+    }
+
+    /**
+     * Emit an archive entry event for each entry of the ZIP payload using the sizes and compression method recorded
+     * in the central directory. Entries that were copied in their compressed form have no deflate time.
+     *
+     * @param payload The ZIP payload.
+     * @throws IOException If the central directory could not be read.
+     */
+    private void recordArchiveEntries(final CRXPayload payload) throws IOException {
+        try (ZipFile zip = CRXArchiveHelper.openZipFile(payload)) {
+            for (final ZipArchiveEntry entry : Collections.list(zip.getEntries())) {
+                final ZipMethod method = ZipMethod.getMethodByCode(entry.getMethod());
+                final Long deflateTime = deflateTimes.get(entry.getName());
+                FlightRecorderUtils.archiveEntry(entry.getName(), entry.getSize(), entry.getCompressedSize(),
+                        method == null ? Integer.toString(entry.getMethod()) : method.name(),
+                        deflateTime == null ? 0L : deflateTime);
+            }
+        }
+    }
+
+    /**
+     * Records the time from when the content of a resource is opened for compression until it is closed.
+     */
+    private final class TimingInputStream extends FilterInputStream {
+
+        /**
+         * The name of the entry.
+         */
+        private final String name;
+
+        /**
+         * The time in nanoseconds when the content was opened.
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Initialise the input stream.
+         *
+         * @param in        The content of the resource.
+         * @param entryName The name of the entry.
+         */
+        private TimingInputStream(final InputStream in, final String entryName) {
+            super(in);
+            name = entryName;
+        }
+
+        /**
+         * Close the content and record the time since it was opened.
+         *
+         * @throws IOException If the content could not be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                deflateTimes.putIfAbsent(name, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Filters the resources that will be added to the ZIP file skipping those that were already copied as raw
+     * entries.
+     */
+    private static final class SkippingResourceIterator implements ResourceIterator {
+
+        /**
+         * The underlying resource iterator.
+         */
+        private final ResourceIterator iterator;
+
+        /**
+         * The names of the resources to skip.
+         */
+        private final Set<String> skippedNames;
+
+        /**
+         * The next resource to return or {@code null} if it has not been located yet.
+         */
+        private ArchiveEntry next;
+
+        /**
+         * Initialise the iterator.
+         *
+         * @param resourceIterator The underlying resource iterator.
+         * @param names            The names of the resources to skip.
+         */
+        private SkippingResourceIterator(final ResourceIterator resourceIterator, final Set<String> names) {
+            iterator = resourceIterator;
+            skippedNames = names;
+        }
+
+        /**
+         * Determine whether there are more resources that are not skipped.
+         *
+         * @return {@code true} if there are more resources. Otherwise, {@code false}.
+         */
+        @Override
+        public boolean hasNext() {
+            while (next == null && iterator.hasNext()) {
+                final ArchiveEntry entry = iterator.next();
+                if (!skippedNames.contains(entry.getName().replace('\\', '/'))) {
+                    next = entry;
+                }
+            }
+            return next != null;
+        }
+
+        /**
+         * Get the next resource that is not skipped.
+         *
+         * @return The resource.
+         */
+        @Override
+        public ArchiveEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final ArchiveEntry entry = next;
+            next = null;
+            return entry;
+        }
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Implement the cache-server goal for the plug-in. The cache-server goal runs a local implementation of the remote
+ * build cache protocol that stores CRX files in a directory so that the build cache can be exercised offline. The
+ * server runs until the build is interrupted.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "cache-server", requiresProject = false, threadSafe = true)
+public class CRXCacheServerMojo extends AbstractMojo {
+
+    /**
+     * The directory in which the CRX files are stored.
+     */
+    @Parameter(property = "crxCacheServerDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/build-cache", required = true)
+    private File directory;
+
+    /**
+     * The address that the server listens on.
+     */
+    @Parameter(property = "crxCacheServerHost", defaultValue = "127.0.0.1", required = true)
+    private String host;
+
+    /**
+     * The port that the server listens on.
+     */
+    @Parameter(property = "crxCacheServerPort", defaultValue = "8765", required = true)
+    private int port;
+
+    /**
+     * Called when the Maven plug-in is executing. It starts the server and waits until the build is interrupted.
+     *
+     * @throws MojoExecutionException If the server could not be started.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException {
+        try (BuildCacheServer server = new BuildCacheServer(directory, new InetSocketAddress(host, port))) {
+            getLog().info("Build cache server listening on " + server.getUrl() + " storing CRX files in "
+                    + directory.getAbsolutePath());
+            new CountDownLatch(1).await();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not start the build cache server", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.StringUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+/**
+ * Implement the delta goal for the plug-in. The delta goal compares the Chrome Browser Extension built by the project
+ * with a previous release and attaches an entry package containing the entries that were added or modified together
+ * with a patch that transforms the previous CRX file into the new one. Update servers can serve either delta instead
+ * of the full CRX file to clients that already have the previous release.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "delta", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class CRXDeltaMojo extends AbstractMojo {
+
+    /**
+     * The location of the Chrome Extension which is used to override the default location calculated using the
+     * output directory final name and classifier.
+     */
+    @Parameter(required = false)
+    private File crxPath;
+
+    /**
+     * The final name of the artifact.
+     */
+    @Parameter(defaultValue = "${project.build.finalName}", required = true)
+    private String finalName;
+
+    /**
+     * The build target directory.
+     */
+    @Parameter(defaultValue = "${project.build.directory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * An optional classifier for the artifact.
+     */
+    @Parameter
+    private String classifier;
+
+    /**
+     * The location of the previous release of the Chrome Extension. Either this or {@link #previousArtifact} must be
+     * specified.
+     */
+    @Parameter(property = "crxPreviousCrx")
+    private File previousCrx;
+
+    /**
+     * The coordinates of the previous release of the Chrome Extension in the form
+     * {@code <groupId>:<artifactId>[:<extension>[:<classifier>]]:<version>} (e.g.
+     * {@code com.example:my-extension:crx:1.0.0}). The artifact is resolved from the project's remote repositories
+     * when {@link #previousCrx} is not specified.
+     */
+    @Parameter(property = "crxPreviousArtifact")
+    private String previousArtifact;
+
+    /**
+     * The classifier that is appended to the artifact classifier for the attached entry package and patch.
+     */
+    @Parameter(defaultValue = "delta", required = true)
+    private String deltaClassifier;
+
+    /**
+     * The Maven project.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The repository session used to resolve the previous release.
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+    private RepositorySystemSession repositorySession;
+
+    /**
+     * The remote repositories from which the previous release is resolved.
+     */
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+    private List<RemoteRepository> remoteRepositories;
+
+    /**
+     * The repository system used to resolve the previous release.
+     */
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * The Maven project helper.
+     */
+    @Component
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * The archive helper is used to read the CRX archives.
+     */
+    @Component
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * Called when the Maven plug-in is executing. It writes and attaches the entry package and the patch.
+     *
+     * @throws MojoExecutionException If there was an error that should stop the build.
+     * @throws MojoFailureException   If there was an error but the build might be allowed to continue.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException, MojoFailureException {
+        final StringBuilder baseName = new StringBuilder(finalName);
+        if (StringUtils.isNotEmpty(classifier)) {
+            baseName.append('-');
+            baseName.append(classifier);
+        }
+        final File crxFile = crxPath == null ? new File(outputDirectory, baseName + ".crx") : crxPath;
+        if (!crxFile.isFile()) {
+            throw new MojoExecutionException("Could not find CRX archive " + crxFile.getAbsolutePath());
+        }
+        final File previousFile = resolvePrevious();
+
+        final String attachedClassifier = StringUtils.isNotEmpty(classifier)
+                ? classifier + '-' + deltaClassifier : deltaClassifier;
+        final File packageFile = new File(outputDirectory, finalName + '-' + attachedClassifier + ".zip");
+        final File patchFile = new File(outputDirectory, finalName + '-' + attachedClassifier + ".crxpatch");
+        try {
+            final ArchiveDelta delta = new ArchiveDelta(archiveHelper);
+            final Map<String, String> changes = delta.writeEntryPackage(previousFile, crxFile, packageFile);
+            delta.writePatch(previousFile, crxFile, patchFile);
+            getLog().info(changes.size() + " entries changed since " + previousFile.getName() + ". The patch is "
+                    + patchFile.length() + " bytes compared to " + crxFile.length() + " bytes for the CRX file");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not generate the delta from " + previousFile.getAbsolutePath(),
+                    e);
+        }
+
+        projectHelper.attachArtifact(project, "zip", attachedClassifier, packageFile);
+        projectHelper.attachArtifact(project, "crxpatch", attachedClassifier, patchFile);
+    }
+
+    /**
+     * Locate the previous release using its location if specified or by resolving its coordinates.
+     *
+     * @return The previous CRX file.
+     * @throws MojoExecutionException If the previous release is not specified or could not be resolved.
+     */
+    private File resolvePrevious() throws MojoExecutionException {
+        if (previousCrx != null) {
+            if (!previousCrx.isFile()) {
+                throw new MojoExecutionException("Could not find previous CRX archive "
+                        + previousCrx.getAbsolutePath());
+            }
+            return previousCrx;
+        }
+        if (StringUtils.isEmpty(previousArtifact)) {
+            throw new MojoExecutionException("Either previousCrx or previousArtifact must be specified");
+        }
+        try {
+            final ArtifactRequest request = new ArtifactRequest(new DefaultArtifact(previousArtifact),
+                    remoteRepositories, null);
+            return repositorySystem.resolveArtifact(repositorySession, request).getArtifact().getFile();
+        } catch (final ArtifactResolutionException | IllegalArgumentException e) {
+            throw new MojoExecutionException("Could not resolve previous CRX archive " + previousArtifact, e);
+        }
+    }
+}
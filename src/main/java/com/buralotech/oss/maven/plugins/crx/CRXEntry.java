@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+/**
+ * Describes an entry in the ZIP payload of a CRX archive as recorded in the ZIP central directory.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class CRXEntry {
+
+    /**
+     * The name of the entry.
+     */
+    private final String name;
+
+    /**
+     * The uncompressed size of the entry.
+     */
+    private final long size;
+
+    /**
+     * The compressed size of the entry.
+     */
+    private final long compressedSize;
+
+    /**
+     * The CRC-32 checksum of the uncompressed entry.
+     */
+    private final long crc;
+
+    /**
+     * The ZIP compression method.
+     */
+    private final int method;
+
+    /**
+     * Initialise the entry.
+     *
+     * @param entryName           The name of the entry.
+     * @param entrySize           The uncompressed size of the entry.
+     * @param entryCompressedSize The compressed size of the entry.
+     * @param entryCrc            The CRC-32 checksum of the uncompressed entry.
+     * @param entryMethod         The ZIP compression method.
+     */
+    public CRXEntry(final String entryName,
+                    final long entrySize,
+                    final long entryCompressedSize,
+                    final long entryCrc,
+                    final int entryMethod) {
+        name = entryName;
+        size = entrySize;
+        compressedSize = entryCompressedSize;
+        crc = entryCrc;
+        method = entryMethod;
+    }
+
+    /**
+     * Get the name of the entry.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the uncompressed size of the entry.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the compressed size of the entry.
+     *
+     * @return The compressed size in bytes.
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Get the CRC-32 checksum of the uncompressed entry.
+     *
+     * @return The CRC-32 checksum.
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    /**
+     * Get the ZIP compression method (e.g. {@link java.util.zip.ZipEntry#DEFLATED}).
+     *
+     * @return The compression method.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * Determine whether the entry is a directory.
+     *
+     * @return {@code true} if the entry is a directory. Otherwise, {@code false}.
+     */
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+}
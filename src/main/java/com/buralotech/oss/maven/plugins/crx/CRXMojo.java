@@ -16,14 +16,17 @@
 
 package com.buralotech.oss.maven.plugins.crx;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.apache.maven.shared.filtering.MavenFileFilter;
@@ -32,12 +35,30 @@ import org.apache.maven.shared.filtering.MavenResourcesExecution;
 import org.apache.maven.shared.filtering.MavenResourcesFiltering;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
 import org.codehaus.plexus.util.StringUtils;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import static org.codehaus.plexus.archiver.util.DefaultFileSet.fileSet;
 
@@ -48,7 +69,8 @@ import static org.codehaus.plexus.archiver.util.DefaultFileSet.fileSet;
  * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
  * @since 1.0.0
  */
-@Mojo(name = "crx", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "crx", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.RUNTIME,
+        threadSafe = true)
 public class CRXMojo extends AbstractMojo {
 
     /**
@@ -123,12 +145,308 @@ public class CRXMojo extends AbstractMojo {
     @Parameter
     private List nonFilteredFileExtensions;
 
+    /**
+     * A comma separated list of digest algorithms (e.g. {@code SHA-256,SHA-512}) used to produce checksum sidecar
+     * files for the CRX file. The checksums are computed while the CRX file is written and the sidecar files are
+     * attached to the build as secondary artifacts.
+     *
+     * @since 2.0.0
+     */
+    @Parameter
+    private String checksums;
+
+    /**
+     * Specify that the signed ZIP payload of the CRX file should also be output as a plain ZIP file for uploading to
+     * the Chrome Web Store. The ZIP file is attached to the build as a secondary artifact with the type {@code zip}.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "false")
+    private boolean createZip;
+
+    /**
+     * The classifier of the plain ZIP file.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "webstore")
+    private String zipClassifier;
+
+    /**
+     * The {@code crx} or {@code zip} dependencies whose contents are merged into the Chrome Extension. Files in the
+     * source directory take precedence over files from the overlays and each overlay takes precedence over the
+     * overlays that follow it. Compressed entries from the overlays are copied into the CRX file without being
+     * inflated and deflated again.
+     *
+     * @since 2.0.0
+     */
+    @Parameter
+    private List<Overlay> overlays;
+
+    /**
+     * The directory in which the unpacked overlays are cached. The directory is shared between builds so that each
+     * version of an overlay is only unpacked once.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/overlays", required = true)
+    private File overlayCacheDirectory;
+
+    /**
+     * A comma separated list of the names of the security providers (e.g. {@code SunJCE,BC}) that are preferred for
+     * signing the CRX file. The JDK providers are preferred by default because they were measured to be the fastest for
+     * RSA keys.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCryptoProviders")
+    private String cryptoProviders;
+
+    /**
+     * Specify that the SHA-256 block hashes that Chrome uses to verify the contents of an installed extension should
+     * be computed for every packaged file and included in the CRX file. The hashes of files that have not changed
+     * since the previous build are reused.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "false")
+    private boolean contentHashes;
+
+    /**
+     * The path within the CRX file of the content hashes in the format of Chrome's {@code computed_hashes.json}.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "_metadata/computed_hashes.json")
+    private String contentHashesPath;
+
+    /**
+     * The number of threads used to compute the content hashes or zero to use one per available processor.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "0")
+    private int contentHashThreads;
+
+    /**
+     * The base URL of a remote cache of signed CRX files keyed by the inputs that produced them. The CRX file is
+     * downloaded instead of being packaged and signed when the cache holds a CRX file for the same staged files,
+     * packaging rules and key. The cache is not used if no URL is specified.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxBuildCacheUrl")
+    private String buildCacheUrl;
+
+    /**
+     * Specify that CRX files which were not found in the remote build cache should be uploaded to it after they are
+     * packaged and signed.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxBuildCacheUpload", defaultValue = "true")
+    private boolean buildCacheUpload;
+
+    /**
+     * The connect and read timeout in milliseconds for requests to the remote build cache.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxBuildCacheTimeout", defaultValue = "10000")
+    private int buildCacheTimeout;
+
+    /**
+     * Specify that deflated entry data should be shared through a content-addressed store so that content which was
+     * already compressed by any build on the machine is copied into the CRX file instead of being deflated again.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCompressedEntryStore", defaultValue = "false")
+    private boolean useCompressedEntryStore;
+
+    /**
+     * The directory of the content-addressed store of deflated entry data. The directory can be shared by all the
+     * builds on a machine.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCompressedEntryStoreDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/entries", required = true)
+    private File compressedEntryStoreDirectory;
+
+    /**
+     * The size in bytes beyond which the least recently used deflated entry data is evicted from the store or zero if
+     * the size of the store is not limited.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCompressedEntryStoreMaxSize", defaultValue = "1073741824")
+    private long compressedEntryStoreMaxSize;
+
+    /**
+     * Specify that the digest should be signed by the signing agent for the PEM file if one is running so that the
+     * PEM file does not have to be decrypted by every build. The key is loaded from the PEM file if no agent is
+     * running.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxSigningAgent", defaultValue = "false")
+    private boolean useSigningAgent;
+
+    /**
+     * The directory in which signing agents publish the port and access token that builds use to reach them.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxSigningAgentDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/agents", required = true)
+    private File signingAgentDirectory;
+
+    /**
+     * Specify that the CRX file should not be signed by this goal. The unsigned ZIP payload and the digest of the
+     * signed data are output alongside the location of the CRX file instead and the sign-pending goal signs all the
+     * pending CRX files in the reactor with a single key load. The CRX file and its checksum sidecar files are
+     * attached to the project by the sign-pending goal once they have been written. The remote build cache and the
+     * size budgets are not used when signing is deferred.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxDeferSigning", defaultValue = "false")
+    private boolean deferSigning;
+
+    /**
+     * Specify that the JSON, CSS and JavaScript files that will be packaged should be minified in the staging
+     * directory by removing comments and whitespace. Files that cannot be minified are packaged unchanged.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMinify", defaultValue = "false")
+    private boolean minify;
+
+    /**
+     * A comma separated list of the patterns that select the files that are minified.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMinifyIncludes", defaultValue = "**/*.json,**/*.css,**/*.js")
+    private String minifyIncludes;
+
+    /**
+     * A comma separated list of the patterns that select files that are not minified. Files that were already
+     * minified are excluded by default.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMinifyExcludes", defaultValue = "**/*.min.js,**/*.min.css")
+    private String minifyExcludes;
+
+    /**
+     * The number of threads used to minify files or zero to use one per available processor.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "0")
+    private int minifyThreads;
+
+    /**
+     * The directory in which the minified files are cached keyed by the hash of the original file. The directory is
+     * shared between builds so that each file is only minified when it changes.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMinifyCacheDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/minified", required = true)
+    private File minifyCacheDirectory;
+
+    /**
+     * Specify that the PNG and JPEG images that will be packaged should be losslessly optimised in the staging
+     * directory. PNG images are re-filtered and re-compressed, JPEG images have their Huffman tables optimised and
+     * metadata that does not affect how an image is rendered is removed. An image is only replaced if its pixels are
+     * unchanged and it is smaller.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxOptimiseImages", defaultValue = "false")
+    private boolean optimiseImages;
+
+    /**
+     * The number of threads used to optimise images or zero to use one per available processor.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "0")
+    private int imageThreads;
+
+    /**
+     * The directory in which the optimised images are cached keyed by the hash of the original image. The directory
+     * is shared between builds so that each image is only optimised when it changes.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxImageCacheDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/images", required = true)
+    private File imageCacheDirectory;
+
+    /**
+     * Specify that a report of the size of the CRX file and the compressed size, uncompressed size and compression
+     * ratio of each entry should be written next to the CRX file with the extension {@code .sizes}. The report is
+     * always written when a size budget is configured.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxSizeReport", defaultValue = "false")
+    private boolean sizeReport;
+
+    /**
+     * The largest size in bytes that the CRX file may have or zero if the size is not limited.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMaxSize", defaultValue = "0")
+    private long maxSize;
+
+    /**
+     * The largest compressed size in bytes that any entry in the CRX file may have or zero if the size is not
+     * limited.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMaxEntryCompressedSize", defaultValue = "0")
+    private long maxEntryCompressedSize;
+
+    /**
+     * The largest number of bytes by which the CRX file may grow compared to the size recorded in the baseline
+     * report or zero if the growth is not limited.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxMaxGrowth", defaultValue = "0")
+    private long maxGrowth;
+
+    /**
+     * The size report of a previous build that growth is measured against. The default is the report written next
+     * to the CRX file by the previous build. That report is only replaced when the build is within its size budgets
+     * so a build that fails the growth budget keeps failing until the growth is addressed.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxSizeBaseline")
+    private File sizeBaseline;
+
     /**
      * The Maven project.
      */
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
+    /**
+     * The descriptor of this plug-in which provides the plug-in version for the remote build cache key.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor plugin;
+
     /**
      * The Maven project helper.
      */
@@ -136,10 +454,29 @@ public class CRXMojo extends AbstractMojo {
     private MavenProjectHelper projectHelper;
 
     /**
-     * The archiver component that is used to package and sign the Google Chrome Extension.
+     * The archive helper is used to read the overlays.
+     *
+     * @since 2.0.0
+     */
+    @Component
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * The signature helper is used to verify CRX files that are downloaded from the remote build cache.
+     *
+     * @since 2.0.0
+     */
+    @Component
+    private SignatureHelper signatureHelper;
+
+    /**
+     * Provides the archiver component that is used to package and sign the Google Chrome Extension. A new archiver
+     * is obtained for each execution so that the archiver state is never shared between concurrent executions.
+     *
+     * @since 2.0.0
      */
     @Inject
-    private CRXArchiver crxArchiver;
+    private Provider<CRXArchiver> crxArchiverProvider;
 
     /**
      * Used to copy the file with resource filtering.
@@ -173,9 +510,9 @@ public class CRXMojo extends AbstractMojo {
     private List filterWrappers;
 
     /**
-     * Called when the Maven plug-in is executing. It creates an in-memory ZIP file of all the Chrome Extension
-     * source files, generates as signature using the private key from the PEM file, outputs a CRX file containing
-     * a header, the public key, the signature and the ZIP data.
+     * Called when the Maven plug-in is executing. It writes a ZIP file of all the Chrome Extension source files to a
+     * temporary file, generates a signature using the private key from the PEM file and outputs a CRX file containing
+     * a header, the public key, the signature and the ZIP data which is copied from a region of the temporary file.
      *
      * @throws MojoExecutionException If there was an error that should stop the build.
      * @throws MojoFailureException   If there was an error but the build might be allowed to continue.
@@ -200,33 +537,332 @@ public class CRXMojo extends AbstractMojo {
         final File crxDirectory = new File(outputDirectory, crxFilename.toString());
         crxFilename.append(".crx");
 
+        final CRXArchiver crxArchiver = crxArchiverProvider.get();
         copyFiles(crxSourceDirectory, crxDirectory);
+        final String[] includes = ParameterUtils.splitParameter(packagingIncludes);
+        final String[] excludes = ParameterUtils.splitParameter(packagingExcludes);
+        final Map<CRXPayload, List<String>> overlayEntries;
+        if (overlays != null && !overlays.isEmpty()) {
+            overlayEntries = applyOverlays(crxDirectory, includes, excludes);
+        } else {
+            overlayEntries = Collections.emptyMap();
+        }
+        final Set<String> optimisedNames = new HashSet<>();
+        if (minify) {
+            minifyFiles(crxDirectory, includes, excludes, optimisedNames);
+        }
+        if (optimiseImages) {
+            optimiseImages(crxDirectory, includes, excludes, optimisedNames);
+        }
+        addOverlayEntries(crxArchiver, overlayEntries, optimisedNames);
+        if (contentHashes) {
+            generateContentHashes(crxDirectory, includes, excludes);
+        }
 
         // Generate the CRX file
 
         final File crxFile = new File(outputDirectory, crxFilename.toString());
-        final String[] includes = ParameterUtils.splitParameter(packagingIncludes);
-        final String[] excludes = ParameterUtils.splitParameter(packagingExcludes);
 
         crxArchiver.setPemFile(pemFile);
         crxArchiver.setPemPassword(pemPassword);
+        final String[] checksumAlgorithms = ParameterUtils.splitParameter(checksums);
+        crxArchiver.setChecksumAlgorithms(checksumAlgorithms);
+        crxArchiver.setCryptoProviders(ParameterUtils.splitParameter(cryptoProviders));
+        if (useSigningAgent) {
+            crxArchiver.setSigningAgentDirectory(signingAgentDirectory);
+        }
+        if (deferSigning) {
+            crxArchiver.setDeferredSigning(true);
+        }
+        if (useCompressedEntryStore) {
+            crxArchiver.setCompressedEntryStore(new CompressedEntryStore(compressedEntryStoreDirectory,
+                    compressedEntryStoreMaxSize));
+        }
         crxArchiver.addFileSet(fileSet(crxDirectory).includeExclude(includes, excludes));
         crxArchiver.setDestFile(crxFile);
+        final File zipFile;
+        if (createZip) {
+            final StringBuilder zipFilename = new StringBuilder();
+            zipFilename.append(finalName);
+            if (StringUtils.isNotEmpty(zipClassifier)) {
+                zipFilename.append('-');
+                zipFilename.append(zipClassifier);
+            }
+            zipFilename.append(".zip");
+            zipFile = new File(outputDirectory, zipFilename.toString());
+            crxArchiver.setZipFile(zipFile);
+        } else {
+            zipFile = null;
+        }
+
+        final RemoteBuildCache buildCache;
+        final String keyFingerprint;
+        final String buildCacheKey;
+        if (StringUtils.isNotEmpty(buildCacheUrl) && !deferSigning) {
+            buildCache = new RemoteBuildCache(buildCacheUrl, buildCacheTimeout);
+            keyFingerprint = getKeyFingerprint(crxArchiver);
+            buildCacheKey = computeBuildCacheKey(crxArchiver, crxDirectory, includes, excludes, keyFingerprint);
+        } else {
+            buildCache = null;
+            keyFingerprint = null;
+            buildCacheKey = null;
+        }
+
+        if (buildCache == null || !restoreFromBuildCache(buildCache, buildCacheKey, keyFingerprint, crxFile, zipFile,
+                checksumAlgorithms)) {
+            try {
+                crxArchiver.createArchive();
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Failed to package and sign the Google Chrome Extension", e);
+            } catch (final ArchiverException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+            if (buildCache != null && buildCacheUpload) {
+                storeInBuildCache(buildCache, buildCacheKey, crxFile);
+            }
+        }
+
+        // Attach the artifact to the build life-cycle. The CRX file and its checksum sidecar files are attached by
+        // the sign-pending goal if signing is deferred because they have not been written yet.
+
+        if (!deferSigning) {
+            if (StringUtils.isNotEmpty(classifier)) {
+                projectHelper.attachArtifact(project, "crx", classifier, crxFile);
+            } else {
+                project.getArtifact().setFile(crxFile);
+            }
+        }
+        if (zipFile != null) {
+            if (StringUtils.isNotEmpty(zipClassifier)) {
+                projectHelper.attachArtifact(project, "zip", zipClassifier, zipFile);
+            } else {
+                projectHelper.attachArtifact(project, "zip", zipFile);
+            }
+        }
+        if (checksumAlgorithms != null && !deferSigning) {
+            for (final String algorithm : checksumAlgorithms) {
+                projectHelper.attachArtifact(project, "crx." + ChecksumUtils.getExtension(algorithm), classifier,
+                        ChecksumUtils.getSidecarFile(crxFile, algorithm));
+            }
+        }
+
+        // Enforce the size budgets
+
+        if (deferSigning) {
+            getLog().info("Signing of " + crxFile + " is deferred to the sign-pending goal");
+        } else {
+            checkSizeBudgets(crxFile);
+        }
+    }
+
+    /**
+     * Get the fingerprint of the public key that the CRX file is signed with. The public key is obtained from the
+     * signing agent if one is running so the PEM file does not have to be decrypted. Otherwise, the key pair loaded
+     * from the PEM file is passed to the archiver so that it does not decrypt the PEM file again.
+     *
+     * @param crxArchiver The archiver that signs the CRX file.
+     * @return The SHA-256 fingerprint of the public key as a lower case hexadecimal string.
+     * @throws MojoExecutionException If the key could not be loaded from the PEM file.
+     * @since 2.0.0
+     */
+    private String getKeyFingerprint(final CRXArchiver crxArchiver) throws MojoExecutionException {
+        byte[] publicKey = null;
+        if (useSigningAgent) {
+            try (SigningAgentClient agent = SigningAgentClient.connect(signingAgentDirectory, pemFile,
+                    buildCacheTimeout)) {
+                if (agent != null) {
+                    publicKey = agent.getPublicKey();
+                }
+            } catch (final IOException e) {
+                getLog().debug("Could not reach the signing agent: " + e.getMessage());
+            }
+        }
+        try {
+            if (publicKey == null) {
+                final KeyPair keyPair = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+                crxArchiver.setKeyPair(keyPair);
+                publicKey = keyPair.getPublic().getEncoded();
+            }
+            return VerifyUtils.getKeyFingerprint(publicKey);
+        } catch (final IOException | GeneralSecurityException e) {
+            throw new MojoExecutionException("Could not load the public/private key from the PEM file", e);
+        }
+    }
 
+    /**
+     * Compute the key of the CRX file in the remote build cache from everything that determines its content: the
+     * path and checksum of every staged file that will be packaged, which already reflect the sources, filter values
+     * and overlays, the packaging rules, the fingerprint of the signing key, the plug-in version, the CRX archive
+     * format and compression and the options that change the output of the goal.
+     *
+     * @param crxArchiver    The archiver that packages the CRX file.
+     * @param crxDirectory   The staging directory.
+     * @param includes       The packaging inclusion rules or {@code null} if all files are included.
+     * @param excludes       The packaging exclusion rules or {@code null} if no files are excluded.
+     * @param keyFingerprint The fingerprint of the public key.
+     * @return The key as a lower case hexadecimal SHA-256 hash.
+     * @throws MojoExecutionException If a staged file could not be read.
+     * @since 2.0.0
+     */
+    private String computeBuildCacheKey(final CRXArchiver crxArchiver, final File crxDirectory,
+                                        final String[] includes, final String[] excludes,
+                                        final String keyFingerprint) throws MojoExecutionException {
+        final Set<String> names = new TreeSet<>();
+        listFiles(crxDirectory, "", names);
+        final StringBuilder inputs = new StringBuilder("crx-build-cache 2\n");
+        inputs.append("plugin ").append(plugin.getVersion()).append('\n');
+        inputs.append("format ").append(crxArchiver.getVersion()).append('\n');
+        inputs.append("compress ").append(crxArchiver.isCompress()).append('\n');
+        inputs.append("key ").append(keyFingerprint).append('\n');
+        inputs.append("includes ").append(Objects.toString(packagingIncludes, "")).append('\n');
+        inputs.append("excludes ").append(Objects.toString(packagingExcludes, "")).append('\n');
+        inputs.append("checksums ").append(Objects.toString(checksums, "")).append('\n');
+        inputs.append("zip ").append(createZip).append(' ').append(Objects.toString(zipClassifier, "")).append('\n');
+        inputs.append("contentHashes ").append(contentHashes).append(' ').append(contentHashesPath).append('\n');
+        inputs.append("minify ").append(minify).append(' ').append(Objects.toString(minifyIncludes, "")).append(' ')
+                .append(Objects.toString(minifyExcludes, "")).append('\n');
+        inputs.append("optimiseImages ").append(optimiseImages).append('\n');
+        inputs.append("compressedEntryStore ").append(useCompressedEntryStore).append('\n');
+        inputs.append("deferSigning ").append(deferSigning).append('\n');
         try {
-            crxArchiver.createArchive();
+            for (final String name : names) {
+                if (isSelected(name, includes, excludes)) {
+                    inputs.append(ChecksumUtils.checksum(new File(crxDirectory, name), "SHA-256")).append(' ')
+                            .append(name).append('\n');
+                }
+            }
+            return ChecksumUtils.toHex(MessageDigest.getInstance("SHA-256")
+                    .digest(inputs.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (final IOException | NoSuchAlgorithmException e) {
+            throw new MojoExecutionException("Could not compute the build cache key", e);
+        }
+    }
+
+    /**
+     * Download the CRX file from the remote build cache. The downloaded CRX file is only used if it is signed with
+     * the expected key and its signature is valid. The CRX file is rewritten to produce the checksum sidecar files and
+     * the plain ZIP file. Problems with the cache are logged and treated as a miss so the CRX file is packaged instead.
+     *
+     * @param buildCache         The remote build cache.
+     * @param key                The key of the CRX file.
+     * @param keyFingerprint     The fingerprint of the expected public key.
+     * @param crxFile            The CRX file.
+     * @param zipFile            The plain ZIP file or {@code null} if it is not required.
+     * @param checksumAlgorithms The digest algorithms for the checksum sidecar files or {@code null}.
+     * @return {@code true} if the CRX file was restored from the cache. Otherwise, {@code false}.
+     * @since 2.0.0
+     */
+    private boolean restoreFromBuildCache(final RemoteBuildCache buildCache, final String key,
+                                          final String keyFingerprint, final File crxFile, final File zipFile,
+                                          final String[] checksumAlgorithms) {
+        final File downloadFile = new File(outputDirectory, crxFile.getName() + ".download");
+        final long start = System.nanoTime();
+        try {
+            if (!buildCache.get(key, downloadFile)) {
+                getLog().info("Build cache miss for " + key + " in " + elapsedMillis(start) + " ms");
+                return false;
+            }
+            final CRXArchive archive = archiveHelper.readArchive(downloadFile);
+            if (!keyFingerprint.equals(VerifyUtils.getKeyFingerprint(archive.getPublicKey()))
+                    || !VerifyUtils.verifySignature(signatureHelper, archive)) {
+                getLog().warn("Ignoring the CRX file in the build cache for " + key
+                        + " because it is not signed with the expected key");
+                return false;
+            }
+            archiveHelper.writeArchive(crxFile, archive.getVersion(), archive, checksumAlgorithms);
+            if (zipFile != null) {
+                try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    archive.getPayload().transferTo(channel);
+                }
+            }
+            getLog().info("Build cache hit for " + key + " in " + elapsedMillis(start) + " ms");
+            return true;
+        } catch (final IOException | GeneralSecurityException e) {
+            getLog().warn("Could not use the build cache for " + key + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (downloadFile.exists() && !downloadFile.delete()) {
+                getLog().warn("Could not delete " + downloadFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Upload the CRX file to the remote build cache. Failures are logged but do not fail the build.
+     *
+     * @param buildCache The remote build cache.
+     * @param key        The key of the CRX file.
+     * @param crxFile    The CRX file.
+     * @since 2.0.0
+     */
+    private void storeInBuildCache(final RemoteBuildCache buildCache, final String key, final File crxFile) {
+        final long start = System.nanoTime();
+        try {
+            buildCache.put(key, crxFile);
+            getLog().info("Stored " + key + " in the build cache in " + elapsedMillis(start) + " ms");
         } catch (final IOException e) {
-            throw new MojoExecutionException("Failed to package and sign the Google Chrome Extension", e);
-        } catch (final ArchiverException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+            getLog().warn("Could not store " + key + " in the build cache: " + e.getMessage());
         }
+    }
 
-        // Attach the artifact to the build life-cycle
+    /**
+     * Get the number of milliseconds that have elapsed.
+     *
+     * @param start The start time from {@link System#nanoTime()}.
+     * @return The elapsed time in milliseconds.
+     */
+    private static long elapsedMillis(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
 
-        if (StringUtils.isNotEmpty(classifier)) {
-            projectHelper.attachArtifact(project, "crx", classifier, crxFile);
-        } else {
-            project.getArtifact().setFile(crxFile);
+    /**
+     * Write the size report and check the CRX file against the configured size budgets. Every budget that is exceeded
+     * is logged before the build is failed.
+     *
+     * @param crxFile The CRX file.
+     * @throws MojoExecutionException If the CRX file or the baseline report could not be read or the report could not
+     *                                be written.
+     * @throws MojoFailureException   If the CRX file exceeds a size budget.
+     */
+    private void checkSizeBudgets(final File crxFile) throws MojoExecutionException, MojoFailureException {
+        if (!sizeReport && maxSize <= 0 && maxEntryCompressedSize <= 0 && maxGrowth <= 0) {
+            return;
+        }
+        final File reportFile = SizeReport.getReportFile(crxFile);
+        final File baselineFile = sizeBaseline == null ? reportFile : sizeBaseline;
+        final List<String> problems = new ArrayList<>();
+        try {
+            final long previousSize = maxGrowth > 0 ? SizeReport.readTotalSize(baselineFile) : -1L;
+            final SizeReport report = new SizeReport(crxFile.length(), archiveHelper.listEntries(crxFile));
+            if (maxSize > 0 && report.getTotalSize() > maxSize) {
+                problems.add("The CRX file is " + report.getTotalSize() + " bytes which exceeds the budget of "
+                        + maxSize + " bytes");
+            }
+            if (maxEntryCompressedSize > 0) {
+                for (final CRXEntry entry : report.getEntries()) {
+                    if (entry.getCompressedSize() > maxEntryCompressedSize) {
+                        problems.add(entry.getName() + " is " + entry.getCompressedSize()
+                                + " bytes compressed which exceeds the budget of " + maxEntryCompressedSize + " bytes");
+                    }
+                }
+            }
+            if (previousSize >= 0 && report.getTotalSize() - previousSize > maxGrowth) {
+                problems.add("The CRX file grew by " + (report.getTotalSize() - previousSize)
+                        + " bytes since the baseline report which exceeds the budget of " + maxGrowth + " bytes");
+            }
+            if (problems.isEmpty() || !baselineFile.equals(reportFile)) {
+                report.write(reportFile);
+            }
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not report the size of the CRX file", e);
+        }
+        if (!problems.isEmpty()) {
+            for (final String problem : problems) {
+                getLog().error(problem);
+            }
+            throw new MojoFailureException("The CRX file exceeds its size budget: " + problems.size()
+                    + " problem(s) found");
         }
     }
 
@@ -248,11 +884,14 @@ public class CRXMojo extends AbstractMojo {
                 if (sourceItem.isDirectory()) {
                     copyFiles(sourceItem, destinationItem);
                 } else {
-                    if (filtering && !isNonFilteredExtension(sourceItem.getName())) {
+                    final Object event = FlightRecorderUtils.beginCopyFile();
+                    final boolean filtered = filtering && !isNonFilteredExtension(sourceItem.getName());
+                    if (filtered) {
                         mavenFileFilter.copyFile(sourceItem, destinationItem, true, getFilterWrappers(), null);
                     } else {
                         FileUtils.copyFile(sourceItem, destinationItem);
                     }
+                    FlightRecorderUtils.endCopyFile(event, destinationItem, filtered);
                 }
             }
         } catch (final MavenFilteringException e) {
@@ -262,6 +901,257 @@ public class CRXMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Merge the overlays into the staging directory from their cached unpacked copies. The cached copy of each
+     * overlay stays locked while its files are copied. The overlay entries are not registered with the archiver yet
+     * because the optimisers may still replace the staged copies. Entries that the packaging rules exclude are staged
+     * but are not returned so they are not copied into the CRX file.
+     *
+     * @param crxDirectory The staging directory.
+     * @param includes     The packaging inclusion rules or {@code null} if all files are included.
+     * @param excludes     The packaging exclusion rules or {@code null} if no files are excluded.
+     * @return The names of the merged entries that will be packaged keyed by the payload of the overlay that provided
+     *         them.
+     * @throws MojoExecutionException If an overlay dependency could not be found or unpacked.
+     * @since 2.0.0
+     */
+    private Map<CRXPayload, List<String>> applyOverlays(final File crxDirectory, final String[] includes,
+                                                        final String[] excludes) throws MojoExecutionException {
+        final Map<CRXPayload, List<String>> overlayEntries = new LinkedHashMap<>();
+        final Set<String> claimedNames = new HashSet<>();
+        listFiles(crxSourceDirectory, "", claimedNames);
+        final OverlayCache overlayCache = new OverlayCache(overlayCacheDirectory, 0);
+        for (final Overlay overlay : overlays) {
+            if (overlay.isSkip()) {
+                continue;
+            }
+            final Artifact overlayArtifact = findOverlayArtifact(overlay);
+            final String[] overlayIncludes = ParameterUtils.splitParameter(overlay.getIncludes());
+            final String[] overlayExcludes = ParameterUtils.splitParameter(overlay.getExcludes());
+            try {
+                final CRXPayload payload = archiveHelper.readPayload(overlayArtifact.getFile());
+                final List<CRXEntry> entries = archiveHelper.listEntries(overlayArtifact.getFile());
+                final List<String> entryNames = new ArrayList<>();
+                overlayCache.withDirectory(overlayArtifact, payload, overlayDirectory -> {
+                    for (final CRXEntry entry : entries) {
+                        final String name = entry.getName();
+                        if (!entry.isDirectory() && isSelected(name, overlayIncludes, overlayExcludes)
+                                && claimedNames.add(name)) {
+                            FileUtils.copyFile(new File(overlayDirectory, name), new File(crxDirectory, name));
+                            if (isSelected(name, includes, excludes)) {
+                                entryNames.add(name);
+                            }
+                        }
+                    }
+                });
+                getLog().info("Merged " + entryNames.size() + " entries from overlay " + overlay);
+                overlayEntries.put(payload, entryNames);
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Could not apply overlay " + overlay, e);
+            }
+        }
+        return overlayEntries;
+    }
+
+    /**
+     * Register the merged overlay entries with the archiver so that they are copied into the CRX file in their
+     * compressed form. Entries whose staged copies were rewritten by an optimiser are left out so that the optimised
+     * staged copies are packaged instead and match the content hashes.
+     *
+     * @param crxArchiver    The archiver used for this execution.
+     * @param overlayEntries The names of the merged entries keyed by the payload of the overlay that provided them.
+     * @param optimisedNames The names of the staged files that were rewritten by an optimiser.
+     * @since 2.0.0
+     */
+    private void addOverlayEntries(final CRXArchiver crxArchiver, final Map<CRXPayload, List<String>> overlayEntries,
+                                   final Set<String> optimisedNames) {
+        for (final Map.Entry<CRXPayload, List<String>> overlayEntry : overlayEntries.entrySet()) {
+            final List<String> entryNames = new ArrayList<>(overlayEntry.getValue());
+            entryNames.removeAll(optimisedNames);
+            crxArchiver.addRawEntries(overlayEntry.getKey(), entryNames);
+        }
+    }
+
+    /**
+     * Record the names of the staged files that an optimiser replaced with their optimised versions.
+     *
+     * @param crxDirectory   The staging directory.
+     * @param optimiser      The optimiser.
+     * @param optimisedNames The names of the staged files that were rewritten which is updated.
+     * @since 2.0.0
+     */
+    private static void addOptimisedNames(final File crxDirectory, final FileOptimiser optimiser,
+                                          final Set<String> optimisedNames) {
+        final String prefix = crxDirectory.getPath() + File.separator;
+        for (final File file : optimiser.getOptimisedFiles()) {
+            optimisedNames.add(file.getPath().substring(prefix.length()).replace(File.separatorChar, '/'));
+        }
+    }
+
+    /**
+     * Minify the staged JSON, CSS and JavaScript files that will be packaged and are selected by the minification
+     * inclusion and exclusion rules.
+     *
+     * @param crxDirectory   The staging directory.
+     * @param includes       The packaging inclusion rules or {@code null} if all files are included.
+     * @param excludes       The packaging exclusion rules or {@code null} if no files are excluded.
+     * @param optimisedNames The names of the staged files that were rewritten which is updated with the names of
+     *                       the files that were minified.
+     * @throws MojoExecutionException If a file could not be minified.
+     * @since 2.0.0
+     */
+    private void minifyFiles(final File crxDirectory, final String[] includes, final String[] excludes,
+                             final Set<String> optimisedNames) throws MojoExecutionException {
+        final String[] fileIncludes = ParameterUtils.splitParameter(minifyIncludes);
+        final String[] fileExcludes = ParameterUtils.splitParameter(minifyExcludes);
+        final Set<String> names = new TreeSet<>();
+        listFiles(crxDirectory, "", names);
+        final List<File> files = new ArrayList<>();
+        for (final String name : names) {
+            if (Minifier.isMinifiable(name) && isSelected(name, includes, excludes)
+                    && isSelected(name, fileIncludes, fileExcludes)) {
+                files.add(new File(crxDirectory, name));
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        try {
+            final Minifier minifier = new Minifier(minifyThreads, minifyCacheDirectory);
+            final long saved = minifier.optimise(files);
+            addOptimisedNames(crxDirectory, minifier, optimisedNames);
+            getLog().info("Minified " + files.size() + " files saving " + saved + " bytes");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not minify files", e);
+        }
+    }
+
+    /**
+     * Losslessly optimise the staged PNG and JPEG images that will be packaged.
+     *
+     * @param crxDirectory   The staging directory.
+     * @param includes       The packaging inclusion rules or {@code null} if all files are included.
+     * @param excludes       The packaging exclusion rules or {@code null} if no files are excluded.
+     * @param optimisedNames The names of the staged files that were rewritten which is updated with the names of
+     *                       the images that were replaced.
+     * @throws MojoExecutionException If an image could not be optimised.
+     * @since 2.0.0
+     */
+    private void optimiseImages(final File crxDirectory, final String[] includes, final String[] excludes,
+                                final Set<String> optimisedNames) throws MojoExecutionException {
+        final Set<String> names = new TreeSet<>();
+        listFiles(crxDirectory, "", names);
+        final List<File> images = new ArrayList<>();
+        for (final String name : names) {
+            if (ImageOptimiser.isImage(name) && isSelected(name, includes, excludes)) {
+                images.add(new File(crxDirectory, name));
+            }
+        }
+        if (images.isEmpty()) {
+            return;
+        }
+        try {
+            final ImageOptimiser optimiser = new ImageOptimiser(imageThreads, imageCacheDirectory);
+            final long saved = optimiser.optimise(images);
+            addOptimisedNames(crxDirectory, optimiser, optimisedNames);
+            getLog().info("Optimised " + images.size() + " images saving " + saved + " bytes");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not optimise images", e);
+        }
+    }
+
+    /**
+     * Compute the block hashes of the staged files that will be packaged and write them to the staging directory so
+     * that they are included in the CRX file. Files in the {@code _metadata} directory are not hashed.
+     *
+     * @param crxDirectory The staging directory.
+     * @param includes     The packaging inclusion rules or {@code null} if all files are included.
+     * @param excludes     The packaging exclusion rules or {@code null} if no files are excluded.
+     * @throws MojoExecutionException If the content hashes could not be computed or written.
+     * @since 2.0.0
+     */
+    private void generateContentHashes(final File crxDirectory, final String[] includes, final String[] excludes)
+            throws MojoExecutionException {
+        final Set<String> names = new TreeSet<>();
+        listFiles(crxDirectory, "", names);
+        names.removeIf(name -> name.startsWith("_metadata/") || name.equals(contentHashesPath)
+                || !isSelected(name, includes, excludes));
+        final File cacheFile = new File(outputDirectory, crxDirectory.getName() + ".hashes");
+        try {
+            final Map<String, List<String>> hashes = new ContentHashGenerator(contentHashThreads)
+                    .computeHashes(crxDirectory, names, cacheFile);
+            ContentHashGenerator.writeComputedHashes(new File(crxDirectory, contentHashesPath), hashes);
+            getLog().info("Computed content hashes for " + hashes.size() + " files");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not compute content hashes", e);
+        }
+    }
+
+    /**
+     * Find the dependency described by an overlay.
+     *
+     * @param overlay The overlay.
+     * @return The dependency.
+     * @throws MojoExecutionException If the project does not have a matching dependency.
+     * @since 2.0.0
+     */
+    private Artifact findOverlayArtifact(final Overlay overlay) throws MojoExecutionException {
+        for (final Artifact dependency : project.getArtifacts()) {
+            if (overlay.matches(dependency) && dependency.getFile() != null) {
+                return dependency;
+            }
+        }
+        throw new MojoExecutionException("Could not find overlay dependency " + overlay);
+    }
+
+    /**
+     * Recursively collect the relative paths of the files in a directory.
+     *
+     * @param directory The directory.
+     * @param prefix    The relative path of the directory.
+     * @param names     Receives the relative paths of the files.
+     * @since 2.0.0
+     */
+    private void listFiles(final File directory, final String prefix, final Set<String> names) {
+        for (final File item : directory.listFiles()) {
+            if (item.isDirectory()) {
+                listFiles(item, prefix + item.getName() + '/', names);
+            } else {
+                names.add(prefix + item.getName());
+            }
+        }
+    }
+
+    /**
+     * Determine whether an overlay entry is selected by the overlay inclusion and exclusion rules.
+     *
+     * @param name     The name of the entry.
+     * @param includes The inclusion rules or {@code null} if all entries are included.
+     * @param excludes The exclusion rules or {@code null} if no entries are excluded.
+     * @return {@code true} if the entry is selected. Otherwise, {@code false}.
+     * @since 2.0.0
+     */
+    private boolean isSelected(final String name, final String[] includes, final String[] excludes) {
+        return (includes == null || matchesAny(name, includes)) && (excludes == null || !matchesAny(name, excludes));
+    }
+
+    /**
+     * Determine whether a name matches any of the patterns.
+     *
+     * @param name     The name.
+     * @param patterns The patterns.
+     * @return {@code true} if the name matches one of the patterns. Otherwise, {@code false}.
+     * @since 2.0.0
+     */
+    private boolean matchesAny(final String name, final String[] patterns) {
+        for (final String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, name, "/", true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Determine whether the file name should be filtered or not based on the list of excluded file extensions.
      *
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * The ZIP payload of a CRX archive. The payload is resolved lazily from its source which may be a byte array, a
+ * {@link ByteBuffer} (including a memory-mapped {@link java.nio.MappedByteBuffer}) or a region of a file. This allows
+ * archives to be moved between files without copying the payload onto the heap.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public abstract class CRXPayload {
+
+    /**
+     * The size of the buffer used when the payload has to be streamed through the JVM.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Create a payload backed by a byte array. The array is not copied.
+     *
+     * @param data The byte array.
+     * @return The payload.
+     */
+    public static CRXPayload ofBytes(final byte[] data) {
+        return new ByteBufferPayload(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a payload backed by the remaining bytes of a buffer. The buffer is not copied and its position and
+     * limit are not modified.
+     *
+     * @param buffer The buffer.
+     * @return The payload.
+     */
+    public static CRXPayload ofBuffer(final ByteBuffer buffer) {
+        return new ByteBufferPayload(buffer.slice());
+    }
+
+    /**
+     * Create a payload backed by a region of a file. The file is not opened until the payload is accessed.
+     *
+     * @param path   The file.
+     * @param offset The offset of the region within the file.
+     * @param length The length of the region.
+     * @return The payload.
+     */
+    public static CRXPayload ofFileRegion(final Path path, final long offset, final long length) {
+        return new FileRegionPayload(path, offset, length);
+    }
+
+    /**
+     * Create a payload backed by a memory-mapped region of a file.
+     *
+     * @param path   The file.
+     * @param offset The offset of the region within the file.
+     * @param length The length of the region.
+     * @return The payload.
+     * @throws IOException If the file could not be mapped.
+     */
+    public static CRXPayload mapFileRegion(final Path path, final long offset, final long length)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ByteBufferPayload(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        }
+    }
+
+    /**
+     * Get the size of the payload.
+     *
+     * @return The size in bytes.
+     */
+    public abstract long size();
+
+    /**
+     * Open a read-only channel positioned at the start of the payload. The caller is responsible for closing the
+     * channel.
+     *
+     * @return The channel.
+     * @throws IOException If the payload source could not be opened.
+     */
+    public abstract SeekableByteChannel openChannel() throws IOException;
+
+    /**
+     * Get the payload as a byte array, copying it onto the heap if it is not already backed by an array.
+     *
+     * @return The byte array.
+     * @throws IOException If the payload source could not be read.
+     */
+    public byte[] toByteArray() throws IOException {
+        if (size() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Payload is too large to be loaded into memory");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size());
+        try (SeekableByteChannel channel = openChannel()) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of payload");
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Update a message digest with the payload.
+     *
+     * @param digest The message digest.
+     * @throws IOException If the payload source could not be read.
+     */
+    public void update(final MessageDigest digest) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (SeekableByteChannel channel = openChannel()) {
+            while (channel.read(buffer) >= 0) {
+                ((Buffer) buffer).flip();
+                digest.update(buffer);
+                ((Buffer) buffer).clear();
+            }
+        }
+    }
+
+    /**
+     * Write the payload to a channel. Implementations avoid copying the payload through the JVM heap where the
+     * source and target allow it.
+     *
+     * @param target The target channel.
+     * @throws IOException If the payload source could not be read or the target could not be written.
+     */
+    public void transferTo(final WritableByteChannel target) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (SeekableByteChannel channel = openChannel()) {
+            while (channel.read(buffer) >= 0) {
+                ((Buffer) buffer).flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                ((Buffer) buffer).clear();
+            }
+        }
+    }
+}
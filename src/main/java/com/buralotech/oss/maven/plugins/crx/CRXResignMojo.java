@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Implement the resign goal for the plug-in. The resign goal replaces the signature of an existing Chrome Browser
+ * Extension, or signs a plain ZIP file, using a different public/private key. The ZIP payload is copied byte-for-byte
+ * so nothing is recompressed. CRX2 archives are converted to CRX3 unless a different version is requested.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "resign", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class CRXResignMojo extends AbstractMojo {
+
+    /**
+     * The extension of plain ZIP files.
+     */
+    private static final String ZIP_EXTENSION = ".zip";
+
+    /**
+     * The location of the CRX or ZIP file to re-sign which is used to override the default location calculated
+     * using the output directory final name and classifier.
+     */
+    @Parameter(property = "crxPath")
+    private File crxPath;
+
+    /**
+     * The location of the re-signed CRX file. If this is not specified then a CRX source file is replaced and a ZIP
+     * source file is signed into a CRX file with the same name alongside it.
+     */
+    @Parameter(property = "crxOutputPath")
+    private File outputPath;
+
+    /**
+     * The final name of the artifact.
+     */
+    @Parameter(defaultValue = "${project.build.finalName}", required = true)
+    private String finalName;
+
+    /**
+     * The build target directory.
+     */
+    @Parameter(defaultValue = "${project.build.directory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * An optional classifier for the artifact.
+     */
+    @Parameter
+    private String classifier;
+
+    /**
+     * The PEM file containing the new public/private key.
+     */
+    @Parameter(defaultValue = "${crxPEMFile}", required = true)
+    private File pemFile;
+
+    /**
+     * The password for the PEM file.
+     */
+    @Parameter(defaultValue = "${crxPEMPassword}")
+    private String pemPassword;
+
+    /**
+     * The version of the re-signed CRX file.
+     */
+    @Parameter(defaultValue = "3")
+    private int version;
+
+    /**
+     * A comma separated list of the names of the security providers (e.g. {@code SunJCE,BC}) that are preferred for
+     * signing the CRX file. The JDK providers are preferred by default because they were measured to be the fastest for
+     * RSA keys.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCryptoProviders")
+    private String cryptoProviders;
+
+    /**
+     * The archive helper is used to read and write the CRX archive.
+     */
+    @Component
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * The signature helper is used to sign the ZIP payload.
+     */
+    @Component
+    private SignatureHelper signatureHelper;
+
+    /**
+     * Called when the Maven plug-in is executing. It signs the ZIP payload of the source file with the new key and
+     * writes the CRX file.
+     *
+     * @throws MojoExecutionException If there was an error that should stop the build.
+     * @throws MojoFailureException   If there was an error but the build might be allowed to continue.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException, MojoFailureException {
+
+        final File sourceFile;
+
+        if (crxPath == null) {
+
+            // Generate CRX file name
+
+            final StringBuilder crxFilename = new StringBuilder();
+            crxFilename.append(finalName);
+            if (StringUtils.isNotEmpty(classifier)) {
+                crxFilename.append('-');
+                crxFilename.append(classifier);
+            }
+            crxFilename.append(".crx");
+            sourceFile = new File(outputDirectory, crxFilename.toString());
+        } else {
+            sourceFile = crxPath;
+        }
+        final File targetFile = outputPath == null ? getDefaultTargetFile(sourceFile) : outputPath;
+
+        if (version != 2 && version != 3) {
+            throw new MojoExecutionException("Version not supported: " + version);
+        }
+
+        try {
+            final CRXPayload payload = archiveHelper.readPayload(sourceFile);
+
+            // Sign the payload with the new key
+
+            final KeyPair keyPair = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+            final byte[] publicKey = keyPair.getPublic().getEncoded();
+            final SignatureHelper helper = getSignatureHelper();
+            final MessageDigest digest = helper.createDigest(version);
+            final byte[] signedHeaderData;
+            if (version == 3) {
+                signedHeaderData = CRX3Header.createSignedHeaderData(publicKey);
+                digest.update(CRX3Header.getSignedDataPrefix(signedHeaderData));
+            } else {
+                signedHeaderData = null;
+            }
+            payload.update(digest);
+            final byte[] signature = helper.signDigest(version, digest.digest(), keyPair.getPrivate());
+            final CRXArchive archive = new CRXArchive(version, publicKey, signature, signedHeaderData, payload);
+
+            // Write the CRX file via a temporary file if the payload is read from the file being replaced
+
+            if (sourceFile.getCanonicalFile().equals(targetFile.getCanonicalFile())) {
+                final File tempFile = File.createTempFile(targetFile.getName(), ".tmp",
+                        targetFile.getAbsoluteFile().getParentFile());
+                try {
+                    archiveHelper.writeArchive(tempFile, version, archive);
+                    moveFile(tempFile, targetFile);
+                } finally {
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+            } else {
+                archiveHelper.writeArchive(targetFile, version, archive);
+            }
+            getLog().info("Re-signed " + sourceFile + " as CRX" + version + " " + targetFile);
+        } catch (final FileNotFoundException | NoSuchFileException e) {
+            throw new MojoExecutionException("Could not find CRX archive", e);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not re-sign CRX archive", e);
+        } catch (final GeneralSecurityException e) {
+            throw new MojoExecutionException("Could not generate the signature for the CRX file", e);
+        }
+    }
+
+    /**
+     * Get the location of the re-signed CRX file when no output path is specified. A ZIP file is signed into a CRX
+     * file with the same name alongside it so that the ZIP file is not overwritten. Otherwise, the source file is
+     * replaced.
+     *
+     * @param sourceFile The CRX or ZIP file being re-signed.
+     * @return The location of the re-signed CRX file.
+     */
+    private static File getDefaultTargetFile(final File sourceFile) {
+        final String name = sourceFile.getName();
+        if (name.regionMatches(true, name.length() - ZIP_EXTENSION.length(), ZIP_EXTENSION, 0,
+                ZIP_EXTENSION.length())) {
+            return new File(sourceFile.getAbsoluteFile().getParentFile(),
+                    name.substring(0, name.length() - ZIP_EXTENSION.length()) + ".crx");
+        }
+        return sourceFile;
+    }
+
+    /**
+     * Move a file replacing the target file atomically if the file system supports it.
+     *
+     * @param source The file to move.
+     * @param target The target file.
+     * @throws IOException If the file could not be moved.
+     */
+    private void moveFile(final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Get the signature helper that prefers the configured security providers.
+     *
+     * @return The signature helper.
+     */
+    private SignatureHelper getSignatureHelper() {
+        final String[] providers = ParameterUtils.splitParameter(cryptoProviders);
+        return providers == null ? signatureHelper : signatureHelper.withProviders(providers);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Implement the sign-pending goal for the plug-in. The sign-pending goal finds the CRX files in the reactor that were
+ * packaged with deferred signing, loads the public/private key once and signs the recorded digests in parallel before
+ * assembling each CRX file from its signature and unsigned ZIP payload. The goal is not bound to a life-cycle phase
+ * because an aggregator bound in the parent POM would run before the modules have packaged their CRX files. It is
+ * invoked from the command line after the package phase instead.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "sign-pending", aggregator = true, threadSafe = true)
+public class CRXSignPendingMojo extends AbstractMojo {
+
+    /**
+     * The PEM file containing the public/private key.
+     */
+    @Parameter(defaultValue = "${crxPEMFile}", required = true)
+    private File pemFile;
+
+    /**
+     * The password for the PEM file.
+     */
+    @Parameter(defaultValue = "${crxPEMPassword}")
+    private String pemPassword;
+
+    /**
+     * The projects in the reactor whose build directories are searched for pending CRX files.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The number of threads used to sign the CRX files or zero to use one per available processor.
+     */
+    @Parameter(property = "crxSignThreads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * A comma separated list of the names of the security providers (e.g. {@code SunJCE,BC}) that are preferred for
+     * signing the digests.
+     */
+    @Parameter(property = "crxCryptoProviders")
+    private String cryptoProviders;
+
+    /**
+     * The signature helper is used to sign the digests.
+     */
+    @Component
+    private SignatureHelper signatureHelper;
+
+    /**
+     * The archive helper is used to output the CRX files.
+     */
+    @Component
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * The Maven project helper is used to attach the CRX files and their checksum sidecar files.
+     */
+    @Component
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * Called when the Maven plug-in is executing. It signs and assembles every pending CRX file in the reactor.
+     *
+     * @throws MojoExecutionException If the key could not be loaded or a CRX file could not be signed or written.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException {
+        final Map<File, MavenProject> descriptorFiles = new LinkedHashMap<>();
+        for (final MavenProject reactorProject : reactorProjects) {
+            final File[] files = new File(reactorProject.getBuild().getDirectory()).listFiles((dir, name) ->
+                    name.endsWith(".crx" + PendingSignature.EXTENSION));
+            if (files != null) {
+                for (final File file : files) {
+                    descriptorFiles.put(file, reactorProject);
+                }
+            }
+        }
+        if (descriptorFiles.isEmpty()) {
+            getLog().info("No pending CRX files to sign");
+            return;
+        }
+
+        final KeyPair keyPair;
+        try {
+            keyPair = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+        } catch (final IOException | GeneralSecurityException e) {
+            throw new MojoExecutionException("Could not load the public/private key from the PEM file", e);
+        }
+        final String[] providers = ParameterUtils.splitParameter(cryptoProviders);
+        final SignatureHelper helper = providers == null ? signatureHelper : signatureHelper.withProviders(providers);
+        try {
+            final List<String[]> checksumAlgorithms = new ArrayList<>();
+            for (final File descriptorFile : descriptorFiles.keySet()) {
+                checksumAlgorithms.add(PendingSignature.load(descriptorFile).getChecksumAlgorithms());
+            }
+            final List<MavenProject> projects = new ArrayList<>(descriptorFiles.values());
+            final List<File> crxFiles = new PendingSigner(threads, helper, archiveHelper, keyPair)
+                    .sign(descriptorFiles.keySet());
+            for (int i = 0; i < crxFiles.size(); i++) {
+                attachArtifacts(projects.get(i), crxFiles.get(i), checksumAlgorithms.get(i));
+                getLog().info("Signed " + crxFiles.get(i));
+            }
+        } catch (final GeneralSecurityException e) {
+            throw new MojoExecutionException("Could not generate the signature for a CRX file", e);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not sign the pending CRX files", e);
+        }
+    }
+
+    /**
+     * Attach a CRX file that has been signed and its checksum sidecar files to the project that packaged it. The
+     * classifier is recovered from the name of the CRX file which is the final name of the project optionally
+     * followed by a hyphen and the classifier.
+     *
+     * @param project            The project that packaged the CRX file.
+     * @param crxFile            The CRX file.
+     * @param checksumAlgorithms The digest algorithms for the checksum sidecar files or {@code null}.
+     */
+    private void attachArtifacts(final MavenProject project, final File crxFile, final String[] checksumAlgorithms) {
+        final String finalName = project.getBuild().getFinalName();
+        final String name = crxFile.getName().substring(0, crxFile.getName().length() - ".crx".length());
+        final String classifier;
+        if (name.startsWith(finalName + "-")) {
+            classifier = name.substring(finalName.length() + 1);
+        } else {
+            classifier = null;
+        }
+        if (StringUtils.isNotEmpty(classifier)) {
+            projectHelper.attachArtifact(project, "crx", classifier, crxFile);
+        } else {
+            project.getArtifact().setFile(crxFile);
+        }
+        if (checksumAlgorithms != null) {
+            for (final String algorithm : checksumAlgorithms) {
+                projectHelper.attachArtifact(project, "crx." + ChecksumUtils.getExtension(algorithm), classifier,
+                        ChecksumUtils.getSidecarFile(crxFile, algorithm));
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Implement the signing-agent goal for the plug-in. The signing-agent goal decrypts the PEM file once and runs a
+ * {@link SigningAgent} that signs digests for the builds on the same machine that enable the signing agent. The agent
+ * runs until the build is interrupted.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "signing-agent", requiresProject = false, threadSafe = true)
+public class CRXSigningAgentMojo extends AbstractMojo {
+
+    /**
+     * The PEM file containing the public/private key.
+     */
+    @Parameter(defaultValue = "${crxPEMFile}", required = true)
+    private File pemFile;
+
+    /**
+     * The password for the PEM file.
+     */
+    @Parameter(defaultValue = "${crxPEMPassword}")
+    private String pemPassword;
+
+    /**
+     * The directory in which the agent publishes the port and access token that builds use to reach it.
+     */
+    @Parameter(property = "crxSigningAgentDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/agents", required = true)
+    private File directory;
+
+    /**
+     * The number of threads that sign digests or zero to use one per available processor.
+     */
+    @Parameter(property = "crxSigningAgentThreads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * A comma separated list of the names of the security providers (e.g. {@code SunJCE,BC}) that are preferred for
+     * signing the digests.
+     */
+    @Parameter(property = "crxCryptoProviders")
+    private String cryptoProviders;
+
+    /**
+     * The signature helper is used to sign the digests.
+     */
+    @Component
+    private SignatureHelper signatureHelper;
+
+    /**
+     * Called when the Maven plug-in is executing. It loads the key pair from the PEM file, starts the agent and waits
+     * until the build is interrupted.
+     *
+     * @throws MojoExecutionException If the key pair could not be loaded or the agent could not be started.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException {
+        final KeyPair keyPair;
+        try {
+            keyPair = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+        } catch (final IOException | GeneralSecurityException e) {
+            throw new MojoExecutionException("Could not load the public/private key from the PEM file", e);
+        }
+        final String[] providers = ParameterUtils.splitParameter(cryptoProviders);
+        final SignatureHelper helper = providers == null ? signatureHelper : signatureHelper.withProviders(providers);
+        try (SigningAgent agent = new SigningAgent(pemFile, keyPair, helper, directory, threads)) {
+            getLog().info("Signing agent for " + pemFile.getAbsolutePath() + " listening on port " + agent.getPort()
+                    + " published in " + agent.getAgentFile().getAbsolutePath());
+            new CountDownLatch(1).await();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not start the signing agent", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -19,11 +19,9 @@ package com.buralotech.oss.maven.plugins.crx;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.security.GeneralSecurityException;
-import java.security.KeyFactory;
-import java.security.PublicKey;
-import java.security.spec.KeySpec;
-import java.security.spec.X509EncodedKeySpec;
+import java.util.List;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -36,14 +34,25 @@ import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Implement the crx-verify goal for the plug-in. The crx-verify goal verifies the signature of a Chrome Browser
- * Extension.
+ * Extension and optionally checks the integrity of every entry in its ZIP payload. A quick level of verification only
+ * checks the CRX header against the expected version and public key.
  *
  * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
  * @since 1.1.0
  */
-@Mojo(name = "crx-verify", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "crx-verify", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
 public class CRXVerifyMojo extends AbstractMojo {
 
+    /**
+     * The verification level that only checks the CRX header.
+     */
+    private static final String LEVEL_QUICK = "quick";
+
+    /**
+     * The verification level that checks the CRX header and the signature.
+     */
+    private static final String LEVEL_FULL = "full";
+
     /**
      * The location of the Chrome Extension which is used to override the default location calculated using the
      * output directory final name and classifier.
@@ -69,6 +78,90 @@ public class CRXVerifyMojo extends AbstractMojo {
     @Parameter
     private String classifier;
 
+    /**
+     * The level of verification which is either {@code quick} or {@code full}. The quick level only reads the CRX
+     * header to check the magic number, version and public key against the expected version and key fingerprints. It
+     * does not read the ZIP payload. The full level also verifies the signature and optionally the entries.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxVerifyLevel", defaultValue = LEVEL_FULL)
+    private String level;
+
+    /**
+     * The expected version of the CRX archive format or zero if any supported version is accepted.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxExpectedVersion", defaultValue = "0")
+    private int expectedVersion;
+
+    /**
+     * A comma separated list of the SHA-256 fingerprints of the public keys that the CRX archive may be signed with.
+     * Each fingerprint is the hexadecimal SHA-256 hash of the DER encoded public key and may contain colons. Any key
+     * is accepted if no fingerprints are specified.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxKeyFingerprints")
+    private String keyFingerprints;
+
+    /**
+     * A comma separated list of the names of the security providers (e.g. {@code SunJCE,BC}) that are preferred for
+     * verifying the signature of the CRX file. The JDK providers are preferred by default because they were measured to
+     * be the fastest for RSA keys.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxCryptoProviders")
+    private String cryptoProviders;
+
+    /**
+     * Specify that the integrity of the ZIP payload should also be checked by inflating every entry and checking its
+     * CRC and size against the central directory.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxVerifyEntries", defaultValue = "false")
+    private boolean verifyEntries;
+
+    /**
+     * The largest uncompressed size in bytes of an entry that will be inflated when checking the integrity of the
+     * ZIP payload. Larger entries are reported as problems.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "104857600")
+    private long maxEntrySize;
+
+    /**
+     * The number of threads used to check the integrity of the ZIP payload or zero to use one per available
+     * processor.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(defaultValue = "0")
+    private int threads;
+
+    /**
+     * Specify that verification results should be cached so that an archive that was already verified is not read
+     * and verified again. The results are keyed by the checksum of the archive and the checksum of an unchanged
+     * archive is found from its size and modification time.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxVerifyCache", defaultValue = "false")
+    private boolean useCache;
+
+    /**
+     * The directory in which verification results are cached. The directory can be shared between builds.
+     *
+     * @since 2.0.0
+     */
+    @Parameter(property = "crxVerifyCacheDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/verified", required = true)
+    private File cacheDirectory;
+
     /**
      * The archive helper is used to read the CRX archive.
      */
@@ -108,15 +201,63 @@ public class CRXVerifyMojo extends AbstractMojo {
             crxFile = crxPath;
         }
 
+        final boolean quick = LEVEL_QUICK.equalsIgnoreCase(level);
+        if (!quick && !LEVEL_FULL.equalsIgnoreCase(level)) {
+            throw new MojoExecutionException("Verification level not supported: " + level);
+        }
+
         try {
+            if (quick) {
+                final CRXArchive archive = archiveHelper.readArchive(crxFile);
+                checkHeader(archive.getVersion(), VerifyUtils.getKeyFingerprint(archive.getPublicKey()));
+                getLog().info("Checked the header of " + crxFile);
+                return;
+            }
+
+            final VerificationCache cache;
+            final String checksum;
+            if (useCache) {
+                cache = new VerificationCache(cacheDirectory);
+                checksum = cache.getChecksum(crxFile);
+                final VerificationCache.Result cached = cache.getResult(checksum);
+                if (cached != null && isReusable(cached)) {
+                    getLog().info("Using cached verification result for " + crxFile);
+                    checkHeader(cached.getVersion(), cached.getKeyFingerprint());
+                    if (!cached.isValid()) {
+                        throw new MojoFailureException(cached.isEntriesVerified() ? "The ZIP payload is not valid"
+                                : "The signature is not valid");
+                    }
+                    return;
+                }
+            } else {
+                cache = null;
+                checksum = null;
+            }
+
             final CRXArchive archive = archiveHelper.readArchive(crxFile);
-            final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            final KeySpec keySpec = new X509EncodedKeySpec(archive.getPublicKey());
-            final PublicKey publicKey = keyFactory.generatePublic(keySpec);
-            if (!signatureHelper.check(archive.getData(), publicKey, archive.getSignature())) {
+            final String keyFingerprint = VerifyUtils.getKeyFingerprint(archive.getPublicKey());
+            checkHeader(archive.getVersion(), keyFingerprint);
+            final boolean valid = VerifyUtils.verifySignature(getSignatureHelper(), archive);
+            if (!valid) {
+                putResult(cache, checksum, new VerificationCache.Result(archive.getVersion(), false, false,
+                        keyFingerprint, LEVEL_FULL, maxEntrySize));
                 throw new MojoFailureException("The signature is not valid");
             }
-        } catch (final FileNotFoundException e) {
+            if (verifyEntries) {
+                final List<String> problems = new EntryVerifier(threads, maxEntrySize).verify(archive.getPayload());
+                if (!problems.isEmpty()) {
+                    for (final String problem : problems) {
+                        getLog().error(problem);
+                    }
+                    putResult(cache, checksum, new VerificationCache.Result(archive.getVersion(), false, true,
+                            keyFingerprint, LEVEL_FULL, maxEntrySize));
+                    throw new MojoFailureException("The ZIP payload is not valid: " + problems.size()
+                            + " problem(s) found");
+                }
+            }
+            putResult(cache, checksum, new VerificationCache.Result(archive.getVersion(), true, verifyEntries,
+                    keyFingerprint, LEVEL_FULL, maxEntrySize));
+        } catch (final FileNotFoundException | NoSuchFileException e) {
             throw new MojoExecutionException("Could not find CRX archive", e);
         } catch (final IOException e) {
             throw new MojoExecutionException("Could not load CRX archive", e);
@@ -124,4 +265,72 @@ public class CRXVerifyMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         }
     }
+
+    /**
+     * Check the version and public key of the CRX archive against the expected version and key fingerprints.
+     *
+     * @param version        The version of the CRX archive format.
+     * @param keyFingerprint The SHA-256 fingerprint of the public key.
+     * @throws MojoFailureException If the version or the public key is not the one expected.
+     */
+    private void checkHeader(final int version, final String keyFingerprint) throws MojoFailureException {
+        if (expectedVersion != 0 && version != expectedVersion) {
+            throw new MojoFailureException("Expected a CRX" + expectedVersion + " archive but found CRX" + version);
+        }
+        final String[] fingerprints = ParameterUtils.splitParameter(keyFingerprints);
+        if (fingerprints != null) {
+            for (final String fingerprint : fingerprints) {
+                if (fingerprint.replace(":", "").equalsIgnoreCase(keyFingerprint)) {
+                    return;
+                }
+            }
+            throw new MojoFailureException("The public key fingerprint " + keyFingerprint
+                    + " does not match the expected key fingerprints");
+        }
+    }
+
+    /**
+     * Determine whether a cached result answers the checks that were requested. A valid result can be reused if it
+     * covers the entry check when one was requested. An invalid result can be reused if it was caused by the
+     * signature or the entry check was requested again. Results that do not record the version, were produced by a
+     * different level of verification or with a different largest entry size are not reused.
+     *
+     * @param cached The cached result.
+     * @return {@code true} if the cached result can be reused. Otherwise, {@code false}.
+     */
+    private boolean isReusable(final VerificationCache.Result cached) {
+        if (cached.getVersion() == 0 || !LEVEL_FULL.equals(cached.getLevel())
+                || cached.getMaxEntrySize() != maxEntrySize) {
+            return false;
+        } else if (cached.isValid()) {
+            return cached.isEntriesVerified() || !verifyEntries;
+        } else {
+            return !cached.isEntriesVerified() || verifyEntries;
+        }
+    }
+
+    /**
+     * Record the outcome of verifying the archive if the cache is enabled.
+     *
+     * @param cache    The cache or {@code null} if the cache is not enabled.
+     * @param checksum The checksum of the archive.
+     * @param result   The outcome.
+     * @throws IOException If the result could not be recorded.
+     */
+    private void putResult(final VerificationCache cache, final String checksum,
+                           final VerificationCache.Result result) throws IOException {
+        if (cache != null) {
+            cache.putResult(checksum, result);
+        }
+    }
+
+    /**
+     * Get the signature helper that prefers the configured security providers.
+     *
+     * @return The signature helper.
+     */
+    private SignatureHelper getSignatureHelper() {
+        final String[] providers = ParameterUtils.splitParameter(cryptoProviders);
+        return providers == null ? signatureHelper : signatureHelper.withProviders(providers);
+    }
 }
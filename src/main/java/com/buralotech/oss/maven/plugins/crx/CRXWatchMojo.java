@@ -0,0 +1,446 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.MavenFileFilter;
+import org.apache.maven.shared.filtering.MavenFilteringException;
+import org.apache.maven.shared.filtering.MavenResourcesExecution;
+import org.apache.maven.shared.filtering.MavenResourcesFiltering;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import static org.codehaus.plexus.archiver.util.DefaultFileSet.fileSet;
+
+/**
+ * Implement the watch goal for the plug-in. The watch goal stages the Chrome Extension sources into the unpacked
+ * directory that the crx goal packages and that can be loaded into Chrome as an unpacked extension. It then watches
+ * the source directory and re-stages only the files that changed, applying the same filtering as the crx goal.
+ * Optionally the CRX file is re-packaged after each change by copying the unchanged entries from the previous CRX
+ * file in their compressed form and only deflating the changed files. The goal runs until the build is interrupted.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Mojo(name = "watch", threadSafe = true)
+public class CRXWatchMojo extends AbstractMojo {
+
+    /**
+     * The PEM file containing the public/private key that is used when the CRX file is re-packaged.
+     */
+    @Parameter(defaultValue = "${crxPEMFile}")
+    private File pemFile;
+
+    /**
+     * The password for the PEM file.
+     */
+    @Parameter(defaultValue = "${crxPEMPassword}")
+    private String pemPassword;
+
+    /**
+     * The source directory for the Chrome Extension.
+     */
+    @Parameter(defaultValue = "${basedir}/src/main/chrome", required = true)
+    private File crxSourceDirectory;
+
+    /**
+     * A comma separated list of inclusion rules for the re-packaged CRX file.
+     */
+    @Parameter(required = false)
+    private String packagingIncludes;
+
+    /**
+     * A comma separated list of exclusion rules for the re-packaged CRX file.
+     */
+    @Parameter(required = false)
+    private String packagingExcludes;
+
+    /**
+     * The path within the staging directory of the content hashes written by the crx goal. They are excluded from the
+     * re-packaged CRX file because they are not updated when the sources change.
+     */
+    @Parameter(defaultValue = "_metadata/computed_hashes.json")
+    private String contentHashesPath;
+
+    /**
+     * The final name of the generated artifact.
+     */
+    @Parameter(defaultValue = "${project.build.finalName}", required = true)
+    private String finalName;
+
+    /**
+     * The build target directory.
+     */
+    @Parameter(defaultValue = "${project.build.directory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * An optional classifier for the artifact.
+     */
+    @Parameter
+    private String classifier;
+
+    /**
+     * Specify that the CRX sources should be filtered.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean filtering;
+
+    /**
+     * Filters (property files) to include during the interpolation of the pom.xml.
+     */
+    @Parameter
+    private List filters;
+
+    /**
+     * A list of file extensions that should not be filtered if filtering is enabled.
+     */
+    @Parameter
+    private List nonFilteredFileExtensions;
+
+    /**
+     * The time in milliseconds without further changes after which a batch of changes is staged.
+     */
+    @Parameter(property = "crxWatchDebounce", defaultValue = "20")
+    private long debounce;
+
+    /**
+     * Specify that the CRX file should be re-packaged and signed after each batch of changes.
+     */
+    @Parameter(property = "crxWatchRepackage", defaultValue = "false")
+    private boolean repackage;
+
+    /**
+     * Specify that the digest should be signed by the signing agent for the PEM file if one is running.
+     */
+    @Parameter(property = "crxSigningAgent", defaultValue = "false")
+    private boolean useSigningAgent;
+
+    /**
+     * The directory in which signing agents publish the port and access token that builds use to reach them.
+     */
+    @Parameter(property = "crxSigningAgentDirectory",
+            defaultValue = "${settings.localRepository}/.cache/crx-maven-plugin/agents", required = true)
+    private File signingAgentDirectory;
+
+    /**
+     * The Maven project.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The current Maven session.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * The archive helper is used to read the previous CRX file when it is re-packaged.
+     */
+    @Component
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * Provides the archiver component that is used to re-package the CRX file.
+     */
+    @Inject
+    private Provider<CRXArchiver> crxArchiverProvider;
+
+    /**
+     * Used to copy the file with resource filtering.
+     */
+    @Component(role = MavenFileFilter.class, hint = "default")
+    private MavenFileFilter mavenFileFilter;
+
+    /**
+     * Used to perform the file filtering.
+     */
+    @Component(role = MavenResourcesFiltering.class, hint = "default")
+    private MavenResourcesFiltering mavenResourcesFiltering;
+
+    /**
+     * File filtering wrappers.
+     */
+    private List filterWrappers;
+
+    /**
+     * Called when the Maven plug-in is executing. It stages all the sources and then re-stages the changed sources
+     * until the build is interrupted.
+     *
+     * @throws MojoExecutionException If the sources could not be staged or watched.
+     */
+    @Override
+    public final void execute() throws MojoExecutionException {
+        if (!new File(crxSourceDirectory, "manifest.json").exists()) {
+            throw new MojoExecutionException("Missing manifest.json file");
+        }
+        if (repackage && (pemFile == null || !pemFile.isFile())) {
+            throw new MojoExecutionException("A PEM file is required to re-package the CRX file");
+        }
+        final StringBuilder crxFilename = new StringBuilder();
+        crxFilename.append(finalName);
+        if (StringUtils.isNotEmpty(classifier)) {
+            crxFilename.append('-');
+            crxFilename.append(classifier);
+        }
+        final File crxDirectory = new File(outputDirectory, crxFilename.toString());
+        final File crxFile = new File(outputDirectory, crxFilename + ".crx");
+
+        try (SourceWatcher watcher = new SourceWatcher(crxSourceDirectory, debounce)) {
+            final long start = System.nanoTime();
+            final List<String> names = new ArrayList<>();
+            listFiles(crxSourceDirectory, "", names);
+            for (final String name : names) {
+                stage(name, crxDirectory);
+            }
+            getLog().info("Staged " + names.size() + " files into " + crxDirectory + " in " + elapsedMillis(start)
+                    + " ms");
+            if (repackage) {
+                repackage(crxDirectory, crxFile, null);
+            }
+            getLog().info("Watching " + crxSourceDirectory + " for changes");
+            while (true) {
+                final Set<String> changes = watcher.poll(Long.MAX_VALUE);
+                if (changes != null && !changes.isEmpty()) {
+                    update(crxDirectory, crxFile, changes);
+                }
+            }
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Could not watch " + crxSourceDirectory, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Re-stage the changed sources and optionally re-package the CRX file. Failures are logged so that watching
+     * continues and the next change can fix the problem.
+     *
+     * @param crxDirectory The staging directory.
+     * @param crxFile      The CRX file.
+     * @param changes      The paths of the changed sources relative to the source directory.
+     */
+    private void update(final File crxDirectory, final File crxFile, final Set<String> changes) {
+        final long start = System.nanoTime();
+        try {
+            for (final String name : changes) {
+                stage(name, crxDirectory);
+            }
+            getLog().info("Updated " + changes.size() + " files in " + elapsedMillis(start) + " ms: " + changes);
+            if (repackage) {
+                repackage(crxDirectory, crxFile, changes);
+            }
+        } catch (final MojoExecutionException e) {
+            getLog().error(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Copy a source into the staging directory with filtering or remove it from the staging directory if the source
+     * was deleted.
+     *
+     * @param name         The path of the source relative to the source directory.
+     * @param crxDirectory The staging directory.
+     * @throws MojoExecutionException If the source could not be staged.
+     */
+    private void stage(final String name, final File crxDirectory) throws MojoExecutionException {
+        final File source = new File(crxSourceDirectory, name);
+        final File destination = new File(crxDirectory, name);
+        try {
+            if (source.isFile()) {
+                final File destinationDirectory = destination.getParentFile();
+                if (!destinationDirectory.exists() && !destinationDirectory.mkdirs()) {
+                    throw new MojoExecutionException("Could not create directory: "
+                            + destinationDirectory.getAbsolutePath());
+                }
+                final Object event = FlightRecorderUtils.beginCopyFile();
+                final boolean filtered = filtering
+                        && mavenResourcesFiltering.filteredFileExtension(source.getName(), nonFilteredFileExtensions);
+                if (filtered) {
+                    mavenFileFilter.copyFile(source, destination, true, getFilterWrappers(), null);
+                } else {
+                    FileUtils.copyFile(source, destination);
+                }
+                FlightRecorderUtils.endCopyFile(event, destination, filtered);
+            } else if (!source.exists()) {
+                if (destination.isDirectory()) {
+                    FileUtils.deleteDirectory(destination);
+                } else {
+                    Files.deleteIfExists(destination.toPath());
+                }
+            }
+        } catch (final MavenFilteringException e) {
+            throw new MojoExecutionException("Failed to filter file: " + source.getAbsolutePath(), e);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Error copying file: " + source.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Re-package and sign the CRX file. If the previous CRX file exists the entries for unchanged sources are copied
+     * from it in their compressed form so only the changed sources are deflated. Content hashes left in the staging
+     * directory by the crx goal are stale once a source changes so they are not packaged.
+     *
+     * @param crxDirectory The staging directory.
+     * @param crxFile      The CRX file.
+     * @param changes      The paths of the changed sources or {@code null} if the CRX file is packaged from scratch.
+     * @throws MojoExecutionException If the CRX file could not be packaged.
+     */
+    private void repackage(final File crxDirectory, final File crxFile, final Set<String> changes)
+            throws MojoExecutionException {
+        final long start = System.nanoTime();
+        final CRXArchiver crxArchiver = crxArchiverProvider.get();
+        crxArchiver.setPemFile(pemFile);
+        crxArchiver.setPemPassword(pemPassword);
+        if (useSigningAgent) {
+            crxArchiver.setSigningAgentDirectory(signingAgentDirectory);
+        }
+        crxArchiver.addFileSet(fileSet(crxDirectory).includeExclude(ParameterUtils.splitParameter(packagingIncludes),
+                getPackagingExcludes()));
+        crxArchiver.setDestFile(crxFile);
+        final File previousFile = new File(crxFile.getPath() + ".previous");
+        try {
+            int copied = 0;
+            if (changes != null && crxFile.isFile()) {
+                Files.move(crxFile.toPath(), previousFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                final List<String> unchanged = new ArrayList<>();
+                for (final CRXEntry entry : archiveHelper.listEntries(previousFile)) {
+                    if (!entry.isDirectory() && !entry.getName().equals(contentHashesPath)
+                            && !isChanged(entry.getName(), changes)) {
+                        unchanged.add(entry.getName());
+                    }
+                }
+                crxArchiver.addRawEntries(archiveHelper.readPayload(previousFile), unchanged);
+                copied = unchanged.size();
+            }
+            crxArchiver.createArchive();
+            getLog().info("Packaged " + crxFile + " copying " + copied + " unchanged entries in "
+                    + elapsedMillis(start) + " ms");
+        } catch (final IOException | ArchiverException e) {
+            throw new MojoExecutionException("Failed to package and sign the Google Chrome Extension", e);
+        } finally {
+            try {
+                Files.deleteIfExists(previousFile.toPath());
+            } catch (final IOException e) {
+                getLog().debug("Could not delete " + previousFile);
+            }
+        }
+    }
+
+    /**
+     * Get the packaging exclusion rules extended to exclude the content hashes written by the crx goal.
+     *
+     * @return The exclusion rules.
+     */
+    private String[] getPackagingExcludes() {
+        final String[] excludes = ParameterUtils.splitParameter(packagingExcludes);
+        if (excludes == null) {
+            return new String[]{contentHashesPath};
+        }
+        final String[] extended = Arrays.copyOf(excludes, excludes.length + 1);
+        extended[excludes.length] = contentHashesPath;
+        return extended;
+    }
+
+    /**
+     * Determine whether an entry was affected by a change. A change to a path that no longer exists may be the
+     * deletion of a directory so it affects all the entries below it.
+     *
+     * @param name    The name of the entry.
+     * @param changes The paths of the changed sources.
+     * @return {@code true} if the entry was affected. Otherwise, {@code false}.
+     */
+    private static boolean isChanged(final String name, final Set<String> changes) {
+        for (final String change : changes) {
+            if (name.equals(change) || name.startsWith(change + '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recursively list the paths of the files in a directory tree.
+     *
+     * @param directory The directory.
+     * @param prefix    The path of the directory relative to the root of the tree.
+     * @param names     The list to which the paths are added.
+     */
+    private static void listFiles(final File directory, final String prefix, final List<String> names) {
+        final File[] items = directory.listFiles();
+        if (items != null) {
+            for (final File item : items) {
+                if (item.isDirectory()) {
+                    listFiles(item, prefix + item.getName() + '/', names);
+                } else {
+                    names.add(prefix + item.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of milliseconds that have elapsed since a start time.
+     *
+     * @param start The start time from {@link System#nanoTime()}.
+     * @return The elapsed time in milliseconds.
+     */
+    private static long elapsedMillis(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Build a list of filter wrappers.
+     *
+     * @return The list of filter wrappers.
+     * @throws MojoExecutionException If there was a problem building the list of filter wrappers.
+     */
+    private List getFilterWrappers() throws MojoExecutionException {
+        if (filterWrappers == null) {
+            try {
+                final MavenResourcesExecution mavenResourcesExecution = new MavenResourcesExecution();
+                mavenResourcesExecution.setEscapeString("\\");
+                filterWrappers = mavenFileFilter.getDefaultFilterWrappers(project, filters, true, session,
+                        mavenResourcesExecution);
+            } catch (final MavenFilteringException e) {
+                throw new MojoExecutionException("Failed to build filtering wrappers: " + e.getMessage(), e);
+            }
+        }
+        return filterWrappers;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Static helper methods for producing checksums and checksum sidecar files.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class ChecksumUtils {
+
+    /**
+     * The characters used to encode a byte array as a hexadecimal string.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private ChecksumUtils() {
+    }
+
+    /**
+     * Encode a byte array as a lower case hexadecimal string.
+     *
+     * @param bytes The byte array.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Get the file extension used for checksum sidecar files produced with a digest algorithm. For example,
+     * {@code SHA-256} becomes {@code sha256}.
+     *
+     * @param algorithm The digest algorithm.
+     * @return The file extension.
+     */
+    public static String getExtension(final String algorithm) {
+        return algorithm.replace("-", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the checksum sidecar file for a file and digest algorithm.
+     *
+     * @param file      The file.
+     * @param algorithm The digest algorithm.
+     * @return The checksum sidecar file.
+     */
+    public static File getSidecarFile(final File file, final String algorithm) {
+        return new File(file.getPath() + '.' + getExtension(algorithm));
+    }
+
+    /**
+     * Compute the checksum of a file.
+     *
+     * @param file      The file.
+     * @param algorithm The digest algorithm (e.g. {@code SHA-256}).
+     * @return The checksum as a lower case hexadecimal string.
+     * @throws IOException If the file could not be read or the algorithm is not supported.
+     */
+    public static String checksum(final File file, final String algorithm) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("Checksum algorithm not supported: " + algorithm, e);
+        }
+        final byte[] buffer = new byte[CRXPayload.BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return toHex(digest.digest());
+    }
+}
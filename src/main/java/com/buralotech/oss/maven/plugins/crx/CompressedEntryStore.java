@@ -0,0 +1,343 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A content-addressed store of deflated entry data that can be shared by every build on a machine. Each blob is keyed
+ * by the SHA-256 hash of the uncompressed content and the compression settings and records the CRC and sizes that are
+ * needed to copy the compressed data into a ZIP file without deflating the content again. Blobs are written via a
+ * temporary file and an atomic move so readers never see a partially written blob. The least recently used blobs are
+ * evicted when the store grows beyond its size limit and an exclusive file lock ensures that only one process evicts
+ * blobs at a time.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class CompressedEntryStore {
+
+    /**
+     * The magic number at the start of every blob.
+     */
+    private static final int MAGIC = 0x43525842;
+
+    /**
+     * The compression level used for the blobs.
+     */
+    private static final int LEVEL = Deflater.BEST_COMPRESSION;
+
+    /**
+     * The suffix of the blob files which identifies the compression settings.
+     */
+    private static final String SUFFIX = "-deflate" + LEVEL + ".blob";
+
+    /**
+     * The name of the file that is locked while blobs are evicted.
+     */
+    private static final String LOCK_FILE = "store.lock";
+
+    /**
+     * The size of the header that precedes the compressed data in a blob.
+     */
+    private static final int HEADER_SIZE = 4 + 8 + 8;
+
+    /**
+     * Serialises the attempts to lock the store within this JVM because file locks are held by the whole process.
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    /**
+     * The root directory of the store.
+     */
+    private final File directory;
+
+    /**
+     * The size in bytes beyond which the least recently used blobs are evicted.
+     */
+    private final long maxSize;
+
+    /**
+     * Initialise the store.
+     *
+     * @param storeDirectory The root directory of the store.
+     * @param maxStoreSize   The size in bytes beyond which the least recently used blobs are evicted or zero if the
+     *                       size is not limited.
+     */
+    public CompressedEntryStore(final File storeDirectory, final long maxStoreSize) {
+        directory = storeDirectory;
+        maxSize = maxStoreSize;
+    }
+
+    /**
+     * Get the blob for content marking the blob as recently used.
+     *
+     * @param sha256 The SHA-256 hash of the content as a lower case hexadecimal string.
+     * @return The blob or {@code null} if the store does not hold the content or the blob is truncated.
+     * @throws IOException If the blob could not be read.
+     */
+    public Blob get(final String sha256) throws IOException {
+        final File file = getBlobFile(sha256);
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            final long crc = in.readLong();
+            final long size = in.readLong();
+            final Blob blob = new Blob(file, crc, size, file.length() - HEADER_SIZE);
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+            return blob;
+        } catch (final NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deflate content and add it to the store unless another build added it first.
+     *
+     * @param sha256 The SHA-256 hash of the content as a lower case hexadecimal string.
+     * @param source The content which is read but not closed.
+     * @return The blob.
+     * @throws IOException If the content could not be read or the blob could not be written.
+     */
+    public Blob put(final String sha256, final InputStream source) throws IOException {
+        final File file = getBlobFile(sha256);
+        final File blobDirectory = file.getParentFile();
+        Files.createDirectories(blobDirectory.toPath());
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", blobDirectory);
+        try {
+            final CRC32 crc = new CRC32();
+            long size = 0;
+            final Deflater deflater = new Deflater(LEVEL, true);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+                final DataOutputStream header = new DataOutputStream(out);
+                header.writeInt(MAGIC);
+                header.writeLong(0L);
+                header.writeLong(0L);
+                header.flush();
+                final DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater,
+                        CRXPayload.BUFFER_SIZE);
+                final byte[] buffer = new byte[CRXPayload.BUFFER_SIZE];
+                int count;
+                while ((count = source.read(buffer)) >= 0) {
+                    crc.update(buffer, 0, count);
+                    deflated.write(buffer, 0, count);
+                    size += count;
+                }
+                deflated.finish();
+            } finally {
+                deflater.end();
+            }
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                ((Buffer) header.putInt(MAGIC).putLong(crc.getValue()).putLong(size)).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+            final Blob blob = new Blob(file, crc.getValue(), size, tempFile.length() - HEADER_SIZE);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return blob;
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Evict the least recently used blobs until the store is within its size limit. Nothing is evicted if another
+     * process is already evicting blobs.
+     *
+     * @return The number of blobs that were evicted.
+     * @throws IOException If the store could not be locked or listed.
+     */
+    public int evict() throws IOException {
+        if (maxSize <= 0 || !directory.isDirectory()) {
+            return 0;
+        }
+        synchronized (JVM_LOCK) {
+            try (FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.tryLock()) {
+                if (lock == null) {
+                    return 0;
+                }
+                final List<File> blobs = new ArrayList<>();
+                long total = 0;
+                final File[] subdirectories = directory.listFiles(File::isDirectory);
+                if (subdirectories != null) {
+                    for (final File subdirectory : subdirectories) {
+                        final File[] files = subdirectory.listFiles((dir, name) -> name.endsWith(".blob"));
+                        if (files != null) {
+                            for (final File file : files) {
+                                blobs.add(file);
+                                total += file.length();
+                            }
+                        }
+                    }
+                }
+                if (total <= maxSize) {
+                    return 0;
+                }
+                blobs.sort(Comparator.comparingLong(File::lastModified));
+                int evicted = 0;
+                for (final File blob : blobs) {
+                    if (total <= maxSize) {
+                        break;
+                    }
+                    final long length = blob.length();
+                    if (blob.delete()) {
+                        total -= length;
+                        evicted++;
+                    }
+                }
+                return evicted;
+            }
+        }
+    }
+
+    /**
+     * Get the file that holds the blob for content. Blobs are spread over sub-directories named after the first two
+     * characters of the hash.
+     *
+     * @param sha256 The SHA-256 hash of the content as a lower case hexadecimal string.
+     * @return The file.
+     */
+    private File getBlobFile(final String sha256) {
+        return new File(new File(directory, sha256.substring(0, 2)), sha256 + SUFFIX);
+    }
+
+    /**
+     * Deflated content held by the store.
+     */
+    public static final class Blob {
+
+        /**
+         * The file that holds the blob.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 of the uncompressed content.
+         */
+        private final long crc;
+
+        /**
+         * The size of the uncompressed content.
+         */
+        private final long size;
+
+        /**
+         * The size of the compressed content.
+         */
+        private final long compressedSize;
+
+        /**
+         * Initialise the blob.
+         *
+         * @param blobFile              The file that holds the blob.
+         * @param contentCrc            The CRC-32 of the uncompressed content.
+         * @param contentSize           The size of the uncompressed content.
+         * @param contentCompressedSize The size of the compressed content.
+         */
+        private Blob(final File blobFile, final long contentCrc, final long contentSize,
+                     final long contentCompressedSize) {
+            file = blobFile;
+            crc = contentCrc;
+            size = contentSize;
+            compressedSize = contentCompressedSize;
+        }
+
+        /**
+         * Get the CRC-32 of the uncompressed content.
+         *
+         * @return The CRC.
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Get the size of the uncompressed content.
+         *
+         * @return The size in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Get the size of the compressed content.
+         *
+         * @return The size in bytes.
+         */
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * Open the raw deflated content. The content can still be read if the blob is evicted while it is open.
+         *
+         * @return The input stream.
+         * @throws IOException If the blob could not be opened.
+         */
+        public InputStream openCompressed() throws IOException {
+            final InputStream in = Files.newInputStream(file.toPath());
+            try {
+                long skipped = 0;
+                while (skipped < HEADER_SIZE) {
+                    final long count = in.skip(HEADER_SIZE - skipped);
+                    if (count <= 0) {
+                        throw new IOException("Truncated blob " + file);
+                    }
+                    skipped += count;
+                }
+                return in;
+            } catch (final IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+    }
+}
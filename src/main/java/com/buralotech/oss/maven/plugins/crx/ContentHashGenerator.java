@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the block hashes that Chrome uses to verify the contents of an installed extension. Each file is split
+ * into 4 KiB blocks and the SHA-256 hash of each block is recorded. Files are hashed in parallel and the hashes are
+ * cached in a properties file keyed by path and the SHA-256 digest of the whole file so that files whose content has
+ * not changed since the previous build are not split and hashed again. The modification time is not used because the
+ * optimisers rewrite their output on every build and a same-size edit may not change it. The hashes are written in
+ * the format of Chrome's {@code computed_hashes.json}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class ContentHashGenerator {
+
+    /**
+     * The size of the blocks that are hashed.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The version of the {@code computed_hashes.json} format.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * Initialise the generator.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     */
+    public ContentHashGenerator(final int threadCount) {
+        threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Compute the block hashes for files in a directory reusing the cached hashes of files whose content has not
+     * changed.
+     *
+     * @param directory The directory containing the files.
+     * @param paths     The relative paths of the files using {@code /} as the separator.
+     * @param cacheFile The file in which the hashes are cached or {@code null} if the hashes are not cached.
+     * @return The Base64 encoded block hashes keyed by relative path in the order in which the paths were given.
+     * @throws IOException If a file could not be read or the cache could not be written.
+     */
+    public Map<String, List<String>> computeHashes(final File directory, final Collection<String> paths,
+                                                   final File cacheFile) throws IOException {
+        final Properties cache = new Properties();
+        if (cacheFile != null && cacheFile.isFile()) {
+            try (InputStream in = Files.newInputStream(cacheFile.toPath())) {
+                cache.load(in);
+            }
+        }
+
+        final Map<String, List<String>> hashes = new LinkedHashMap<>();
+        final Map<String, Future<String>> pending = new LinkedHashMap<>();
+        final Properties updatedCache = new Properties();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, paths.size())));
+        try {
+            for (final String path : paths) {
+                final File file = new File(directory, path);
+                final String cached = cache.getProperty(path);
+                pending.put(path, executor.submit(() -> {
+                    final String key = ChecksumUtils.checksum(file, "SHA-256") + ":";
+                    if (cached != null && cached.startsWith(key)) {
+                        return cached;
+                    }
+                    return key + String.join(",", hashFile(file));
+                }));
+            }
+            for (final Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+                final String value = entry.getValue().get();
+                hashes.put(entry.getKey(), Arrays.asList(value.substring(value.indexOf(':') + 1).split(",")));
+                updatedCache.setProperty(entry.getKey(), value);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while computing content hashes", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error computing content hashes", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (cacheFile != null && !updatedCache.equals(cache)) {
+            Files.createDirectories(cacheFile.getAbsoluteFile().getParentFile().toPath());
+            try (OutputStream out = Files.newOutputStream(cacheFile.toPath())) {
+                updatedCache.store(out, null);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Write the block hashes in the format of Chrome's {@code computed_hashes.json}.
+     *
+     * @param file   The output file.
+     * @param hashes The Base64 encoded block hashes keyed by relative path.
+     * @throws IOException If the file could not be written.
+     */
+    public static void writeComputedHashes(final File file, final Map<String, List<String>> hashes)
+            throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\"file_hashes\":[");
+            boolean first = true;
+            for (final Map.Entry<String, List<String>> entry : hashes.entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write("{\"block_hashes\":[");
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write('"');
+                    writer.write(entry.getValue().get(i));
+                    writer.write('"');
+                }
+                writer.write("],\"block_size\":");
+                writer.write(Integer.toString(BLOCK_SIZE));
+                writer.write(",\"path\":");
+                writeString(writer, entry.getKey());
+                writer.write('}');
+            }
+            writer.write("],\"version\":");
+            writer.write(Integer.toString(FORMAT_VERSION));
+            writer.write('}');
+        }
+    }
+
+    /**
+     * Compute the block hashes for a file. An empty file has a single block hash for the empty block.
+     *
+     * @param file The file.
+     * @return The Base64 encoded block hashes.
+     * @throws IOException If the file could not be read.
+     */
+    static List<String> hashFile(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+        final Base64.Encoder encoder = Base64.getEncoder();
+        final List<String> blockHashes = new ArrayList<>();
+        final byte[] block = new byte[BLOCK_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int length;
+            do {
+                length = readBlock(in, block);
+                if (length > 0 || blockHashes.isEmpty()) {
+                    digest.update(block, 0, length);
+                    blockHashes.add(encoder.encodeToString(digest.digest()));
+                }
+            } while (length == BLOCK_SIZE);
+        }
+        return blockHashes;
+    }
+
+    /**
+     * Fill a block from an input stream stopping early only at the end of the stream.
+     *
+     * @param in    The input stream.
+     * @param block The block.
+     * @return The number of bytes read into the block.
+     * @throws IOException If the input stream could not be read.
+     */
+    private static int readBlock(final InputStream in, final byte[] block) throws IOException {
+        int length = 0;
+        while (length < block.length) {
+            final int count = in.read(block, length, block.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return length;
+    }
+
+    /**
+     * Write a string as a JSON string literal.
+     *
+     * @param writer The output.
+     * @param value  The string.
+     * @throws IOException If the string could not be written.
+     */
+    private static void writeString(final Writer writer, final String value) throws IOException {
+        writer.write('"');
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
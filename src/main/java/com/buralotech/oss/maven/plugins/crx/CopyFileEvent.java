@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event that is emitted for each file that is copied into the working directory before it is
+ * packaged.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.CopyFile")
+@Label("Copy File")
+@Category({"Maven", "CRX"})
+@Description("A file copied into the working directory of a Chrome Extension")
+final class CopyFileEvent extends Event {
+
+    /**
+     * The path of the copied file.
+     */
+    @Label("Path")
+    String path;
+
+    /**
+     * The number of bytes written to the copied file.
+     */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * {@code true} if the file was filtered while it was copied.
+     */
+    @Label("Filtered")
+    boolean filtered;
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * Checks the integrity of the ZIP payload of a CRX archive. The central directory is parsed and every entry is
+ * inflated in parallel to check that its CRC and size match the central directory. Inflated data is discarded as it is
+ * read and no entry is inflated beyond the smaller of its declared size and a configured limit so a hostile archive
+ * cannot exhaust memory or disk.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class EntryVerifier {
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * The largest uncompressed size that will be inflated for an entry.
+     */
+    private final long maxEntrySize;
+
+    /**
+     * Initialise the verifier.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     * @param maxSize     The largest uncompressed size that will be inflated for an entry.
+     */
+    public EntryVerifier(final int threadCount, final long maxSize) {
+        threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        maxEntrySize = maxSize;
+    }
+
+    /**
+     * Check every entry of a ZIP payload.
+     *
+     * @param payload The ZIP payload.
+     * @return A description of each problem that was found or an empty list if the payload is valid.
+     * @throws IOException If the payload could not be read.
+     */
+    public List<String> verify(final CRXPayload payload) throws IOException {
+        final List<ZipArchiveEntry> entries;
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(payload)) {
+            entries = Collections.list(zipFile.getEntries());
+        } catch (final IOException e) {
+            return Collections.singletonList("Could not read the ZIP central directory: " + e.getMessage());
+        }
+
+        final List<List<ZipArchiveEntry>> batches = ArchiveUnpacker.balance(entries, threads);
+        if (batches.size() == 1) {
+            return verify(payload, batches.get(0));
+        }
+        final List<String> problems = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(batches.size());
+        try {
+            final List<Future<List<String>>> futures = new ArrayList<>();
+            for (final List<ZipArchiveEntry> batch : batches) {
+                futures.add(executor.submit(() -> verify(payload, batch)));
+            }
+            for (final Future<List<String>> future : futures) {
+                problems.addAll(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while verifying archive", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error verifying archive", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        Collections.sort(problems);
+        return problems;
+    }
+
+    /**
+     * Check a batch of entries using a dedicated view of the payload.
+     *
+     * @param payload The ZIP payload.
+     * @param batch   The entries to check.
+     * @return A description of each problem that was found.
+     * @throws IOException If the payload could not be read.
+     */
+    private List<String> verify(final CRXPayload payload, final List<ZipArchiveEntry> batch) throws IOException {
+        final List<String> problems = new ArrayList<>();
+        if (batch.isEmpty()) {
+            return problems;
+        }
+        final byte[] buffer = new byte[8192];
+        try (ZipFile zipFile = CRXArchiveHelper.openZipFile(payload)) {
+            for (final ZipArchiveEntry entry : batch) {
+                final String problem = verify(zipFile, entry, buffer);
+                if (problem != null) {
+                    problems.add(entry.getName() + ": " + problem);
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Check a single entry.
+     *
+     * @param zipFile The ZIP file view of the payload.
+     * @param entry   The entry.
+     * @param buffer  The buffer into which the inflated data is read and discarded.
+     * @return A description of the problem or {@code null} if the entry is valid.
+     */
+    private String verify(final ZipFile zipFile, final ZipArchiveEntry entry, final byte[] buffer) {
+        if (entry.isDirectory()) {
+            return null;
+        }
+        if (!zipFile.canReadEntryData(entry)) {
+            return "unsupported compression method or encryption";
+        }
+        final long size = entry.getSize();
+        if (size < 0) {
+            return "uncompressed size is not recorded in the central directory";
+        }
+        if (size > maxEntrySize) {
+            return "uncompressed size " + size + " exceeds the limit of " + maxEntrySize + " bytes";
+        }
+        final CRC32 crc = new CRC32();
+        long total = 0;
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            int count;
+            while ((count = in.read(buffer, 0, (int) Math.min(buffer.length, size - total + 1))) > 0) {
+                total += count;
+                if (total > size) {
+                    return "inflates beyond the declared size of " + size + " bytes";
+                }
+                crc.update(buffer, 0, count);
+            }
+        } catch (final IOException | RuntimeException e) {
+            return "could not be inflated: " + e.getMessage();
+        }
+        if (total != size) {
+            return "inflated size " + total + " does not match the declared size of " + size + " bytes";
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            return "CRC " + Long.toHexString(crc.getValue()) + " does not match the declared CRC "
+                    + Long.toHexString(entry.getCrc());
+        }
+        return null;
+    }
+}
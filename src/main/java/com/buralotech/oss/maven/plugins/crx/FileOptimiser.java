@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for the stages that optimise files in the staging directory in place. Files are optimised in parallel and
+ * each file is only replaced if its optimised version is smaller. The outcome is cached keyed by the SHA-256 hash and
+ * extension of the original file so each file is only optimised when it changes. The cache can be shared between
+ * builds.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public abstract class FileOptimiser {
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * The directory in which the optimised files are cached or {@code null} if they are not cached.
+     */
+    private final File cacheDirectory;
+
+    /**
+     * The version of the optimisation which is part of the cache key so that cached results are not reused when the
+     * optimisation changes.
+     */
+    private final String version;
+
+    /**
+     * The files that were replaced with their optimised versions.
+     */
+    private final Set<File> optimisedFiles = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Initialise the optimiser.
+     *
+     * @param threadCount         The number of worker threads or zero to use one per available processor.
+     * @param directory           The directory in which the optimised files are cached or {@code null} if they are
+     *                            not cached.
+     * @param optimisationVersion The version of the optimisation.
+     */
+    protected FileOptimiser(final int threadCount, final File directory, final String optimisationVersion) {
+        threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        cacheDirectory = directory;
+        version = optimisationVersion;
+    }
+
+    /**
+     * Optimise files replacing each file that can be made smaller with its optimised version.
+     *
+     * @param files The files.
+     * @return The total number of bytes saved.
+     * @throws IOException If a file could not be read or written or the cache could not be written.
+     */
+    public long optimise(final Collection<File> files) throws IOException {
+        long saved = 0;
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (final File file : files) {
+                futures.add(executor.submit(() -> optimise(file)));
+            }
+            for (final Future<Long> future : futures) {
+                saved += future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while optimising files", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error optimising files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return saved;
+    }
+
+    /**
+     * Get the files that were replaced with their optimised versions so that callers can tell which files no longer
+     * have their original contents.
+     *
+     * @return The files that were replaced.
+     */
+    public Set<File> getOptimisedFiles() {
+        synchronized (optimisedFiles) {
+            return new HashSet<>(optimisedFiles);
+        }
+    }
+
+    /**
+     * Optimise the contents of a file.
+     *
+     * @param name     The name of the file which is used to determine its format.
+     * @param original The contents of the file.
+     * @return The optimised contents or the original contents if they could not be optimised.
+     */
+    protected abstract byte[] optimise(String name, byte[] original);
+
+    /**
+     * Optimise a single file using the cached outcome if the file has been optimised before.
+     *
+     * @param file The file.
+     * @return The number of bytes saved.
+     * @throws IOException If the file could not be read or written or the cache could not be written.
+     */
+    private long optimise(final File file) throws IOException {
+        final byte[] original = Files.readAllBytes(file.toPath());
+        final File cacheFile;
+        byte[] optimised = null;
+        if (cacheDirectory != null) {
+            cacheFile = new File(cacheDirectory, hash(original) + '.' + getExtension(file.getName()) + '.' + version);
+            if (cacheFile.isFile()) {
+                optimised = Files.readAllBytes(cacheFile.toPath());
+            }
+        } else {
+            cacheFile = null;
+        }
+        if (optimised == null) {
+            optimised = optimise(file.getName(), original);
+            if (cacheFile != null) {
+                store(cacheFile, optimised == original ? new byte[0] : optimised);
+            }
+        }
+        if (optimised.length == 0 || optimised.length >= original.length) {
+            return 0;
+        }
+        Files.write(file.toPath(), optimised);
+        optimisedFiles.add(file);
+        return original.length - optimised.length;
+    }
+
+    /**
+     * Get the lower case extension of a file name.
+     *
+     * @param name The file name.
+     * @return The extension or an empty string if the file name does not have an extension.
+     */
+    static String getExtension(final String name) {
+        final int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(index + 1).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Store an outcome in the cache via a temporary file so that concurrent readers never see a partially written
+     * file. An empty file records that the file could not be optimised.
+     *
+     * @param file The cache file.
+     * @param data The optimised contents or an empty array.
+     * @throws IOException If the file could not be written.
+     */
+    private static void store(final File file, final byte[] data) throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            Files.write(tempFile.toPath(), data);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 hash of the contents of a file.
+     *
+     * @param data The contents.
+     * @return The hash as a lower case hexadecimal string.
+     * @throws IOException If SHA-256 is not supported.
+     */
+    private static String hash(final byte[] data) throws IOException {
+        try {
+            return ChecksumUtils.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+}
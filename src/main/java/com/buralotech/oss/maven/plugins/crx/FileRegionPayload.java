@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link CRXPayload} backed by a region of a file.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class FileRegionPayload extends CRXPayload {
+
+    /**
+     * The file.
+     */
+    private final Path path;
+
+    /**
+     * The offset of the region within the file.
+     */
+    private final long offset;
+
+    /**
+     * The length of the region.
+     */
+    private final long length;
+
+    /**
+     * Initialise the payload.
+     *
+     * @param file The file.
+     * @param off  The offset of the region within the file.
+     * @param len  The length of the region.
+     */
+    FileRegionPayload(final Path file, final long off, final long len) {
+        path = file;
+        offset = off;
+        length = len;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    @Override
+    public SeekableByteChannel openChannel() throws IOException {
+        return new FileRegionChannel(FileChannel.open(path, StandardOpenOption.READ), offset, length);
+    }
+
+    /**
+     * Write the payload to a channel. If the target is a file channel then the operating system is asked to copy
+     * the region directly without passing through the JVM.
+     *
+     * @param target The target channel.
+     * @throws IOException If the payload source could not be read or the target could not be written.
+     */
+    @Override
+    public void transferTo(final WritableByteChannel target) throws IOException {
+        if (!(target instanceof FileChannel)) {
+            super.transferTo(target);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < length) {
+                final long count = channel.transferTo(offset + transferred, length - transferred, target);
+                if (count <= 0) {
+                    throw new EOFException("Unexpected end of payload");
+                }
+                transferred += count;
+            }
+        }
+    }
+
+    /**
+     * A read-only channel over a region of a file channel.
+     */
+    private static final class FileRegionChannel implements SeekableByteChannel {
+
+        /**
+         * The underlying file channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The offset of the region within the file.
+         */
+        private final long offset;
+
+        /**
+         * The length of the region.
+         */
+        private final long length;
+
+        /**
+         * The position within the region.
+         */
+        private long position;
+
+        /**
+         * Initialise the channel.
+         *
+         * @param fileChannel The underlying file channel.
+         * @param off         The offset of the region within the file.
+         * @param len         The length of the region.
+         */
+        FileRegionChannel(final FileChannel fileChannel, final long off, final long len) {
+            channel = fileChannel;
+            offset = off;
+            length = len;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            final long remaining = length - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                ((Buffer) dst).limit(dst.position() + (int) remaining);
+            }
+            try {
+                final int count = channel.read(dst, offset + position);
+                if (count > 0) {
+                    position += count;
+                }
+                return count;
+            } finally {
+                ((Buffer) dst).limit(limit);
+            }
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.security.Provider;
+import java.security.Signature;
+
+/**
+ * Static helper methods that emit the Java Flight Recorder events for the plug-in. The events are only created when
+ * the JVM provides the {@code jdk.jfr} module so the plug-in can still run on Java 8 runtimes that pre-date Flight
+ * Recorder. The event classes are only referenced from methods that are not called when Flight Recorder is missing
+ * and callers hold the events as opaque objects so the event classes are never loaded on those runtimes.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+final class FlightRecorderUtils {
+
+    /**
+     * {@code true} if the JVM provides Flight Recorder.
+     */
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private FlightRecorderUtils() {
+    }
+
+    /**
+     * Start timing the copy of a file into the working directory.
+     *
+     * @return The event or {@code null} if the event is not enabled.
+     */
+    static Object beginCopyFile() {
+        if (AVAILABLE) {
+            final CopyFileEvent event = new CopyFileEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finish timing the copy of a file into the working directory and emit the event.
+     *
+     * @param event    The event returned by {@link #beginCopyFile()}.
+     * @param file     The copied file.
+     * @param filtered {@code true} if the file was filtered while it was copied.
+     */
+    static void endCopyFile(final Object event, final File file, final boolean filtered) {
+        if (event != null) {
+            final CopyFileEvent copyFileEvent = (CopyFileEvent) event;
+            copyFileEvent.end();
+            if (copyFileEvent.shouldCommit()) {
+                copyFileEvent.path = file.getPath();
+                copyFileEvent.bytes = file.length();
+                copyFileEvent.filtered = filtered;
+                copyFileEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Determine whether the archive entry events are being recorded so the cost of gathering the entry statistics is
+     * only incurred when they will be used.
+     *
+     * @return {@code true} if the archive entry events are being recorded. Otherwise, {@code false}.
+     */
+    static boolean isArchiveEntryEnabled() {
+        return AVAILABLE && new ArchiveEntryEvent().isEnabled();
+    }
+
+    /**
+     * Emit the event for an entry of the ZIP payload of a CRX archive.
+     *
+     * @param name           The name of the entry.
+     * @param size           The uncompressed size of the entry.
+     * @param compressedSize The compressed size of the entry.
+     * @param method         The compression method of the entry.
+     * @param deflateTime    The time in nanoseconds spent reading and compressing the entry.
+     */
+    static void archiveEntry(final String name, final long size, final long compressedSize, final String method,
+                             final long deflateTime) {
+        if (AVAILABLE) {
+            final ArchiveEntryEvent event = new ArchiveEntryEvent();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.size = size;
+                event.compressedSize = compressedSize;
+                event.method = method;
+                event.deflateTime = deflateTime;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Start timing the loading of the public/private key pair.
+     *
+     * @return The event or {@code null} if the event is not enabled.
+     */
+    static Object beginKeyPair() {
+        if (AVAILABLE) {
+            final KeyPairEvent event = new KeyPairEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finish timing the loading of the public/private key pair and emit the event.
+     *
+     * @param event     The event returned by {@link #beginKeyPair()}.
+     * @param pemFile   The PEM file.
+     * @param encrypted {@code true} if a password was supplied to decrypt the PEM file.
+     * @param loaded    {@code true} if the key pair was loaded.
+     */
+    static void endKeyPair(final Object event, final File pemFile, final boolean encrypted, final boolean loaded) {
+        if (event != null) {
+            final KeyPairEvent keyPairEvent = (KeyPairEvent) event;
+            keyPairEvent.end();
+            if (keyPairEvent.shouldCommit()) {
+                keyPairEvent.pemFile = pemFile == null ? null : pemFile.getPath();
+                keyPairEvent.encrypted = encrypted;
+                keyPairEvent.loaded = loaded;
+                keyPairEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Start timing the generation or check of a signature.
+     *
+     * @return The event or {@code null} if the event is not enabled.
+     */
+    static Object beginSignature() {
+        if (AVAILABLE) {
+            final SignatureEvent event = new SignatureEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finish timing the generation or check of a signature and emit the event.
+     *
+     * @param event     The event returned by {@link #beginSignature()}.
+     * @param operation The operation which is either {@code sign} or {@code check}.
+     * @param signature The signature object that was used.
+     * @param success   {@code true} if the signature was generated or was found to be valid.
+     */
+    static void endSignature(final Object event, final String operation, final Signature signature,
+                             final boolean success) {
+        if (event != null) {
+            final SignatureEvent signatureEvent = (SignatureEvent) event;
+            signatureEvent.end();
+            if (signatureEvent.shouldCommit()) {
+                signatureEvent.operation = operation;
+                signatureEvent.algorithm = signature.getAlgorithm();
+                final Provider provider = signature.getProvider();
+                signatureEvent.provider = provider == null ? null : provider.getName();
+                signatureEvent.success = success;
+                signatureEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Start timing the reading or writing of a CRX archive.
+     *
+     * @return The event or {@code null} if the event is not enabled.
+     */
+    static Object beginArchiveIO() {
+        if (AVAILABLE) {
+            final ArchiveIOEvent event = new ArchiveIOEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finish timing the reading or writing of a CRX archive and emit the event.
+     *
+     * @param event     The event returned by {@link #beginArchiveIO()}.
+     * @param operation The operation which is either {@code read} or {@code write}.
+     * @param file      The CRX archive.
+     * @param version   The version of the CRX archive format.
+     */
+    static void endArchiveIO(final Object event, final String operation, final File file, final int version) {
+        if (event != null) {
+            final ArchiveIOEvent archiveIOEvent = (ArchiveIOEvent) event;
+            archiveIOEvent.end();
+            if (archiveIOEvent.shouldCommit()) {
+                archiveIOEvent.operation = operation;
+                archiveIOEvent.path = file.getPath();
+                archiveIOEvent.version = version;
+                archiveIOEvent.size = file.length();
+                archiveIOEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Start timing a lookup in or an upload to the remote build cache.
+     *
+     * @return The event or {@code null} if the event is not enabled.
+     */
+    static Object beginBuildCache() {
+        if (AVAILABLE) {
+            final BuildCacheEvent event = new BuildCacheEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finish timing a lookup in or an upload to the remote build cache and emit the event.
+     *
+     * @param event     The event returned by {@link #beginBuildCache()}.
+     * @param operation The operation which is either {@code get} or {@code put}.
+     * @param key       The input key of the CRX file.
+     * @param hit       {@code true} if the operation succeeded.
+     * @param size      The size of the CRX file that was transferred.
+     */
+    static void endBuildCache(final Object event, final String operation, final String key, final boolean hit,
+                              final long size) {
+        if (event != null) {
+            final BuildCacheEvent buildCacheEvent = (BuildCacheEvent) event;
+            buildCacheEvent.end();
+            if (buildCacheEvent.shouldCommit()) {
+                buildCacheEvent.operation = operation;
+                buildCacheEvent.key = key;
+                buildCacheEvent.hit = hit;
+                buildCacheEvent.size = size;
+                buildCacheEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Determine whether the JVM provides Flight Recorder.
+     *
+     * @return {@code true} if the {@code jdk.jfr} classes can be loaded. Otherwise, {@code false}.
+     */
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderUtils.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
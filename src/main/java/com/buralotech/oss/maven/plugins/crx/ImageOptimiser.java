@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Losslessly optimises the PNG and JPEG images in the staging directory. Every optimised image is decoded and
+ * compared with the original so an image is only replaced when its pixels are unchanged.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class ImageOptimiser extends FileOptimiser {
+
+    /**
+     * The version of the optimisation which is part of the cache key.
+     */
+    private static final String VERSION = "1";
+
+    /**
+     * Initialise the optimiser.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     * @param directory   The directory in which the optimised images are cached or {@code null} if they are not
+     *                    cached.
+     */
+    public ImageOptimiser(final int threadCount, final File directory) {
+        super(threadCount, directory, VERSION);
+    }
+
+    /**
+     * Determine whether a file is an image that can be optimised from its extension.
+     *
+     * @param name The name of the file.
+     * @return {@code true} if the file is a PNG or JPEG image. Otherwise, {@code false}.
+     */
+    public static boolean isImage(final String name) {
+        final String extension = getExtension(name);
+        return "png".equals(extension) || "jpg".equals(extension) || "jpeg".equals(extension);
+    }
+
+    /**
+     * Optimise an image and check that the pixels of the optimised image are the same as the original.
+     *
+     * @param name     The name of the image which is used to determine its format.
+     * @param original The original image.
+     * @return The optimised image or the original image if it could not be optimised or made smaller.
+     */
+    @Override
+    protected byte[] optimise(final String name, final byte[] original) {
+        try {
+            final byte[] optimised = "png".equals(getExtension(name)) ? PngUtils.optimise(original)
+                    : JpegUtils.optimise(original);
+            if (optimised.length < original.length && isSamePixels(original, optimised)) {
+                return optimised;
+            }
+        } catch (final IOException | RuntimeException e) {
+            // The image is not valid or uses features that are not supported so it is packaged unchanged
+        }
+        return original;
+    }
+
+    /**
+     * Decode two images and compare their pixels.
+     *
+     * @param original  The original image.
+     * @param optimised The optimised image.
+     * @return {@code true} if both images could be decoded and have the same pixels. Otherwise, {@code false}.
+     * @throws IOException If an image could not be decoded.
+     */
+    static boolean isSamePixels(final byte[] original, final byte[] optimised) throws IOException {
+        final BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(original));
+        final BufferedImage optimisedImage = ImageIO.read(new ByteArrayInputStream(optimised));
+        if (originalImage == null || optimisedImage == null) {
+            return false;
+        }
+        final Raster originalRaster = originalImage.getRaster();
+        final Raster optimisedRaster = optimisedImage.getRaster();
+        final int width = originalRaster.getWidth();
+        final int height = originalRaster.getHeight();
+        if (optimisedRaster.getWidth() != width || optimisedRaster.getHeight() != height
+                || optimisedRaster.getNumBands() != originalRaster.getNumBands()
+                || originalImage.getType() != optimisedImage.getType()) {
+            return false;
+        }
+        for (int y = 0; y < height; y++) {
+            final int[] originalRow = originalRaster.getPixels(0, y, width, 1, (int[]) null);
+            final int[] optimisedRow = optimisedRaster.getPixels(0, y, width, 1, (int[]) null);
+            if (!Arrays.equals(originalRow, optimisedRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
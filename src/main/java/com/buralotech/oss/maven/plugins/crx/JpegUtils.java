@@ -0,0 +1,1050 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static helper methods that losslessly optimise JPEG images. Comments and metadata segments are removed keeping the
+ * segments that affect how the image is rendered such as JFIF, ICC profiles, Adobe colour transforms and EXIF data
+ * that rotates or flips the image. The entropy coded data of baseline and extended sequential Huffman coded images is
+ * decoded to its Huffman symbols and re-encoded using Huffman tables that are optimal for the image. The quantised
+ * coefficients, and therefore the pixels, are not changed. Progressive and arithmetic coded images only have their
+ * metadata removed.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class JpegUtils {
+
+    /**
+     * The marker that starts an image.
+     */
+    private static final int SOI = 0xD8;
+
+    /**
+     * The marker that ends an image.
+     */
+    private static final int EOI = 0xD9;
+
+    /**
+     * The marker of a baseline sequential frame.
+     */
+    private static final int SOF0 = 0xC0;
+
+    /**
+     * The marker of an extended sequential Huffman coded frame.
+     */
+    private static final int SOF1 = 0xC1;
+
+    /**
+     * The marker that defines Huffman tables.
+     */
+    private static final int DHT = 0xC4;
+
+    /**
+     * The marker that defines the restart interval.
+     */
+    private static final int DRI = 0xDD;
+
+    /**
+     * The marker that starts a scan.
+     */
+    private static final int SOS = 0xDA;
+
+    /**
+     * The first restart marker.
+     */
+    private static final int RST0 = 0xD0;
+
+    /**
+     * The marker of the application segment that holds EXIF data.
+     */
+    private static final int APP1 = 0xE1;
+
+    /**
+     * The marker of a comment.
+     */
+    private static final int COM = 0xFE;
+
+    /**
+     * The number of Huffman table slots for each table class.
+     */
+    private static final int TABLE_SLOTS = 4;
+
+    /**
+     * The EXIF tag that holds the orientation.
+     */
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private JpegUtils() {
+    }
+
+    /**
+     * Optimise a JPEG image.
+     *
+     * @param jpeg The JPEG image.
+     * @return The optimised JPEG image or the original JPEG image if it could not be made smaller.
+     * @throws IOException If the JPEG image is not valid.
+     */
+    public static byte[] optimise(final byte[] jpeg) throws IOException {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != SOI) {
+            throw new IOException("Not a JPEG image");
+        }
+
+        // Split the image into segments and scans
+
+        final List<Object> parts = new ArrayList<>();
+        final HuffmanTable[] tables = new HuffmanTable[2 * TABLE_SLOTS];
+        Frame frame = null;
+        boolean sequential = false;
+        int restartInterval = 0;
+        int position = 2;
+        while (true) {
+            if (position + 2 > jpeg.length || (jpeg[position] & 0xFF) != 0xFF) {
+                throw new IOException("Invalid JPEG marker");
+            }
+            final int marker = jpeg[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == EOI) {
+                break;
+            }
+            if (position + 4 > jpeg.length) {
+                throw new IOException("Unexpected end of JPEG image");
+            }
+            final int length = (jpeg[position + 2] & 0xFF) << 8 | jpeg[position + 3] & 0xFF;
+            if (length < 2 || position + 2 + length > jpeg.length) {
+                throw new IOException("Invalid JPEG segment length");
+            }
+            final byte[] segment = Arrays.copyOfRange(jpeg, position, position + 2 + length);
+            position += 2 + length;
+            if (marker == DHT) {
+                readHuffmanTables(segment, tables);
+                parts.add(segment);
+            } else if (marker == DRI) {
+                restartInterval = length >= 4 ? (segment[4] & 0xFF) << 8 | segment[5] & 0xFF : 0;
+                parts.add(segment);
+            } else if (marker >= 0xC0 && marker <= 0xCF && marker != DHT && marker != 0xC8 && marker != 0xCC) {
+                frame = new Frame(segment);
+                sequential = (marker == SOF0 || marker == SOF1) && frame.isValid();
+                parts.add(segment);
+            } else if (marker == SOS) {
+                final int end = findScanEnd(jpeg, position);
+                parts.add(new Scan(segment, Arrays.copyOfRange(jpeg, position, end), tables.clone(),
+                        restartInterval));
+                position = end;
+            } else if (!isMetadata(marker, segment)) {
+                parts.add(segment);
+            }
+        }
+
+        // Re-encode the scans with optimal Huffman tables if the image is sequential Huffman coded falling back to
+        // only removing the metadata if a scan cannot be decoded
+
+        byte[] optimised = null;
+        if (sequential) {
+            try {
+                optimised = reencode(parts, frame);
+            } catch (final IOException e) {
+                optimised = null;
+            }
+        }
+        if (optimised == null) {
+            optimised = copy(parts);
+        }
+        return optimised.length < jpeg.length ? optimised : jpeg;
+    }
+
+    /**
+     * Write the image re-encoding the scans with Huffman tables that are optimal for the image. A single DHT segment
+     * that defines the new tables replaces the original DHT segments.
+     *
+     * @param parts The segments and scans of the image.
+     * @param frame The frame.
+     * @return The re-encoded image.
+     * @throws IOException If a scan could not be decoded.
+     */
+    private static byte[] reencode(final List<Object> parts, final Frame frame) throws IOException {
+        final long[][] frequencies = new long[2 * TABLE_SLOTS][];
+        for (final Object part : parts) {
+            if (part instanceof Scan) {
+                ((Scan) part).decode(frame, frequencies);
+            }
+        }
+        final HuffmanTable[] optimalTables = new HuffmanTable[2 * TABLE_SLOTS];
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] != null) {
+                optimalTables[i] = HuffmanTable.optimal(frequencies[i]);
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(SOI);
+        boolean tablesWritten = false;
+        for (final Object part : parts) {
+            if (part instanceof Scan) {
+                if (!tablesWritten) {
+                    writeHuffmanTables(out, optimalTables);
+                    tablesWritten = true;
+                }
+                ((Scan) part).encode(out, optimalTables);
+            } else if ((((byte[]) part)[1] & 0xFF) != DHT) {
+                out.write((byte[]) part);
+            }
+        }
+        out.write(0xFF);
+        out.write(EOI);
+        return out.toByteArray();
+    }
+
+    /**
+     * Write the image without changing the scans.
+     *
+     * @param parts The segments and scans of the image.
+     * @return The image.
+     * @throws IOException If the image could not be written.
+     */
+    private static byte[] copy(final List<Object> parts) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(SOI);
+        for (final Object part : parts) {
+            if (part instanceof Scan) {
+                out.write(((Scan) part).header);
+                out.write(((Scan) part).data);
+            } else {
+                out.write((byte[]) part);
+            }
+        }
+        out.write(0xFF);
+        out.write(EOI);
+        return out.toByteArray();
+    }
+
+    /**
+     * Determine whether a segment only holds metadata that does not affect how the image is rendered. JFIF (APP0),
+     * ICC profiles and FlashPix data (APP2) and Adobe colour transforms (APP14) are kept. EXIF data (APP1) is kept if
+     * it rotates or flips the image.
+     *
+     * @param marker  The marker of the segment.
+     * @param segment The segment including the marker and length.
+     * @return {@code true} if the segment can be removed. Otherwise, {@code false}.
+     */
+    private static boolean isMetadata(final int marker, final byte[] segment) {
+        if (marker == COM) {
+            return true;
+        } else if (marker == APP1) {
+            return getOrientation(segment) <= 1;
+        } else {
+            return marker >= 0xE3 && marker <= 0xEF && marker != 0xEE;
+        }
+    }
+
+    /**
+     * Get the orientation recorded in the first image file directory of an EXIF segment.
+     *
+     * @param segment The APP1 segment including the marker and length.
+     * @return The orientation or zero if the segment is not EXIF data or does not record the orientation.
+     */
+    static int getOrientation(final byte[] segment) {
+        final int tiff = 10;
+        if (segment.length < tiff + 8 || segment[4] != 'E' || segment[5] != 'x' || segment[6] != 'i'
+                || segment[7] != 'f' || segment[8] != 0 || segment[9] != 0) {
+            return 0;
+        }
+        final boolean littleEndian = segment[tiff] == 'I';
+        final long directory = tiff + readUnsigned(segment, tiff + 4, 4, littleEndian);
+        if (directory + 2 > segment.length) {
+            return 0;
+        }
+        final int count = (int) readUnsigned(segment, (int) directory, 2, littleEndian);
+        for (int i = 0; i < count; i++) {
+            final int entry = (int) directory + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                return 0;
+            }
+            if (readUnsigned(segment, entry, 2, littleEndian) == ORIENTATION_TAG) {
+                return (int) readUnsigned(segment, entry + 8, 2, littleEndian);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Read an unsigned integer from EXIF data.
+     *
+     * @param data         The data.
+     * @param offset       The offset of the integer.
+     * @param size         The size of the integer in bytes.
+     * @param littleEndian {@code true} if the integer is little endian.
+     * @return The integer.
+     */
+    private static long readUnsigned(final byte[] data, final int offset, final int size, final boolean littleEndian) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            final int b = data[offset + (littleEndian ? size - 1 - i : i)] & 0xFF;
+            value = value << 8 | b;
+        }
+        return value;
+    }
+
+    /**
+     * Find the end of the entropy coded data of a scan which is the first marker other than a restart marker.
+     *
+     * @param jpeg     The JPEG image.
+     * @param position The start of the entropy coded data.
+     * @return The offset of the marker that follows the entropy coded data.
+     * @throws IOException If the image ends before the entropy coded data.
+     */
+    private static int findScanEnd(final byte[] jpeg, final int position) throws IOException {
+        for (int i = position; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xFF) == 0xFF) {
+                final int next = jpeg[i + 1] & 0xFF;
+                if (next != 0 && next != 0xFF && (next < RST0 || next > RST0 + 7)) {
+                    return i;
+                }
+            }
+        }
+        throw new IOException("Unexpected end of JPEG entropy coded data");
+    }
+
+    /**
+     * Read the Huffman tables defined by a DHT segment.
+     *
+     * @param segment The segment including the marker and length.
+     * @param tables  The tables indexed by class and slot which are updated.
+     * @throws IOException If the segment is not valid.
+     */
+    private static void readHuffmanTables(final byte[] segment, final HuffmanTable[] tables) throws IOException {
+        int position = 4;
+        while (position < segment.length) {
+            final int classAndSlot = segment[position] & 0xFF;
+            if (classAndSlot >> 4 > 1 || (classAndSlot & 0x0F) >= TABLE_SLOTS || position + 17 > segment.length) {
+                throw new IOException("Invalid JPEG Huffman table");
+            }
+            final int[] counts = new int[17];
+            int total = 0;
+            for (int i = 1; i <= 16; i++) {
+                counts[i] = segment[position + i] & 0xFF;
+                total += counts[i];
+            }
+            if (position + 17 + total > segment.length) {
+                throw new IOException("Invalid JPEG Huffman table");
+            }
+            final int[] symbols = new int[total];
+            for (int i = 0; i < total; i++) {
+                symbols[i] = segment[position + 17 + i] & 0xFF;
+            }
+            tables[(classAndSlot >> 4) * TABLE_SLOTS + (classAndSlot & 0x0F)] = new HuffmanTable(counts, symbols);
+            position += 17 + total;
+        }
+    }
+
+    /**
+     * Write a DHT segment defining the Huffman tables.
+     *
+     * @param out    The output.
+     * @param tables The tables indexed by class and slot.
+     */
+    private static void writeHuffmanTables(final ByteArrayOutputStream out, final HuffmanTable[] tables) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != null) {
+                body.write((i / TABLE_SLOTS) << 4 | i % TABLE_SLOTS);
+                for (int length = 1; length <= 16; length++) {
+                    body.write(tables[i].counts[length]);
+                }
+                for (final int symbol : tables[i].symbols) {
+                    body.write(symbol);
+                }
+            }
+        }
+        out.write(0xFF);
+        out.write(DHT);
+        out.write((body.size() + 2) >> 8);
+        out.write(body.size() + 2);
+        out.write(body.toByteArray(), 0, body.size());
+    }
+
+    /**
+     * The parameters of a frame.
+     */
+    private static final class Frame {
+
+        /**
+         * The number of lines.
+         */
+        private final int height;
+
+        /**
+         * The number of samples per line.
+         */
+        private final int width;
+
+        /**
+         * The component identifiers.
+         */
+        private final int[] ids;
+
+        /**
+         * The horizontal sampling factors of the components.
+         */
+        private final int[] horizontal;
+
+        /**
+         * The vertical sampling factors of the components.
+         */
+        private final int[] vertical;
+
+        /**
+         * The largest horizontal sampling factor.
+         */
+        private final int maxHorizontal;
+
+        /**
+         * The largest vertical sampling factor.
+         */
+        private final int maxVertical;
+
+        /**
+         * Parse a frame header.
+         *
+         * @param segment The SOF segment including the marker and length.
+         * @throws IOException If the segment is not valid.
+         */
+        private Frame(final byte[] segment) throws IOException {
+            if (segment.length < 10) {
+                throw new IOException("Invalid JPEG frame header");
+            }
+            height = (segment[5] & 0xFF) << 8 | segment[6] & 0xFF;
+            width = (segment[7] & 0xFF) << 8 | segment[8] & 0xFF;
+            final int count = segment[9] & 0xFF;
+            if (segment.length < 10 + count * 3) {
+                throw new IOException("Invalid JPEG frame header");
+            }
+            ids = new int[count];
+            horizontal = new int[count];
+            vertical = new int[count];
+            int maxH = 1;
+            int maxV = 1;
+            for (int i = 0; i < count; i++) {
+                ids[i] = segment[10 + i * 3] & 0xFF;
+                horizontal[i] = (segment[11 + i * 3] & 0xFF) >> 4;
+                vertical[i] = segment[11 + i * 3] & 0x0F;
+                maxH = Math.max(maxH, horizontal[i]);
+                maxV = Math.max(maxV, vertical[i]);
+            }
+            maxHorizontal = maxH;
+            maxVertical = maxV;
+        }
+
+        /**
+         * Determine whether the frame can be re-encoded. The number of lines must be known from the frame header and
+         * the sampling factors must be valid.
+         *
+         * @return {@code true} if the frame can be re-encoded. Otherwise, {@code false}.
+         */
+        private boolean isValid() {
+            if (height == 0 || width == 0 || ids.length == 0) {
+                return false;
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (horizontal[i] < 1 || horizontal[i] > 4 || vertical[i] < 1 || vertical[i] > 4) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Find the index of a component.
+         *
+         * @param id The component identifier.
+         * @return The index.
+         * @throws IOException If the frame does not have the component.
+         */
+        private int indexOf(final int id) throws IOException {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            throw new IOException("JPEG scan refers to unknown component " + id);
+        }
+    }
+
+    /**
+     * A scan holding its header, its entropy coded data and the Huffman symbols decoded from it.
+     */
+    private static final class Scan {
+
+        /**
+         * The SOS segment including the marker and length.
+         */
+        private final byte[] header;
+
+        /**
+         * The entropy coded data including any restart markers.
+         */
+        private final byte[] data;
+
+        /**
+         * The Huffman tables in effect for the scan indexed by class and slot.
+         */
+        private final HuffmanTable[] tables;
+
+        /**
+         * The number of MCUs between restart markers or zero if restart markers are not used.
+         */
+        private final int restartInterval;
+
+        /**
+         * The decoded symbols each combined with the index of its table in the upper bits.
+         */
+        private int[] symbols = new int[1024];
+
+        /**
+         * The additional bits that follow each decoded symbol.
+         */
+        private int[] extraBits = new int[1024];
+
+        /**
+         * The number of decoded symbols.
+         */
+        private int symbolCount;
+
+        /**
+         * The number of decoded symbols at the end of each restart interval.
+         */
+        private final List<Integer> intervalEnds = new ArrayList<>();
+
+        /**
+         * Initialise the scan.
+         *
+         * @param scanHeader   The SOS segment including the marker and length.
+         * @param scanData     The entropy coded data including any restart markers.
+         * @param scanTables   The Huffman tables in effect for the scan.
+         * @param interval     The number of MCUs between restart markers or zero.
+         */
+        private Scan(final byte[] scanHeader, final byte[] scanData, final HuffmanTable[] scanTables,
+                     final int interval) {
+            header = scanHeader;
+            data = scanData;
+            tables = scanTables;
+            restartInterval = interval;
+        }
+
+        /**
+         * Decode the Huffman symbols of the scan counting how often each symbol of each table is used.
+         *
+         * @param frame       The frame that the scan belongs to.
+         * @param frequencies The symbol frequencies indexed by table which are updated.
+         * @throws IOException If the scan is not a sequential scan or the entropy coded data is not valid.
+         */
+        private void decode(final Frame frame, final long[][] frequencies) throws IOException {
+            final int count = header.length >= 5 ? header[4] & 0xFF : 0;
+            if (count < 1 || count > 4 || header.length < 8 + count * 2) {
+                throw new IOException("Invalid JPEG scan header");
+            }
+            final int spectralStart = header[5 + count * 2] & 0xFF;
+            final int spectralEnd = header[6 + count * 2] & 0xFF;
+            final int approximation = header[7 + count * 2] & 0xFF;
+            if (spectralStart != 0 || spectralEnd != 63 || approximation != 0) {
+                throw new IOException("JPEG scan is not sequential");
+            }
+            final int[] components = new int[count];
+            final int[] dcTables = new int[count];
+            final int[] acTables = new int[count];
+            for (int i = 0; i < count; i++) {
+                components[i] = frame.indexOf(header[5 + i * 2] & 0xFF);
+                dcTables[i] = (header[6 + i * 2] & 0xFF) >> 4;
+                acTables[i] = TABLE_SLOTS + (header[6 + i * 2] & 0x0F);
+                if (dcTables[i] >= TABLE_SLOTS || acTables[i] >= 2 * TABLE_SLOTS || tables[dcTables[i]] == null
+                        || tables[acTables[i]] == null) {
+                    throw new IOException("JPEG scan refers to an undefined Huffman table");
+                }
+                if (frequencies[dcTables[i]] == null) {
+                    frequencies[dcTables[i]] = new long[257];
+                }
+                if (frequencies[acTables[i]] == null) {
+                    frequencies[acTables[i]] = new long[257];
+                }
+            }
+
+            // Work out the number of MCUs and the blocks of each component in an MCU
+
+            final long mcuCount;
+            final int[] blocksPerMcu = new int[count];
+            if (count == 1) {
+                final int c = components[0];
+                final long componentWidth = ceilDiv((long) frame.width * frame.horizontal[c], frame.maxHorizontal);
+                final long componentHeight = ceilDiv((long) frame.height * frame.vertical[c], frame.maxVertical);
+                mcuCount = ceilDiv(componentWidth, 8) * ceilDiv(componentHeight, 8);
+                blocksPerMcu[0] = 1;
+            } else {
+                mcuCount = ceilDiv(frame.width, 8L * frame.maxHorizontal)
+                        * ceilDiv(frame.height, 8L * frame.maxVertical);
+                for (int i = 0; i < count; i++) {
+                    blocksPerMcu[i] = frame.horizontal[components[i]] * frame.vertical[components[i]];
+                }
+            }
+
+            // Decode each restart interval
+
+            final List<byte[]> intervals = splitIntervals(data);
+            final long interval = restartInterval == 0 ? mcuCount : restartInterval;
+            if (ceilDiv(mcuCount, interval) > intervals.size()) {
+                throw new IOException("JPEG scan has fewer restart intervals than expected");
+            }
+            long mcu = 0;
+            for (final byte[] intervalData : intervals) {
+                if (mcu >= mcuCount) {
+                    break;
+                }
+                final BitReader reader = new BitReader(intervalData);
+                final long end = Math.min(mcuCount, mcu + interval);
+                for (; mcu < end; mcu++) {
+                    for (int i = 0; i < count; i++) {
+                        for (int block = 0; block < blocksPerMcu[i]; block++) {
+                            decodeBlock(reader, dcTables[i], acTables[i], frequencies);
+                        }
+                    }
+                }
+                intervalEnds.add(symbolCount);
+            }
+        }
+
+        /**
+         * Decode the Huffman symbols of a single block.
+         *
+         * @param reader      The entropy coded data.
+         * @param dcTable     The index of the DC table.
+         * @param acTable     The index of the AC table.
+         * @param frequencies The symbol frequencies indexed by table which are updated.
+         * @throws IOException If the entropy coded data is not valid.
+         */
+        private void decodeBlock(final BitReader reader, final int dcTable, final int acTable,
+                                 final long[][] frequencies) throws IOException {
+            final int dc = tables[dcTable].decode(reader);
+            if (dc > 16) {
+                throw new IOException("Invalid JPEG DC coefficient size");
+            }
+            add(dcTable, dc, reader.read(dc), frequencies);
+            int k = 1;
+            while (k < 64) {
+                final int ac = tables[acTable].decode(reader);
+                final int size = ac & 0x0F;
+                add(acTable, ac, reader.read(size), frequencies);
+                if (size == 0) {
+                    if (ac != 0xF0) {
+                        break;
+                    }
+                    k += 16;
+                } else {
+                    k += (ac >> 4) + 1;
+                }
+            }
+            if (k > 64) {
+                throw new IOException("Invalid JPEG AC coefficient run");
+            }
+        }
+
+        /**
+         * Record a decoded symbol.
+         *
+         * @param table       The index of the table.
+         * @param symbol      The symbol.
+         * @param extra       The additional bits that follow the symbol.
+         * @param frequencies The symbol frequencies indexed by table which are updated.
+         */
+        private void add(final int table, final int symbol, final int extra, final long[][] frequencies) {
+            if (symbolCount == symbols.length) {
+                symbols = Arrays.copyOf(symbols, symbolCount * 2);
+                extraBits = Arrays.copyOf(extraBits, symbolCount * 2);
+            }
+            symbols[symbolCount] = table << 8 | symbol;
+            extraBits[symbolCount] = extra;
+            symbolCount++;
+            frequencies[table][symbol]++;
+        }
+
+        /**
+         * Write the scan re-encoding the decoded symbols with new Huffman tables.
+         *
+         * @param out        The output.
+         * @param newTables The new Huffman tables indexed by class and slot.
+         */
+        private void encode(final ByteArrayOutputStream out, final HuffmanTable[] newTables) {
+            out.write(header, 0, header.length);
+            int index = 0;
+            for (int interval = 0; interval < intervalEnds.size(); interval++) {
+                if (interval > 0) {
+                    out.write(0xFF);
+                    out.write(RST0 + (interval - 1) % 8);
+                }
+                final BitWriter writer = new BitWriter(out);
+                for (; index < intervalEnds.get(interval); index++) {
+                    final int table = symbols[index] >> 8;
+                    final int symbol = symbols[index] & 0xFF;
+                    final HuffmanTable huffmanTable = newTables[table];
+                    writer.write(huffmanTable.codes[symbol], huffmanTable.lengths[symbol]);
+                    writer.write(extraBits[index], table < TABLE_SLOTS ? symbol : symbol & 0x0F);
+                }
+                writer.flush();
+            }
+        }
+
+        /**
+         * Split the entropy coded data at the restart markers removing the stuffed zero bytes.
+         *
+         * @param entropyData The entropy coded data.
+         * @return The data of each restart interval.
+         */
+        private static List<byte[]> splitIntervals(final byte[] entropyData) {
+            final List<byte[]> intervals = new ArrayList<>();
+            final ByteArrayOutputStream current = new ByteArrayOutputStream(entropyData.length);
+            for (int i = 0; i < entropyData.length; i++) {
+                final int b = entropyData[i] & 0xFF;
+                if (b == 0xFF && i + 1 < entropyData.length) {
+                    final int next = entropyData[i + 1] & 0xFF;
+                    if (next == 0) {
+                        current.write(0xFF);
+                        i++;
+                    } else if (next >= RST0 && next <= RST0 + 7) {
+                        intervals.add(current.toByteArray());
+                        current.reset();
+                        i++;
+                    }
+                } else {
+                    current.write(b);
+                }
+            }
+            intervals.add(current.toByteArray());
+            return intervals;
+        }
+
+        /**
+         * Divide rounding up.
+         *
+         * @param dividend The dividend.
+         * @param divisor  The divisor.
+         * @return The quotient rounded up.
+         */
+        private static long ceilDiv(final long dividend, final long divisor) {
+            return (dividend + divisor - 1) / divisor;
+        }
+    }
+
+    /**
+     * A Huffman table that can decode symbols and encode them with canonical codes.
+     */
+    private static final class HuffmanTable {
+
+        /**
+         * The number of codes of each length from 1 to 16. Index 0 is unused.
+         */
+        private final int[] counts;
+
+        /**
+         * The symbols in order of increasing code length.
+         */
+        private final int[] symbols;
+
+        /**
+         * The code of each symbol.
+         */
+        private final int[] codes = new int[256];
+
+        /**
+         * The code length of each symbol or zero if the symbol has no code.
+         */
+        private final int[] lengths = new int[256];
+
+        /**
+         * The largest code of each length or -1 if there are no codes of that length.
+         */
+        private final int[] maxCode = new int[18];
+
+        /**
+         * The index in {@link #symbols} of the first symbol of each length minus the smallest code of that length.
+         */
+        private final int[] offsets = new int[17];
+
+        /**
+         * Build the canonical codes of a table.
+         *
+         * @param codeCounts   The number of codes of each length from 1 to 16.
+         * @param tableSymbols The symbols in order of increasing code length.
+         */
+        private HuffmanTable(final int[] codeCounts, final int[] tableSymbols) {
+            counts = codeCounts;
+            symbols = tableSymbols;
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                offsets[length] = index - code;
+                for (int i = 0; i < counts[length]; i++) {
+                    codes[symbols[index]] = code;
+                    lengths[symbols[index]] = length;
+                    index++;
+                    code++;
+                }
+                maxCode[length] = counts[length] == 0 ? -1 : code - 1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Decode a symbol.
+         *
+         * @param reader The entropy coded data.
+         * @return The symbol.
+         * @throws IOException If the data does not hold a valid code.
+         */
+        private int decode(final BitReader reader) throws IOException {
+            int code = 0;
+            for (int length = 1; length <= 16; length++) {
+                code = code << 1 | reader.read(1);
+                if (code <= maxCode[length]) {
+                    return symbols[offsets[length] + code];
+                }
+            }
+            throw new IOException("Invalid JPEG Huffman code");
+        }
+
+        /**
+         * Generate the optimal table for the symbol frequencies limiting the code length to 16 bits and reserving the
+         * code of all one bits as required by the JPEG standard (Annex K.2).
+         *
+         * @param symbolFrequencies The frequency of each symbol with one extra slot for the reserved code.
+         * @return The table.
+         */
+        private static HuffmanTable optimal(final long[] symbolFrequencies) {
+            final long[] frequency = Arrays.copyOf(symbolFrequencies, 257);
+            boolean used = false;
+            for (int i = 0; i < 256; i++) {
+                used |= frequency[i] > 0;
+            }
+            if (!used) {
+                frequency[0] = 1;
+            }
+            frequency[256] = 1;
+            final int[] codeSize = new int[257];
+            final int[] others = new int[257];
+            Arrays.fill(others, -1);
+            while (true) {
+                int c1 = -1;
+                long smallest = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (frequency[i] > 0 && frequency[i] <= smallest) {
+                        smallest = frequency[i];
+                        c1 = i;
+                    }
+                }
+                int c2 = -1;
+                smallest = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (frequency[i] > 0 && frequency[i] <= smallest && i != c1) {
+                        smallest = frequency[i];
+                        c2 = i;
+                    }
+                }
+                if (c2 < 0) {
+                    break;
+                }
+                frequency[c1] += frequency[c2];
+                frequency[c2] = 0;
+                codeSize[c1]++;
+                while (others[c1] >= 0) {
+                    c1 = others[c1];
+                    codeSize[c1]++;
+                }
+                others[c1] = c2;
+                codeSize[c2]++;
+                while (others[c2] >= 0) {
+                    c2 = others[c2];
+                    codeSize[c2]++;
+                }
+            }
+            final int[] bits = new int[64];
+            for (int i = 0; i <= 256; i++) {
+                if (codeSize[i] > 0) {
+                    bits[codeSize[i]]++;
+                }
+            }
+            for (int i = bits.length - 1; i > 16; i--) {
+                while (bits[i] > 0) {
+                    int j = i - 2;
+                    while (bits[j] == 0) {
+                        j--;
+                    }
+                    bits[i] -= 2;
+                    bits[i - 1]++;
+                    bits[j + 1] += 2;
+                    bits[j]--;
+                }
+            }
+            int longest = 16;
+            while (bits[longest] == 0) {
+                longest--;
+            }
+            bits[longest]--;
+            final int[] tableSymbols = new int[256];
+            int count = 0;
+            for (int length = 1; length < bits.length; length++) {
+                for (int symbol = 0; symbol < 256; symbol++) {
+                    if (codeSize[symbol] == length) {
+                        tableSymbols[count++] = symbol;
+                    }
+                }
+            }
+            return new HuffmanTable(Arrays.copyOf(bits, 17), Arrays.copyOf(tableSymbols, count));
+        }
+    }
+
+    /**
+     * Reads bits from the unstuffed entropy coded data of a restart interval.
+     */
+    private static final class BitReader {
+
+        /**
+         * The data.
+         */
+        private final byte[] data;
+
+        /**
+         * The offset of the next byte.
+         */
+        private int position;
+
+        /**
+         * The bits that have been read from the data but not consumed.
+         */
+        private int buffer;
+
+        /**
+         * The number of bits in the buffer.
+         */
+        private int available;
+
+        /**
+         * Initialise the reader.
+         *
+         * @param intervalData The data.
+         */
+        private BitReader(final byte[] intervalData) {
+            data = intervalData;
+        }
+
+        /**
+         * Read bits most significant first.
+         *
+         * @param count The number of bits from 0 to 16.
+         * @return The bits.
+         * @throws IOException If there are not enough bits.
+         */
+        private int read(final int count) throws IOException {
+            while (available < count) {
+                if (position >= data.length) {
+                    throw new IOException("Unexpected end of JPEG entropy coded data");
+                }
+                buffer = buffer << 8 | data[position++] & 0xFF;
+                available += 8;
+            }
+            available -= count;
+            return (buffer >>> available) & ((1 << count) - 1);
+        }
+    }
+
+    /**
+     * Writes bits to entropy coded data stuffing a zero byte after each 0xFF byte.
+     */
+    private static final class BitWriter {
+
+        /**
+         * The output.
+         */
+        private final ByteArrayOutputStream out;
+
+        /**
+         * The bits that have not been written.
+         */
+        private long buffer;
+
+        /**
+         * The number of bits in the buffer.
+         */
+        private int available;
+
+        /**
+         * Initialise the writer.
+         *
+         * @param output The output.
+         */
+        private BitWriter(final ByteArrayOutputStream output) {
+            out = output;
+        }
+
+        /**
+         * Write bits most significant first.
+         *
+         * @param bits  The bits.
+         * @param count The number of bits from 0 to 16.
+         */
+        private void write(final int bits, final int count) {
+            buffer = buffer << count | bits & ((1L << count) - 1);
+            available += count;
+            while (available >= 8) {
+                available -= 8;
+                writeByte((int) (buffer >>> available) & 0xFF);
+            }
+        }
+
+        /**
+         * Pad the final byte with one bits.
+         */
+        private void flush() {
+            if (available > 0) {
+                write((1 << (8 - available)) - 1, 8 - available);
+            }
+            buffer = 0;
+        }
+
+        /**
+         * Write a byte stuffing a zero byte after 0xFF.
+         *
+         * @param b The byte.
+         */
+        private void writeByte(final int b) {
+            out.write(b);
+            if (b == 0xFF) {
+                out.write(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event that is emitted when the public/private key pair is loaded from a PEM file and
+ * decrypted if it is secured by a password.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.LoadKeyPair")
+@Label("Load Key Pair")
+@Category({"Maven", "CRX"})
+@Description("The public/private key pair loaded from a PEM file")
+final class KeyPairEvent extends Event {
+
+    /**
+     * The path of the PEM file.
+     */
+    @Label("PEM File")
+    String pemFile;
+
+    /**
+     * {@code true} if a password was supplied to decrypt the PEM file.
+     */
+    @Label("Encrypted")
+    boolean encrypted;
+
+    /**
+     * {@code true} if the key pair was loaded.
+     */
+    @Label("Loaded")
+    boolean loaded;
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Static helper methods for loading the public/private key pair used to sign CRX archives from a PEM file. Unencrypted
+ * PKCS#8 ({@code PRIVATE KEY}) and PKCS#1 ({@code RSA PRIVATE KEY}) PEM files are parsed with the JDK alone. Bouncy
+ * Castle is only loaded for the PEM files that need it such as encrypted legacy PEM files.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class KeyPairUtils {
+
+    /**
+     * The DER encoding of the PKCS#8 version and the rsaEncryption algorithm identifier that precede a PKCS#1 private
+     * key when it is wrapped in a PKCS#8 structure.
+     */
+    private static final byte[] PKCS8_RSA_PREFIX = {
+            0x02, 0x01, 0x00, 0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01,
+            0x01, 0x01, 0x05, 0x00
+    };
+
+    /**
+     * The DER tag for a SEQUENCE.
+     */
+    private static final int DER_SEQUENCE = 0x30;
+
+    /**
+     * The DER tag for an OCTET STRING.
+     */
+    private static final int DER_OCTET_STRING = 0x04;
+
+    /**
+     * The prefix of a PEM encapsulation boundary.
+     */
+    private static final String BEGIN = "-----BEGIN ";
+
+    /**
+     * The prefix of a PEM encapsulation boundary.
+     */
+    private static final String END = "-----END ";
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private KeyPairUtils() {
+    }
+
+    /**
+     * Read the public/private key pair from a PEM file. The JDK is used for unencrypted PKCS#8 and PKCS#1 PEM files
+     * and Bouncy Castle is used for everything else.
+     *
+     * @param pemFile     The location of the .pem file.
+     * @param pemPassword The password used to secure the .pem file or {@code null} if it is not secured.
+     * @return The public/private key pair.
+     * @throws IOException              If the PEM file could not be read or does not contain an RSA private key.
+     * @throws InvalidKeySpecException  If the RSA public key could not be generated.
+     * @throws NoSuchAlgorithmException If the RSA algorithm is not supported.
+     */
+    public static KeyPair readKeyPair(final File pemFile, final String pemPassword)
+            throws IOException, InvalidKeySpecException, NoSuchAlgorithmException {
+        final byte[] der = readUnencryptedKey(pemFile);
+        if (der != null) {
+            try {
+                final PrivateKey privateKey = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(der));
+                return toKeyPair(privateKey);
+            } catch (final InvalidKeySpecException e) {
+                // Leave it to Bouncy Castle to make sense of the key
+            }
+        }
+        return BouncyCastleKeyPairReader.readKeyPair(pemFile, pemPassword);
+    }
+
+    /**
+     * Derive the public/private key pair from a RSA private key.
+     *
+     * @param key Object loaded from the PEM file.
+     * @return The public/private key pair.
+     * @throws IOException              If the object is not a RSA private key.
+     * @throws InvalidKeySpecException  If the key is inconsistent or the public key could not be generated.
+     * @throws NoSuchAlgorithmException If the RSA algorithm is not supported.
+     */
+    static KeyPair toKeyPair(final Object key)
+            throws IOException, InvalidKeySpecException, NoSuchAlgorithmException {
+        if (key instanceof RSAPrivateCrtKey) {
+            final RSAPrivateCrtKey privateCrtKey = (RSAPrivateCrtKey) key;
+            final BigInteger exponent = privateCrtKey.getPublicExponent();
+            final BigInteger modulus = privateCrtKey.getModulus();
+            if (!privateCrtKey.getPrimeP().multiply(privateCrtKey.getPrimeQ()).equals(modulus)) {
+                throw new InvalidKeySpecException("The RSA private key is inconsistent");
+            }
+            final RSAPublicKeySpec publicKeySpec = new RSAPublicKeySpec(modulus, exponent);
+            final PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(publicKeySpec);
+            return new KeyPair(publicKey, privateCrtKey);
+        } else {
+            throw new IOException("Could not load the public/private key from invalid PEM file");
+        }
+    }
+
+    /**
+     * Extract the PKCS#8 encoding of the private key from a PEM file if it is an unencrypted PKCS#8 or PKCS#1 PEM
+     * file.
+     *
+     * @param pemFile The location of the .pem file.
+     * @return The PKCS#8 encoding or {@code null} if the PEM file is encrypted or uses another format.
+     * @throws IOException If the PEM file could not be read.
+     */
+    private static byte[] readUnencryptedKey(final File pemFile) throws IOException {
+        final List<String> lines = Files.readAllLines(pemFile.toPath(), StandardCharsets.US_ASCII);
+        String type = null;
+        final StringBuilder base64 = new StringBuilder();
+        for (final String rawLine : lines) {
+            final String line = rawLine.trim();
+            if (type == null) {
+                if (line.startsWith(BEGIN) && line.endsWith("-----")) {
+                    type = line.substring(BEGIN.length(), line.length() - 5);
+                }
+            } else if (line.startsWith(END)) {
+                break;
+            } else if (line.indexOf(':') >= 0) {
+                return null;
+            } else {
+                base64.append(line);
+            }
+        }
+        if (type == null) {
+            return null;
+        }
+        final byte[] der;
+        try {
+            der = Base64.getDecoder().decode(base64.toString());
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+        if ("PRIVATE KEY".equals(type)) {
+            return der;
+        } else if ("RSA PRIVATE KEY".equals(type)) {
+            return wrapPKCS1(der);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Wrap a PKCS#1 RSA private key in a PKCS#8 structure so that it can be loaded by the JDK.
+     *
+     * @param pkcs1 The DER encoding of the PKCS#1 private key.
+     * @return The DER encoding of the PKCS#8 private key.
+     */
+    private static byte[] wrapPKCS1(final byte[] pkcs1) {
+        final ByteArrayOutputStream octetString = new ByteArrayOutputStream();
+        octetString.write(DER_OCTET_STRING);
+        writeLength(octetString, pkcs1.length);
+        octetString.write(pkcs1, 0, pkcs1.length);
+        final ByteArrayOutputStream pkcs8 = new ByteArrayOutputStream();
+        pkcs8.write(DER_SEQUENCE);
+        writeLength(pkcs8, PKCS8_RSA_PREFIX.length + octetString.size());
+        pkcs8.write(PKCS8_RSA_PREFIX, 0, PKCS8_RSA_PREFIX.length);
+        pkcs8.write(octetString.toByteArray(), 0, octetString.size());
+        return pkcs8.toByteArray();
+    }
+
+    /**
+     * Write a DER length.
+     *
+     * @param out    The output stream.
+     * @param length The length.
+     */
+    private static void writeLength(final ByteArrayOutputStream out, final int length) {
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int count = 0;
+            for (int remaining = length; remaining > 0; remaining >>>= 8) {
+                count++;
+            }
+            out.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--) {
+                out.write(length >>> (i * 8));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minifies the JSON, CSS and JavaScript files in the staging directory. Files that are not valid UTF-8 or that the
+ * minifiers cannot tokenise are left unchanged.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class Minifier extends FileOptimiser {
+
+    /**
+     * The version of the minifiers which is part of the cache key.
+     */
+    private static final String VERSION = "1";
+
+    /**
+     * The byte order mark that is kept at the start of a file.
+     */
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    /**
+     * Initialise the minifier.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     * @param directory   The directory in which the minified files are cached or {@code null} if they are not
+     *                    cached.
+     */
+    public Minifier(final int threadCount, final File directory) {
+        super(threadCount, directory, VERSION);
+    }
+
+    /**
+     * Determine whether a file can be minified from its extension.
+     *
+     * @param name The name of the file.
+     * @return {@code true} if the file is a JSON, CSS or JavaScript file. Otherwise, {@code false}.
+     */
+    public static boolean isMinifiable(final String name) {
+        final String extension = getExtension(name);
+        return "json".equals(extension) || "css".equals(extension) || "js".equals(extension);
+    }
+
+    /**
+     * Minify the contents of a file using the minifier for its extension.
+     *
+     * @param name     The name of the file which is used to determine its format.
+     * @param original The contents of the file.
+     * @return The minified contents or the original contents if the file could not be minified.
+     */
+    @Override
+    protected byte[] optimise(final String name, final byte[] original) {
+        try {
+            final String source = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(original))
+                    .toString();
+            final boolean byteOrderMark = source.startsWith(BYTE_ORDER_MARK);
+            final String body = byteOrderMark ? source.substring(BYTE_ORDER_MARK.length()) : source;
+            final String extension = getExtension(name);
+            final String minified;
+            if ("json".equals(extension)) {
+                minified = MinifyUtils.minifyJson(body);
+            } else if ("css".equals(extension)) {
+                minified = MinifyUtils.minifyCss(body);
+            } else if ("js".equals(extension)) {
+                minified = MinifyUtils.minifyJs(body);
+            } else {
+                return original;
+            }
+            return ((byteOrderMark ? BYTE_ORDER_MARK : "") + minified).getBytes(StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            // The file is not valid UTF-8 or could not be tokenised so it is packaged unchanged
+            return original;
+        }
+    }
+}
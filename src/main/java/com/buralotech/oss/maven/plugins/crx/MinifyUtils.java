@@ -0,0 +1,452 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Static helper methods that minify JSON, CSS and JavaScript source. The minifiers only remove comments and
+ * whitespace that does not change the meaning of the source. They do not rename identifiers or rewrite expressions.
+ * Comments that start with {@code /*!} are kept in CSS and JavaScript because they are conventionally used for
+ * licence notices.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class MinifyUtils {
+
+    /**
+     * The keywords after which a {@code /} starts a regular expression literal rather than a division.
+     */
+    private static final Set<String> REGEX_KEYWORDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "await", "case", "delete", "do", "else", "in", "instanceof", "new", "of", "return", "throw", "typeof",
+            "void", "yield")));
+
+    /**
+     * The characters in CSS around which whitespace can be removed.
+     */
+    private static final String CSS_PUNCTUATION = "{};,>";
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private MinifyUtils() {
+    }
+
+    /**
+     * Minify JSON by removing whitespace and comments outside strings. Comments are allowed because Chrome accepts
+     * them in {@code manifest.json}.
+     *
+     * @param json The JSON source.
+     * @return The minified JSON.
+     * @throws IOException If a string or comment is not terminated.
+     */
+    public static String minifyJson(final String json) throws IOException {
+        final StringBuilder out = new StringBuilder(json.length());
+        int i = 0;
+        while (i < json.length()) {
+            final char c = json.charAt(i);
+            if (c == '"') {
+                final int end = skipString(json, i);
+                out.append(json, i, end);
+                i = end;
+            } else if (c == '/' && json.startsWith("//", i)) {
+                i = skipLineComment(json, i);
+            } else if (c == '/' && json.startsWith("/*", i)) {
+                i = skipBlockComment(json, i);
+            } else {
+                if (!Character.isWhitespace(c)) {
+                    out.append(c);
+                }
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Minify CSS by removing comments, collapsing whitespace and removing whitespace around braces, semicolons,
+     * commas and child combinators and the semicolon before a closing brace. Whitespace around {@code +} and
+     * {@code -} and before {@code :} is kept because it is significant in {@code calc()} expressions and selectors.
+     *
+     * @param css The CSS source.
+     * @return The minified CSS.
+     * @throws IOException If a string or comment is not terminated.
+     */
+    public static String minifyCss(final String css) throws IOException {
+        final StringBuilder out = new StringBuilder(css.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < css.length()) {
+            final char c = css.charAt(i);
+            if (c == '"' || c == '\'') {
+                if (pendingSpace && isCssSpaceNeeded(out, c)) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                final int end = skipString(css, i);
+                out.append(css, i, end);
+                i = end;
+            } else if (c == '/' && css.startsWith("/*", i)) {
+                final int end = skipBlockComment(css, i);
+                if (css.startsWith("/*!", i)) {
+                    out.append(css, i, end);
+                } else {
+                    pendingSpace = true;
+                }
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+            } else {
+                if (c == '}' && out.length() > 0 && last(out) == ';') {
+                    out.setLength(out.length() - 1);
+                }
+                if (pendingSpace && CSS_PUNCTUATION.indexOf(c) < 0 && isCssSpaceNeeded(out, c)) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Determine whether whitespace that was skipped in CSS source must be kept as a single space before the next
+     * character. Whitespace is not needed at the start, after punctuation, after the colon of a declaration or a
+     * pseudo-class or after a kept comment.
+     *
+     * @param out  The output so far.
+     * @param next The next character.
+     * @return {@code true} if a space must be written. Otherwise, {@code false}.
+     */
+    private static boolean isCssSpaceNeeded(final StringBuilder out, final char next) {
+        if (out.length() == 0) {
+            return false;
+        }
+        final char previous = last(out);
+        return CSS_PUNCTUATION.indexOf(previous) < 0 && previous != ':'
+                && !(previous == '/' && out.length() > 1 && out.charAt(out.length() - 2) == '*');
+    }
+
+    /**
+     * Minify JavaScript by removing comments and whitespace. Strings, template literals and regular expression
+     * literals are copied unchanged. A line break is kept wherever automatic semicolon insertion could depend on it
+     * and a space is kept wherever removing it would join two tokens.
+     *
+     * @param js The JavaScript source.
+     * @return The minified JavaScript.
+     * @throws IOException If a string, template literal, regular expression literal or comment is not terminated or
+     *                     a {@code /} could be either a division operator or a regular expression literal.
+     */
+    public static String minifyJs(final String js) throws IOException {
+        final StringBuilder out = new StringBuilder(js.length());
+        boolean pendingSpace = false;
+        boolean pendingNewline = false;
+        int i = 0;
+        while (i < js.length()) {
+            final char c = js.charAt(i);
+            if (c == '/' && js.startsWith("//", i)) {
+                i = skipLineComment(js, i);
+                pendingSpace = true;
+            } else if (c == '/' && js.startsWith("/*", i)) {
+                final int end = skipBlockComment(js, i);
+                if (js.startsWith("/*!", i)) {
+                    separate(out, pendingSpace, pendingNewline, '/');
+                    out.append(js, i, end);
+                    pendingNewline = true;
+                } else {
+                    pendingSpace = true;
+                    pendingNewline |= js.substring(i, end).indexOf('\n') >= 0;
+                }
+                i = end;
+            } else if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029') {
+                pendingNewline = true;
+                i++;
+            } else if (Character.isWhitespace(c) || c == '\u00A0' || c == '\uFEFF') {
+                pendingSpace = true;
+                i++;
+            } else {
+                separate(out, pendingSpace, pendingNewline, c);
+                pendingSpace = false;
+                pendingNewline = false;
+                final int end;
+                if (c == '"' || c == '\'') {
+                    end = skipString(js, i);
+                } else if (c == '`') {
+                    end = skipTemplate(js, i);
+                } else if (c == '/' && isRegexAllowed(out, i)) {
+                    end = skipRegex(js, i);
+                } else {
+                    end = i + 1;
+                }
+                out.append(js, i, end);
+                i = end;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the separator needed between the output so far and the next character of JavaScript source after
+     * whitespace or comments were skipped.
+     *
+     * @param out            The output so far.
+     * @param pendingSpace   {@code true} if whitespace or comments were skipped.
+     * @param pendingNewline {@code true} if a line break was skipped.
+     * @param next           The next character.
+     */
+    private static void separate(final StringBuilder out, final boolean pendingSpace, final boolean pendingNewline,
+                                 final char next) {
+        if (out.length() == 0 || !pendingSpace && !pendingNewline) {
+            return;
+        }
+        final char previous = last(out);
+        if (pendingNewline && isNewlineSignificantAfter(previous) && isNewlineSignificantBefore(next)) {
+            out.append('\n');
+        } else if (isIdentifierPart(previous) && isIdentifierPart(next)
+                || (previous == '+' || previous == '-') && next == previous
+                || previous == '/' && (next == '/' || next == '*')
+                || Character.isDigit(previous) && next == '.') {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * Determine whether a line break after a character could end a statement through automatic semicolon insertion.
+     *
+     * @param c The character.
+     * @return {@code true} if the line break must be kept. Otherwise, {@code false}.
+     */
+    private static boolean isNewlineSignificantAfter(final char c) {
+        return isIdentifierPart(c) || ")]}\"'`+-/".indexOf(c) >= 0;
+    }
+
+    /**
+     * Determine whether a line break before a character could end a statement through automatic semicolon insertion.
+     *
+     * @param c The character.
+     * @return {@code true} if the line break must be kept. Otherwise, {@code false}.
+     */
+    private static boolean isNewlineSignificantBefore(final char c) {
+        return isIdentifierPart(c) || "([{\"'`+-/!~".indexOf(c) >= 0;
+    }
+
+    /**
+     * Determine whether a character can be part of an identifier, keyword or number.
+     *
+     * @param c The character.
+     * @return {@code true} if the character can be part of an identifier. Otherwise, {@code false}.
+     */
+    private static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '\\' || c > 0x7F;
+    }
+
+    /**
+     * Determine whether a {@code /} that follows the output so far starts a regular expression literal. A regular
+     * expression literal cannot follow an identifier, number, closing square bracket or literal unless the identifier
+     * is a keyword such as {@code return}. After a closing parenthesis or brace the {@code /} may be either a division
+     * operator or the start of a regular expression literal (e.g. {@code if (x) /a/.test(s)}) depending on the
+     * statement so the source is rejected rather than guessing.
+     *
+     * @param out    The output so far which may end with a separator.
+     * @param offset The offset of the {@code /} in the source.
+     * @return {@code true} if a regular expression literal is allowed. Otherwise, {@code false}.
+     * @throws IOException If the {@code /} follows a closing parenthesis or brace.
+     */
+    private static boolean isRegexAllowed(final StringBuilder out, final int offset) throws IOException {
+        int length = out.length();
+        while (length > 0 && Character.isWhitespace(out.charAt(length - 1))) {
+            length--;
+        }
+        if (length == 0) {
+            return true;
+        }
+        final char previous = out.charAt(length - 1);
+        if (isIdentifierPart(previous)) {
+            int start = length;
+            while (start > 0 && isIdentifierPart(out.charAt(start - 1))) {
+                start--;
+            }
+            return REGEX_KEYWORDS.contains(out.substring(start, length));
+        }
+        if (previous == ')' || previous == '}') {
+            throw new IOException("Ambiguous division or regular expression at offset " + offset);
+        }
+        return "]\"'`".indexOf(previous) < 0;
+    }
+
+    /**
+     * Get the last character of the output so far.
+     *
+     * @param out The output so far which must not be empty.
+     * @return The last character.
+     */
+    private static char last(final StringBuilder out) {
+        return out.charAt(out.length() - 1);
+    }
+
+    /**
+     * Find the end of a string literal.
+     *
+     * @param source The source.
+     * @param start  The offset of the opening quote.
+     * @return The offset after the closing quote.
+     * @throws IOException If the string is not terminated.
+     */
+    private static int skipString(final String source, final int start) throws IOException {
+        final char quote = source.charAt(start);
+        int i = start + 1;
+        while (i < source.length()) {
+            final char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (c == '\n' && quote != '`') {
+                break;
+            } else {
+                i++;
+            }
+        }
+        throw new IOException("Unterminated string at offset " + start);
+    }
+
+    /**
+     * Find the end of a template literal including any nested substitutions.
+     *
+     * @param source The source.
+     * @param start  The offset of the opening backtick.
+     * @return The offset after the closing backtick.
+     * @throws IOException If the template literal is not terminated.
+     */
+    private static int skipTemplate(final String source, final int start) throws IOException {
+        int i = start + 1;
+        while (i < source.length()) {
+            final char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '`') {
+                return i + 1;
+            } else if (c == '$' && source.startsWith("${", i)) {
+                i = skipSubstitution(source, i + 2);
+            } else {
+                i++;
+            }
+        }
+        throw new IOException("Unterminated template literal at offset " + start);
+    }
+
+    /**
+     * Find the end of a substitution in a template literal.
+     *
+     * @param source The source.
+     * @param start  The offset after the opening {@code ${}.
+     * @return The offset after the closing brace.
+     * @throws IOException If the substitution is not terminated.
+     */
+    private static int skipSubstitution(final String source, final int start) throws IOException {
+        int depth = 0;
+        int i = start;
+        while (i < source.length()) {
+            final char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipString(source, i);
+            } else if (c == '`') {
+                i = skipTemplate(source, i);
+            } else if (c == '{') {
+                depth++;
+                i++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i + 1;
+                }
+                depth--;
+                i++;
+            } else {
+                i++;
+            }
+        }
+        throw new IOException("Unterminated template literal substitution at offset " + start);
+    }
+
+    /**
+     * Find the end of a regular expression literal including its flags.
+     *
+     * @param source The source.
+     * @param start  The offset of the opening slash.
+     * @return The offset after the closing slash.
+     * @throws IOException If the regular expression literal is not terminated.
+     */
+    private static int skipRegex(final String source, final int start) throws IOException {
+        boolean inClass = false;
+        int i = start + 1;
+        while (i < source.length()) {
+            final char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '\n') {
+                break;
+            } else if (c == '[') {
+                inClass = true;
+                i++;
+            } else if (c == ']') {
+                inClass = false;
+                i++;
+            } else if (c == '/' && !inClass) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        throw new IOException("Unterminated regular expression at offset " + start);
+    }
+
+    /**
+     * Find the end of a line comment.
+     *
+     * @param source The source.
+     * @param start  The offset of the comment.
+     * @return The offset of the line break that ends the comment or the end of the source.
+     */
+    private static int skipLineComment(final String source, final int start) {
+        final int end = source.indexOf('\n', start);
+        return end < 0 ? source.length() : end;
+    }
+
+    /**
+     * Find the end of a block comment.
+     *
+     * @param source The source.
+     * @param start  The offset of the comment.
+     * @return The offset after the end of the comment.
+     * @throws IOException If the comment is not terminated.
+     */
+    private static int skipBlockComment(final String source, final int start) throws IOException {
+        final int end = source.indexOf("*/", start + 2);
+        if (end < 0) {
+            throw new IOException("Unterminated comment at offset " + start);
+        }
+        return end + 2;
+    }
+}
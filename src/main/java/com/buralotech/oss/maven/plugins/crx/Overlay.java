@@ -0,0 +1,222 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.util.Objects;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Describes a {@code crx} or {@code zip} dependency whose contents are merged into the Chrome Extension when it is
+ * packaged. Files from the project's source directory take precedence over files from an overlay and files from an
+ * overlay take precedence over files from overlays declared after it.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class Overlay {
+
+    /**
+     * The group identifier of the overlay dependency.
+     */
+    private String groupId;
+
+    /**
+     * The artifact identifier of the overlay dependency.
+     */
+    private String artifactId;
+
+    /**
+     * The optional classifier of the overlay dependency.
+     */
+    private String classifier;
+
+    /**
+     * The type of the overlay dependency which is either {@code crx} or {@code zip}.
+     */
+    private String type = "crx";
+
+    /**
+     * A comma separated list of inclusion rules for the entries of the overlay.
+     */
+    private String includes;
+
+    /**
+     * A comma separated list of exclusion rules for the entries of the overlay.
+     */
+    private String excludes;
+
+    /**
+     * Specify that the overlay should be skipped.
+     */
+    private boolean skip;
+
+    /**
+     * Get the group identifier of the overlay dependency.
+     *
+     * @return The group identifier.
+     */
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Set the group identifier of the overlay dependency.
+     *
+     * @param id The group identifier.
+     */
+    public void setGroupId(final String id) {
+        groupId = id;
+    }
+
+    /**
+     * Get the artifact identifier of the overlay dependency.
+     *
+     * @return The artifact identifier.
+     */
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * Set the artifact identifier of the overlay dependency.
+     *
+     * @param id The artifact identifier.
+     */
+    public void setArtifactId(final String id) {
+        artifactId = id;
+    }
+
+    /**
+     * Get the optional classifier of the overlay dependency.
+     *
+     * @return The classifier or {@code null}.
+     */
+    public String getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Set the optional classifier of the overlay dependency.
+     *
+     * @param overlayClassifier The classifier.
+     */
+    public void setClassifier(final String overlayClassifier) {
+        classifier = overlayClassifier;
+    }
+
+    /**
+     * Get the type of the overlay dependency.
+     *
+     * @return The type which is either {@code crx} or {@code zip}.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Set the type of the overlay dependency.
+     *
+     * @param overlayType The type which is either {@code crx} or {@code zip}.
+     */
+    public void setType(final String overlayType) {
+        type = overlayType;
+    }
+
+    /**
+     * Get the comma separated list of inclusion rules for the entries of the overlay.
+     *
+     * @return The inclusion rules or {@code null} if all entries are included.
+     */
+    public String getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Set the comma separated list of inclusion rules for the entries of the overlay.
+     *
+     * @param overlayIncludes The inclusion rules.
+     */
+    public void setIncludes(final String overlayIncludes) {
+        includes = overlayIncludes;
+    }
+
+    /**
+     * Get the comma separated list of exclusion rules for the entries of the overlay.
+     *
+     * @return The exclusion rules or {@code null} if no entries are excluded.
+     */
+    public String getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Set the comma separated list of exclusion rules for the entries of the overlay.
+     *
+     * @param overlayExcludes The exclusion rules.
+     */
+    public void setExcludes(final String overlayExcludes) {
+        excludes = overlayExcludes;
+    }
+
+    /**
+     * Determine whether the overlay should be skipped.
+     *
+     * @return {@code true} if the overlay should be skipped. Otherwise, {@code false}.
+     */
+    public boolean isSkip() {
+        return skip;
+    }
+
+    /**
+     * Specify whether the overlay should be skipped.
+     *
+     * @param skipOverlay {@code true} if the overlay should be skipped.
+     */
+    public void setSkip(final boolean skipOverlay) {
+        skip = skipOverlay;
+    }
+
+    /**
+     * Determine whether a dependency is the one described by the overlay.
+     *
+     * @param artifact The dependency.
+     * @return {@code true} if the dependency matches the overlay. Otherwise, {@code false}.
+     */
+    public boolean matches(final Artifact artifact) {
+        return Objects.equals(groupId, artifact.getGroupId())
+                && Objects.equals(artifactId, artifact.getArtifactId())
+                && Objects.equals(Objects.toString(classifier, ""), Objects.toString(artifact.getClassifier(), ""))
+                && Objects.equals(type, artifact.getType());
+    }
+
+    /**
+     * Describe the overlay for use in log and error messages.
+     *
+     * @return The overlay coordinates.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(groupId).append(':').append(artifactId).append(':').append(type);
+        if (StringUtils.isNotEmpty(classifier)) {
+            builder.append(':').append(classifier);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Maintains the unpacked copies of overlay dependencies in a location that is shared between builds. Each artifact
+ * version is unpacked once into its own directory and a marker records the checksum of the artifact so that it is
+ * only unpacked again if the artifact changes (e.g. a new snapshot). Access to each directory is serialised with a
+ * file lock so that concurrent builds do not interfere with each other.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class OverlayCache {
+
+    /**
+     * Monitors used to serialise access to the cache directories from threads in the same JVM because file locks
+     * are held on behalf of the whole JVM.
+     */
+    private static final ConcurrentMap<File, Object> MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * The root directory of the cache.
+     */
+    private final File cacheDirectory;
+
+    /**
+     * The unpacker used to extract the overlays.
+     */
+    private final ArchiveUnpacker unpacker;
+
+    /**
+     * Initialise the cache.
+     *
+     * @param directory The root directory of the cache.
+     * @param threads   The number of threads used to extract each overlay or zero to use one per available processor.
+     */
+    public OverlayCache(final File directory, final int threads) {
+        cacheDirectory = directory;
+        unpacker = new ArchiveUnpacker(threads);
+    }
+
+    /**
+     * Call back with the directory containing the unpacked copy of an overlay dependency unpacking it first if the
+     * cache does not already hold an up to date copy. The lock on the directory is held until the callback returns
+     * so that another build cannot unpack the overlay again while its files are being read.
+     *
+     * @param artifact The overlay dependency.
+     * @param payload  The ZIP payload of the overlay dependency.
+     * @param callback The callback that reads the unpacked overlay.
+     * @throws IOException If the overlay could not be unpacked or the callback failed.
+     */
+    public void withDirectory(final Artifact artifact, final CRXPayload payload, final DirectoryCallback callback)
+            throws IOException {
+        final StringBuilder name = new StringBuilder();
+        if (StringUtils.isNotEmpty(artifact.getClassifier())) {
+            name.append(artifact.getClassifier());
+            name.append('-');
+        }
+        name.append(artifact.getType());
+        final File versionDirectory = new File(cacheDirectory, artifact.getGroupId() + File.separator
+                + artifact.getArtifactId() + File.separator + artifact.getVersion());
+        final File directory = new File(versionDirectory, name.toString()).getAbsoluteFile();
+        final File markerFile = new File(versionDirectory, name + ".unpacked");
+        final File lockFile = new File(versionDirectory, name + ".lock");
+        final String checksum = ChecksumUtils.checksum(artifact.getFile(), "SHA-256");
+
+        Files.createDirectories(versionDirectory.toPath());
+        synchronized (MONITORS.computeIfAbsent(directory, key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                if (!directory.isDirectory() || !ArchiveUnpacker.isUnpacked(markerFile, checksum, false)) {
+                    Files.deleteIfExists(markerFile.toPath());
+                    FileUtils.deleteDirectory(directory);
+                    unpacker.unpack(payload, directory);
+                    ArchiveUnpacker.markUnpacked(markerFile, checksum, false);
+                }
+                callback.apply(directory);
+            }
+        }
+    }
+
+    /**
+     * Reads the unpacked copy of an overlay dependency while the cache directory is locked.
+     *
+     * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+     * @since 2.0.0
+     */
+    public interface DirectoryCallback {
+
+        /**
+         * Read the unpacked copy of an overlay dependency.
+         *
+         * @param directory The directory containing the unpacked overlay.
+         * @throws IOException If the unpacked overlay could not be read.
+         */
+        void apply(File directory) throws IOException;
+    }
+}
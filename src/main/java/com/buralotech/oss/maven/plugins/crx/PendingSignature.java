@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Properties;
+
+/**
+ * Describes a CRX file whose ZIP payload has been packaged but not signed yet. The descriptor holds everything that
+ * is needed to sign and assemble the CRX file without reading the payload again: the version of the CRX archive
+ * format, the public key, the signed header data for CRX3 and the digest of the signed data that was computed while
+ * the payload was written.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class PendingSignature {
+
+    /**
+     * The extension of the descriptor which is appended to the name of the CRX file.
+     */
+    public static final String EXTENSION = ".pending";
+
+    /**
+     * The descriptor property that holds the version of the CRX archive format.
+     */
+    private static final String VERSION_PROPERTY = "version";
+
+    /**
+     * The descriptor property that holds the public key.
+     */
+    private static final String PUBLIC_KEY_PROPERTY = "publicKey";
+
+    /**
+     * The descriptor property that holds the signed header data.
+     */
+    private static final String SIGNED_HEADER_DATA_PROPERTY = "signedHeaderData";
+
+    /**
+     * The descriptor property that holds the digest of the signed data.
+     */
+    private static final String DIGEST_PROPERTY = "digest";
+
+    /**
+     * The descriptor property that holds the digest algorithms for the checksum sidecar files.
+     */
+    private static final String CHECKSUMS_PROPERTY = "checksums";
+
+    /**
+     * The version of the CRX archive format.
+     */
+    private final int version;
+
+    /**
+     * The DER encoded public key.
+     */
+    private final byte[] publicKey;
+
+    /**
+     * The signed header data or {@code null} for CRX2.
+     */
+    private final byte[] signedHeaderData;
+
+    /**
+     * The digest of the signed data.
+     */
+    private final byte[] digest;
+
+    /**
+     * The digest algorithms for the checksum sidecar files.
+     */
+    private final String[] checksumAlgorithms;
+
+    /**
+     * Initialise the descriptor.
+     *
+     * @param crxVersion The version of the CRX archive format.
+     * @param key        The DER encoded public key.
+     * @param header     The signed header data or {@code null} for CRX2.
+     * @param hash       The digest of the signed data.
+     * @param algorithms The digest algorithms for the checksum sidecar files.
+     */
+    public PendingSignature(final int crxVersion, final byte[] key, final byte[] header, final byte[] hash,
+                            final String... algorithms) {
+        version = crxVersion;
+        publicKey = key;
+        signedHeaderData = header;
+        digest = hash;
+        checksumAlgorithms = algorithms == null ? new String[0] : algorithms;
+    }
+
+    /**
+     * Get the descriptor file for a CRX file.
+     *
+     * @param crxFile The CRX file.
+     * @return The descriptor file.
+     */
+    public static File getDescriptorFile(final File crxFile) {
+        return new File(crxFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Get the unsigned ZIP payload for a CRX file.
+     *
+     * @param crxFile The CRX file.
+     * @return The ZIP payload.
+     */
+    public static File getPayloadFile(final File crxFile) {
+        return new File(crxFile.getPath() + EXTENSION + ".zip");
+    }
+
+    /**
+     * Get the CRX file that a descriptor file describes.
+     *
+     * @param descriptorFile The descriptor file.
+     * @return The CRX file.
+     */
+    public static File getCrxFile(final File descriptorFile) {
+        final String path = descriptorFile.getPath();
+        return new File(path.substring(0, path.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Load a descriptor.
+     *
+     * @param file The descriptor file.
+     * @return The descriptor.
+     * @throws IOException If the descriptor could not be read or is not valid.
+     */
+    public static PendingSignature load(final File file) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        try {
+            final String header = properties.getProperty(SIGNED_HEADER_DATA_PROPERTY);
+            final String[] algorithms = ParameterUtils.splitParameter(properties.getProperty(CHECKSUMS_PROPERTY));
+            return new PendingSignature(Integer.parseInt(properties.getProperty(VERSION_PROPERTY)),
+                    Base64.getDecoder().decode(properties.getProperty(PUBLIC_KEY_PROPERTY)),
+                    header == null ? null : Base64.getDecoder().decode(header),
+                    Base64.getDecoder().decode(properties.getProperty(DIGEST_PROPERTY)), algorithms);
+        } catch (final NullPointerException | IllegalArgumentException e) {
+            throw new IOException("The pending signature is not valid: " + file, e);
+        }
+    }
+
+    /**
+     * Store the descriptor via a temporary file so that a signing goal never sees a partially written descriptor.
+     *
+     * @param file The descriptor file.
+     * @throws IOException If the descriptor could not be written.
+     */
+    public void store(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(VERSION_PROPERTY, Integer.toString(version));
+        properties.setProperty(PUBLIC_KEY_PROPERTY, Base64.getEncoder().encodeToString(publicKey));
+        if (signedHeaderData != null) {
+            properties.setProperty(SIGNED_HEADER_DATA_PROPERTY, Base64.getEncoder().encodeToString(signedHeaderData));
+        }
+        properties.setProperty(DIGEST_PROPERTY, Base64.getEncoder().encodeToString(digest));
+        properties.setProperty(CHECKSUMS_PROPERTY, String.join(",", checksumAlgorithms));
+        final File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Get the version of the CRX archive format.
+     *
+     * @return The version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the public key.
+     *
+     * @return The DER encoded public key.
+     */
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Get the signed header data.
+     *
+     * @return The signed header data or {@code null} for CRX2.
+     */
+    public byte[] getSignedHeaderData() {
+        return signedHeaderData;
+    }
+
+    /**
+     * Get the digest of the signed data.
+     *
+     * @return The digest.
+     */
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    /**
+     * Get the digest algorithms for the checksum sidecar files.
+     *
+     * @return The digest algorithms.
+     */
+    public String[] getChecksumAlgorithms() {
+        return checksumAlgorithms;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Signs the CRX files that were packaged with deferred signing. The key pair is loaded once by the caller and the
+ * digests recorded in the {@link PendingSignature} descriptors are signed in parallel. Each CRX file is assembled from
+ * the signature and the unsigned ZIP payload without hashing the payload again and the descriptor and payload are
+ * removed once the CRX file has been written.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class PendingSigner {
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * The helper that signs the digests.
+     */
+    private final SignatureHelper signatureHelper;
+
+    /**
+     * The helper that outputs the CRX files.
+     */
+    private final ArchiveHelper archiveHelper;
+
+    /**
+     * The public/private key pair.
+     */
+    private final KeyPair keyPair;
+
+    /**
+     * Initialise the signer.
+     *
+     * @param threadCount The number of worker threads or zero to use one per available processor.
+     * @param signer      The helper that signs the digests.
+     * @param writer      The helper that outputs the CRX files.
+     * @param keys        The public/private key pair.
+     */
+    public PendingSigner(final int threadCount, final SignatureHelper signer, final ArchiveHelper writer,
+                         final KeyPair keys) {
+        threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        signatureHelper = signer;
+        archiveHelper = writer;
+        keyPair = keys;
+    }
+
+    /**
+     * Sign and assemble the CRX files described by the descriptors.
+     *
+     * @param descriptorFiles The descriptor files.
+     * @return The CRX files that were written.
+     * @throws IOException              If a descriptor or payload could not be read, the descriptor was prepared
+     *                                  for a different key or a CRX file could not be written.
+     * @throws GeneralSecurityException If a digest could not be signed.
+     */
+    public List<File> sign(final Collection<File> descriptorFiles) throws IOException, GeneralSecurityException {
+        final List<File> crxFiles = new ArrayList<>();
+        if (descriptorFiles.isEmpty()) {
+            return crxFiles;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, descriptorFiles.size()));
+        try {
+            final List<Future<File>> futures = new ArrayList<>();
+            for (final File descriptorFile : descriptorFiles) {
+                futures.add(executor.submit(() -> sign(descriptorFile)));
+            }
+            for (final Future<File> future : futures) {
+                crxFiles.add(future.get());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while signing CRX files", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) e.getCause();
+            }
+            throw new IOException("Error signing CRX files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return crxFiles;
+    }
+
+    /**
+     * Sign and assemble a single CRX file.
+     *
+     * @param descriptorFile The descriptor file.
+     * @return The CRX file.
+     * @throws IOException              If the descriptor or payload could not be read, the descriptor was prepared
+     *                                  for a different key or the CRX file could not be written.
+     * @throws GeneralSecurityException If the digest could not be signed.
+     */
+    private File sign(final File descriptorFile) throws IOException, GeneralSecurityException {
+        final PendingSignature pending = PendingSignature.load(descriptorFile);
+        if (!Arrays.equals(pending.getPublicKey(), keyPair.getPublic().getEncoded())) {
+            throw new IOException(descriptorFile + " was prepared for a different public key");
+        }
+        final File crxFile = PendingSignature.getCrxFile(descriptorFile);
+        final File payloadFile = PendingSignature.getPayloadFile(crxFile);
+        final byte[] signature = signatureHelper.signDigest(pending.getVersion(), pending.getDigest(),
+                keyPair.getPrivate());
+        final CRXArchive archive = new CRXArchive(pending.getVersion(), pending.getPublicKey(), signature,
+                pending.getSignedHeaderData(), CRXPayload.ofFileRegion(payloadFile.toPath(), 0,
+                Files.size(payloadFile.toPath())));
+        archiveHelper.writeArchive(crxFile, pending.getVersion(), archive, pending.getChecksumAlgorithms());
+        Files.delete(descriptorFile.toPath());
+        Files.delete(payloadFile.toPath());
+        return crxFile;
+    }
+}
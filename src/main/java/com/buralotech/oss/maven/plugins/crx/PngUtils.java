@@ -0,0 +1,389 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Static helper methods that losslessly optimise PNG images. Textual and timestamp chunks are removed and the image
+ * data is re-filtered and re-compressed trying each of the PNG filter types and an adaptive choice of filter per row
+ * with the best compression. The pixels of the image are not changed.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class PngUtils {
+
+    /**
+     * The signature at the start of every PNG image.
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The ancillary chunks that only hold metadata and are removed.
+     */
+    private static final Set<String> METADATA_CHUNKS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("tEXt", "zTXt", "iTXt", "tIME")));
+
+    /**
+     * The number of PNG filter types.
+     */
+    private static final int FILTER_TYPES = 5;
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private PngUtils() {
+    }
+
+    /**
+     * Optimise a PNG image.
+     *
+     * @param png The PNG image.
+     * @return The optimised PNG image or the original PNG image if it could not be made smaller.
+     * @throws IOException If the PNG image is not valid.
+     */
+    public static byte[] optimise(final byte[] png) throws IOException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(Arrays.copyOf(png, SIGNATURE.length), SIGNATURE)) {
+            throw new IOException("Not a PNG image");
+        }
+
+        // Split the image into chunks gathering the image data and dropping the metadata
+
+        final ByteArrayOutputStream before = new ByteArrayOutputStream();
+        final ByteArrayOutputStream after = new ByteArrayOutputStream();
+        final ByteArrayOutputStream imageData = new ByteArrayOutputStream();
+        byte[] header = null;
+        boolean seenImageData = false;
+        boolean seenEnd = false;
+        int position = SIGNATURE.length;
+        while (!seenEnd) {
+            if (position + 12 > png.length) {
+                throw new IOException("Unexpected end of PNG image");
+            }
+            final int length = readInt(png, position);
+            if (length < 0 || length > png.length - position - 12) {
+                throw new IOException("Invalid PNG chunk length");
+            }
+            final String type = new String(png, position + 4, 4, StandardCharsets.ISO_8859_1);
+            if ("IHDR".equals(type)) {
+                header = Arrays.copyOfRange(png, position + 8, position + 8 + length);
+            }
+            if ("IDAT".equals(type)) {
+                imageData.write(png, position + 8, length);
+                seenImageData = true;
+            } else if (!METADATA_CHUNKS.contains(type)) {
+                (seenImageData ? after : before).write(png, position, length + 12);
+            }
+            seenEnd = "IEND".equals(type);
+            position += length + 12;
+        }
+        if (header == null || header.length != 13 || !seenImageData) {
+            throw new IOException("PNG image has no header or image data");
+        }
+
+        // Re-filter and re-compress the image data
+
+        final byte[] filtered = inflate(imageData.toByteArray());
+        final byte[] compressed = compress(header, filtered);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(png.length);
+        out.write(SIGNATURE);
+        before.writeTo(out);
+        writeChunk(out, "IDAT", compressed.length < imageData.size() ? compressed : imageData.toByteArray());
+        after.writeTo(out);
+        return out.size() < png.length ? out.toByteArray() : png;
+    }
+
+    /**
+     * Find the smallest compressed form of the image data trying each filter type and each compression strategy.
+     * Interlaced images are only re-compressed.
+     *
+     * @param header   The image header.
+     * @param filtered The decompressed image data as filtered by the encoder.
+     * @return The smallest compressed image data.
+     * @throws IOException If the image data does not match the image header.
+     */
+    private static byte[] compress(final byte[] header, final byte[] filtered) throws IOException {
+        final int width = readInt(header, 0);
+        final int height = readInt(header, 4);
+        final int bitDepth = header[8] & 0xFF;
+        final int colourType = header[9] & 0xFF;
+        final int interlace = header[12] & 0xFF;
+        final int channels;
+        switch (colourType) {
+            case 0:
+            case 3:
+                channels = 1;
+                break;
+            case 2:
+                channels = 3;
+                break;
+            case 4:
+                channels = 2;
+                break;
+            case 6:
+                channels = 4;
+                break;
+            default:
+                throw new IOException("Unsupported PNG colour type " + colourType);
+        }
+
+        byte[] best = deflate(filtered);
+        if (interlace != 0) {
+            return best;
+        }
+        final long stride = ((long) width * channels * bitDepth + 7) / 8;
+        if (width <= 0 || height <= 0 || (stride + 1) * height != filtered.length) {
+            throw new IOException("PNG image data does not match the image header");
+        }
+        final int bytesPerPixel = Math.max(1, channels * bitDepth / 8);
+        final byte[][] rows = unfilter(filtered, (int) stride, height, bytesPerPixel);
+        for (int filterType = -1; filterType < FILTER_TYPES; filterType++) {
+            final byte[] candidate = deflate(filter(rows, bytesPerPixel, filterType));
+            if (candidate.length < best.length) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reverse the filters that were applied to each row of the image data.
+     *
+     * @param filtered      The filtered image data.
+     * @param stride        The number of bytes in each row.
+     * @param height        The number of rows.
+     * @param bytesPerPixel The number of bytes per complete pixel rounded up to one.
+     * @return The unfiltered rows.
+     * @throws IOException If a row uses an unknown filter type.
+     */
+    private static byte[][] unfilter(final byte[] filtered, final int stride, final int height,
+                                     final int bytesPerPixel) throws IOException {
+        final byte[][] rows = new byte[height][stride];
+        byte[] previous = new byte[stride];
+        for (int y = 0; y < height; y++) {
+            final int offset = y * (stride + 1);
+            final int filterType = filtered[offset];
+            final byte[] row = rows[y];
+            for (int x = 0; x < stride; x++) {
+                final int a = x >= bytesPerPixel ? row[x - bytesPerPixel] & 0xFF : 0;
+                final int b = previous[x] & 0xFF;
+                final int c = x >= bytesPerPixel ? previous[x - bytesPerPixel] & 0xFF : 0;
+                row[x] = (byte) (filtered[offset + 1 + x] + predict(filterType, a, b, c));
+            }
+            previous = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Filter the rows of the image data using a single filter type or choosing the filter type for each row that
+     * minimises the sum of the absolute values of the filtered bytes.
+     *
+     * @param rows          The unfiltered rows.
+     * @param bytesPerPixel The number of bytes per complete pixel rounded up to one.
+     * @param filterType    The filter type or {@code -1} to choose the filter type for each row.
+     * @return The filtered image data.
+     * @throws IOException If the filter type is unknown.
+     */
+    private static byte[] filter(final byte[][] rows, final int bytesPerPixel, final int filterType)
+            throws IOException {
+        final int stride = rows[0].length;
+        final byte[] filtered = new byte[rows.length * (stride + 1)];
+        final byte[] candidate = new byte[stride];
+        byte[] previous = new byte[stride];
+        for (int y = 0; y < rows.length; y++) {
+            final int offset = y * (stride + 1);
+            int chosenType = filterType;
+            if (filterType < 0) {
+                long smallest = Long.MAX_VALUE;
+                for (int type = 0; type < FILTER_TYPES; type++) {
+                    final long sum = filterRow(rows[y], previous, bytesPerPixel, type, candidate);
+                    if (sum < smallest) {
+                        smallest = sum;
+                        chosenType = type;
+                    }
+                }
+            }
+            filterRow(rows[y], previous, bytesPerPixel, chosenType, candidate);
+            filtered[offset] = (byte) chosenType;
+            System.arraycopy(candidate, 0, filtered, offset + 1, stride);
+            previous = rows[y];
+        }
+        return filtered;
+    }
+
+    /**
+     * Filter a single row.
+     *
+     * @param row           The unfiltered row.
+     * @param previous      The unfiltered previous row or zeros for the first row.
+     * @param bytesPerPixel The number of bytes per complete pixel rounded up to one.
+     * @param filterType    The filter type.
+     * @param out           The buffer that receives the filtered row.
+     * @return The sum of the absolute values of the filtered bytes treated as signed.
+     * @throws IOException If the filter type is unknown.
+     */
+    private static long filterRow(final byte[] row, final byte[] previous, final int bytesPerPixel,
+                                  final int filterType, final byte[] out) throws IOException {
+        long sum = 0;
+        for (int x = 0; x < row.length; x++) {
+            final int a = x >= bytesPerPixel ? row[x - bytesPerPixel] & 0xFF : 0;
+            final int b = previous[x] & 0xFF;
+            final int c = x >= bytesPerPixel ? previous[x - bytesPerPixel] & 0xFF : 0;
+            out[x] = (byte) (row[x] - predict(filterType, a, b, c));
+            sum += Math.abs(out[x]);
+        }
+        return sum;
+    }
+
+    /**
+     * Calculate the value predicted by a filter type from the neighbouring bytes.
+     *
+     * @param filterType The filter type.
+     * @param a          The byte to the left.
+     * @param b          The byte above.
+     * @param c          The byte above and to the left.
+     * @return The predicted value.
+     * @throws IOException If the filter type is unknown.
+     */
+    private static int predict(final int filterType, final int a, final int b, final int c) throws IOException {
+        switch (filterType) {
+            case 0:
+                return 0;
+            case 1:
+                return a;
+            case 2:
+                return b;
+            case 3:
+                return (a + b) >>> 1;
+            case 4:
+                final int p = a + b - c;
+                final int pa = Math.abs(p - a);
+                final int pb = Math.abs(p - b);
+                final int pc = Math.abs(p - c);
+                if (pa <= pb && pa <= pc) {
+                    return a;
+                }
+                return pb <= pc ? b : c;
+            default:
+                throw new IOException("Unknown PNG filter type " + filterType);
+        }
+    }
+
+    /**
+     * Decompress the image data.
+     *
+     * @param data The compressed image data.
+     * @return The decompressed image data.
+     * @throws IOException If the image data is not valid.
+     */
+    private static byte[] inflate(final byte[] data) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated PNG image data");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt PNG image data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compress the image data using the best compression level trying both the default and filtered strategies.
+     *
+     * @param data The filtered image data.
+     * @return The smaller compressed form.
+     */
+    private static byte[] deflate(final byte[] data) {
+        byte[] best = null;
+        for (final int strategy : new int[]{Deflater.DEFAULT_STRATEGY, Deflater.FILTERED}) {
+            final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                deflater.setStrategy(strategy);
+                deflater.setInput(data);
+                deflater.finish();
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+                final byte[] buffer = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                if (best == null || out.size() < best.length) {
+                    best = out.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Write a chunk calculating its CRC.
+     *
+     * @param out  The output.
+     * @param type The chunk type.
+     * @param data The chunk data.
+     * @throws IOException If the chunk could not be written.
+     */
+    private static void writeChunk(final ByteArrayOutputStream out, final String type, final byte[] data)
+            throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.ISO_8859_1);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(data.length);
+        dataOut.write(typeBytes);
+        dataOut.write(data);
+        dataOut.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Read a big endian integer.
+     *
+     * @param data   The data.
+     * @param offset The offset of the integer.
+     * @return The integer.
+     */
+    private static int readInt(final byte[] data, final int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8
+                | data[offset + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A client for a remote cache of signed CRX files keyed by the inputs that produced them. The protocol is plain HTTP:
+ * {@code GET <url>/<key>.crx} returns the CRX file or 404 if it is not cached and {@code PUT <url>/<key>.crx} stores a
+ * CRX file. The time taken by each request is recorded by Java Flight Recorder.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class RemoteBuildCache {
+
+    /**
+     * The base URL of the cache which always ends with {@code /}.
+     */
+    private final String baseUrl;
+
+    /**
+     * The connect and read timeout in milliseconds.
+     */
+    private final int timeout;
+
+    /**
+     * Initialise the client.
+     *
+     * @param url           The base URL of the cache.
+     * @param timeoutMillis The connect and read timeout in milliseconds.
+     */
+    public RemoteBuildCache(final String url, final int timeoutMillis) {
+        baseUrl = url.endsWith("/") ? url : url + '/';
+        timeout = timeoutMillis;
+    }
+
+    /**
+     * Download a CRX file from the cache. The CRX file is written via a temporary file so that a failed download never
+     * leaves a partial file behind.
+     *
+     * @param key    The input key of the CRX file.
+     * @param target The file that the CRX file is written to.
+     * @return {@code true} if the cache held the CRX file. Otherwise, {@code false}.
+     * @throws IOException If the request failed or the response could not be written.
+     */
+    public boolean get(final String key, final File target) throws IOException {
+        final Object event = FlightRecorderUtils.beginBuildCache();
+        boolean hit = false;
+        try {
+            final HttpURLConnection connection = open(key, "GET");
+            try {
+                final int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    return false;
+                } else if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Build cache returned HTTP " + status + " for " + connection.getURL());
+                }
+                final File directory = target.getAbsoluteFile().getParentFile();
+                Files.createDirectories(directory.toPath());
+                final File tempFile = File.createTempFile(target.getName(), ".tmp", directory);
+                try {
+                    try (InputStream in = connection.getInputStream()) {
+                        Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    try {
+                        Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } catch (final AtomicMoveNotSupportedException e) {
+                        Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+                hit = true;
+                return true;
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            FlightRecorderUtils.endBuildCache(event, "get", key, hit, hit ? target.length() : 0L);
+        }
+    }
+
+    /**
+     * Upload a CRX file to the cache.
+     *
+     * @param key    The input key of the CRX file.
+     * @param source The CRX file.
+     * @throws IOException If the request failed or was rejected.
+     */
+    public void put(final String key, final File source) throws IOException {
+        final Object event = FlightRecorderUtils.beginBuildCache();
+        boolean stored = false;
+        try {
+            final HttpURLConnection connection = open(key, "PUT");
+            try {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(source.length());
+                connection.setRequestProperty("Content-Type", "application/x-chrome-extension");
+                try (OutputStream out = connection.getOutputStream()) {
+                    Files.copy(source.toPath(), out);
+                }
+                final int status = connection.getResponseCode();
+                if (status / 100 != 2) {
+                    throw new IOException("Build cache returned HTTP " + status + " for " + connection.getURL());
+                }
+                stored = true;
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            FlightRecorderUtils.endBuildCache(event, "put", key, stored, stored ? source.length() : 0L);
+        }
+    }
+
+    /**
+     * Open a connection for a request.
+     *
+     * @param key    The input key of the CRX file.
+     * @param method The request method.
+     * @return The connection.
+     * @throws IOException If the connection could not be opened.
+     */
+    private HttpURLConnection open(final String key, final String method) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + key + ".crx").openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setUseCaches(false);
+        return connection;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event that is emitted when a signature is generated or checked.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@Name("com.buralotech.crx.Signature")
+@Label("Signature")
+@Category({"Maven", "CRX"})
+@Description("A signature generated or checked for a CRX archive")
+final class SignatureEvent extends Event {
+
+    /**
+     * The operation which is either {@code sign} or {@code check}.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The signature algorithm.
+     */
+    @Label("Algorithm")
+    String algorithm;
+
+    /**
+     * The name of the security provider that supplied the signature algorithm.
+     */
+    @Label("Provider")
+    String provider;
+
+    /**
+     * {@code true} if the signature was generated or was found to be valid.
+     */
+    @Label("Success")
+    boolean success;
+}
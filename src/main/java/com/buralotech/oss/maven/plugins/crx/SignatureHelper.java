@@ -17,6 +17,7 @@
 package com.buralotech.oss.maven.plugins.crx;
 
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
@@ -49,4 +50,54 @@ public interface SignatureHelper {
      */
     boolean check(byte[] data, PublicKey key, byte[] signature) throws
             GeneralSecurityException;
+
+    /**
+     * Create the message digest that is fed the signed data for the CRX archive format version. The digest can be
+     * updated while the signed data is being produced and then finalised with
+     * {@link #signDigest(int, byte[], PrivateKey)} or {@link #checkDigest(int, byte[], PublicKey, byte[])}.
+     *
+     * @param version The version of the CRX archive format.
+     * @return The message digest.
+     * @throws GeneralSecurityException If the digest algorithm is not supported.
+     * @since 2.0.0
+     */
+    MessageDigest createDigest(int version) throws GeneralSecurityException;
+
+    /**
+     * Generate the signature for a digest that was computed by a message digest returned from
+     * {@link #createDigest(int)}.
+     *
+     * @param version The version of the CRX archive format.
+     * @param digest  The digest of the signed data.
+     * @param key     The private key.
+     * @return The signature as a byte array.
+     * @throws GeneralSecurityException If there was a error generating the signature.
+     * @since 2.0.0
+     */
+    byte[] signDigest(int version, byte[] digest, PrivateKey key) throws GeneralSecurityException;
+
+    /**
+     * Check that the signature is valid for a digest that was computed by a message digest returned from
+     * {@link #createDigest(int)}.
+     *
+     * @param version   The version of the CRX archive format.
+     * @param digest    The digest of the signed data.
+     * @param key       The public key.
+     * @param signature The signature.
+     * @return {@code true} if the signature was valid. Otherwise, {@code false}.
+     * @throws GeneralSecurityException If there was an error validating the signature.
+     * @since 2.0.0
+     */
+    boolean checkDigest(int version, byte[] digest, PublicKey key, byte[] signature) throws
+            GeneralSecurityException;
+
+    /**
+     * Get a signature helper that obtains the signature and message digest algorithms from the named providers in
+     * order of preference instead of relying on the order in which providers are registered.
+     *
+     * @param providers The names of the preferred providers in order of preference.
+     * @return The signature helper.
+     * @since 2.0.0
+     */
+    SignatureHelper withProviders(String... providers);
 }
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A long-lived local daemon that holds a decrypted private key and signs digests for the builds running on the same
+ * machine so that each build does not have to decrypt the PEM file and keep its own copy of the key. The agent listens
+ * on an ephemeral loopback port and publishes the port and a random access token in an agent file that only the owner
+ * can read. The agent file is named after the location of the PEM file so builds find the agent for their key.
+ * Requests from parallel builds are queued and a fixed pool of signing threads drains the queue in batches.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class SigningAgent implements Closeable {
+
+    /**
+     * The magic number that starts the handshake of the signing agent protocol.
+     */
+    static final int MAGIC = 0x43525841;
+
+    /**
+     * The length in bytes of the access token.
+     */
+    static final int TOKEN_LENGTH = 32;
+
+    /**
+     * The largest digest that the agent will sign.
+     */
+    static final int MAX_DIGEST_LENGTH = 64;
+
+    /**
+     * The agent file property that holds the port.
+     */
+    static final String PORT_PROPERTY = "port";
+
+    /**
+     * The agent file property that holds the access token.
+     */
+    static final String TOKEN_PROPERTY = "token";
+
+    /**
+     * The agent file property that holds the SHA-256 fingerprint of the PEM file contents.
+     */
+    static final String FINGERPRINT_PROPERTY = "fingerprint";
+
+    /**
+     * The largest number of requests signed by a signing thread in one batch.
+     */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * The decrypted public/private key pair.
+     */
+    private final KeyPair keyPair;
+
+    /**
+     * The helper that signs the digests.
+     */
+    private final SignatureHelper signatureHelper;
+
+    /**
+     * The agent file that publishes the port and access token.
+     */
+    private final File agentFile;
+
+    /**
+     * The SHA-256 fingerprint of the PEM file contents from which the key pair was loaded.
+     */
+    private final String fingerprint;
+
+    /**
+     * The access token that clients must present.
+     */
+    private final byte[] token;
+
+    /**
+     * The socket on which the agent accepts connections.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * The requests that are waiting to be signed.
+     */
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    /**
+     * The threads that serve the connections from the builds.
+     */
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(SigningAgent::newDaemonThread);
+
+    /**
+     * The threads that sign the queued requests.
+     */
+    private final ExecutorService signingExecutor;
+
+    /**
+     * Start the agent.
+     *
+     * @param pemFile     The location of the PEM file from which the key pair was loaded.
+     * @param keys        The decrypted public/private key pair.
+     * @param helper      The helper that signs the digests.
+     * @param directory   The directory in which the agent file is published.
+     * @param threadCount The number of signing threads or zero to use one per available processor.
+     * @throws IOException If the agent could not listen for connections or publish the agent file.
+     */
+    public SigningAgent(final File pemFile, final KeyPair keys, final SignatureHelper helper, final File directory,
+                        final int threadCount) throws IOException {
+        keyPair = keys;
+        signatureHelper = helper;
+        agentFile = getAgentFile(directory, pemFile);
+        fingerprint = getFingerprint(pemFile);
+        token = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(token);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final int threads = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        signingExecutor = Executors.newFixedThreadPool(threads, SigningAgent::newDaemonThread);
+        try {
+            publish();
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+        for (int i = 0; i < threads; i++) {
+            signingExecutor.execute(this::signRequests);
+        }
+        connectionExecutor.execute(this::acceptConnections);
+    }
+
+    /**
+     * Get the agent file for a PEM file.
+     *
+     * @param directory The directory in which agent files are published.
+     * @param pemFile   The location of the PEM file.
+     * @return The agent file.
+     * @throws IOException If the location of the PEM file could not be resolved.
+     */
+    public static File getAgentFile(final File directory, final File pemFile) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(pemFile.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+            return new File(directory, ChecksumUtils.toHex(hash) + ".agent");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Get the fingerprint of a PEM file which is the SHA-256 hash of its contents. Clients compare the fingerprint
+     * published by the agent with that of the PEM file so that an agent holding a key that has since been replaced is
+     * not used.
+     *
+     * @param pemFile The location of the PEM file.
+     * @return The fingerprint as a lower case hexadecimal string.
+     * @throws IOException If the PEM file could not be read.
+     */
+    public static String getFingerprint(final File pemFile) throws IOException {
+        return ChecksumUtils.checksum(pemFile, "SHA-256");
+    }
+
+    /**
+     * Get the agent file that publishes the port and access token.
+     *
+     * @return The agent file.
+     */
+    public File getAgentFile() {
+        return agentFile;
+    }
+
+    /**
+     * Get the port on which the agent accepts connections.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop the agent and remove the agent file.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (final IOException e) {
+            // The agent is stopping anyway
+        }
+        connectionExecutor.shutdownNow();
+        signingExecutor.shutdownNow();
+        try {
+            Files.deleteIfExists(agentFile.toPath());
+        } catch (final IOException e) {
+            // A stale agent file is detected by the clients when they cannot connect
+        }
+    }
+
+    /**
+     * Publish the port, access token and PEM file fingerprint in the agent file. The file is written via a temporary
+     * file that only the owner can read on file systems that support POSIX permissions.
+     *
+     * @throws IOException If the agent file could not be written.
+     */
+    private void publish() throws IOException {
+        final File directory = agentFile.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        final Properties properties = new Properties();
+        properties.setProperty(PORT_PROPERTY, Integer.toString(getPort()));
+        properties.setProperty(TOKEN_PROPERTY, ChecksumUtils.toHex(token));
+        properties.setProperty(FINGERPRINT_PROPERTY, fingerprint);
+        File tempFile;
+        try {
+            tempFile = Files.createTempFile(directory.toPath(), agentFile.getName(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))).toFile();
+        } catch (final UnsupportedOperationException e) {
+            tempFile = File.createTempFile(agentFile.getName(), ".tmp", directory);
+        }
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(tempFile.toPath(), agentFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), agentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Accept connections until the agent is stopped.
+     */
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (final IOException e) {
+                // The server socket was closed or the connection failed before it was accepted
+            }
+        }
+    }
+
+    /**
+     * Serve the requests from a build. The build must present the access token before the public key is sent.
+     * Each request is queued for the signing threads and the signature or error is sent back when it is done.
+     *
+     * @param socket The connection to the build.
+     */
+    private void serve(final Socket socket) {
+        try (Socket connection = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            final byte[] presented = new byte[TOKEN_LENGTH];
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            in.readFully(presented);
+            if (!MessageDigest.isEqual(token, presented)) {
+                return;
+            }
+            final byte[] publicKey = keyPair.getPublic().getEncoded();
+            out.writeInt(publicKey.length);
+            out.write(publicKey);
+            out.flush();
+            while (true) {
+                final int version;
+                try {
+                    version = in.readInt();
+                } catch (final IOException e) {
+                    return;
+                }
+                final int length = in.readInt();
+                if (length < 0 || length > MAX_DIGEST_LENGTH) {
+                    return;
+                }
+                final byte[] digest = new byte[length];
+                in.readFully(digest);
+                final Request request = new Request(version, digest);
+                requests.add(request);
+                try {
+                    final byte[] signature = request.result.get();
+                    out.writeBoolean(true);
+                    out.writeInt(signature.length);
+                    out.write(signature);
+                } catch (final ExecutionException e) {
+                    out.writeBoolean(false);
+                    out.writeUTF(String.valueOf(e.getCause().getMessage()));
+                }
+                out.flush();
+            }
+        } catch (final IOException | CancellationException e) {
+            // The build disconnected or the agent is stopping
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sign the queued requests until the agent is stopped. All the requests that are waiting when a signing thread
+     * becomes free are taken as a batch so concurrent builds do not contend for the queue on every request.
+     */
+    private void signRequests() {
+        final List<Request> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(requests.take());
+                requests.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (final Request request : batch) {
+                    try {
+                        request.result.complete(signatureHelper.signDigest(request.version, request.digest,
+                                keyPair.getPrivate()));
+                    } catch (final GeneralSecurityException | RuntimeException e) {
+                        request.result.completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            for (final Request request : batch) {
+                request.result.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Create a daemon thread so that the agent does not keep the JVM running once it is stopped.
+     *
+     * @param runnable The task of the thread.
+     * @return The thread.
+     */
+    private static Thread newDaemonThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "crx-signing-agent");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A digest that is waiting to be signed.
+     */
+    private static final class Request {
+
+        /**
+         * The version of the CRX archive format.
+         */
+        private final int version;
+
+        /**
+         * The digest of the signed data.
+         */
+        private final byte[] digest;
+
+        /**
+         * Completed with the signature once the digest has been signed.
+         */
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        /**
+         * Initialise the request.
+         *
+         * @param crxVersion The version of the CRX archive format.
+         * @param hash       The digest of the signed data.
+         */
+        private Request(final int crxVersion, final byte[] hash) {
+            version = crxVersion;
+            digest = hash;
+        }
+    }
+}
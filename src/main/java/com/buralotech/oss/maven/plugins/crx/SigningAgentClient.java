@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Properties;
+
+/**
+ * A connection from a build to the {@link SigningAgent} that holds the decrypted key for a PEM file. The connection
+ * is found through the agent file that the agent publishes and is authenticated with the access token it contains.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class SigningAgentClient implements Closeable {
+
+    /**
+     * The largest public key that will be accepted from the agent.
+     */
+    private static final int MAX_PUBLIC_KEY_LENGTH = 16384;
+
+    /**
+     * The largest signature that will be accepted from the agent.
+     */
+    private static final int MAX_SIGNATURE_LENGTH = 16384;
+
+    /**
+     * The connection to the agent.
+     */
+    private final Socket socket;
+
+    /**
+     * Reads the responses from the agent.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Writes the requests to the agent.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The DER encoded public key of the key pair held by the agent.
+     */
+    private final byte[] publicKey;
+
+    /**
+     * Connect to the agent and present the access token.
+     *
+     * @param port          The port on which the agent accepts connections.
+     * @param token         The access token.
+     * @param timeoutMillis The connect and read timeout in milliseconds.
+     * @throws IOException If the agent could not be reached or rejected the access token.
+     */
+    private SigningAgentClient(final int port, final byte[] token, final int timeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(SigningAgent.MAGIC);
+            out.write(token);
+            out.flush();
+            final int length = in.readInt();
+            if (length <= 0 || length > MAX_PUBLIC_KEY_LENGTH) {
+                throw new IOException("The signing agent sent an invalid public key");
+            }
+            publicKey = new byte[length];
+            in.readFully(publicKey);
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connect to the agent that holds the decrypted key for a PEM file.
+     *
+     * @param directory     The directory in which agent files are published.
+     * @param pemFile       The location of the PEM file.
+     * @param timeoutMillis The connect and read timeout in milliseconds.
+     * @return The connection or {@code null} if no agent has been started for the PEM file or the agent was started
+     *         for different contents of the PEM file.
+     * @throws IOException If the agent file could not be read or the agent could not be reached.
+     */
+    public static SigningAgentClient connect(final File directory, final File pemFile, final int timeoutMillis)
+            throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream agentIn = Files.newInputStream(SigningAgent.getAgentFile(directory, pemFile).toPath())) {
+            properties.load(agentIn);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+        final String port = properties.getProperty(SigningAgent.PORT_PROPERTY);
+        final String token = properties.getProperty(SigningAgent.TOKEN_PROPERTY);
+        if (port == null || token == null || token.length() != SigningAgent.TOKEN_LENGTH * 2) {
+            throw new IOException("The signing agent file is not valid");
+        }
+        if (!SigningAgent.getFingerprint(pemFile).equals(properties.getProperty(SigningAgent.FINGERPRINT_PROPERTY))) {
+            return null;
+        }
+        try {
+            return new SigningAgentClient(Integer.parseInt(port), fromHex(token), timeoutMillis);
+        } catch (final NumberFormatException e) {
+            throw new IOException("The signing agent file is not valid", e);
+        }
+    }
+
+    /**
+     * Get the public key of the key pair held by the agent.
+     *
+     * @return The DER encoded public key.
+     */
+    public byte[] getPublicKey() {
+        return publicKey.clone();
+    }
+
+    /**
+     * Ask the agent to sign a digest that was computed by a message digest returned from
+     * {@link SignatureHelper#createDigest(int)}.
+     *
+     * @param version The version of the CRX archive format.
+     * @param digest  The digest of the signed data.
+     * @return The signature.
+     * @throws IOException If the agent could not be reached or could not sign the digest.
+     */
+    public byte[] signDigest(final int version, final byte[] digest) throws IOException {
+        if (digest.length > SigningAgent.MAX_DIGEST_LENGTH) {
+            throw new IOException("The digest is too long for the signing agent");
+        }
+        out.writeInt(version);
+        out.writeInt(digest.length);
+        out.write(digest);
+        out.flush();
+        if (!in.readBoolean()) {
+            throw new IOException("The signing agent could not sign the digest: " + in.readUTF());
+        }
+        final int length = in.readInt();
+        if (length <= 0 || length > MAX_SIGNATURE_LENGTH) {
+            throw new IOException("The signing agent sent an invalid signature");
+        }
+        final byte[] signature = new byte[length];
+        in.readFully(signature);
+        return signature;
+    }
+
+    /**
+     * Disconnect from the agent.
+     *
+     * @throws IOException If the connection could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Convert a hexadecimal string to a byte array.
+     *
+     * @param hex The hexadecimal string.
+     * @return The byte array.
+     * @throws IOException If the string is not hexadecimal.
+     */
+    private static byte[] fromHex(final String hex) throws IOException {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("The signing agent file is not valid");
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
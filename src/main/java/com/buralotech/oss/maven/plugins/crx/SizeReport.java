@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Describes the size of a CRX archive and of each entry in its ZIP payload. The report is written as tab separated
+ * text with the total size of the CRX archive on the first line followed by the compressed size, uncompressed size,
+ * compression ratio and name of each entry ordered from the largest compressed size to the smallest. Directory
+ * entries are omitted.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class SizeReport {
+
+    /**
+     * The file extension of the report that is written next to the CRX archive.
+     */
+    public static final String EXTENSION = "sizes";
+
+    /**
+     * The label of the line that holds the total size of the CRX archive.
+     */
+    private static final String TOTAL_LABEL = "total";
+
+    /**
+     * The total size of the CRX archive.
+     */
+    private final long totalSize;
+
+    /**
+     * The entries ordered from the largest compressed size to the smallest.
+     */
+    private final List<CRXEntry> entries;
+
+    /**
+     * Initialise the report.
+     *
+     * @param crxSize    The total size of the CRX archive.
+     * @param crxEntries The entries in the ZIP payload of the CRX archive.
+     */
+    public SizeReport(final long crxSize, final Collection<CRXEntry> crxEntries) {
+        totalSize = crxSize;
+        final List<CRXEntry> files = new ArrayList<>();
+        for (final CRXEntry entry : crxEntries) {
+            if (!entry.isDirectory()) {
+                files.add(entry);
+            }
+        }
+        files.sort(Comparator.comparingLong(CRXEntry::getCompressedSize).reversed()
+                .thenComparing(CRXEntry::getName));
+        entries = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Get the report file that is written next to a CRX archive.
+     *
+     * @param crxFile The CRX archive.
+     * @return The report file.
+     */
+    public static File getReportFile(final File crxFile) {
+        return new File(crxFile.getPath() + '.' + EXTENSION);
+    }
+
+    /**
+     * Get the total size of the CRX archive.
+     *
+     * @return The size in bytes.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Get the entries ordered from the largest compressed size to the smallest.
+     *
+     * @return The entries.
+     */
+    public List<CRXEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Write the report.
+     *
+     * @param file The report file.
+     * @throws IOException If the report could not be written.
+     */
+    public void write(final File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(TOTAL_LABEL + '\t' + totalSize + '\n');
+            for (final CRXEntry entry : entries) {
+                writer.write(entry.getCompressedSize() + "\t" + entry.getSize() + '\t' + getRatio(entry) + '\t'
+                        + entry.getName() + '\n');
+            }
+        }
+    }
+
+    /**
+     * Read the total size of the CRX archive from a report written by a previous build.
+     *
+     * @param file The report file.
+     * @return The size in bytes or {@code -1} if the report does not exist or does not record the total size.
+     * @throws IOException If the report could not be read.
+     */
+    public static long readTotalSize(final File file) throws IOException {
+        if (!file.isFile()) {
+            return -1L;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            final String line = reader.readLine();
+            if (line != null && line.startsWith(TOTAL_LABEL + '\t')) {
+                try {
+                    return Long.parseLong(line.substring(TOTAL_LABEL.length() + 1).trim());
+                } catch (final NumberFormatException e) {
+                    return -1L;
+                }
+            }
+            return -1L;
+        }
+    }
+
+    /**
+     * Format the compressed size of an entry as a percentage of its uncompressed size.
+     *
+     * @param entry The entry.
+     * @return The percentage with one decimal place.
+     */
+    private static String getRatio(final CRXEntry entry) {
+        if (entry.getSize() <= 0) {
+            return "100.0%";
+        }
+        return String.format(Locale.ROOT, "%.1f%%", entry.getCompressedSize() * 100.0 / entry.getSize());
+    }
+}
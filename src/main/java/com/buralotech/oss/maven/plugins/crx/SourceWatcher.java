@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a source directory tree for changes and reports the paths that changed once the changes have settled.
+ * Directories that are created while watching are watched too. Bursts of events (e.g. an editor writing a temporary
+ * file and renaming it over the original) are collected until no further event arrives within the debounce interval
+ * so that each batch of changes is only processed once.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class SourceWatcher implements Closeable {
+
+    /**
+     * The root of the watched directory tree.
+     */
+    private final Path root;
+
+    /**
+     * The time in milliseconds without events after which a batch of changes is reported.
+     */
+    private final long debounce;
+
+    /**
+     * The service that delivers the file system events.
+     */
+    private final WatchService watchService;
+
+    /**
+     * The watched directories keyed by their watch keys.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Start watching a directory tree.
+     *
+     * @param directory      The root of the directory tree.
+     * @param debounceMillis The time in milliseconds without events after which a batch of changes is reported.
+     * @throws IOException If the directory tree could not be watched.
+     */
+    public SourceWatcher(final File directory, final long debounceMillis) throws IOException {
+        root = directory.toPath().toAbsolutePath();
+        debounce = debounceMillis;
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            register(root, null);
+        } catch (final IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for a batch of changes.
+     *
+     * @param timeoutMillis The time in milliseconds to wait for the first change.
+     * @return The paths that changed relative to the root using {@code /} as the separator or {@code null} if nothing
+     *         changed before the timeout. A path that no longer exists was deleted.
+     * @throws IOException          If a new directory could not be watched.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public Set<String> poll(final long timeoutMillis) throws IOException, InterruptedException {
+        WatchKey key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return null;
+        }
+        final Set<String> changes = new TreeSet<>();
+        while (key != null) {
+            processEvents(key, changes);
+            key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+        }
+        return changes;
+    }
+
+    /**
+     * Stop watching the directory tree.
+     *
+     * @throws IOException If the watch service could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Record the changes reported by a watch key and watch any directories that were created.
+     *
+     * @param key     The watch key.
+     * @param changes The paths that changed which is updated with the paths from the events.
+     * @throws IOException If a new directory could not be watched.
+     */
+    private void processEvents(final WatchKey key, final Set<String> changes) throws IOException {
+        final Path directory = directories.get(key);
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                register(root, changes);
+            } else if (directory != null) {
+                final Path path = directory.resolve((Path) event.context());
+                if (!Files.isDirectory(path)) {
+                    changes.add(relativize(path));
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    register(path, changes);
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Watch a directory tree.
+     *
+     * @param start   The root of the directory tree.
+     * @param changes The paths that changed which is updated with the files found in the tree or {@code null} if the
+     *                files are not recorded as changed.
+     * @throws IOException If the directory tree could not be watched.
+     */
+    private void register(final Path start, final Set<String> changes) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            /**
+             * Watch a directory.
+             *
+             * @param dir   The directory.
+             * @param attrs The attributes of the directory.
+             * @return Always returns {@link FileVisitResult#CONTINUE}.
+             * @throws IOException If the directory could not be watched.
+             */
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                    throws IOException {
+                directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * Record a file found in a new directory as changed.
+             *
+             * @param file  The file.
+             * @param attrs The attributes of the file.
+             * @return Always returns {@link FileVisitResult#CONTINUE}.
+             */
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (changes != null) {
+                    changes.add(relativize(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Get the path of a file relative to the root.
+     *
+     * @param path The absolute path of the file.
+     * @return The relative path using {@code /} as the separator.
+     */
+    private String relativize(final Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
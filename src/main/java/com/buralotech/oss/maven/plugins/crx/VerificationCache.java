@@ -0,0 +1,348 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Records the outcome of verifying CRX archives so that an archive that has already been verified does not have to
+ * be read and verified again. Results are keyed by the SHA-256 checksum of the archive so copies of the same archive
+ * share a result. An index keyed by location records the size, modification time and checksum of each archive that
+ * was looked up so the checksum of an unchanged archive is found with a single stat call instead of reading the
+ * archive.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public class VerificationCache {
+
+    /**
+     * The index property that holds the size of the archive.
+     */
+    private static final String SIZE_PROPERTY = "size";
+
+    /**
+     * The index property that holds the modification time of the archive.
+     */
+    private static final String MODIFIED_PROPERTY = "modified";
+
+    /**
+     * The index property that holds the checksum of the archive.
+     */
+    private static final String CHECKSUM_PROPERTY = "sha256";
+
+    /**
+     * The result property that records whether the archive was valid.
+     */
+    private static final String VALID_PROPERTY = "valid";
+
+    /**
+     * The result property that records whether the entries of the ZIP payload were checked.
+     */
+    private static final String ENTRIES_VERIFIED_PROPERTY = "entriesVerified";
+
+    /**
+     * The result property that holds the version of the CRX archive format.
+     */
+    private static final String VERSION_PROPERTY = "version";
+
+    /**
+     * The result property that holds the fingerprint of the public key.
+     */
+    private static final String KEY_FINGERPRINT_PROPERTY = "keyFingerprint";
+
+    /**
+     * The result property that holds the level of verification.
+     */
+    private static final String LEVEL_PROPERTY = "level";
+
+    /**
+     * The result property that holds the largest uncompressed size of an entry that was inflated.
+     */
+    private static final String MAX_ENTRY_SIZE_PROPERTY = "maxEntrySize";
+
+    /**
+     * The directory containing the index keyed by location.
+     */
+    private final File indexDirectory;
+
+    /**
+     * The directory containing the results keyed by checksum.
+     */
+    private final File resultDirectory;
+
+    /**
+     * Initialise the cache.
+     *
+     * @param directory The root directory of the cache.
+     */
+    public VerificationCache(final File directory) {
+        indexDirectory = new File(directory, "index");
+        resultDirectory = new File(directory, "results");
+    }
+
+    /**
+     * Get the SHA-256 checksum of an archive. The checksum recorded in the index is used if the size and
+     * modification time of the archive have not changed. Otherwise, the checksum is calculated and recorded.
+     *
+     * @param file The archive.
+     * @return The checksum as a lower case hexadecimal string.
+     * @throws IOException If the archive could not be read or the index could not be written.
+     */
+    public String getChecksum(final File file) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        final String size = Long.toString(attributes.size());
+        final String modified = Long.toString(attributes.lastModifiedTime().toMillis());
+        final File indexFile = new File(indexDirectory, hash(file.getCanonicalPath()) + ".properties");
+        final Properties index = load(indexFile);
+        if (index != null && size.equals(index.getProperty(SIZE_PROPERTY))
+                && modified.equals(index.getProperty(MODIFIED_PROPERTY))
+                && index.getProperty(CHECKSUM_PROPERTY) != null) {
+            return index.getProperty(CHECKSUM_PROPERTY);
+        }
+        final String checksum = ChecksumUtils.checksum(file, "SHA-256");
+        final Properties updatedIndex = new Properties();
+        updatedIndex.setProperty(SIZE_PROPERTY, size);
+        updatedIndex.setProperty(MODIFIED_PROPERTY, modified);
+        updatedIndex.setProperty(CHECKSUM_PROPERTY, checksum);
+        store(indexFile, updatedIndex);
+        return checksum;
+    }
+
+    /**
+     * Get the recorded outcome of verifying an archive.
+     *
+     * @param checksum The checksum of the archive.
+     * @return The outcome or {@code null} if the archive has not been verified.
+     * @throws IOException If the result could not be read.
+     */
+    public Result getResult(final String checksum) throws IOException {
+        final Properties result = load(new File(resultDirectory, checksum + ".properties"));
+        if (result == null) {
+            return null;
+        }
+        return new Result(Integer.parseInt(result.getProperty(VERSION_PROPERTY, "0")),
+                Boolean.parseBoolean(result.getProperty(VALID_PROPERTY)),
+                Boolean.parseBoolean(result.getProperty(ENTRIES_VERIFIED_PROPERTY)),
+                result.getProperty(KEY_FINGERPRINT_PROPERTY),
+                result.getProperty(LEVEL_PROPERTY),
+                Long.parseLong(result.getProperty(MAX_ENTRY_SIZE_PROPERTY, "-1")));
+    }
+
+    /**
+     * Record the outcome of verifying an archive.
+     *
+     * @param checksum The checksum of the archive.
+     * @param result   The outcome.
+     * @throws IOException If the result could not be written.
+     */
+    public void putResult(final String checksum, final Result result) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(VERSION_PROPERTY, Integer.toString(result.getVersion()));
+        properties.setProperty(VALID_PROPERTY, Boolean.toString(result.isValid()));
+        properties.setProperty(ENTRIES_VERIFIED_PROPERTY, Boolean.toString(result.isEntriesVerified()));
+        if (result.getKeyFingerprint() != null) {
+            properties.setProperty(KEY_FINGERPRINT_PROPERTY, result.getKeyFingerprint());
+        }
+        if (result.getLevel() != null) {
+            properties.setProperty(LEVEL_PROPERTY, result.getLevel());
+        }
+        properties.setProperty(MAX_ENTRY_SIZE_PROPERTY, Long.toString(result.getMaxEntrySize()));
+        store(new File(resultDirectory, checksum + ".properties"), properties);
+    }
+
+    /**
+     * Load a properties file.
+     *
+     * @param file The properties file.
+     * @return The properties or {@code null} if the file does not exist.
+     * @throws IOException If the file could not be read.
+     */
+    private static Properties load(final File file) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+        return properties;
+    }
+
+    /**
+     * Store a properties file via a temporary file so that concurrent readers never see a partially written file.
+     *
+     * @param file       The properties file.
+     * @param properties The properties.
+     * @throws IOException If the file could not be written.
+     */
+    private static void store(final File file, final Properties properties) throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        final File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a string.
+     *
+     * @param value The string.
+     * @return The hash as a lower case hexadecimal string.
+     * @throws IOException If SHA-256 is not supported.
+     */
+    private static String hash(final String value) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ChecksumUtils.toHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * The recorded outcome of verifying an archive.
+     */
+    public static final class Result {
+
+        /**
+         * The version of the CRX archive format.
+         */
+        private final int version;
+
+        /**
+         * {@code true} if the archive was valid.
+         */
+        private final boolean valid;
+
+        /**
+         * {@code true} if the entries of the ZIP payload were checked.
+         */
+        private final boolean entriesVerified;
+
+        /**
+         * The fingerprint of the public key.
+         */
+        private final String keyFingerprint;
+
+        /**
+         * The level of verification that produced the outcome.
+         */
+        private final String level;
+
+        /**
+         * The largest uncompressed size in bytes of an entry that was inflated when checking the entries.
+         */
+        private final long maxEntrySize;
+
+        /**
+         * Initialise the outcome.
+         *
+         * @param crxVersion        The version of the CRX archive format.
+         * @param isValid           {@code true} if the archive was valid.
+         * @param isEntriesChecked  {@code true} if the entries of the ZIP payload were checked.
+         * @param fingerprint       The fingerprint of the public key.
+         * @param verificationLevel The level of verification that produced the outcome.
+         * @param entrySizeLimit    The largest uncompressed size in bytes of an entry that was inflated.
+         */
+        public Result(final int crxVersion, final boolean isValid, final boolean isEntriesChecked,
+                      final String fingerprint, final String verificationLevel, final long entrySizeLimit) {
+            version = crxVersion;
+            valid = isValid;
+            entriesVerified = isEntriesChecked;
+            keyFingerprint = fingerprint;
+            level = verificationLevel;
+            maxEntrySize = entrySizeLimit;
+        }
+
+        /**
+         * Get the version of the CRX archive format.
+         *
+         * @return The version.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Determine whether the archive was valid.
+         *
+         * @return {@code true} if the archive was valid. Otherwise, {@code false}.
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * Determine whether the entries of the ZIP payload were checked.
+         *
+         * @return {@code true} if the entries were checked. Otherwise, {@code false}.
+         */
+        public boolean isEntriesVerified() {
+            return entriesVerified;
+        }
+
+        /**
+         * Get the fingerprint of the public key.
+         *
+         * @return The SHA-256 fingerprint of the public key as a lower case hexadecimal string.
+         */
+        public String getKeyFingerprint() {
+            return keyFingerprint;
+        }
+
+        /**
+         * Get the level of verification that produced the outcome.
+         *
+         * @return The level or {@code null} if it was not recorded.
+         */
+        public String getLevel() {
+            return level;
+        }
+
+        /**
+         * Get the largest uncompressed size of an entry that was inflated when checking the entries.
+         *
+         * @return The size in bytes or {@code -1} if it was not recorded.
+         */
+        public long getMaxEntrySize() {
+            return maxEntrySize;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.spec.KeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Static helper methods for verifying CRX archives.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+public final class VerifyUtils {
+
+    /**
+     * Static helper classes are not instantiated.
+     */
+    private VerifyUtils() {
+    }
+
+    /**
+     * Decode the public key of a CRX archive.
+     *
+     * @param archive The CRX archive.
+     * @return The public key.
+     * @throws GeneralSecurityException If the public key could not be decoded.
+     */
+    public static PublicKey getPublicKey(final CRXArchive archive) throws GeneralSecurityException {
+        final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        final KeySpec keySpec = new X509EncodedKeySpec(archive.getPublicKey());
+        return keyFactory.generatePublic(keySpec);
+    }
+
+    /**
+     * Calculate the fingerprint of a public key which is the SHA-256 hash of its DER encoding.
+     *
+     * @param publicKey The DER encoded public key.
+     * @return The fingerprint as a lower case hexadecimal string.
+     * @throws GeneralSecurityException If SHA-256 is not supported.
+     */
+    public static String getKeyFingerprint(final byte[] publicKey) throws GeneralSecurityException {
+        return ChecksumUtils.toHex(MessageDigest.getInstance("SHA-256").digest(publicKey));
+    }
+
+    /**
+     * Check the signature of a CRX archive using the public key from the archive. The payload is streamed into the
+     * digest so it is not loaded onto the heap.
+     *
+     * @param signatureHelper The helper used to check the signature.
+     * @param archive         The CRX archive.
+     * @return {@code true} if the signature is valid. Otherwise, {@code false}.
+     * @throws GeneralSecurityException If there was an error validating the signature.
+     * @throws IOException              If there was an error reading the payload.
+     */
+    public static boolean verifySignature(final SignatureHelper signatureHelper, final CRXArchive archive)
+            throws GeneralSecurityException, IOException {
+        final PublicKey publicKey = getPublicKey(archive);
+        final MessageDigest digest = signatureHelper.createDigest(archive.getVersion());
+        if (archive.getVersion() == 3) {
+            digest.update(CRX3Header.getSignedDataPrefix(archive.getSignedHeaderData()));
+        }
+        archive.getPayload().update(digest);
+        return signatureHelper.checkDigest(archive.getVersion(), digest.digest(), publicKey, archive.getSignature());
+    }
+}
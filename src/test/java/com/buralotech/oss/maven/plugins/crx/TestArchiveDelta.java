@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test the {@link ArchiveDelta} class.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestArchiveDelta {
+
+    /**
+     * Temporary directory used for output.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * The previous release of the CRX archive.
+     */
+    private File previousCrx;
+
+    /**
+     * The new release of the CRX archive which modifies, adds and removes entries.
+     */
+    private File currentCrx;
+
+    /**
+     * The delta being tested.
+     */
+    private ArchiveDelta delta;
+
+    /**
+     * Create the previous and new releases of a CRX archive.
+     *
+     * @throws Exception If there was an unexpected exception creating the CRX archives.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        final File previousSource = new File(outputDirectory, "previous");
+        copyDirectory(new File("target/test-classes/HelloWorld").toPath(), previousSource.toPath());
+        final File currentSource = new File(outputDirectory, "current");
+        copyDirectory(previousSource.toPath(), currentSource.toPath());
+        Files.write(new File(currentSource, "popup.js").toPath(), "\nconsole.log('updated');\n"
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.write(new File(currentSource, "options.js").toPath(), "// options\n".getBytes(StandardCharsets.UTF_8));
+        Files.delete(new File(currentSource, "popup.html").toPath());
+
+        previousCrx = createArchive(previousSource, "HelloWorld-1.0.0.crx");
+        currentCrx = createArchive(currentSource, "HelloWorld-1.0.1.crx");
+        delta = new ArchiveDelta(new CRXArchiveHelper());
+    }
+
+    /**
+     * Verify that the entries are compared using the central directories.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testDiffEntries() throws Exception {
+        final CRXArchiveHelper helper = new CRXArchiveHelper();
+        final Map<String, String> expected = new TreeMap<>();
+        expected.put("options.js", ArchiveDelta.ADDED);
+        expected.put("popup.html", ArchiveDelta.REMOVED);
+        expected.put("popup.js", ArchiveDelta.MODIFIED);
+        assertEquals(expected, ArchiveDelta.diffEntries(helper.listEntries(previousCrx),
+                helper.listEntries(currentCrx)));
+    }
+
+    /**
+     * Verify that applying the entry package to the unpacked previous release produces the unpacked new release.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testEntryPackageRoundTrip() throws Exception {
+        final File packageFile = new File(outputDirectory, "HelloWorld-1.0.1-delta.zip");
+        delta.writeEntryPackage(previousCrx, currentCrx, packageFile);
+
+        final File patched = new File(outputDirectory, "patched");
+        new ArchiveUnpacker(1).unpack(new CRXArchiveHelper().readPayload(previousCrx), patched);
+        ArchiveDelta.applyEntryPackage(packageFile, patched);
+        final File expected = new File(outputDirectory, "expected");
+        new ArchiveUnpacker(1).unpack(new CRXArchiveHelper().readPayload(currentCrx), expected);
+        assertEquals(readDirectory(expected.toPath()), readDirectory(patched.toPath()));
+    }
+
+    /**
+     * Verify that an entry package is not applied to a directory that does not hold the previous release and that the
+     * directory is left unchanged.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testEntryPackageDoesNotApply() throws Exception {
+        final File packageFile = new File(outputDirectory, "HelloWorld-1.0.1-delta.zip");
+        delta.writeEntryPackage(previousCrx, currentCrx, packageFile);
+
+        final File patched = new File(outputDirectory, "patched");
+        new ArchiveUnpacker(1).unpack(new CRXArchiveHelper().readPayload(previousCrx), patched);
+        Files.write(new File(patched, "popup.js").toPath(), "// edited locally\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        final Map<String, String> before = readDirectory(patched.toPath());
+        assertThrows(IOException.class, () -> ArchiveDelta.applyEntryPackage(packageFile, patched));
+        assertEquals(before, readDirectory(patched.toPath()));
+    }
+
+    /**
+     * Verify that applying the patch to the previous release reproduces the new release exactly and that the patch is
+     * much smaller than the new release.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testPatchRoundTrip() throws Exception {
+        final File patchFile = new File(outputDirectory, "HelloWorld-1.0.1-delta.crxpatch");
+        delta.writePatch(previousCrx, currentCrx, patchFile);
+        final File patchedCrx = new File(outputDirectory, "patched.crx");
+        delta.applyPatch(previousCrx, patchFile, patchedCrx);
+        assertArrayEquals(Files.readAllBytes(currentCrx.toPath()), Files.readAllBytes(patchedCrx.toPath()));
+        assertTrue(patchFile.length() < currentCrx.length() / 2);
+    }
+
+    /**
+     * Verify that a patch is rejected when it is applied to a CRX archive other than the one it was generated from.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testPatchRejectsWrongSource() throws Exception {
+        final File patchFile = new File(outputDirectory, "HelloWorld-1.0.1-delta.crxpatch");
+        delta.writePatch(previousCrx, currentCrx, patchFile);
+        final File patchedCrx = new File(outputDirectory, "patched.crx");
+        assertThrows(IOException.class, () -> delta.applyPatch(currentCrx, patchFile, patchedCrx));
+    }
+
+    /**
+     * Verify that a corrupted patch is rejected.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testPatchRejectsCorruptPatch() throws Exception {
+        final File patchFile = new File(outputDirectory, "HelloWorld-1.0.1-delta.crxpatch");
+        delta.writePatch(previousCrx, currentCrx, patchFile);
+        try (RandomAccessFile file = new RandomAccessFile(patchFile, "rw")) {
+            file.setLength(file.length() - 8);
+        }
+        final File patchedCrx = new File(outputDirectory, "patched.crx");
+        assertThrows(IOException.class, () -> delta.applyPatch(previousCrx, patchFile, patchedCrx));
+    }
+
+    /**
+     * Package and sign a directory.
+     *
+     * @param source The directory.
+     * @param name   The name of the CRX archive.
+     * @return The CRX archive.
+     * @throws IOException If the CRX archive could not be created.
+     */
+    private File createArchive(final File source, final String name) throws IOException {
+        final File crxFile = new File(outputDirectory, name);
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setDestFile(crxFile);
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(source, null, null);
+        archiver.createArchive();
+        return crxFile;
+    }
+
+    /**
+     * Copy a directory tree.
+     *
+     * @param source      The source directory.
+     * @param destination The destination directory.
+     * @throws IOException If the directory tree could not be copied.
+     */
+    private static void copyDirectory(final Path source, final Path destination) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (final Path path : (Iterable<Path>) paths::iterator) {
+                Files.copy(path, destination.resolve(source.relativize(path).toString()));
+            }
+        }
+    }
+
+    /**
+     * Read the contents of the files in a directory tree.
+     *
+     * @param root The directory.
+     * @return The contents of each file keyed by relative path.
+     * @throws IOException If the directory tree could not be read.
+     */
+    private static Map<String, String> readDirectory(final Path root) throws IOException {
+        final Map<String, String> contents = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (final Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path)) {
+                    contents.put(root.relativize(path).toString(), Arrays.toString(Files.readAllBytes(path)));
+                }
+            }
+        }
+        return contents;
+    }
+}
@@ -16,14 +16,29 @@
 
 package com.buralotech.oss.maven.plugins.crx;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit test {@link CRXArchiveHelper}.
@@ -33,6 +48,12 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
  */
 class TestArchiveHelper {
 
+    /**
+     * The contents of the manifest entry used when testing random access to entries.
+     */
+    private static final byte[] MANIFEST = "{\"name\":\"Hello World\",\"manifest_version\":3}"
+            .getBytes(StandardCharsets.UTF_8);
+
     /**
      * The {@link CRXArchiveHelper} being tested.
      */
@@ -62,4 +83,122 @@ class TestArchiveHelper {
         assertArrayEquals(DummyArchive.SIGNATURE, crxInArchive.getSignature());
         assertArrayEquals(DummyArchive.DATA, crxInArchive.getData());
     }
+
+    /**
+     * Verify writing a CRX3 archive and reading it back into memory.
+     *
+     * @throws Exception If there is an unexpected problem.
+     */
+    @Test
+    void testReadWriteVersion3(@TempDir File outputDirectory) throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld-1.0.0-SNAPSHOT.crx");
+        final CRXArchive crxOutArchive = new DummyArchive();
+        archiveHelper.writeArchive(crxFile, 3, crxOutArchive);
+        final CRXArchive crxInArchive = archiveHelper.readArchive(crxFile);
+        assertNotNull(crxInArchive);
+        assertEquals(3, crxInArchive.getVersion());
+        assertArrayEquals(CRX3Header.createSignedHeaderData(DummyArchive.PUBLIC_KEY),
+                crxInArchive.getSignedHeaderData());
+        assertArrayEquals(DummyArchive.PUBLIC_KEY, crxInArchive.getPublicKey());
+        assertArrayEquals(DummyArchive.SIGNATURE, crxInArchive.getSignature());
+        assertArrayEquals(DummyArchive.DATA, crxInArchive.getData());
+    }
+
+    /**
+     * Verify that a version 3 CRX file is rejected when the CRX id in the signed header data does not match the public
+     * key of any of the RSA key proofs.
+     *
+     * @throws Exception If there is an unexpected problem.
+     */
+    @Test
+    void testReadVersion3WithMismatchedCrxId(@TempDir File outputDirectory) throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld-1.0.0-SNAPSHOT.crx");
+        final byte[] otherKey = DummyArchive.PUBLIC_KEY.clone();
+        otherKey[otherKey.length - 1] ^= 0x01;
+        final CRXArchive crxOutArchive = new CRXArchive(3, DummyArchive.PUBLIC_KEY, DummyArchive.SIGNATURE,
+                CRX3Header.createSignedHeaderData(otherKey), DummyArchive.DATA);
+        archiveHelper.writeArchive(crxFile, 3, crxOutArchive);
+        assertThrows(IOException.class, () -> archiveHelper.readArchive(crxFile));
+    }
+
+    /**
+     * Verify that checksum sidecar files are produced for the CRX file as it is written.
+     *
+     * @throws Exception If there is an unexpected problem.
+     */
+    @Test
+    void testWriteChecksums(@TempDir File outputDirectory) throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld-1.0.0-SNAPSHOT.crx");
+        archiveHelper.writeArchive(crxFile, 3, new DummyArchive(), "SHA-256", "SHA-512");
+        final byte[] crxData = Files.readAllBytes(crxFile.toPath());
+        for (final String algorithm : new String[]{"SHA-256", "SHA-512"}) {
+            final String expected = ChecksumUtils.toHex(MessageDigest.getInstance(algorithm).digest(crxData))
+                    + "  HelloWorld-1.0.0-SNAPSHOT.crx\n";
+            final File sidecarFile = ChecksumUtils.getSidecarFile(crxFile, algorithm);
+            assertEquals(expected, new String(Files.readAllBytes(sidecarFile.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Verify that the entries of the ZIP payload can be listed without extracting the archive.
+     *
+     * @throws Exception If there is an unexpected problem.
+     */
+    @Test
+    void testListEntries(@TempDir File outputDirectory) throws Exception {
+        final File crxFile = writeZipArchive(outputDirectory);
+        final List<CRXEntry> entries = archiveHelper.listEntries(crxFile);
+        assertEquals(3, entries.size());
+        assertEquals("_locales/", entries.get(0).getName());
+        assertTrue(entries.get(0).isDirectory());
+        assertEquals("_locales/en/messages.json", entries.get(1).getName());
+        assertEquals("manifest.json", entries.get(2).getName());
+        assertFalse(entries.get(2).isDirectory());
+        assertEquals(ZipEntry.DEFLATED, entries.get(2).getMethod());
+        assertEquals(MANIFEST.length, entries.get(2).getSize());
+        final CRC32 crc = new CRC32();
+        crc.update(MANIFEST);
+        assertEquals(crc.getValue(), entries.get(2).getCrc());
+    }
+
+    /**
+     * Verify that a single entry of the ZIP payload can be read.
+     *
+     * @throws Exception If there is an unexpected problem.
+     */
+    @Test
+    void testOpenEntry(@TempDir File outputDirectory) throws Exception {
+        final File crxFile = writeZipArchive(outputDirectory);
+        try (InputStream in = archiveHelper.openEntry(crxFile, "manifest.json")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[64];
+            for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+                out.write(buffer, 0, count);
+            }
+            assertArrayEquals(MANIFEST, out.toByteArray());
+        }
+        assertThrows(FileNotFoundException.class, () -> archiveHelper.openEntry(crxFile, "popup.html"));
+    }
+
+    /**
+     * Write a CRX3 archive with a ZIP payload containing a directory, a locale file and a manifest.
+     *
+     * @param outputDirectory The directory in which the CRX archive is written.
+     * @return The CRX file.
+     * @throws Exception If the archive could not be written.
+     */
+    private File writeZipArchive(final File outputDirectory) throws Exception {
+        final ByteArrayOutputStream zipData = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipData)) {
+            zip.putNextEntry(new ZipEntry("_locales/"));
+            zip.putNextEntry(new ZipEntry("_locales/en/messages.json"));
+            zip.write("{}".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(MANIFEST);
+        }
+        final File crxFile = new File(outputDirectory, "HelloWorld-1.0.0-SNAPSHOT.crx");
+        archiveHelper.writeArchive(crxFile, 3, new CRXArchive(3, DummyArchive.PUBLIC_KEY, DummyArchive.SIGNATURE,
+                null, zipData.toByteArray()));
+        return crxFile;
+    }
 }
@@ -16,17 +16,35 @@
 
 package com.buralotech.oss.maven.plugins.crx;
 
+import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.ResourceIterator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -43,6 +61,126 @@ import static org.mockito.Mockito.when;
  */
 class TestArchiver {
 
+    /**
+     * Verify that the {@link CRXArchiver} adds the deflated content of the files to the shared store and that a
+     * second archive copies the content from the store.
+     *
+     * @param storeDirectory The directory of the store.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testArchiverWithCompressedEntryStore(@TempDir final File storeDirectory) throws Exception {
+        final CompressedEntryStore store = new CompressedEntryStore(storeDirectory, 0);
+        final CRXArchiveHelper archiveHelper = new CRXArchiveHelper();
+        for (int i = 0; i < 2; i++) {
+            archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+            archiver.setCompressedEntryStore(store);
+            archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+            archiver.setForced(true);
+            archiver.createArchive();
+
+            final File crxFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx");
+            assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archiveHelper.readArchive(crxFile)));
+            for (final String name : Arrays.asList("manifest.json", "popup.html", "popup.js", "icon.png")) {
+                assertArrayEquals(Files.readAllBytes(new File("target/test-classes/HelloWorld", name).toPath()),
+                        readEntry(archiveHelper, crxFile, name));
+            }
+            setUp();
+        }
+        int blobCount = 0;
+        for (final File subdirectory : storeDirectory.listFiles(File::isDirectory)) {
+            blobCount += subdirectory.listFiles().length;
+        }
+        assertEquals(4, blobCount);
+    }
+
+    /**
+     * Verify that the {@link CRXArchiver} writes each entry once with a forward slash separated name when the content
+     * is copied from the shared store and the resource names use the Windows separator.
+     *
+     * @param storeDirectory The directory of the store.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testArchiverWithCompressedEntryStoreAndBackslashes(@TempDir final File storeDirectory) throws Exception {
+        archiver = new CRXArchiverImpl() {
+            @Override
+            public ResourceIterator getResources() throws ArchiverException {
+                final ResourceIterator resources = super.getResources();
+                return new ResourceIterator() {
+                    @Override
+                    public boolean hasNext() {
+                        return resources.hasNext();
+                    }
+
+                    @Override
+                    public ArchiveEntry next() {
+                        final ArchiveEntry entry = resources.next();
+                        return ArchiveEntry.createFileEntry(entry.getName().replace('/', '\\'), entry.getResource(),
+                                entry.getMode(), null, entry.getDefaultDirMode());
+                    }
+                };
+            }
+        };
+        archiver.setDestFile(new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx"));
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.setCompressedEntryStore(new CompressedEntryStore(storeDirectory, 0));
+        archiver.addFile(new File("target/test-classes/HelloWorld/manifest.json"), "manifest.json");
+        archiver.addFile(new File("target/test-classes/HelloWorld/popup.js"), "lib/popup.js");
+        archiver.createArchive();
+
+        final CRXArchiveHelper archiveHelper = new CRXArchiveHelper();
+        final File crxFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx");
+        final List<String> names = new ArrayList<>();
+        for (final CRXEntry entry : archiveHelper.listEntries(crxFile)) {
+            names.add(entry.getName());
+        }
+        assertEquals(Arrays.asList("manifest.json", "lib/popup.js"), names);
+        assertArrayEquals(Files.readAllBytes(new File("target/test-classes/HelloWorld/popup.js").toPath()),
+                readEntry(archiveHelper, crxFile, "lib/popup.js"));
+    }
+
+    /**
+     * Verify that the {@link CRXArchiver} signs with a key pair that was already loaded instead of reading the PEM
+     * file.
+     *
+     * @param pemDirectory The directory that does not contain the PEM file.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testArchiverWithKeyPair(@TempDir final File pemDirectory) throws Exception {
+        archiver.setPemFile(new File(pemDirectory, "missing.pem"));
+        archiver.setKeyPair(KeyPairUtils.readKeyPair(new File("target/test-classes/crxtest.pem"), null));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+        final File crxFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx");
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), new CRXArchiveHelper().readArchive(crxFile)));
+    }
+
+    /**
+     * Verify that the {@link CRXArchiver} obtains the public key and signature from the signing agent for the PEM
+     * file so the PEM file itself is only fingerprinted and not decrypted.
+     *
+     * @param agentDirectory The directory in which the agent file is published.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testArchiverWithSigningAgent(@TempDir final File agentDirectory) throws Exception {
+        final File pemFile = new File(agentDirectory, "agent.pem");
+        Files.copy(new File("target/test-classes/crxtest.pem").toPath(), pemFile.toPath());
+        try (SigningAgent agent = new SigningAgent(pemFile, KeyPairUtils.readKeyPair(pemFile, null),
+                new CRXSignatureHelper(), agentDirectory, 1)) {
+            archiver.setPemFile(pemFile);
+            archiver.setSigningAgentDirectory(agentDirectory);
+            archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+            archiver.createArchive();
+        }
+        final File crxFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx");
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), new CRXArchiveHelper().readArchive(crxFile)));
+    }
+
     /**
      * The {@link CRXArchiver} used in unit tests.
      */
@@ -161,7 +299,9 @@ class TestArchiver {
     @Test
     void testArchiverWhenSignatureHelperFails() throws Exception {
         final SignatureHelper helper = mock(SignatureHelper.class);
-        when(helper.sign(any(byte[].class), any(PrivateKey.class))).thenThrow(GeneralSecurityException.class);
+        when(helper.createDigest(anyInt())).thenReturn(MessageDigest.getInstance("SHA-256"));
+        when(helper.signDigest(anyInt(), any(byte[].class), any(PrivateKey.class)))
+                .thenThrow(GeneralSecurityException.class);
         archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
         archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
         archiver.setSignatureHelper(helper);
@@ -182,4 +322,152 @@ class TestArchiver {
         archiver.setArchiveHelper(helper);
         assertThrows(ArchiverException.class, () -> archiver.createArchive());
     }
+
+    /**
+     * Verify that the signature of a CRX3 archive computed while the ZIP was written can be checked against the
+     * archive read back from disk.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testArchiverSignatureVersion3() throws Exception {
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+        final CRXArchive archive = new CRXArchiveHelper().readArchive(
+                new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx"));
+        assertEquals(3, archive.getVersion());
+        assertNotNull(archive.getSignedHeaderData());
+        final SignatureHelper helper = new CRXSignatureHelper();
+        final MessageDigest digest = helper.createDigest(3);
+        digest.update(CRX3Header.getSignedDataPrefix(archive.getSignedHeaderData()));
+        digest.update(archive.getData());
+        assertTrue(helper.checkDigest(3, digest.digest(), getPublicKey(archive), archive.getSignature()));
+    }
+
+    /**
+     * Verify that a CRX3 archive signed using the preferred crypto providers has a valid signature.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testArchiverWithCryptoProviders() throws Exception {
+        archiver.setCryptoProviders("BC", "SunJCE");
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+        final CRXArchive archive = new CRXArchiveHelper().readArchive(
+                new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx"));
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+    }
+
+    /**
+     * Verify that the signature of a CRX2 archive computed while the ZIP was written matches a signature computed
+     * over the ZIP data after the fact.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testArchiverSignatureVersion2() throws Exception {
+        archiver.setVersion(2);
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+        final CRXArchive archive = new CRXArchiveHelper().readArchive(
+                new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx"));
+        assertEquals(2, archive.getVersion());
+        assertTrue(new CRXSignatureHelper().check(archive.getData(), getPublicKey(archive), archive.getSignature()));
+    }
+
+    /**
+     * Verify that the signed ZIP payload is also output as a plain ZIP file and that the temporary file is removed.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testArchiverWithZipFile() throws Exception {
+        final File zipFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT-webstore.zip");
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.setZipFile(zipFile);
+        archiver.createArchive();
+        final CRXArchive archive = new CRXArchiveHelper().readArchive(
+                new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx"));
+        assertArrayEquals(archive.getData(), Files.readAllBytes(zipFile.toPath()));
+        assertEquals(2, outputDirectory.list().length);
+    }
+
+    /**
+     * Verify that raw entries are copied from another ZIP payload without being recompressed and that they replace
+     * resources with the same names.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testArchiverWithRawEntries() throws Exception {
+        final byte[] script = "function common() { return 'common'; }\n".getBytes(StandardCharsets.UTF_8);
+        final byte[] manifest = "{\"name\":\"Overlay\"}".getBytes(StandardCharsets.UTF_8);
+        final File overlayFile = new File(outputDirectory, "overlay.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(overlayFile))) {
+            zip.putNextEntry(new ZipEntry("lib/common.js"));
+            zip.write(script);
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(manifest);
+        }
+        final CRXArchiveHelper archiveHelper = new CRXArchiveHelper();
+        final List<CRXEntry> overlayEntries = archiveHelper.listEntries(overlayFile);
+
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.addRawEntries(archiveHelper.readPayload(overlayFile), Arrays.asList("lib/common.js", "manifest.json"));
+        archiver.createArchive();
+
+        final File crxFile = new File(outputDirectory, "HelloWord-1.0.0-SNAPSHOT.crx");
+        final CRXArchive archive = archiveHelper.readArchive(crxFile);
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+        int manifestCount = 0;
+        for (final CRXEntry entry : archiveHelper.listEntries(crxFile)) {
+            if (entry.getName().equals("lib/common.js")) {
+                assertEquals(overlayEntries.get(0).getCompressedSize(), entry.getCompressedSize());
+                assertEquals(overlayEntries.get(0).getCrc(), entry.getCrc());
+            } else if (entry.getName().equals("manifest.json")) {
+                manifestCount++;
+            }
+        }
+        assertEquals(1, manifestCount);
+        assertArrayEquals(script, readEntry(archiveHelper, crxFile, "lib/common.js"));
+        assertArrayEquals(manifest, readEntry(archiveHelper, crxFile, "manifest.json"));
+    }
+
+    /**
+     * Read the contents of an entry in a CRX archive.
+     *
+     * @param archiveHelper The archive helper used to open the entry.
+     * @param crxFile       The CRX archive.
+     * @param name          The name of the entry.
+     * @return The contents of the entry.
+     * @throws Exception If the entry could not be read.
+     */
+    private byte[] readEntry(final ArchiveHelper archiveHelper, final File crxFile, final String name)
+            throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = archiveHelper.openEntry(crxFile, name)) {
+            final byte[] buffer = new byte[256];
+            for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+                out.write(buffer, 0, count);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the public key of a CRX archive.
+     *
+     * @param archive The CRX archive.
+     * @return The public key.
+     * @throws Exception If the public key could not be decoded.
+     */
+    private PublicKey getPublicKey(final CRXArchive archive) throws Exception {
+        return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(archive.getPublicKey()));
+    }
 }
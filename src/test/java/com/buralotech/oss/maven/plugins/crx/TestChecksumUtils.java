@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verify the behaviour of the {@link ChecksumUtils} helper methods.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestChecksumUtils {
+
+    /**
+     * Verify that {@link ChecksumUtils#toHex(byte[])} encodes bytes as lower case hexadecimal digits.
+     */
+    @Test
+    void testToHex() {
+        assertEquals("00017f80ff", ChecksumUtils.toHex(new byte[]{0x00, 0x01, 0x7F, (byte) 0x80, (byte) 0xFF}));
+    }
+
+    /**
+     * Verify that {@link ChecksumUtils#getExtension(String)} derives the sidecar extension from the algorithm name.
+     */
+    @Test
+    void testGetExtension() {
+        assertEquals("sha256", ChecksumUtils.getExtension("SHA-256"));
+        assertEquals("sha512", ChecksumUtils.getExtension("SHA-512"));
+        assertEquals("md5", ChecksumUtils.getExtension("MD5"));
+    }
+
+    /**
+     * Verify that {@link ChecksumUtils#getSidecarFile(File, String)} appends the extension to the file name.
+     */
+    @Test
+    void testGetSidecarFile() {
+        final File crxFile = new File("target", "HelloWorld.crx");
+        assertEquals(new File("target", "HelloWorld.crx.sha256"), ChecksumUtils.getSidecarFile(crxFile, "SHA-256"));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link CompressedEntryStore}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestCompressedEntryStore {
+
+    /**
+     * The hash of the first content.
+     */
+    private static final String FIRST_HASH = "aa00000000000000000000000000000000000000000000000000000000000000";
+
+    /**
+     * The hash of the second content.
+     */
+    private static final String SECOND_HASH = "bb00000000000000000000000000000000000000000000000000000000000000";
+
+    /**
+     * Temporary directory containing the store.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * Verify that deflated content is stored with its CRC and sizes and can be inflated again.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testPutAndGet() throws Exception {
+        final CompressedEntryStore store = new CompressedEntryStore(directory, 0);
+        final byte[] content = createContent('a');
+        assertNull(store.get(FIRST_HASH));
+        store.put(FIRST_HASH, new ByteArrayInputStream(content));
+        final CompressedEntryStore.Blob blob = store.get(FIRST_HASH);
+        assertNotNull(blob);
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        assertEquals(crc.getValue(), blob.getCrc());
+        assertEquals(content.length, blob.getSize());
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        try (InputStream in = new InflaterInputStream(blob.openCompressed(), new Inflater(true))) {
+            final byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                inflated.write(buffer, 0, count);
+            }
+        }
+        assertArrayEquals(content, inflated.toByteArray());
+    }
+
+    /**
+     * Verify that the least recently used content is evicted when the store grows beyond its size limit.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testEvict() throws Exception {
+        final CompressedEntryStore unlimited = new CompressedEntryStore(directory, 0);
+        final long size = unlimited.put(FIRST_HASH, new ByteArrayInputStream(createContent('a'))).getCompressedSize();
+        unlimited.put(SECOND_HASH, new ByteArrayInputStream(createContent('b')));
+        assertEquals(0, unlimited.evict());
+
+        final File first = new File(directory, "aa/" + FIRST_HASH + "-deflate9.blob");
+        final File second = new File(directory, "bb/" + SECOND_HASH + "-deflate9.blob");
+        assertTrue(first.setLastModified(System.currentTimeMillis() - 60000));
+        assertTrue(second.setLastModified(System.currentTimeMillis() - 120000));
+        assertNotNull(unlimited.get(FIRST_HASH));
+
+        final CompressedEntryStore limited = new CompressedEntryStore(directory, size + 100);
+        assertEquals(1, limited.evict());
+        assertNotNull(limited.get(FIRST_HASH));
+        assertNull(limited.get(SECOND_HASH));
+    }
+
+    /**
+     * Create some compressible content.
+     *
+     * @param seed The character the content is based on.
+     * @return The content.
+     */
+    private static byte[] createContent(final char seed) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append(seed).append(i % 37).append(' ');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ContentHashGenerator}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestContentHashGenerator {
+
+    /**
+     * Temporary directory containing the files that are hashed.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * Verify that a file is hashed in 4 KiB blocks with a partial final block.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testHashFile() throws Exception {
+        final byte[] data = new byte[ContentHashGenerator.BLOCK_SIZE * 2 + 1];
+        Arrays.fill(data, (byte) 'x');
+        final File file = new File(directory, "data.bin");
+        Files.write(file.toPath(), data);
+        final List<String> hashes = ContentHashGenerator.hashFile(file);
+        assertEquals(3, hashes.size());
+        assertEquals(hash(data, 0, ContentHashGenerator.BLOCK_SIZE), hashes.get(0));
+        assertEquals(hash(data, ContentHashGenerator.BLOCK_SIZE, ContentHashGenerator.BLOCK_SIZE), hashes.get(1));
+        assertEquals(hash(data, ContentHashGenerator.BLOCK_SIZE * 2, 1), hashes.get(2));
+    }
+
+    /**
+     * Verify that an empty file has a single block hash.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testHashEmptyFile() throws Exception {
+        final File file = new File(directory, "empty.txt");
+        Files.write(file.toPath(), new byte[0]);
+        assertEquals(Collections.singletonList(hash(new byte[0], 0, 0)), ContentHashGenerator.hashFile(file));
+    }
+
+    /**
+     * Verify that the cached hashes of files with unchanged content are reused whatever their modification time and
+     * that files with changed content are hashed again.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testCachedHashes() throws Exception {
+        final File file = new File(directory, "script.js");
+        Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+        final File cacheFile = new File(directory, "cache/hashes");
+        final ContentHashGenerator generator = new ContentHashGenerator(2);
+        final Map<String, List<String>> hashes = generator.computeHashes(directory,
+                Collections.singletonList("script.js"), cacheFile);
+        assertEquals(ContentHashGenerator.hashFile(file), hashes.get("script.js"));
+        assertTrue(cacheFile.isFile());
+
+        // Tamper with the cached hash to prove that it is reused
+
+        final Properties cache = new Properties();
+        try (InputStream in = Files.newInputStream(cacheFile.toPath())) {
+            cache.load(in);
+        }
+        cache.setProperty("script.js", ChecksumUtils.checksum(file, "SHA-256") + ":cached");
+        try (OutputStream out = Files.newOutputStream(cacheFile.toPath())) {
+            cache.store(out, null);
+        }
+        assertEquals(Collections.singletonList("cached"), generator.computeHashes(directory,
+                Collections.singletonList("script.js"), cacheFile).get("script.js"));
+
+        // Rewriting the same content with a new modification time reuses the cached hash
+
+        final long lastModified = file.lastModified();
+        Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified + 60000));
+        assertEquals(Collections.singletonList("cached"), generator.computeHashes(directory,
+                Collections.singletonList("script.js"), cacheFile).get("script.js"));
+
+        // A same-size edit that keeps the modification time is hashed again
+
+        Files.write(file.toPath(), "alert('jello');".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified + 60000));
+        assertEquals(ContentHashGenerator.hashFile(file), generator.computeHashes(directory,
+                Collections.singletonList("script.js"), cacheFile).get("script.js"));
+    }
+
+    /**
+     * Verify that the hashes are written in the format of Chrome's {@code computed_hashes.json}.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testWriteComputedHashes() throws Exception {
+        final File file = new File(directory, "_metadata/computed_hashes.json");
+        ContentHashGenerator.writeComputedHashes(file,
+                Collections.singletonMap("dir/\"quoted\".js", Arrays.asList("aGFzaDE=", "aGFzaDI=")));
+        assertEquals("{\"file_hashes\":[{\"block_hashes\":[\"aGFzaDE=\",\"aGFzaDI=\"],\"block_size\":4096,"
+                        + "\"path\":\"dir/\\\"quoted\\\".js\"}],\"version\":2}",
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compute the expected Base64 encoded SHA-256 hash of a block.
+     *
+     * @param data   The data.
+     * @param offset The offset of the block.
+     * @param length The length of the block.
+     * @return The Base64 encoded hash.
+     * @throws Exception If the hash could not be computed.
+     */
+    private static String hash(final byte[] data, final int offset, final int length) throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(data, offset, length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+}
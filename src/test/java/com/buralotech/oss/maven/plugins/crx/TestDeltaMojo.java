@@ -0,0 +1,190 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test the {@link CRXDeltaMojo} which implements the delta goal.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestDeltaMojo {
+
+    /**
+     * Temporary directory used for output.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * The {@link CRXDeltaMojo} being tested.
+     */
+    private CRXDeltaMojo mojo;
+
+    /**
+     * The previous release of the CRX archive.
+     */
+    private File previousCrx;
+
+    /**
+     * The mock Maven project.
+     */
+    private MavenProject project;
+
+    /**
+     * The mock Maven project helper used to check the attached artifacts.
+     */
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * Create the previous and new releases of a CRX archive and configure the mojo.
+     *
+     * @throws Exception If there was an unexpected exception creating the CRX archives.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        previousCrx = new File(outputDirectory, "HelloWorld-1.0.0.crx");
+        createArchive(new File("target/test-classes/HelloWorld"), previousCrx);
+        final File currentSource = new File(outputDirectory, "current");
+        Files.createDirectories(currentSource.toPath());
+        for (final String name : new String[]{"manifest.json", "popup.html", "popup.js", "icon.png"}) {
+            Files.copy(new File("target/test-classes/HelloWorld", name).toPath(),
+                    new File(currentSource, name).toPath());
+        }
+        Files.write(new File(currentSource, "popup.js").toPath(), "\n// 1.0.1\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        createArchive(currentSource, new File(outputDirectory, "HelloWorld.crx"));
+
+        project = mock(MavenProject.class);
+        projectHelper = mock(MavenProjectHelper.class);
+        mojo = new CRXDeltaMojo();
+        setVariableValueInObject(mojo, "finalName", "HelloWorld");
+        setVariableValueInObject(mojo, "outputDirectory", outputDirectory);
+        setVariableValueInObject(mojo, "deltaClassifier", "delta");
+        setVariableValueInObject(mojo, "project", project);
+        setVariableValueInObject(mojo, "projectHelper", projectHelper);
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+    }
+
+    /**
+     * Verify that the entry package and patch are written and attached when the previous release is given by
+     * location.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testDeltaFromPath() throws Exception {
+        setVariableValueInObject(mojo, "previousCrx", previousCrx);
+        mojo.execute();
+        final File packageFile = new File(outputDirectory, "HelloWorld-delta.zip");
+        final File patchFile = new File(outputDirectory, "HelloWorld-delta.crxpatch");
+        verify(projectHelper).attachArtifact(same(project), eq("zip"), eq("delta"), eq(packageFile));
+        verify(projectHelper).attachArtifact(same(project), eq("crxpatch"), eq("delta"), eq(patchFile));
+
+        final File patchedCrx = new File(outputDirectory, "patched.crx");
+        new ArchiveDelta(new CRXArchiveHelper()).applyPatch(previousCrx, patchFile, patchedCrx);
+        assertArrayEquals(Files.readAllBytes(new File(outputDirectory, "HelloWorld.crx").toPath()),
+                Files.readAllBytes(patchedCrx.toPath()));
+        assertTrue(packageFile.isFile());
+    }
+
+    /**
+     * Verify that the previous release is resolved from its coordinates and that the attached classifier includes the
+     * artifact classifier.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testDeltaFromArtifact() throws Exception {
+        Files.move(new File(outputDirectory, "HelloWorld.crx").toPath(),
+                new File(outputDirectory, "HelloWorld-chrome.crx").toPath());
+        final RepositorySystem repositorySystem = mock(RepositorySystem.class);
+        final RepositorySystemSession repositorySession = mock(RepositorySystemSession.class);
+        when(repositorySystem.resolveArtifact(same(repositorySession), any(ArtifactRequest.class))).thenAnswer(
+                invocation -> {
+                    final ArtifactRequest request = invocation.getArgument(1);
+                    final Artifact artifact = request.getArtifact();
+                    assertEquals("com.buralotech.oss:HelloWorld:crx:chrome:1.0.0", artifact.toString());
+                    return new ArtifactResult(request).setArtifact(artifact.setFile(previousCrx));
+                });
+        setVariableValueInObject(mojo, "classifier", "chrome");
+        setVariableValueInObject(mojo, "previousArtifact", "com.buralotech.oss:HelloWorld:crx:chrome:1.0.0");
+        setVariableValueInObject(mojo, "repositorySystem", repositorySystem);
+        setVariableValueInObject(mojo, "repositorySession", repositorySession);
+        setVariableValueInObject(mojo, "remoteRepositories", Collections.emptyList());
+        mojo.execute();
+        verify(projectHelper).attachArtifact(same(project), eq("zip"), eq("chrome-delta"),
+                eq(new File(outputDirectory, "HelloWorld-chrome-delta.zip")));
+        verify(projectHelper).attachArtifact(same(project), eq("crxpatch"), eq("chrome-delta"),
+                eq(new File(outputDirectory, "HelloWorld-chrome-delta.crxpatch")));
+    }
+
+    /**
+     * Verify that the goal fails when the previous release is not specified.
+     */
+    @Test
+    void testWithoutPrevious() {
+        assertThrows(MojoExecutionException.class, () -> mojo.execute());
+    }
+
+    /**
+     * Package and sign a directory.
+     *
+     * @param source  The directory.
+     * @param crxFile The CRX archive.
+     * @throws Exception If the CRX archive could not be created.
+     */
+    private static void createArchive(final File source, final File crxFile) throws Exception {
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setDestFile(crxFile);
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(source, null, null);
+        archiver.createArchive();
+    }
+}
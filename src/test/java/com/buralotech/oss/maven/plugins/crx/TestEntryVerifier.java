@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link EntryVerifier}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestEntryVerifier {
+
+    /**
+     * The content of the stored entry.
+     */
+    private static final byte[] STORED_DATA = "stored entry content".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Verify that no problems are reported for a valid ZIP payload.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testValidPayload() throws Exception {
+        final List<String> problems = new EntryVerifier(2, 1024 * 1024).verify(CRXPayload.ofBytes(createZip()));
+        assertTrue(problems.isEmpty(), problems.toString());
+    }
+
+    /**
+     * Verify that an entry whose data does not match the CRC in the central directory is reported.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testCorruptEntry() throws Exception {
+        final byte[] zip = createZip();
+        final int offset = indexOf(zip, STORED_DATA);
+        zip[offset] ^= 0xFF;
+        final List<String> problems = new EntryVerifier(2, 1024 * 1024).verify(CRXPayload.ofBytes(zip));
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("stored.txt: CRC"), problems.get(0));
+    }
+
+    /**
+     * Verify that an entry larger than the limit is reported without being inflated.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testEntryExceedsLimit() throws Exception {
+        final List<String> problems = new EntryVerifier(1, 1024).verify(CRXPayload.ofBytes(createZip()));
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("zeros.bin: uncompressed size 65536 exceeds"), problems.get(0));
+    }
+
+    /**
+     * Verify that a payload without a central directory is reported.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testInvalidCentralDirectory() throws Exception {
+        final List<String> problems = new EntryVerifier(1, 1024)
+                .verify(CRXPayload.ofBytes("not a zip".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("Could not read the ZIP central directory"), problems.get(0));
+    }
+
+    /**
+     * Create a ZIP file with a stored entry, a deflated entry that compresses well and a directory.
+     *
+     * @return The ZIP file.
+     * @throws Exception If the ZIP file could not be created.
+     */
+    private static byte[] createZip() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.closeEntry();
+            final ZipEntry stored = new ZipEntry("stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_DATA.length);
+            final CRC32 crc = new CRC32();
+            crc.update(STORED_DATA);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(STORED_DATA);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("zeros.bin"));
+            zip.write(new byte[65536]);
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Find the first occurrence of a byte sequence.
+     *
+     * @param data    The data to search.
+     * @param pattern The byte sequence.
+     * @return The offset of the byte sequence or {@code -1} if it was not found.
+     */
+    private static int indexOf(final byte[] data, final byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            boolean found = true;
+            for (int j = 0; j < pattern.length && found; j++) {
+                found = data[i + j] == pattern[j];
+            }
+            if (found) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
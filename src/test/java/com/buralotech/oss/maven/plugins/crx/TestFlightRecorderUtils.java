@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test the Java Flight Recorder events emitted by the plug-in.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestFlightRecorderUtils {
+
+    /**
+     * Temporary folder in which the CRX file and the recording are created.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Verify that no events are created while they are not being recorded.
+     */
+    @Test
+    void testNotRecording() {
+        assertNull(FlightRecorderUtils.beginCopyFile());
+        assertNull(FlightRecorderUtils.beginKeyPair());
+        assertNull(FlightRecorderUtils.beginSignature());
+        assertNull(FlightRecorderUtils.beginArchiveIO());
+        assertFalse(FlightRecorderUtils.isArchiveEntryEnabled());
+    }
+
+    /**
+     * Verify that packaging, reading and verifying a CRX archive emits the key pair, archive entry, signature and
+     * archive I/O events.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testPackagingEvents() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        final List<RecordedEvent> events = record(() -> {
+            final CRXArchiverImpl archiver = new CRXArchiverImpl();
+            archiver.setDestFile(crxFile);
+            archiver.setSignatureHelper(new CRXSignatureHelper());
+            archiver.setArchiveHelper(new CRXArchiveHelper());
+            archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+            archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+            archiver.createArchive();
+            final CRXArchive archive = new CRXArchiveHelper().readArchive(crxFile);
+            assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+        });
+
+        final RecordedEvent keyPair = find(events, "com.buralotech.crx.LoadKeyPair", null);
+        assertTrue(keyPair.getBoolean("loaded"));
+        assertFalse(keyPair.getBoolean("encrypted"));
+
+        final RecordedEvent manifest = find(events, "com.buralotech.crx.ArchiveEntry", "manifest.json");
+        assertEquals(new File("target/test-classes/HelloWorld/manifest.json").length(), manifest.getLong("size"));
+        assertEquals("DEFLATED", manifest.getString("method"));
+        assertTrue(manifest.getLong("compressedSize") > 0);
+        assertTrue(manifest.getDuration("deflateTime").toNanos() > 0);
+
+        assertEquals("NONEwithRSA", find(events, "com.buralotech.crx.Signature", "sign").getString("algorithm"));
+        assertTrue(find(events, "com.buralotech.crx.Signature", "check").getBoolean("success"));
+
+        final RecordedEvent write = find(events, "com.buralotech.crx.ArchiveIO", "write");
+        assertEquals(crxFile.getPath(), write.getString("path"));
+        assertEquals(3, write.getInt("version"));
+        assertEquals(crxFile.length(), write.getLong("size"));
+        assertEquals(3, find(events, "com.buralotech.crx.ArchiveIO", "read").getInt("version"));
+    }
+
+    /**
+     * Verify that copying a file emits the copy file event.
+     *
+     * @throws Exception If there was an error executing the unit test.
+     */
+    @Test
+    void testCopyFileEvent() throws Exception {
+        final File file = new File("target/test-classes/HelloWorld/manifest.json");
+        final List<RecordedEvent> events = record(() -> {
+            final Object event = FlightRecorderUtils.beginCopyFile();
+            FlightRecorderUtils.endCopyFile(event, file, true);
+        });
+        final RecordedEvent copyFile = find(events, "com.buralotech.crx.CopyFile", null);
+        assertEquals(file.getPath(), copyFile.getString("path"));
+        assertEquals(file.length(), copyFile.getLong("bytes"));
+        assertTrue(copyFile.getBoolean("filtered"));
+    }
+
+    /**
+     * Run an action while the plug-in events are being recorded.
+     *
+     * @param action The action.
+     * @return The plug-in events that were recorded.
+     * @throws Exception If there was an error running the action or reading the recording.
+     */
+    private List<RecordedEvent> record(final Action action) throws Exception {
+        final Path recordingFile = new File(outputDirectory, "recording.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            for (final String name : new String[]{"CopyFile", "ArchiveEntry", "LoadKeyPair", "Signature",
+                    "ArchiveIO"}) {
+                recording.enable("com.buralotech.crx." + name).withoutThreshold();
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        final List<RecordedEvent> events = new ArrayList<>();
+        for (final RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            if (event.getEventType().getName().startsWith("com.buralotech.crx.")) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Find a recorded event by type and by the value of its name, operation or path field.
+     *
+     * @param events The recorded events.
+     * @param type   The name of the event type.
+     * @param key    The expected value of the name or operation field or {@code null} to match any event of the type.
+     * @return The event.
+     */
+    private RecordedEvent find(final List<RecordedEvent> events, final String type, final String key) {
+        for (final RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(type)
+                    && (key == null || key.equals(event.hasField("name") ? event.getString("name")
+                    : event.getString("operation")))) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + type + " event for " + key);
+    }
+
+    /**
+     * An action that is run while events are being recorded.
+     */
+    private interface Action {
+
+        /**
+         * Run the action.
+         *
+         * @throws Exception If there was an error running the action.
+         */
+        void run() throws Exception;
+    }
+}
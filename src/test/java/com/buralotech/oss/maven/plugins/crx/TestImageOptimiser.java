@@ -0,0 +1,214 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ImageOptimiser}, {@link PngUtils} and {@link JpegUtils}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestImageOptimiser {
+
+    /**
+     * Temporary directory containing the images.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * Temporary directory containing the cached images.
+     */
+    @TempDir
+    private File cacheDirectory;
+
+    /**
+     * Verify that a PNG image is made smaller without changing its pixels and that its text chunks are removed.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testOptimisePng() throws Exception {
+        final byte[] original = addTextChunk(encode(createImage(BufferedImage.TYPE_INT_RGB), "png"));
+        final byte[] optimised = PngUtils.optimise(original);
+        assertTrue(optimised.length < original.length);
+        assertFalse(new String(optimised, StandardCharsets.ISO_8859_1).contains("tEXt"));
+        assertTrue(ImageOptimiser.isSamePixels(original, optimised));
+    }
+
+    /**
+     * Verify that a JPEG image is made smaller by optimising its Huffman tables and removing comments without
+     * changing its pixels.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testOptimiseJpeg() throws Exception {
+        final byte[] original = encode(createImage(BufferedImage.TYPE_INT_RGB), "jpg");
+        final byte[] optimised = JpegUtils.optimise(original);
+        assertTrue(optimised.length < original.length);
+        assertTrue(ImageOptimiser.isSamePixels(original, optimised));
+    }
+
+    /**
+     * Verify that a greyscale JPEG image which has a single component is made smaller without changing its pixels.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testOptimiseGreyscaleJpeg() throws Exception {
+        final byte[] original = encode(createImage(BufferedImage.TYPE_BYTE_GRAY), "jpg");
+        final byte[] optimised = JpegUtils.optimise(original);
+        assertTrue(optimised.length < original.length);
+        assertTrue(ImageOptimiser.isSamePixels(original, optimised));
+    }
+
+    /**
+     * Verify that the orientation is read from EXIF data so that EXIF data which rotates the image is kept.
+     */
+    @Test
+    void testGetOrientation() {
+        final byte[] segment = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0,
+                0, 0, 0, 0};
+        assertEquals(6, JpegUtils.getOrientation(segment));
+        segment[4] = 'X';
+        assertEquals(0, JpegUtils.getOrientation(segment));
+    }
+
+    /**
+     * Verify that images in the staging directory are replaced by their optimised versions and that the outcome is
+     * cached keyed by the original image.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testOptimiseFiles() throws Exception {
+        final byte[] original = encode(createImage(BufferedImage.TYPE_INT_RGB), "jpg");
+        final File file = new File(directory, "image.jpg");
+        Files.write(file.toPath(), original);
+        final ImageOptimiser optimiser = new ImageOptimiser(2, cacheDirectory);
+        final long saved = optimiser.optimise(Collections.singletonList(file));
+        assertTrue(saved > 0);
+        assertEquals(original.length - saved, file.length());
+        final File[] cacheFiles = cacheDirectory.listFiles();
+        assertEquals(1, cacheFiles.length);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(cacheFiles[0].toPath()));
+
+        // An empty cache file records that the image is kept so the image is not optimised again
+
+        Files.write(cacheFiles[0].toPath(), new byte[0]);
+        Files.write(file.toPath(), original);
+        assertEquals(0, optimiser.optimise(Collections.singletonList(file)));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Verify that an image that cannot be decoded is left unchanged.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testInvalidImage() throws Exception {
+        final byte[] original = "not an image".getBytes(StandardCharsets.US_ASCII);
+        final File file = new File(directory, "image.png");
+        Files.write(file.toPath(), original);
+        assertEquals(0, new ImageOptimiser(1, null).optimise(Collections.singletonList(file)));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Create an image with smooth gradients and some detail.
+     *
+     * @param type The type of the image.
+     * @return The image.
+     */
+    private static BufferedImage createImage(final int type) {
+        final BufferedImage image = new BufferedImage(67, 45, type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final int detail = (x * 7 + y * 13) % 17;
+                image.setRGB(x, y, (x * 3 + detail) << 16 | (y * 5) << 8 | (x + y + detail) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Encode an image.
+     *
+     * @param image  The image.
+     * @param format The format.
+     * @return The encoded image.
+     * @throws Exception If the image could not be encoded.
+     */
+    private static byte[] encode(final BufferedImage image, final String format) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Insert a text chunk after the header chunk of a PNG image.
+     *
+     * @param png The PNG image.
+     * @return The PNG image with the text chunk.
+     */
+    private static byte[] addTextChunk(final byte[] png) {
+        final byte[] text = "Comment\0Created by a unit test".getBytes(StandardCharsets.ISO_8859_1);
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        chunk.write(0);
+        chunk.write(0);
+        chunk.write(0);
+        chunk.write(text.length);
+        final byte[] type = "tEXt".getBytes(StandardCharsets.ISO_8859_1);
+        chunk.write(type, 0, type.length);
+        chunk.write(text, 0, text.length);
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(text);
+        final long value = crc.getValue();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            chunk.write((int) (value >> shift));
+        }
+        final int headerEnd = 8 + 25;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(png, 0, headerEnd);
+        out.write(chunk.toByteArray(), 0, chunk.size());
+        out.write(png, headerEnd, png.length - headerEnd);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit test the {@link KeyPairUtils} static helper methods.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestKeyPairUtils {
+
+    /**
+     * Verify that an unencrypted PKCS#1 PEM file is loaded by the JDK with the same result as Bouncy Castle.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testReadPKCS1KeyPair() throws Exception {
+        assertSameKeyPair(new File("target/test-classes/crxtest.pem"), null);
+    }
+
+    /**
+     * Verify that an unencrypted PKCS#8 PEM file generated by Google Chrome is loaded by the JDK with the same result
+     * as Bouncy Castle.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testReadPKCS8KeyPair() throws Exception {
+        assertSameKeyPair(new File("target/test-classes/chrome.pem"), null);
+    }
+
+    /**
+     * Verify that an encrypted legacy PEM file is loaded using Bouncy Castle.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testReadEncryptedKeyPair() throws Exception {
+        assertSameKeyPair(new File("target/test-classes/crxtest1.pem"), "everclear");
+    }
+
+    /**
+     * Verify that an encrypted legacy PEM file cannot be loaded without a password.
+     */
+    @Test
+    void testReadEncryptedKeyPairWithoutPassword() {
+        assertThrows(IOException.class,
+                () -> KeyPairUtils.readKeyPair(new File("target/test-classes/crxtest1.pem"), null));
+    }
+
+    /**
+     * Verify that a corrupted PEM file is rejected.
+     */
+    @Test
+    void testReadCorruptedKeyPair() {
+        assertThrows(Exception.class,
+                () -> KeyPairUtils.readKeyPair(new File("target/test-classes/crxtest3.pem"), null));
+    }
+
+    /**
+     * Assert that the key pair loaded by {@link KeyPairUtils} matches the key pair loaded by Bouncy Castle.
+     *
+     * @param pemFile     The PEM file.
+     * @param pemPassword The password for the PEM file.
+     * @throws Exception If the key pair could not be loaded.
+     */
+    private void assertSameKeyPair(final File pemFile, final String pemPassword) throws Exception {
+        final KeyPair expected = BouncyCastleKeyPairReader.readKeyPair(pemFile, pemPassword);
+        final KeyPair actual = KeyPairUtils.readKeyPair(pemFile, pemPassword);
+        assertArrayEquals(expected.getPublic().getEncoded(), actual.getPublic().getEncoded());
+        assertArrayEquals(expected.getPrivate().getEncoded(), actual.getPrivate().getEncoded());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link MinifyUtils} and {@link Minifier}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestMinifyUtils {
+
+    /**
+     * Temporary directory containing the files that are minified.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * Verify that whitespace and comments are removed from JSON but not from strings.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifyJson() throws Exception {
+        assertEquals("{\"name\":\"Hello  World\",\"list\":[1,2],\"path\":\"a/*b*/c\\\"//\"}",
+                MinifyUtils.minifyJson("{\n  // The name\n  \"name\": \"Hello  World\",\n  \"list\": [ 1, 2 ],\n"
+                        + "  /* escaped */ \"path\" : \"a/*b*/c\\\"//\"\n}\n"));
+    }
+
+    /**
+     * Verify that an unterminated string is rejected.
+     */
+    @Test
+    void testMinifyJsonUnterminated() {
+        assertThrows(IOException.class, () -> MinifyUtils.minifyJson("{\"name\": \"Hello"));
+    }
+
+    /**
+     * Verify that whitespace and comments are removed from CSS keeping the whitespace that is significant.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifyCss() throws Exception {
+        assertEquals("/*! licence */div p>a:hover,.x{width:calc(100% - 2px);content:\"a  b\"}"
+                        + "@media screen and (max-width:10px){a{color:red}}",
+                MinifyUtils.minifyCss("/*! licence */\ndiv  p > a:hover, .x {\n  /* width */\n"
+                        + "  width:calc(100% - 2px);\n  content: \"a  b\";\n}\n"
+                        + "@media screen and (max-width:10px) {\n  a { color: red; }\n}\n"));
+    }
+
+    /**
+     * Verify that comments and whitespace are removed from JavaScript keeping the line breaks that automatic semicolon
+     * insertion depends on and the spaces that separate tokens.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifyJs() throws Exception {
+        assertEquals("var a=1\nvar b=a+ +a\nreturn a- -b;function f(x){return x}",
+                MinifyUtils.minifyJs("// Comment\nvar a = 1\nvar b = a + +a\n/* Block\n comment */\n"
+                        + "return a - -b;\nfunction f( x ) {\n    return x\n}\n"));
+    }
+
+    /**
+     * Verify that strings, template literals and regular expressions are copied unchanged.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifyJsLiterals() throws Exception {
+        assertEquals("var s='a  // b',t=`x  ${f(\"}\")}  /* y */`,r=/ +\\/[/ ]/g,d=a/2/b;",
+                MinifyUtils.minifyJs("var s = 'a  // b', t = `x  ${f(\"}\")}  /* y */`, r = / +\\/[/ ]/g,"
+                        + " d = a / 2 / b;"));
+        assertEquals("x=1 .toString();return/a b/.test(y)",
+                MinifyUtils.minifyJs("x = 1 .toString();\nreturn /a b/.test(y)"));
+    }
+
+    /**
+     * Verify that an unterminated regular expression is rejected.
+     */
+    @Test
+    void testMinifyJsUnterminated() {
+        assertThrows(IOException.class, () -> MinifyUtils.minifyJs("var r = /abc\n"));
+    }
+
+    /**
+     * Verify that JavaScript is rejected rather than guessing whether a {@code /} after a closing parenthesis or brace
+     * is a division operator or starts a regular expression literal, and that such files are left unminified.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifyJsAmbiguousSlash() throws Exception {
+        assertThrows(IOException.class, () -> MinifyUtils.minifyJs("if (x) / +/.test(s)"));
+        assertThrows(IOException.class, () -> MinifyUtils.minifyJs("function f() {}\n/ a b/.exec(t)"));
+        assertThrows(IOException.class, () -> MinifyUtils.minifyJs("var h = (a + b) / 2"));
+        assertEquals("var h=a[0]/2,l='ab'/c", MinifyUtils.minifyJs("var h = a[0] / 2, l = 'ab' / c"));
+
+        final byte[] source = "if (x) / +/.test(s);\n".getBytes(StandardCharsets.UTF_8);
+        final File js = new File(directory, "ambiguous.js");
+        Files.write(js.toPath(), source);
+        assertEquals(0, new Minifier(1, new File(directory, "cache")).optimise(Collections.singletonList(js)));
+        assertArrayEquals(source, Files.readAllBytes(js.toPath()));
+    }
+
+    /**
+     * Verify that the minifier replaces files that can be minified and leaves files that cannot be tokenised
+     * unchanged.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMinifier() throws Exception {
+        final File json = new File(directory, "messages.json");
+        Files.write(json.toPath(), "{ \"a\" : { \"message\" : \"A\" } }".getBytes(StandardCharsets.UTF_8));
+        final byte[] invalid = "var s = 'abc".getBytes(StandardCharsets.UTF_8);
+        final File js = new File(directory, "invalid.js");
+        Files.write(js.toPath(), invalid);
+        final long saved = new Minifier(1, new File(directory, "cache")).optimise(Arrays.asList(json, js));
+        assertEquals(8, saved);
+        assertEquals("{\"a\":{\"message\":\"A\"}}", new String(Files.readAllBytes(json.toPath()),
+                StandardCharsets.UTF_8));
+        assertArrayEquals(invalid, Files.readAllBytes(js.toPath()));
+    }
+}
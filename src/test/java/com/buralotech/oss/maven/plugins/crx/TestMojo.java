@@ -17,8 +17,12 @@
 package com.buralotech.oss.maven.plugins.crx;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.apache.maven.shared.filtering.MavenFileFilter;
@@ -32,16 +36,45 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.imageio.ImageIO;
+import javax.inject.Provider;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.anyCollection;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -90,9 +123,9 @@ class TestMojo {
     private static final String PROJECT_HELPER_FIELD = "projectHelper";
 
     /**
-     * The name of the {@link CRXArchiver} field in the {@link CRXMojo} class.
+     * The name of the {@link CRXArchiver} provider field in the {@link CRXMojo} class.
      */
-    private static final String CRX_ARCHIVER_FIELD = "crxArchiver";
+    private static final String CRX_ARCHIVER_PROVIDER_FIELD = "crxArchiverProvider";
 
     /**
      * The name of the artifact classifier filed in the {@link CRXMojo} class.
@@ -173,10 +206,13 @@ class TestMojo {
         setVariableValueInObject(mojo, OUTPUT_DIRECTORY_FIELD, outputDirectory);
         setVariableValueInObject(mojo, PROJECT_FIELD, project);
         setVariableValueInObject(mojo, PROJECT_HELPER_FIELD, projectHelper);
-        setVariableValueInObject(mojo, CRX_ARCHIVER_FIELD, archiver);
+        setVariableValueInObject(mojo, CRX_ARCHIVER_PROVIDER_FIELD, (Provider<CRXArchiver>) () -> archiver);
         setVariableValueInObject(mojo, FINAL_NAME_FIELD, "HelloWorld");
         setVariableValueInObject(mojo, PEM_FILE_FIELD, new File("target/test-classes/crxtest.pem"));
         setVariableValueInObject(mojo, CRX_SOURCE_DIRECTORY_FIELD, new File("target/test-classes/HelloWorld"));
+        final PluginDescriptor plugin = new PluginDescriptor();
+        plugin.setVersion("2.0.0");
+        setVariableValueInObject(mojo, "plugin", plugin);
     }
 
     /**
@@ -333,4 +369,471 @@ class TestMojo {
         verify(archiver).createArchive();
         verify(artifact).setFile(any(File.class));
     }
+
+    /**
+     * Verify that the {@link CRXMojo} passes the checksum algorithms to the archiver and attaches the checksum
+     * sidecar files.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithChecksums() throws Exception {
+        setVariableValueInObject(mojo, "checksums", "SHA-256, SHA-512");
+        mojo.execute();
+        verify(archiver).setChecksumAlgorithms(eq("SHA-256"), eq("SHA-512"));
+        verify(archiver).createArchive();
+        verify(artifact).setFile(any(File.class));
+        verify(projectHelper).attachArtifact(same(project), eq("crx.sha256"), isNull(), any(File.class));
+        verify(projectHelper).attachArtifact(same(project), eq("crx.sha512"), isNull(), any(File.class));
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} does not attach the CRX file or its checksum sidecar files when signing is
+     * deferred because they are not written until the sign-pending goal runs.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithDeferSigning() throws Exception {
+        setVariableValueInObject(mojo, "checksums", "SHA-256");
+        setVariableValueInObject(mojo, "deferSigning", true);
+        mojo.execute();
+        verify(archiver).setDeferredSigning(true);
+        verify(archiver).createArchive();
+        verify(artifact, never()).setFile(any(File.class));
+        verify(projectHelper, never()).attachArtifact(same(project), eq("crx.sha256"), isNull(), any(File.class));
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} passes the preferred crypto providers to the archiver.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithCryptoProviders() throws Exception {
+        setVariableValueInObject(mojo, "cryptoProviders", "SunJCE, BC");
+        mojo.execute();
+        verify(archiver).setCryptoProviders(eq("SunJCE"), eq("BC"));
+        verify(archiver).createArchive();
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} writes the content hashes of the packaged files to the staging directory.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithContentHashes() throws Exception {
+        setVariableValueInObject(mojo, "contentHashes", true);
+        setVariableValueInObject(mojo, "contentHashesPath", "_metadata/computed_hashes.json");
+        mojo.execute();
+        final File manifest = new File(outputDirectory, "HelloWorld/_metadata/computed_hashes.json");
+        assertTrue(manifest.isFile());
+        final String json = new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"path\":\"manifest.json\""));
+        assertTrue(new File(outputDirectory, "HelloWorld.hashes").isFile());
+        verify(archiver).createArchive();
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} minifies the staged JSON files.
+     *
+     * @param cacheDirectory The directory in which the minified files are cached.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithMinify(@TempDir final File cacheDirectory) throws Exception {
+        setVariableValueInObject(mojo, "minify", true);
+        setVariableValueInObject(mojo, "minifyIncludes", "**/*.json");
+        setVariableValueInObject(mojo, "minifyCacheDirectory", cacheDirectory);
+        mojo.execute();
+        final File manifest = new File(outputDirectory, "HelloWorld/manifest.json");
+        final String json = new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"name\":\"Hello World!\",\"version\":\"1.0\""));
+        assertTrue(manifest.length() < new File("target/test-classes/HelloWorld/manifest.json").length());
+        verify(archiver).createArchive();
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} uploads the CRX file to the remote build cache after a miss and downloads it
+     * instead of packaging and signing it again after a hit.
+     *
+     * @param cacheDirectory The directory in which the build cache server stores the CRX files.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithBuildCache(@TempDir final File cacheDirectory) throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        prepareBuildCache(crxFile);
+        try (BuildCacheServer server = new BuildCacheServer(cacheDirectory,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            setVariableValueInObject(mojo, "buildCacheUrl", server.getUrl());
+            mojo.execute();
+            assertEquals(1, cacheDirectory.list().length);
+            final byte[] packaged = Files.readAllBytes(crxFile.toPath());
+            assertTrue(crxFile.delete());
+
+            mojo.execute();
+            verify(archiver, times(1)).createArchive();
+            verify(archiver, times(2)).setKeyPair(any(KeyPair.class));
+            assertArrayEquals(packaged, Files.readAllBytes(crxFile.toPath()));
+            assertEquals(ChecksumUtils.checksum(crxFile, "SHA-256"), new String(Files.readAllBytes(
+                    ChecksumUtils.getSidecarFile(crxFile, "SHA-256").toPath()), StandardCharsets.UTF_8)
+                    .split(" ")[0]);
+        }
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} does not restore a CRX file from the remote build cache that was packaged by a
+     * different plug-in version or with different options.
+     *
+     * @param cacheDirectory The directory in which the build cache server stores the CRX files.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithBuildCacheAfterOptionsChange(@TempDir final File cacheDirectory) throws Exception {
+        prepareBuildCache(new File(outputDirectory, "HelloWorld.crx"));
+        try (BuildCacheServer server = new BuildCacheServer(cacheDirectory,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            setVariableValueInObject(mojo, "buildCacheUrl", server.getUrl());
+            mojo.execute();
+            final PluginDescriptor plugin = new PluginDescriptor();
+            plugin.setVersion("2.0.1");
+            setVariableValueInObject(mojo, "plugin", plugin);
+            mojo.execute();
+            setVariableValueInObject(mojo, "checksums", "SHA-512");
+            mojo.execute();
+            verify(archiver, times(3)).createArchive();
+            assertEquals(3, cacheDirectory.list().length);
+        }
+    }
+
+    /**
+     * Configure the {@link CRXMojo} to use the remote build cache and the mock archiver to package the test
+     * extension.
+     *
+     * @param crxFile The location of the CRX file.
+     * @throws Exception If there was an unexpected exception.
+     */
+    private void prepareBuildCache(final File crxFile) throws Exception {
+        doAnswer(invocation -> {
+            final CRXArchiverImpl realArchiver = new CRXArchiverImpl();
+            realArchiver.setSignatureHelper(new CRXSignatureHelper());
+            realArchiver.setArchiveHelper(new CRXArchiveHelper());
+            realArchiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+            realArchiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+            realArchiver.setDestFile(crxFile);
+            realArchiver.createArchive();
+            return null;
+        }).when(archiver).createArchive();
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+        setVariableValueInObject(mojo, "signatureHelper", new CRXSignatureHelper());
+        setVariableValueInObject(mojo, "buildCacheUpload", true);
+        setVariableValueInObject(mojo, "buildCacheTimeout", 10000);
+        setVariableValueInObject(mojo, "checksums", "SHA-256");
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} merges an overlay into the staging directory and registers the overlay entries
+     * that are not provided by the project with the archiver.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithOverlay() throws Exception {
+        final byte[] script = "function common() {}\n".getBytes(StandardCharsets.UTF_8);
+        final File overlayFile = new File(outputDirectory, "common-1.0.0.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(overlayFile))) {
+            zip.putNextEntry(new ZipEntry("lib/common.js"));
+            zip.write(script);
+            zip.putNextEntry(new ZipEntry("lib/README.txt"));
+            zip.write(script);
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(script);
+        }
+        final Artifact overlayArtifact = new DefaultArtifact("com.buralotech.oss", "common", "1.0.0", "compile",
+                "zip", null, new DefaultArtifactHandler("zip"));
+        overlayArtifact.setFile(overlayFile);
+        when(project.getArtifacts()).thenReturn(Collections.singleton(overlayArtifact));
+        final Overlay overlay = new Overlay();
+        overlay.setGroupId("com.buralotech.oss");
+        overlay.setArtifactId("common");
+        overlay.setType("zip");
+        overlay.setExcludes("**/*.txt");
+        setVariableValueInObject(mojo, "overlays", Collections.singletonList(overlay));
+        setVariableValueInObject(mojo, "overlayCacheDirectory", new File(outputDirectory, "cache"));
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+        mojo.execute();
+        verify(archiver).addRawEntries(any(CRXPayload.class), eq(Collections.singletonList("lib/common.js")));
+        verify(archiver).createArchive();
+        assertArrayEquals(script, Files.readAllBytes(new File(outputDirectory, "HelloWorld/lib/common.js").toPath()));
+        assertTrue(new File(outputDirectory, "cache/com.buralotech.oss/common/1.0.0/zip.unpacked").isFile());
+    }
+
+    /**
+     * Verify that an overlay image that is optimised in the staging directory is packaged from the staging directory
+     * instead of being copied from the overlay so that the CRX file contains the optimised image that the content
+     * hashes were computed from.
+     *
+     * @param cacheDirectory The directory in which the optimised images are cached.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithOverlayAndOptimiseImages(@TempDir final File cacheDirectory) throws Exception {
+        final byte[] script = "function common() {}\n".getBytes(StandardCharsets.UTF_8);
+        final byte[] image = createPngWithComment();
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("lib/common.js", script);
+        entries.put("images/logo.png", image);
+        configureOverlay(entries);
+        setVariableValueInObject(mojo, "optimiseImages", true);
+        setVariableValueInObject(mojo, "imageCacheDirectory", cacheDirectory);
+        setVariableValueInObject(mojo, "contentHashes", true);
+        setVariableValueInObject(mojo, "contentHashesPath", "_metadata/computed_hashes.json");
+        mojo.execute();
+        verify(archiver).addRawEntries(any(CRXPayload.class), eq(Collections.singletonList("lib/common.js")));
+        final File stagedImage = new File(outputDirectory, "HelloWorld/images/logo.png");
+        assertTrue(stagedImage.length() < image.length);
+        final String json = new String(Files.readAllBytes(
+                new File(outputDirectory, "HelloWorld/_metadata/computed_hashes.json").toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"path\":\"images/logo.png\""));
+    }
+
+    /**
+     * Verify that an overlay script that is minified in the staging directory is packaged from the staging directory
+     * instead of being copied from the overlay while overlay files that are not changed are still copied.
+     *
+     * @param cacheDirectory The directory in which the minified files are cached.
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithOverlayAndMinify(@TempDir final File cacheDirectory) throws Exception {
+        final byte[] script = "/* Common functions */\nfunction common() {\n    return 1;\n}\n"
+                .getBytes(StandardCharsets.UTF_8);
+        final byte[] minified = "function common(){return 1;}".getBytes(StandardCharsets.UTF_8);
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("lib/common.js", script);
+        entries.put("lib/common.min.js", minified);
+        configureOverlay(entries);
+        setVariableValueInObject(mojo, "minify", true);
+        setVariableValueInObject(mojo, "minifyIncludes", "**/*.js");
+        setVariableValueInObject(mojo, "minifyExcludes", "**/*.min.js");
+        setVariableValueInObject(mojo, "minifyCacheDirectory", cacheDirectory);
+        setVariableValueInObject(mojo, "contentHashes", true);
+        setVariableValueInObject(mojo, "contentHashesPath", "_metadata/computed_hashes.json");
+        mojo.execute();
+        verify(archiver).addRawEntries(any(CRXPayload.class), eq(Collections.singletonList("lib/common.min.js")));
+        assertTrue(new File(outputDirectory, "HelloWorld/lib/common.js").length() < script.length);
+    }
+
+    /**
+     * Verify that overlay entries excluded by the packaging rules of the project are not copied into the CRX file.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithOverlayAndPackagingExcludes() throws Exception {
+        final byte[] script = "function common() {}\n".getBytes(StandardCharsets.UTF_8);
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("lib/common.js", script);
+        entries.put("lib/debug.js", script);
+        configureOverlay(entries);
+        setVariableValueInObject(mojo, "packagingExcludes", "**/debug.js");
+        mojo.execute();
+        verify(archiver).addRawEntries(any(CRXPayload.class), eq(Collections.singletonList("lib/common.js")));
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} fails if an overlay does not match a dependency.
+     *
+     * @throws Exception If there was an expected or unexpected exception.
+     */
+    @Test
+    void testWithMissingOverlay() throws Exception {
+        final Overlay overlay = new Overlay();
+        overlay.setGroupId("com.buralotech.oss");
+        overlay.setArtifactId("common");
+        setVariableValueInObject(mojo, "overlays", Collections.singletonList(overlay));
+        assertThrows(MojoExecutionException.class, () -> mojo.execute());
+        verify(archiver, never()).addRawEntries(any(CRXPayload.class), anyCollection());
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} asks the archiver for the plain ZIP file and attaches it to the build.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithZip() throws Exception {
+        setVariableValueInObject(mojo, "createZip", Boolean.TRUE);
+        setVariableValueInObject(mojo, "zipClassifier", "webstore");
+        mojo.execute();
+        final File zipFile = new File(outputDirectory, "HelloWorld-webstore.zip");
+        verify(archiver).setZipFile(eq(zipFile));
+        verify(archiver).createArchive();
+        verify(artifact).setFile(any(File.class));
+        verify(projectHelper).attachArtifact(same(project), eq("zip"), eq("webstore"), eq(zipFile));
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} obtains a new archiver for each execution so that executions never share
+     * archiver state.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testNewArchiverForEachExecution() throws Exception {
+        final CRXArchiver secondArchiver = mock(CRXArchiver.class);
+        final Iterator<CRXArchiver> archivers = Arrays.asList(archiver, secondArchiver).iterator();
+        setVariableValueInObject(mojo, CRX_ARCHIVER_PROVIDER_FIELD, (Provider<CRXArchiver>) archivers::next);
+        mojo.execute();
+        mojo.execute();
+        verify(archiver).createArchive();
+        verify(secondArchiver).createArchive();
+        assertFalse(archivers.hasNext());
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} writes the size report next to the CRX file when it is requested.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithSizeReport() throws Exception {
+        final File crxFile = prepareSizeCheck(300);
+        setVariableValueInObject(mojo, "sizeReport", true);
+        mojo.execute();
+        final List<String> lines = Files.readAllLines(new File(crxFile.getPath() + ".sizes").toPath(),
+                StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("total\t300", "150\t600\t25.0%\tpopup.js", "50\t100\t50.0%\tmanifest.json"),
+                lines);
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} fails the build when the CRX file exceeds the total size budget.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithSizeBudgetExceeded() throws Exception {
+        prepareSizeCheck(300);
+        setVariableValueInObject(mojo, "maxSize", 299L);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        setVariableValueInObject(mojo, "maxSize", 300L);
+        mojo.execute();
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} fails the build when an entry exceeds the compressed size budget.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithEntrySizeBudgetExceeded() throws Exception {
+        prepareSizeCheck(300);
+        setVariableValueInObject(mojo, "maxEntryCompressedSize", 149L);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        setVariableValueInObject(mojo, "maxEntryCompressedSize", 150L);
+        mojo.execute();
+    }
+
+    /**
+     * Verify that the {@link CRXMojo} fails the build when the CRX file grows by more than the growth budget since the
+     * previous report and that the previous report is kept as the baseline.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithGrowthBudgetExceeded() throws Exception {
+        final File crxFile = prepareSizeCheck(300);
+        setVariableValueInObject(mojo, "maxGrowth", 100L);
+        mojo.execute();
+        final File reportFile = new File(crxFile.getPath() + ".sizes");
+        assertEquals("total\t300", Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8).get(0));
+        Files.write(crxFile.toPath(), new byte[401]);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        assertEquals("total\t300", Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8).get(0));
+        Files.write(crxFile.toPath(), new byte[400]);
+        mojo.execute();
+        assertEquals("total\t400", Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8).get(0));
+    }
+
+    /**
+     * Create a CRX file of a given size in place of the one the mock archiver would output and an archive helper that
+     * lists its entries.
+     *
+     * @param size The size of the CRX file.
+     * @return The CRX file.
+     * @throws Exception If the CRX file could not be created or the archive helper could not be configured.
+     */
+    private File prepareSizeCheck(final int size) throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        Files.write(crxFile.toPath(), new byte[size]);
+        final ArchiveHelper archiveHelper = mock(ArchiveHelper.class);
+        when(archiveHelper.listEntries(eq(crxFile))).thenReturn(Arrays.asList(
+                new CRXEntry("images/", 0, 0, 0, ZipEntry.STORED),
+                new CRXEntry("manifest.json", 100, 50, 0, ZipEntry.DEFLATED),
+                new CRXEntry("popup.js", 600, 150, 0, ZipEntry.DEFLATED)));
+        setVariableValueInObject(mojo, "archiveHelper", archiveHelper);
+        return crxFile;
+    }
+
+    /**
+     * Configure the mojo with an overlay dependency that is a ZIP file containing the given entries.
+     *
+     * @param entries The contents of the entries keyed by name.
+     * @throws Exception If the overlay could not be created.
+     */
+    private void configureOverlay(final Map<String, byte[]> entries) throws Exception {
+        final File overlayFile = new File(outputDirectory, "common-1.0.0.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(overlayFile))) {
+            for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+            }
+        }
+        final Artifact overlayArtifact = new DefaultArtifact("com.buralotech.oss", "common", "1.0.0", "compile",
+                "zip", null, new DefaultArtifactHandler("zip"));
+        overlayArtifact.setFile(overlayFile);
+        when(project.getArtifacts()).thenReturn(Collections.singleton(overlayArtifact));
+        final Overlay overlay = new Overlay();
+        overlay.setGroupId("com.buralotech.oss");
+        overlay.setArtifactId("common");
+        overlay.setType("zip");
+        setVariableValueInObject(mojo, "overlays", Collections.singletonList(overlay));
+        setVariableValueInObject(mojo, "overlayCacheDirectory", new File(outputDirectory, "cache"));
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+    }
+
+    /**
+     * Create a PNG image that carries a large text chunk which the image optimiser strips.
+     *
+     * @return The PNG image.
+     * @throws Exception If the image could not be encoded.
+     */
+    private static byte[] createPngWithComment() throws Exception {
+        final BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", encoded);
+        final byte[] png = encoded.toByteArray();
+        final byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 'x');
+        System.arraycopy("Comment\0".getBytes(StandardCharsets.ISO_8859_1), 0, data, 0, 8);
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(chunk);
+        out.writeInt(data.length);
+        final byte[] typeAndData = new byte[4 + data.length];
+        System.arraycopy("tEXt".getBytes(StandardCharsets.ISO_8859_1), 0, typeAndData, 0, 4);
+        System.arraycopy(data, 0, typeAndData, 4, data.length);
+        out.write(typeAndData);
+        final CRC32 crc = new CRC32();
+        crc.update(typeAndData);
+        out.writeInt((int) crc.getValue());
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(png, 0, 33);
+        result.write(chunk.toByteArray());
+        result.write(png, 33, png.length - 33);
+        return result.toByteArray();
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit test the {@link OverlayCache}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestOverlayCache {
+
+    /**
+     * Temporary directory holding the overlay and the cache.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * The overlay dependency.
+     */
+    private Artifact artifact;
+
+    /**
+     * The {@link OverlayCache} being tested.
+     */
+    private OverlayCache overlayCache;
+
+    /**
+     * Create the overlay dependency and the cache.
+     */
+    @BeforeEach
+    void setUp() {
+        artifact = new DefaultArtifact("com.buralotech.oss", "common", "1.0.0-SNAPSHOT", "compile", "zip", null,
+                new DefaultArtifactHandler("zip"));
+        artifact.setFile(new File(outputDirectory, "common-1.0.0-SNAPSHOT.zip"));
+        overlayCache = new OverlayCache(new File(outputDirectory, "cache"), 2);
+    }
+
+    /**
+     * Verify that an overlay is only unpacked again when the artifact changes.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithDirectory() throws Exception {
+        writeOverlay("first");
+        final File directory = getDirectory();
+        final File script = new File(directory, "lib/common.js");
+        assertEquals("first", read(script));
+
+        Files.write(script.toPath(), "modified".getBytes(StandardCharsets.UTF_8));
+        assertEquals(directory, getDirectory());
+        assertEquals("modified", read(script));
+
+        writeOverlay("second");
+        assertEquals(directory, getDirectory());
+        assertEquals("second", read(script));
+    }
+
+    /**
+     * Verify that an overlay is not unpacked again while another caller is still reading the unpacked copy.
+     *
+     * @throws Exception If there was an unexpected exception.
+     */
+    @Test
+    void testWithDirectoryHoldsLock() throws Exception {
+        writeOverlay("first");
+        final CRXPayload firstPayload = payload();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<String> content = new AtomicReference<>();
+        final Thread reader = new Thread(() -> {
+            try {
+                overlayCache.withDirectory(artifact, firstPayload, directory -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(200);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    content.set(read(new File(directory, "lib/common.js")));
+                });
+            } catch (final Exception e) {
+                content.set(e.toString());
+            }
+        });
+        reader.start();
+        started.await();
+        writeOverlay("second");
+        final File directory = getDirectory();
+        reader.join();
+        assertEquals("first", content.get());
+        assertEquals("second", read(new File(directory, "lib/common.js")));
+    }
+
+    /**
+     * Get the directory containing the unpacked copy of the overlay dependency.
+     *
+     * @return The directory.
+     * @throws Exception If the overlay could not be unpacked.
+     */
+    private File getDirectory() throws Exception {
+        final AtomicReference<File> result = new AtomicReference<>();
+        overlayCache.withDirectory(artifact, payload(), result::set);
+        return result.get();
+    }
+
+    /**
+     * Write the overlay dependency.
+     *
+     * @param content The content of the script in the overlay.
+     * @throws Exception If the overlay could not be written.
+     */
+    private void writeOverlay(final String content) throws Exception {
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(artifact.getFile()))) {
+            zip.putNextEntry(new ZipEntry("lib/common.js"));
+            zip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Get the payload of the overlay dependency.
+     *
+     * @return The payload.
+     * @throws Exception If the overlay could not be read.
+     */
+    private CRXPayload payload() throws Exception {
+        return new CRXArchiveHelper().readPayload(artifact.getFile());
+    }
+
+    /**
+     * Read a file as a string.
+     *
+     * @param file The file.
+     * @return The contents of the file.
+     * @throws IOException If the file could not be read.
+     */
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
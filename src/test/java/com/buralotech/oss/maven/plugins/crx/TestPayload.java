@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests to verify the behaviour of the {@link CRXPayload} implementations.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestPayload {
+
+    /**
+     * The prefix written to the file before the payload region.
+     */
+    private static final byte[] PREFIX = {1, 2, 3, 4, 5, 6, 7};
+
+    /**
+     * Temporary directory used for the payload files.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Verify that a payload backed by a byte array does not copy the array.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testBytes() throws Exception {
+        final CRXPayload payload = CRXPayload.ofBytes(DummyArchive.DATA);
+        assertEquals(DummyArchive.DATA.length, payload.size());
+        assertSame(DummyArchive.DATA, payload.toByteArray());
+        assertPayload(payload);
+    }
+
+    /**
+     * Verify a payload backed by the remaining bytes of a buffer.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testBuffer() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(PREFIX.length + DummyArchive.DATA.length);
+        buffer.put(PREFIX).put(DummyArchive.DATA).flip().position(PREFIX.length);
+        final CRXPayload payload = CRXPayload.ofBuffer(buffer);
+        assertEquals(PREFIX.length, buffer.position());
+        assertPayload(payload);
+    }
+
+    /**
+     * Verify a payload backed by a region of a file.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testFileRegion() throws Exception {
+        assertPayload(CRXPayload.ofFileRegion(createFile(), PREFIX.length, DummyArchive.DATA.length));
+    }
+
+    /**
+     * Verify a payload backed by a memory-mapped region of a file.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testMappedFileRegion() throws Exception {
+        assertPayload(CRXPayload.mapFileRegion(createFile(), PREFIX.length, DummyArchive.DATA.length));
+    }
+
+    /**
+     * Create a file containing a prefix followed by the dummy payload and a trailer.
+     *
+     * @return The file.
+     * @throws Exception If the file could not be written.
+     */
+    private Path createFile() throws Exception {
+        final Path path = new File(outputDirectory, "payload.bin").toPath();
+        final byte[] contents = Arrays.copyOf(PREFIX, PREFIX.length + DummyArchive.DATA.length + PREFIX.length);
+        System.arraycopy(DummyArchive.DATA, 0, contents, PREFIX.length, DummyArchive.DATA.length);
+        System.arraycopy(PREFIX, 0, contents, PREFIX.length + DummyArchive.DATA.length, PREFIX.length);
+        Files.write(path, contents);
+        return path;
+    }
+
+    /**
+     * Verify that a payload reads, seeks, digests and transfers the dummy data.
+     *
+     * @param payload The payload.
+     * @throws Exception If there was an unexpected problem.
+     */
+    private void assertPayload(final CRXPayload payload) throws Exception {
+        assertEquals(DummyArchive.DATA.length, payload.size());
+        assertArrayEquals(DummyArchive.DATA, payload.toByteArray());
+
+        try (SeekableByteChannel channel = payload.openChannel()) {
+            channel.position(8);
+            final ByteBuffer buffer = ByteBuffer.allocate(64);
+            assertEquals(DummyArchive.DATA.length - 8, channel.read(buffer));
+            assertEquals(-1, channel.read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(DummyArchive.DATA, 8, DummyArchive.DATA.length),
+                    Arrays.copyOf(buffer.array(), buffer.position()));
+        }
+
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        payload.update(digest);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(DummyArchive.DATA), digest.digest());
+
+        final Path target = new File(outputDirectory, "target.bin").toPath();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            payload.transferTo(channel);
+        }
+        assertArrayEquals(DummyArchive.DATA, Files.readAllBytes(target));
+    }
+}
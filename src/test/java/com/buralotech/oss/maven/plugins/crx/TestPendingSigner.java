@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for deferred signing with {@link CRXArchiverImpl} and {@link PendingSigner}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestPendingSigner {
+
+    /**
+     * The PEM file containing the key pair.
+     */
+    private static final File PEM_FILE = new File("target/test-classes/crxtest.pem");
+
+    /**
+     * Temporary directory in which the CRX files are created.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Verify that CRX files packaged with deferred signing and signed in a batch are identical to CRX files that were
+     * signed when they were packaged and that the pending files are removed.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testSignPending() throws Exception {
+        final File signedFile = new File(outputDirectory, "signed.crx");
+        createArchive(signedFile, false);
+        final File firstFile = new File(outputDirectory, "first.crx");
+        final File secondFile = new File(outputDirectory, "second.crx");
+        createArchive(firstFile, true);
+        createArchive(secondFile, true);
+        assertFalse(firstFile.exists());
+        assertTrue(PendingSignature.getDescriptorFile(firstFile).isFile());
+        assertTrue(PendingSignature.getPayloadFile(firstFile).isFile());
+
+        final List<File> crxFiles = new PendingSigner(2, new CRXSignatureHelper(), new CRXArchiveHelper(),
+                KeyPairUtils.readKeyPair(PEM_FILE, null)).sign(Arrays.asList(
+                PendingSignature.getDescriptorFile(firstFile), PendingSignature.getDescriptorFile(secondFile)));
+        assertEquals(Arrays.asList(firstFile, secondFile), crxFiles);
+        final byte[] expected = Files.readAllBytes(signedFile.toPath());
+        for (final File crxFile : crxFiles) {
+            assertArrayEquals(expected, Files.readAllBytes(crxFile.toPath()));
+            assertTrue(new File(crxFile.getPath() + ".sha256").isFile());
+            assertFalse(PendingSignature.getDescriptorFile(crxFile).exists());
+            assertFalse(PendingSignature.getPayloadFile(crxFile).exists());
+        }
+    }
+
+    /**
+     * Verify that a pending CRX file is not signed with a key other than the one it was prepared for.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testSignPendingWithDifferentKey() throws Exception {
+        final File crxFile = new File(outputDirectory, "pending.crx");
+        createArchive(crxFile, true);
+        final PendingSigner signer = new PendingSigner(1, new CRXSignatureHelper(), new CRXArchiveHelper(),
+                KeyPairUtils.readKeyPair(new File("target/test-classes/chrome.pem"), null));
+        assertThrows(IOException.class, () -> signer.sign(Collections.singletonList(
+                PendingSignature.getDescriptorFile(crxFile))));
+        assertFalse(crxFile.exists());
+    }
+
+    /**
+     * Package the test extension.
+     *
+     * @param crxFile  The location of the CRX file.
+     * @param deferred {@code true} if signing is deferred.
+     * @throws Exception If the extension could not be packaged.
+     */
+    private static void createArchive(final File crxFile, final boolean deferred) throws Exception {
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(PEM_FILE);
+        archiver.setChecksumAlgorithms("SHA-256");
+        archiver.setDeferredSigning(deferred);
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.setDestFile(crxFile);
+        archiver.createArchive();
+    }
+}
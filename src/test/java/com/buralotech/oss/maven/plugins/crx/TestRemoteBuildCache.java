@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link RemoteBuildCache} and {@link BuildCacheServer}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestRemoteBuildCache {
+
+    /**
+     * A valid key.
+     */
+    private static final String KEY = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    /**
+     * Temporary directory in which the server stores the CRX files.
+     */
+    @TempDir
+    private File serverDirectory;
+
+    /**
+     * Temporary directory containing the files that are uploaded and downloaded.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * The build cache server.
+     */
+    private BuildCacheServer server;
+
+    /**
+     * Start the build cache server on a free port.
+     *
+     * @throws Exception If the server could not be started.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new BuildCacheServer(serverDirectory, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * Stop the build cache server.
+     */
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Verify that a CRX file can be uploaded and downloaded again and that a missing CRX file is reported as a miss.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testPutAndGet() throws Exception {
+        final RemoteBuildCache cache = new RemoteBuildCache(server.getUrl(), 5000);
+        final File target = new File(directory, "downloaded.crx");
+        assertFalse(cache.get(KEY, target));
+        assertFalse(target.exists());
+
+        final byte[] content = "Cr24 not really a CRX file".getBytes(StandardCharsets.US_ASCII);
+        final File source = new File(directory, "source.crx");
+        Files.write(source.toPath(), content);
+        cache.put(KEY, source);
+        assertTrue(new File(serverDirectory, KEY + ".crx").isFile());
+
+        assertTrue(cache.get(KEY, target));
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    /**
+     * Verify that the server rejects keys that are not SHA-256 hashes.
+     */
+    @Test
+    void testInvalidKey() {
+        final RemoteBuildCache cache = new RemoteBuildCache(server.getUrl(), 5000);
+        assertThrows(IOException.class, () -> cache.get("../escape", new File(directory, "downloaded.crx")));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test the {@link CRXResignMojo} which implements the resign goal.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestResignMojo {
+
+    /**
+     * The {@link CRXResignMojo} being tested.
+     */
+    private Mojo mojo;
+
+    /**
+     * The helper used to read the CRX archives.
+     */
+    private ArchiveHelper archiveHelper;
+
+    /**
+     * The CRX archive signed with the original key.
+     */
+    private File crxFile;
+
+    /**
+     * Temporary directory used for output.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Prepare for the unit test execution creating a CRX2 archive signed with the original key and configuring the
+     * {@link CRXResignMojo} with the new key.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        archiveHelper = new CRXArchiveHelper();
+        crxFile = new File(outputDirectory, "HelloWorld.crx");
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setVersion(2);
+        archiver.setDestFile(crxFile);
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(archiveHelper);
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+
+        mojo = new CRXResignMojo();
+        setVariableValueInObject(mojo, "outputDirectory", outputDirectory);
+        setVariableValueInObject(mojo, "finalName", "HelloWorld");
+        setVariableValueInObject(mojo, "pemFile", new File("target/test-classes/chrome.pem"));
+        setVariableValueInObject(mojo, "version", 3);
+        setVariableValueInObject(mojo, "archiveHelper", archiveHelper);
+        setVariableValueInObject(mojo, "signatureHelper", new CRXSignatureHelper());
+    }
+
+    /**
+     * Verify that a CRX2 archive is converted to a CRX3 archive signed with the new key in place and that the ZIP
+     * payload is unchanged.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testResignInPlace() throws Exception {
+        final byte[] originalData = archiveHelper.readArchive(crxFile).getData();
+        final byte[] newPublicKey = KeyPairUtils.readKeyPair(new File("target/test-classes/chrome.pem"), null)
+                .getPublic().getEncoded();
+        mojo.execute();
+        final CRXArchive archive = archiveHelper.readArchive(crxFile);
+        assertEquals(3, archive.getVersion());
+        assertArrayEquals(newPublicKey, archive.getPublicKey());
+        assertArrayEquals(originalData, archive.getData());
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+    }
+
+    /**
+     * Verify that a plain ZIP file can be signed into a separate CRX file.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testResignZipFile() throws Exception {
+        final byte[] zipData = archiveHelper.readArchive(crxFile).getData();
+        final File zipFile = new File(outputDirectory, "HelloWorld.zip");
+        Files.write(zipFile.toPath(), zipData);
+        final File targetFile = new File(outputDirectory, "HelloWorld-signed.crx");
+        setVariableValueInObject(mojo, "crxPath", zipFile);
+        setVariableValueInObject(mojo, "outputPath", targetFile);
+        mojo.execute();
+        final CRXArchive archive = archiveHelper.readArchive(targetFile);
+        assertEquals(3, archive.getVersion());
+        assertArrayEquals(zipData, archive.getData());
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+        assertArrayEquals(zipData, Files.readAllBytes(zipFile.toPath()));
+    }
+
+    /**
+     * Verify that a plain ZIP file is signed into a CRX file alongside it rather than being overwritten when no output
+     * path is specified.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testResignZipFileWithoutOutputPath() throws Exception {
+        final byte[] zipData = archiveHelper.readArchive(crxFile).getData();
+        final File zipFile = new File(outputDirectory, "Packaged.zip");
+        Files.write(zipFile.toPath(), zipData);
+        setVariableValueInObject(mojo, "crxPath", zipFile);
+        mojo.execute();
+        assertArrayEquals(zipData, Files.readAllBytes(zipFile.toPath()));
+        final CRXArchive archive = archiveHelper.readArchive(new File(outputDirectory, "Packaged.crx"));
+        assertEquals(3, archive.getVersion());
+        assertArrayEquals(zipData, archive.getData());
+        assertTrue(VerifyUtils.verifySignature(new CRXSignatureHelper(), archive));
+    }
+
+    /**
+     * Verify that an exception is raised when the source file does not exist.
+     *
+     * @throws Exception If there was an expected or unexpected exception executing the test case.
+     */
+    @Test
+    void testResignMissingFile() throws Exception {
+        setVariableValueInObject(mojo, "crxPath", new File(outputDirectory, "missing.crx"));
+        assertThrows(MojoExecutionException.class, () -> mojo.execute());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test the {@link CRXSignPendingMojo} which implements the sign-pending goal.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class TestSignPendingMojo {
+
+    /**
+     * The PEM file containing the key pair.
+     */
+    private static final File PEM_FILE = new File("target/test-classes/crxtest.pem");
+
+    /**
+     * The {@link CRXSignPendingMojo} being tested.
+     */
+    private Mojo mojo;
+
+    /**
+     * Temporary directory used as the build directory of the project.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * The mock Maven project model for the project that packaged the CRX file.
+     */
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private MavenProject project;
+
+    /**
+     * The mock Maven build model for the project that packaged the CRX file.
+     */
+    @Mock
+    private Build build;
+
+    /**
+     * The mock Maven artifact descriptor for the project that packaged the CRX file.
+     */
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private Artifact artifact;
+
+    /**
+     * The mock Maven project helper used to attach the CRX file and its checksum sidecar files.
+     */
+    @Mock
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * Prepare for the unit test execution configuring the {@link CRXSignPendingMojo} with a reactor containing a
+     * single project.
+     *
+     * @throws Exception If there was an unexpected exception preparing the test case.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        when(project.getBuild()).thenReturn(build);
+        when(project.getArtifact()).thenReturn(artifact);
+        when(build.getDirectory()).thenReturn(outputDirectory.getPath());
+        when(build.getFinalName()).thenReturn("HelloWorld");
+        mojo = new CRXSignPendingMojo();
+        setVariableValueInObject(mojo, "pemFile", PEM_FILE);
+        setVariableValueInObject(mojo, "reactorProjects", Collections.singletonList(project));
+        setVariableValueInObject(mojo, "signatureHelper", new CRXSignatureHelper());
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+        setVariableValueInObject(mojo, "projectHelper", projectHelper);
+    }
+
+    /**
+     * Verify that a pending CRX file is signed and set as the file of the project artifact along with its checksum
+     * sidecar files.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testSignPending() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        createPendingArchive(crxFile);
+        mojo.execute();
+        assertTrue(crxFile.isFile());
+        assertFalse(PendingSignature.getDescriptorFile(crxFile).exists());
+        verify(artifact).setFile(crxFile);
+        verify(projectHelper).attachArtifact(same(project), eq("crx.sha256"), isNull(),
+                eq(new File(crxFile.getPath() + ".sha256")));
+    }
+
+    /**
+     * Verify that a pending CRX file with a classifier is signed and attached with the classifier.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testSignPendingWithClassifier() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld-beta.crx");
+        createPendingArchive(crxFile);
+        mojo.execute();
+        assertTrue(crxFile.isFile());
+        verify(artifact, never()).setFile(any(File.class));
+        verify(projectHelper).attachArtifact(same(project), eq("crx"), eq("beta"), eq(crxFile));
+        verify(projectHelper).attachArtifact(same(project), eq("crx.sha256"), eq("beta"),
+                eq(new File(crxFile.getPath() + ".sha256")));
+    }
+
+    /**
+     * Package the test extension with deferred signing.
+     *
+     * @param crxFile The location of the CRX file.
+     * @throws Exception If the extension could not be packaged.
+     */
+    private static void createPendingArchive(final File crxFile) throws Exception {
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(PEM_FILE);
+        archiver.setChecksumAlgorithms("SHA-256");
+        archiver.setDeferredSigning(true);
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.setDestFile(crxFile);
+        archiver.createArchive();
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Security;
@@ -28,6 +29,8 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -87,4 +90,84 @@ class TestSignatureHelper {
         final boolean result = signatureHelper.check(DummyArchive.DATA, publicKey, DummyArchive.SIGNATURE);
         assertTrue(result);
     }
+
+    /**
+     * Verify that {@link SignatureHelper#signDigest(int, byte[], PrivateKey)} produces the same signature as
+     * {@link SignatureHelper#sign(byte[], PrivateKey)} when given the digest of the data.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testSignDigest() throws Exception {
+        final PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(DummyArchive.PRIVATE_KEY);
+        final PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
+        final MessageDigest digest = signatureHelper.createDigest(2);
+        digest.update(DummyArchive.DATA);
+        final byte[] signature = signatureHelper.signDigest(2, digest.digest(), privateKey);
+        assertArrayEquals(DummyArchive.SIGNATURE, signature);
+    }
+
+    /**
+     * Verify the {@link SignatureHelper#checkDigest(int, byte[], PublicKey, byte[])} method.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testCheckDigest() throws Exception {
+        final X509EncodedKeySpec keySpec = new X509EncodedKeySpec(DummyArchive.PUBLIC_KEY);
+        final PublicKey publicKey = keyFactory.generatePublic(keySpec);
+        final MessageDigest digest = signatureHelper.createDigest(2);
+        digest.update(DummyArchive.DATA);
+        assertTrue(signatureHelper.checkDigest(2, digest.digest(), publicKey, DummyArchive.SIGNATURE));
+        assertFalse(signatureHelper.checkDigest(2, new byte[20], publicKey, DummyArchive.SIGNATURE));
+    }
+
+    /**
+     * Verify that the message digests are obtained from the JDK providers by default.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testDefaultProviders() throws Exception {
+        assertEquals("SUN", signatureHelper.createDigest(2).getProvider().getName());
+        assertEquals("SUN", signatureHelper.createDigest(3).getProvider().getName());
+    }
+
+    /**
+     * Verify that {@link SignatureHelper#withProviders(String...)} obtains the algorithms from the first preferred
+     * provider that supports them and that the signatures are the same as those from the default providers.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testWithProviders() throws Exception {
+        final SignatureHelper helper = signatureHelper.withProviders("Missing", "BC", "SUN");
+        final MessageDigest digest = helper.createDigest(2);
+        assertEquals("BC", digest.getProvider().getName());
+        final PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(DummyArchive.PRIVATE_KEY));
+        digest.update(DummyArchive.DATA);
+        final byte[] hash = digest.digest();
+        assertArrayEquals(DummyArchive.SIGNATURE, helper.signDigest(2, hash, privateKey));
+        final PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(DummyArchive.PUBLIC_KEY));
+        assertTrue(helper.checkDigest(2, hash, publicKey, DummyArchive.SIGNATURE));
+        assertTrue(helper.check(DummyArchive.DATA, publicKey, DummyArchive.SIGNATURE));
+    }
+
+    /**
+     * Verify that the highest priority registered provider is used when none of the preferred providers support an
+     * algorithm.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testWithUnsupportedProviders() throws Exception {
+        final SignatureHelper helper = signatureHelper.withProviders("Missing", "SunEC");
+        final MessageDigest digest = helper.createDigest(3);
+        assertEquals(MessageDigest.getInstance("SHA-256").getProvider(), digest.getProvider());
+        final PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(DummyArchive.PRIVATE_KEY));
+        digest.update(DummyArchive.DATA);
+        final byte[] hash = digest.digest();
+        final PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(DummyArchive.PUBLIC_KEY));
+        assertTrue(helper.checkDigest(3, hash, publicKey, helper.signDigest(3, hash, privateKey)));
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link SigningAgent} and {@link SigningAgentClient}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestSigningAgent {
+
+    /**
+     * The PEM file containing the key pair held by the agent.
+     */
+    private static final File PEM_FILE = new File("target/test-classes/crxtest.pem");
+
+    /**
+     * Temporary directory in which the agent file is published.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * The key pair held by the agent.
+     */
+    private KeyPair keyPair;
+
+    /**
+     * The signing agent.
+     */
+    private SigningAgent agent;
+
+    /**
+     * Load the key pair and start the signing agent.
+     *
+     * @throws Exception If the agent could not be started.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        keyPair = KeyPairUtils.readKeyPair(PEM_FILE, null);
+        agent = new SigningAgent(PEM_FILE, keyPair, new CRXSignatureHelper(), directory, 2);
+    }
+
+    /**
+     * Stop the signing agent.
+     */
+    @AfterEach
+    void tearDown() {
+        agent.close();
+    }
+
+    /**
+     * Verify that the agent returns its public key and signatures that can be checked with it.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testSignDigest() throws Exception {
+        final SignatureHelper helper = new CRXSignatureHelper();
+        final byte[] digest = helper.createDigest(3).digest("signed data".getBytes(StandardCharsets.UTF_8));
+        try (SigningAgentClient client = SigningAgentClient.connect(directory, PEM_FILE, 5000)) {
+            assertNotNull(client);
+            assertArrayEquals(keyPair.getPublic().getEncoded(), client.getPublicKey());
+            assertTrue(helper.checkDigest(3, digest, keyPair.getPublic(), client.signDigest(3, digest)));
+            assertTrue(helper.checkDigest(3, digest, keyPair.getPublic(), client.signDigest(3, digest)));
+        }
+    }
+
+    /**
+     * Verify that concurrent requests from several builds are all signed.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testConcurrentRequests() throws Exception {
+        final SignatureHelper helper = new CRXSignatureHelper();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                final byte[] data = ("build " + i).getBytes(StandardCharsets.UTF_8);
+                futures.add(executor.submit(() -> {
+                    final MessageDigest digest = helper.createDigest(3);
+                    final byte[] hash = digest.digest(data);
+                    try (SigningAgentClient client = SigningAgentClient.connect(directory, PEM_FILE, 5000)) {
+                        return helper.checkDigest(3, hash, keyPair.getPublic(), client.signDigest(3, hash));
+                    }
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify that no connection is made when no agent is running for the PEM file and that the agent file is removed
+     * when the agent is stopped.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testNoAgent() throws Exception {
+        assertNull(SigningAgentClient.connect(directory, new File("target/test-classes/chrome.pem"), 5000));
+        assertTrue(agent.getAgentFile().isFile());
+        agent.close();
+        assertFalse(agent.getAgentFile().exists());
+        assertNull(SigningAgentClient.connect(directory, PEM_FILE, 5000));
+    }
+
+    /**
+     * Verify that the agent rejects a client that does not present the access token.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testWrongToken() throws Exception {
+        final String contents = new String(Files.readAllBytes(agent.getAgentFile().toPath()),
+                StandardCharsets.ISO_8859_1);
+        final String token = contents.substring(contents.indexOf("token=") + 6, contents.indexOf("token=") + 70);
+        Files.write(agent.getAgentFile().toPath(), contents.replace(token, token.replace(token.charAt(0),
+                token.charAt(0) == '0' ? '1' : '0')).getBytes(StandardCharsets.ISO_8859_1));
+        assertThrows(IOException.class, () -> SigningAgentClient.connect(directory, PEM_FILE, 5000));
+    }
+
+    /**
+     * Verify that the agent is not used once the PEM file has been replaced with a different key.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testReplacedPemFile() throws Exception {
+        final File pemFile = new File(directory, "replaced.pem");
+        Files.copy(PEM_FILE.toPath(), pemFile.toPath());
+        try (SigningAgent replacedAgent = new SigningAgent(pemFile, keyPair, new CRXSignatureHelper(), directory, 1)) {
+            try (SigningAgentClient client = SigningAgentClient.connect(directory, pemFile, 5000)) {
+                assertNotNull(client);
+            }
+            Files.copy(new File("target/test-classes/chrome.pem").toPath(), pemFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            assertTrue(replacedAgent.getAgentFile().isFile());
+            assertNull(SigningAgentClient.connect(directory, pemFile, 5000));
+        }
+    }
+}
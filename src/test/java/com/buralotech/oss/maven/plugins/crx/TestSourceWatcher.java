@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link SourceWatcher}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestSourceWatcher {
+
+    /**
+     * The time in milliseconds to wait for changes to be reported. Some platforms poll for changes.
+     */
+    private static final long TIMEOUT = 30000L;
+
+    /**
+     * Temporary directory that is watched.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * Verify that created, modified and deleted files are reported including files in directories that were created
+     * while watching.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testChanges() throws Exception {
+        final File file = new File(directory, "popup.js");
+        Files.write(file.toPath(), "var a = 1;".getBytes(StandardCharsets.UTF_8));
+        try (SourceWatcher watcher = new SourceWatcher(directory, 100)) {
+            assertNull(watcher.poll(10));
+
+            Files.write(file.toPath(), "var a = 2;".getBytes(StandardCharsets.UTF_8));
+            assertEquals(Collections.singleton("popup.js"), poll(watcher, 1));
+
+            final File subdirectory = new File(directory, "images");
+            assertTrue(subdirectory.mkdir());
+            Files.write(new File(subdirectory, "icon.png").toPath(), new byte[]{1, 2, 3});
+            assertEquals(Collections.singleton("images/icon.png"), poll(watcher, 1));
+
+            Files.write(new File(subdirectory, "logo.png").toPath(), new byte[]{4, 5, 6});
+            assertEquals(Collections.singleton("images/logo.png"), poll(watcher, 1));
+
+            Files.delete(file.toPath());
+            assertEquals(Collections.singleton("popup.js"), poll(watcher, 1));
+        }
+    }
+
+    /**
+     * Poll the watcher until the expected number of paths have been reported.
+     *
+     * @param watcher The watcher.
+     * @param count   The expected number of paths.
+     * @return The paths that were reported.
+     * @throws Exception If the watcher could not be polled.
+     */
+    private static Set<String> poll(final SourceWatcher watcher, final int count) throws Exception {
+        final Set<String> changes = new TreeSet<>();
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (changes.size() < count && System.currentTimeMillis() < deadline) {
+            final Set<String> batch = watcher.poll(deadline - System.currentTimeMillis());
+            assertNotNull(batch);
+            changes.addAll(batch);
+        }
+        return changes;
+    }
+}
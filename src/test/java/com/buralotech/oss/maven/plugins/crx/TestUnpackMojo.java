@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test the {@link CRXUnpackMojo} which implements the unpack goal.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestUnpackMojo {
+
+    /**
+     * The {@link CRXUnpackMojo} being tested.
+     */
+    private Mojo mojo;
+
+    /**
+     * The CRX archive that the project depends on.
+     */
+    private File crxFile;
+
+    /**
+     * The directory into which the CRX archive is unpacked.
+     */
+    private File unpackDirectory;
+
+    /**
+     * Temporary directory used for output.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Prepare for the unit test execution creating a CRX archive and configuring the {@link CRXUnpackMojo} with a
+     * project that depends on it.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        crxFile = new File(outputDirectory, "HelloWorld-1.0.0.crx");
+        final CRXArchiverImpl archiver = new CRXArchiverImpl();
+        archiver.setDestFile(crxFile);
+        archiver.setSignatureHelper(new CRXSignatureHelper());
+        archiver.setArchiveHelper(new CRXArchiveHelper());
+        archiver.setPemFile(new File("target/test-classes/crxtest.pem"));
+        archiver.addDirectory(new File("target/test-classes/HelloWorld"), null, null);
+        archiver.createArchive();
+
+        final Artifact artifact = new DefaultArtifact("com.buralotech.oss", "HelloWorld", "1.0.0", "compile", "crx",
+                null, new DefaultArtifactHandler("crx"));
+        artifact.setFile(crxFile);
+        final MavenProject project = mock(MavenProject.class);
+        when(project.getArtifacts()).thenReturn(Collections.singleton(artifact));
+
+        final File unpackRoot = new File(outputDirectory, "crx-unpacked");
+        unpackDirectory = new File(unpackRoot, "HelloWorld");
+        mojo = new CRXUnpackMojo();
+        setVariableValueInObject(mojo, "outputDirectory", unpackRoot);
+        setVariableValueInObject(mojo, "project", project);
+        setVariableValueInObject(mojo, "threads", 2);
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+        setVariableValueInObject(mojo, "signatureHelper", new CRXSignatureHelper());
+    }
+
+    /**
+     * Verify that the entries of a CRX dependency are extracted.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testUnpack() throws Exception {
+        setVariableValueInObject(mojo, "verify", true);
+        mojo.execute();
+        final File manifest = new File(unpackDirectory, "manifest.json");
+        assertTrue(manifest.isFile());
+        assertArrayEquals(Files.readAllBytes(new File("target/test-classes/HelloWorld/manifest.json").toPath()),
+                Files.readAllBytes(manifest.toPath()));
+        assertTrue(new File(outputDirectory, "crx-unpacked/HelloWorld.unpacked").isFile());
+    }
+
+    /**
+     * Verify that a CRX dependency that was already unpacked is not extracted again.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testUnpackSkippedWhenAlreadyUnpacked() throws Exception {
+        mojo.execute();
+        final File manifest = new File(unpackDirectory, "manifest.json");
+        Files.write(manifest.toPath(), "modified".getBytes(StandardCharsets.UTF_8));
+        mojo.execute();
+        assertEquals("modified", new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verify that a CRX dependency is extracted again when its checksum changes.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testUnpackRepeatedWhenArchiveChanges() throws Exception {
+        mojo.execute();
+        final File stale = new File(unpackDirectory, "stale.txt");
+        Files.write(stale.toPath(), "stale".getBytes(StandardCharsets.UTF_8));
+        try (RandomAccessFile file = new RandomAccessFile(crxFile, "rw")) {
+            file.seek(file.length());
+            file.write(0);
+        }
+        mojo.execute();
+        assertTrue(new File(unpackDirectory, "manifest.json").isFile());
+        assertFalse(stale.exists());
+    }
+
+    /**
+     * Verify that a CRX dependency with an invalid signature is rejected when verification is enabled.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testUnpackWithInvalidSignature() throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(crxFile, "rw")) {
+            file.seek(file.length() - 1);
+            final int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        setVariableValueInObject(mojo, "verify", true);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link VerificationCache}.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestVerificationCache {
+
+    /**
+     * Temporary directory containing the archive and the cache.
+     */
+    @TempDir
+    private File directory;
+
+    /**
+     * The archive that is looked up.
+     */
+    private File file;
+
+    /**
+     * The cache being tested.
+     */
+    private VerificationCache cache;
+
+    /**
+     * Create the archive and the cache.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        file = new File(directory, "HelloWorld.crx");
+        Files.write(file.toPath(), "archive".getBytes(StandardCharsets.UTF_8));
+        cache = new VerificationCache(new File(directory, "cache"));
+    }
+
+    /**
+     * Verify that the checksum of an unchanged archive is taken from the index.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testChecksumFromIndex() throws Exception {
+        assertEquals(ChecksumUtils.checksum(file, "SHA-256"), cache.getChecksum(file));
+
+        // Tamper with the indexed checksum to prove that the archive is not read again
+
+        final Path indexFile;
+        try (Stream<Path> files = Files.list(new File(directory, "cache/index").toPath())) {
+            indexFile = files.findFirst().get();
+        }
+        final String index = new String(Files.readAllBytes(indexFile), StandardCharsets.ISO_8859_1);
+        Files.write(indexFile, index.replaceAll("sha256=.*", "sha256=indexed").getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals("indexed", cache.getChecksum(file));
+    }
+
+    /**
+     * Verify that the checksum of a changed archive is calculated again.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testChecksumOfChangedArchive() throws Exception {
+        cache.getChecksum(file);
+        Files.write(file.toPath(), "changed archive".getBytes(StandardCharsets.UTF_8));
+        assertEquals(ChecksumUtils.checksum(file, "SHA-256"), cache.getChecksum(file));
+    }
+
+    /**
+     * Verify that results are recorded and read back.
+     *
+     * @throws Exception If there was an unexpected problem.
+     */
+    @Test
+    void testResults() throws Exception {
+        final String checksum = cache.getChecksum(file);
+        assertNull(cache.getResult(checksum));
+        cache.putResult(checksum, new VerificationCache.Result(3, true, false, "fingerprint", "full", 1024L));
+        final VerificationCache.Result result = cache.getResult(checksum);
+        assertEquals(3, result.getVersion());
+        assertTrue(result.isValid());
+        assertFalse(result.isEntriesVerified());
+        assertEquals("fingerprint", result.getKeyFingerprint());
+        assertEquals("full", result.getLevel());
+        assertEquals(1024L, result.getMaxEntrySize());
+    }
+}
@@ -29,13 +29,21 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.PublicKey;
 
 import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -78,6 +86,21 @@ class TestVerifyMojo {
      */
     private static final String CLASSIFIER_FIELD = "classifier";
 
+    /**
+     * The name of the level field in {@link CRXVerifyMojo}.
+     */
+    private static final String LEVEL_FIELD = "level";
+
+    /**
+     * The name of the key fingerprints field in {@link CRXVerifyMojo}.
+     */
+    private static final String KEY_FINGERPRINTS_FIELD = "keyFingerprints";
+
+    /**
+     * The name of the crypto providers field in {@link CRXVerifyMojo}.
+     */
+    private static final String CRYPTO_PROVIDERS_FIELD = "cryptoProviders";
+
     /**
      * The {@link CRXVerifyMojo} being tested.
      */
@@ -113,6 +136,7 @@ class TestVerifyMojo {
         setVariableValueInObject(mojo, SIGNATURE_HELPER_FIELD, signatureHelper);
         setVariableValueInObject(mojo, ARCHIVE_HELPER_FIELD, archiveHelper);
         setVariableValueInObject(mojo, FINAL_NAME_FIELD, "HelloWorld");
+        setVariableValueInObject(mojo, LEVEL_FIELD, "full");
     }
 
     /**
@@ -124,10 +148,13 @@ class TestVerifyMojo {
     void testValidSignature() throws Exception {
         final CRXArchive archive = new DummyArchive();
         when(archiveHelper.readArchive(any(File.class))).thenReturn(archive);
-        when(signatureHelper.check(any(byte[].class), any(PublicKey.class), any(byte[].class))).thenReturn(true);
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
         mojo.execute();
         verify(archiveHelper).readArchive(any(File.class));
-        verify(signatureHelper).check(same(DummyArchive.DATA), any(PublicKey.class), same(DummyArchive.SIGNATURE));
+        verify(signatureHelper).checkDigest(eq(2), aryEq(MessageDigest.getInstance("SHA-1").digest(DummyArchive.DATA)),
+                any(PublicKey.class), same(DummyArchive.SIGNATURE));
     }
 
     /**
@@ -139,11 +166,13 @@ class TestVerifyMojo {
     void testValidSignatureWithClassifier() throws Exception {
         final CRXArchive archive = new DummyArchive();
         when(archiveHelper.readArchive(any(File.class))).thenReturn(archive);
-        when(signatureHelper.check(any(byte[].class), any(PublicKey.class), any(byte[].class))).thenReturn(true);
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
         setVariableValueInObject(mojo, CLASSIFIER_FIELD, "debug");
         mojo.execute();
         verify(archiveHelper).readArchive(any(File.class));
-        verify(signatureHelper).check(any(byte[].class), any(PublicKey.class), any(byte[].class));
+        verify(signatureHelper).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class));
     }
 
     /**
@@ -155,12 +184,176 @@ class TestVerifyMojo {
     void testValidSignatureWithCRXPath() throws Exception {
         final CRXArchive archive = new DummyArchive();
         when(archiveHelper.readArchive(any(File.class))).thenReturn(archive);
-        when(signatureHelper.check(any(byte[].class), any(PublicKey.class), any(byte[].class))).thenReturn(true);
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
         setVariableValueInObject(mojo, CRX_PATH_FIELD, new File(outputDirectory,
                 "HelloWorld-1.0.0-SNAPSHOT.crx"));
         mojo.execute();
         verify(archiveHelper).readArchive(any(File.class));
-        verify(signatureHelper).check(any(byte[].class), any(PublicKey.class), any(byte[].class));
+        verify(signatureHelper).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class));
+    }
+
+    /**
+     * Verify that the {@link CRXVerifyMojo} checks the signature using the preferred crypto providers when the
+     * cryptoProviders parameter has been set.
+     *
+     * @throws Exception If there was an unexpected error.
+     */
+    @Test
+    void testValidSignatureWithCryptoProviders() throws Exception {
+        final SignatureHelper configuredHelper = mock(SignatureHelper.class);
+        when(signatureHelper.withProviders("SunJCE", "BC")).thenReturn(configuredHelper);
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        when(configuredHelper.createDigest(anyInt())).thenReturn(MessageDigest.getInstance("SHA-1"));
+        when(configuredHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
+        setVariableValueInObject(mojo, CRYPTO_PROVIDERS_FIELD, "SunJCE, BC");
+        mojo.execute();
+        verify(configuredHelper).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class));
+    }
+
+    /**
+     * Verify that the {@link CRXVerifyMojo} throws an {@link MojoFailureException} when the signature is valid but
+     * the ZIP payload is not when the integrity of the entries is checked.
+     *
+     * @throws Exception If there was an expected or unexpected error.
+     */
+    @Test
+    void testVerifyEntriesFailure() throws Exception {
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
+        setVariableValueInObject(mojo, "verifyEntries", true);
+        setVariableValueInObject(mojo, "maxEntrySize", 1024L);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+    }
+
+    /**
+     * Verify that the {@link CRXVerifyMojo} does not read or verify an unchanged archive again when the result is
+     * cached.
+     *
+     * @throws Exception If there was an unexpected error.
+     */
+    @Test
+    void testCachedResult() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        Files.write(crxFile.toPath(), DummyArchive.DATA);
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
+        setVariableValueInObject(mojo, "useCache", true);
+        setVariableValueInObject(mojo, "cacheDirectory", new File(outputDirectory, "cache"));
+        mojo.execute();
+        mojo.execute();
+        verify(archiveHelper, times(1)).readArchive(any(File.class));
+        verify(signatureHelper, times(1)).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class),
+                any(byte[].class));
+    }
+
+    /**
+     * Verify that the {@link CRXVerifyMojo} verifies the archive again when the cached result was produced with a
+     * different largest entry size.
+     *
+     * @throws Exception If there was an unexpected error.
+     */
+    @Test
+    void testCachedResultWithDifferentMaxEntrySize() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        Files.write(crxFile.toPath(), DummyArchive.DATA);
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(true);
+        setVariableValueInObject(mojo, "useCache", true);
+        setVariableValueInObject(mojo, "cacheDirectory", new File(outputDirectory, "cache"));
+        setVariableValueInObject(mojo, "maxEntrySize", 104857600L);
+        mojo.execute();
+        setVariableValueInObject(mojo, "maxEntrySize", 1024L);
+        mojo.execute();
+        mojo.execute();
+        verify(archiveHelper, times(2)).readArchive(any(File.class));
+    }
+
+    /**
+     * Verify that the {@link CRXVerifyMojo} fails again without verifying the archive when an invalid result is
+     * cached.
+     *
+     * @throws Exception If there was an expected or unexpected error.
+     */
+    @Test
+    void testCachedFailure() throws Exception {
+        final File crxFile = new File(outputDirectory, "HelloWorld.crx");
+        Files.write(crxFile.toPath(), DummyArchive.DATA);
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(false);
+        setVariableValueInObject(mojo, "useCache", true);
+        setVariableValueInObject(mojo, "cacheDirectory", new File(outputDirectory, "cache"));
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        verify(archiveHelper, times(1)).readArchive(any(File.class));
+    }
+
+    /**
+     * Verify that the quick level checks the header against the expected version and key fingerprint without
+     * verifying the signature.
+     *
+     * @throws Exception If there was an unexpected error.
+     */
+    @Test
+    void testQuickLevel() throws Exception {
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        setVariableValueInObject(mojo, LEVEL_FIELD, "quick");
+        setVariableValueInObject(mojo, "expectedVersion", 2);
+        setVariableValueInObject(mojo, KEY_FINGERPRINTS_FIELD, "0000, " + getFingerprint());
+        mojo.execute();
+        verify(signatureHelper, never()).createDigest(anyInt());
+        verify(signatureHelper, never()).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class),
+                any(byte[].class));
+    }
+
+    /**
+     * Verify that the quick level fails when the CRX archive is not the expected version.
+     *
+     * @throws Exception If there was an expected or unexpected error.
+     */
+    @Test
+    void testQuickLevelWithUnexpectedVersion() throws Exception {
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        setVariableValueInObject(mojo, LEVEL_FIELD, "quick");
+        setVariableValueInObject(mojo, "expectedVersion", 3);
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+    }
+
+    /**
+     * Verify that the full level fails when the public key does not match the expected key fingerprints even though
+     * the signature is valid.
+     *
+     * @throws Exception If there was an expected or unexpected error.
+     */
+    @Test
+    void testFullLevelWithUnexpectedKey() throws Exception {
+        when(archiveHelper.readArchive(any(File.class))).thenReturn(new DummyArchive());
+        setVariableValueInObject(mojo, KEY_FINGERPRINTS_FIELD,
+                "0000000000000000000000000000000000000000000000000000000000000000");
+        assertThrows(MojoFailureException.class, () -> mojo.execute());
+        verify(signatureHelper, never()).checkDigest(anyInt(), any(byte[].class), any(PublicKey.class),
+                any(byte[].class));
+    }
+
+    /**
+     * Verify that an unsupported verification level is rejected.
+     *
+     * @throws Exception If there was an expected or unexpected error.
+     */
+    @Test
+    void testUnsupportedLevel() throws Exception {
+        setVariableValueInObject(mojo, LEVEL_FIELD, "paranoid");
+        assertThrows(MojoExecutionException.class, () -> mojo.execute());
     }
 
     /**
@@ -172,7 +365,9 @@ class TestVerifyMojo {
     void testSignatureCheckFailure() throws Exception {
         final CRXArchive archive = new DummyArchive();
         when(archiveHelper.readArchive(any(File.class))).thenReturn(archive);
-        when(signatureHelper.check(any(byte[].class), any(PublicKey.class), any(byte[].class))).thenReturn(false);
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class), any(byte[].class)))
+                .thenReturn(false);
         assertThrows(MojoFailureException.class, () -> mojo.execute());
     }
 
@@ -185,7 +380,8 @@ class TestVerifyMojo {
     void testInvalidSignature() throws Exception {
         final CRXArchive archive = new DummyArchive();
         when(archiveHelper.readArchive(any(File.class))).thenReturn(archive);
-        when(signatureHelper.check(any(byte[].class), any(PublicKey.class),
+        stubDigest();
+        when(signatureHelper.checkDigest(anyInt(), any(byte[].class), any(PublicKey.class),
                 any(byte[].class))).thenThrow(GeneralSecurityException.class);
         assertThrows(MojoExecutionException.class, () -> mojo.execute());
     }
@@ -211,4 +407,25 @@ class TestVerifyMojo {
         when(archiveHelper.readArchive(any(File.class))).thenThrow(FileNotFoundException.class);
         assertThrows(MojoExecutionException.class, () -> mojo.execute());
     }
+
+    /**
+     * Get the fingerprint of the public key of the dummy archive.
+     *
+     * @return The fingerprint formatted as upper case pairs of hexadecimal digits separated by colons.
+     * @throws Exception If the fingerprint could not be calculated.
+     */
+    private static String getFingerprint() throws Exception {
+        final String fingerprint = ChecksumUtils.toHex(MessageDigest.getInstance("SHA-256")
+                .digest(DummyArchive.PUBLIC_KEY));
+        return fingerprint.toUpperCase().replaceAll("(..)(?!$)", "$1:");
+    }
+
+    /**
+     * Stub {@link SignatureHelper#createDigest(int)} to return a SHA-1 message digest for the CRX2 dummy archive.
+     *
+     * @throws Exception If the message digest could not be created.
+     */
+    private void stubDigest() throws Exception {
+        when(signatureHelper.createDigest(anyInt())).thenReturn(MessageDigest.getInstance("SHA-1"));
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 Brian Matthews
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralotech.oss.maven.plugins.crx;
+
+import org.apache.maven.plugin.Mojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Provider;
+
+import static org.codehaus.plexus.util.ReflectionUtils.setVariableValueInObject;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test the {@link CRXWatchMojo} which implements the watch goal.
+ *
+ * @author <a href="mailto:bmatthews68@gmail.com">Brian Matthews</a>
+ * @since 2.0.0
+ */
+class TestWatchMojo {
+
+    /**
+     * The {@link CRXWatchMojo} being tested.
+     */
+    private Mojo mojo;
+
+    /**
+     * The staging directory into which the sources are copied.
+     */
+    private File crxDirectory;
+
+    /**
+     * The re-packaged CRX file.
+     */
+    private File crxFile;
+
+    /**
+     * Temporary directory used for output.
+     */
+    @TempDir
+    private File outputDirectory;
+
+    /**
+     * Prepare for the unit test execution copying the Chrome Extension sources and configuring the
+     * {@link CRXWatchMojo} to re-package the CRX file.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        final File sourceDirectory = new File(outputDirectory, "chrome");
+        FileUtils.copyDirectoryStructure(new File("target/test-classes/HelloWorld"), sourceDirectory);
+        crxDirectory = new File(outputDirectory, "HelloWorld");
+        crxFile = new File(outputDirectory, "HelloWorld.crx");
+        final Provider<CRXArchiver> provider = () -> {
+            final CRXArchiverImpl archiver = new CRXArchiverImpl();
+            archiver.setSignatureHelper(new CRXSignatureHelper());
+            archiver.setArchiveHelper(new CRXArchiveHelper());
+            return archiver;
+        };
+        mojo = new CRXWatchMojo();
+        setVariableValueInObject(mojo, "crxSourceDirectory", sourceDirectory);
+        setVariableValueInObject(mojo, "outputDirectory", outputDirectory);
+        setVariableValueInObject(mojo, "finalName", "HelloWorld");
+        setVariableValueInObject(mojo, "contentHashesPath", "_metadata/computed_hashes.json");
+        setVariableValueInObject(mojo, "debounce", 20L);
+        setVariableValueInObject(mojo, "repackage", true);
+        setVariableValueInObject(mojo, "pemFile", new File("target/test-classes/crxtest.pem"));
+        setVariableValueInObject(mojo, "archiveHelper", new CRXArchiveHelper());
+        setVariableValueInObject(mojo, "crxArchiverProvider", provider);
+    }
+
+    /**
+     * Verify that re-packaging without a PEM file is rejected before the sources are staged.
+     *
+     * @throws Exception If there was an expected or unexpected exception executing the test case.
+     */
+    @Test
+    void testRepackageWithoutPemFile() throws Exception {
+        setVariableValueInObject(mojo, "pemFile", null);
+        assertThrows(MojoExecutionException.class, () -> mojo.execute());
+        assertFalse(crxDirectory.exists());
+    }
+
+    /**
+     * Verify that content hashes left in the staging directory by the crx goal are not re-packaged because they are
+     * stale once the sources change.
+     *
+     * @throws Exception If there was an unexpected exception executing the test case.
+     */
+    @Test
+    void testRepackageExcludesContentHashes() throws Exception {
+        final File computedHashes = new File(crxDirectory, "_metadata/computed_hashes.json");
+        Files.createDirectories(computedHashes.getParentFile().toPath());
+        Files.write(computedHashes.toPath(), "{\"file_hashes\":[]}".getBytes(StandardCharsets.UTF_8));
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                mojo.execute();
+            } catch (final Exception e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        try {
+            for (int i = 0; i < 200 && !crxFile.isFile(); i++) {
+                Thread.sleep(50);
+            }
+        } finally {
+            thread.interrupt();
+            thread.join(10000);
+        }
+        assertFalse(thread.isAlive());
+        assertNull(failure.get());
+        assertTrue(crxFile.isFile());
+        final List<String> names = new ArrayList<>();
+        for (final CRXEntry entry : new CRXArchiveHelper().listEntries(crxFile)) {
+            names.add(entry.getName());
+        }
+        assertTrue(names.contains("manifest.json"));
+        assertFalse(names.contains("_metadata/computed_hashes.json"));
+    }
+}